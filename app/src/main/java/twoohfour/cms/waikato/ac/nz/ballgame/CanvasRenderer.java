@@ -0,0 +1,49 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+/**
+ * Draws the engine's sprites on an Android Canvas
+ * One Paint per style is reused for every sprite, only its colour changes
+ */
+public class CanvasRenderer implements Renderer {
+
+    //region Variables
+    private final Paint _fill = new Paint();
+    private final Paint _stroke = new Paint();
+    private Canvas _canvas;
+    //endregion
+
+    public CanvasRenderer() {
+        _fill.setStyle(Paint.Style.FILL);
+        _stroke.setStyle(Paint.Style.STROKE);
+    }
+
+    /**
+     * Sets the canvas to draw on, until the next one
+     *
+     * @param canvas Canvas for this frame
+     */
+    public void setCanvas(Canvas canvas) {
+        _canvas = canvas;
+    }
+
+    @Override
+    public void fillRect(float left, float top, float right, float bottom, int color) {
+        _fill.setColor(color);
+        _canvas.drawRect(left, top, right, bottom, _fill);
+    }
+
+    @Override
+    public void strokeRect(float left, float top, float right, float bottom, int color) {
+        _stroke.setColor(color);
+        _canvas.drawRect(left, top, right, bottom, _stroke);
+    }
+
+    @Override
+    public void fillCircle(float cx, float cy, float radius, int color) {
+        _fill.setColor(color);
+        _canvas.drawCircle(cx, cy, radius, _fill);
+    }
+}
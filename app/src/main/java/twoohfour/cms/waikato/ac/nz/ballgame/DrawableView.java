@@ -4,7 +4,6 @@ import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.graphics.Point;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.View;
@@ -23,6 +22,7 @@ public class DrawableView extends View {
     private float _viewStateRatio = 0f; // Ratio between GameState's layout and rality
 
     private GameState _state;
+    private final CanvasRenderer _renderer = new CanvasRenderer();
     //endregion
 
     public DrawableView(Context context) {
@@ -40,9 +40,8 @@ public class DrawableView extends View {
      */
     public void setState(GameState s) {
         _state = s;
-        s.setView(this);
 
-        Point levelSize = s.getLevelSize();
+        IntVec2 levelSize = s.getLevelSize();
         _hwRatio = (float) levelSize.y / (float) levelSize.x;
     }
 
@@ -54,7 +53,8 @@ public class DrawableView extends View {
     @Override
     protected void onDraw(Canvas canvas) {
         if (_state != null) {
-            _state.draw(canvas, _viewStateRatio);
+            _renderer.setCanvas(canvas);
+            _state.draw(_renderer, _viewStateRatio);
             invalidate(); // Add another draw routine to the event stack
 
         }
@@ -104,7 +104,7 @@ public class DrawableView extends View {
             newHeight = Math.min(newHeight, height);
 
 
-        Point levelSize = _state.getLevelSize();
+        IntVec2 levelSize = _state.getLevelSize();
         _viewStateRatio = (float) newWidth / (float) levelSize.x;
         //_state.setViewSize(newWidth, newHeight);
         setMeasuredDimension(newWidth, newHeight);
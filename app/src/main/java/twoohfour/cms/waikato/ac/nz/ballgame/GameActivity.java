@@ -9,6 +9,7 @@ import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.preference.PreferenceManager;
 import android.support.v7.app.AppCompatActivity;
+import android.os.Build;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.View;
@@ -17,12 +18,9 @@ import android.widget.GridLayout;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 
-import java.net.InetAddress;
-import java.net.NetworkInterface;
-import java.net.UnknownHostException;
-import java.util.Collections;
-import java.util.Hashtable;
-import java.util.List;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Timer;
 import java.util.TimerTask;
 
@@ -36,6 +34,7 @@ public class GameActivity extends AppCompatActivity implements SensorEventListen
 
     // Misc. constants
     private final int UPDATES_PER_SECOND = 30;
+    private final int LEAVE_TIMEOUT_MS = 500;
 
     // Sensors
     private final float MAX_GRAVITY = 4.5f; // Tilting the device past this point will have no effect
@@ -51,16 +50,29 @@ public class GameActivity extends AppCompatActivity implements SensorEventListen
 
     // Ready states
     private boolean _amReady = false;
-    private boolean _othersReady = true;
+    private volatile boolean _othersReady = true;
 
     // Multiplayer
     private boolean _isMp;
+    private boolean _isHosting;
+    private boolean _isLockstep; // For rooms we make. Joiners go with the room
+    private boolean _isRollback; // Guess late inputs in lockstep rooms, rather than wait
+    private boolean _isCapturing; // Record the network's traffic to a file
+    private boolean _isRecording; // Record every game's inputs to a file, for InputReplay
+    private boolean _isWatching; // Only watch a GameHost's games, never play
     private MultiplayerNetwork _network;
+    private GameHost _host; // Only if this device runs games for everyone
+    private MultiplayerNetwork _hostNetwork;
+    private volatile boolean _refereed = false; // Whether a GameHost runs our room
+    private volatile LevelDescriptor _startLevel; // Level the room's server has started
+    private volatile int[] _startNodes; // Players in a lockstep game the server has started
+    private LockstepSession _lockstep; // Only while playing in lockstep. A RollbackSession if guessing
 
     // Miscellaneous objects
     private DrawableView _view;
     private GameState _state;
-    private Hashtable _otherPlayers;
+    private PeerRegistry _peers;
+    private MultiPlayerGhostSprite[] _ghosts; // Indexed by peer id
     private NetThread _netThread;
     private Timer _updateTimer;
 
@@ -104,8 +116,9 @@ public class GameActivity extends AppCompatActivity implements SensorEventListen
 
         retrievePreferences();
 
-        // String is the ip associated with that player
-        _otherPlayers = new Hashtable<String, MultiPlayerGhostSprite>();
+        // Each other player gets a peer id, which indexes their ghost
+        _peers = new PeerRegistry();
+        _ghosts = new MultiPlayerGhostSprite[PeerRegistry.MAX_PEERS];
 
         // Set layouts
         setContentView(R.layout.activity_game);
@@ -115,7 +128,7 @@ public class GameActivity extends AppCompatActivity implements SensorEventListen
 
         if (_isMp) {
             // Make an empty level for the 'lobby'
-            _state = GameState.GENERATE(GameState.Level.Empty, this);
+            _state = LevelResources.generate(GameState.Level.Empty, this);
         } else {
             // Start level straight away
             startLevel();
@@ -138,6 +151,10 @@ public class GameActivity extends AppCompatActivity implements SensorEventListen
         TextView levelLabel = (TextView) findViewById(R.id.level_name);
         levelLabel.setText(_state.getTitle());
 
+        // Nothing to be ready for when only watching
+        if (_isWatching)
+            findViewById(R.id.buttonStartGame).setVisibility(View.GONE);
+
         // Start update loop
         _updateTimer = new Timer("Update");
         _updateTimer.scheduleAtFixedRate(new TimerTask() {
@@ -173,10 +190,31 @@ public class GameActivity extends AppCompatActivity implements SensorEventListen
 
         // Tell network you're leaving
         // Can't be done on UI thread
+        final MultiplayerNetwork network = _network;
+        final GameHost host = _host;
+        final MultiplayerNetwork hostNetwork = _hostNetwork;
+        final LockstepSession lockstep = endLockstep();
+        final GameState state = _state;
         Thread quick = new Thread(new Runnable() {
             @Override
             public void run() {
-                _network.sendCode(104, "");
+                synchronized (state) {
+                    stopRecording(state);
+                }
+
+                // Give the others a chance to hear it before hanging up
+                if (lockstep != null)
+                    lockstep.sendLeave(); // Tells them which tick we stopped at
+                else
+                    network.sendReliable(104);
+                network.awaitAcks(LEAVE_TIMEOUT_MS);
+                network.close();
+
+                // Anyone left in our rooms will have to find another host
+                if (host != null) {
+                    host.close();
+                    hostNetwork.close();
+                }
             }
         });
         quick.start();
@@ -198,9 +236,16 @@ public class GameActivity extends AppCompatActivity implements SensorEventListen
 
         // Get multiplayer preference
         _isMp = sharedPref.getBoolean(getResources().getString(R.string.key_pref_mp), true);
+        _isHosting = _isMp && sharedPref.getBoolean(getResources().getString(R.string.key_pref_host), false);
+        String netMode = sharedPref.getString(getResources().getString(R.string.key_pref_netmode), getResources().getString(R.string.pref_netmode_default_value));
+        _isRollback = netMode.equals(getResources().getString(R.string.pref_netmode_rollback));
+        _isLockstep = _isRollback || netMode.equals(getResources().getString(R.string.pref_netmode_lockstep));
+        _isWatching = _isMp && sharedPref.getBoolean(getResources().getString(R.string.key_pref_spectate), false);
 
         // Get debug preferences
         debug = sharedPref.getBoolean(getResources().getString(R.string.key_pref_debug), false);
+        _isCapturing = sharedPref.getBoolean(getResources().getString(R.string.key_pref_capture), false);
+        _isRecording = sharedPref.getBoolean(getResources().getString(R.string.key_pref_record), false);
         if (debug)
             debugButtons = sharedPref.getBoolean(getResources().getString(R.string.key_pref_debug_buttons), false);
 
@@ -225,7 +270,21 @@ public class GameActivity extends AppCompatActivity implements SensorEventListen
         // Principle of game design
         // Stops things going wrong when FPS forced to different values
 
-        if (_amReady && _othersReady) {
+        final LevelDescriptor startLevel = _startLevel;
+        if (startLevel != null) {
+            // The server says when to start, and what
+            _startLevel = null;
+            this.runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    startLevel(startLevel);
+                }
+            });
+        } else if (_amReady && _othersReady && _netThread != null && _netThread.isLockstepRoom()) {
+            // Everyone has to start the same world, so the server decides who's in it
+            _amReady = false;
+            _netThread.announceLockstep(new LevelDescriptor(getIntentLevel(), GameRandom.forThread().nextLong()));
+        } else if (_amReady && _othersReady && !_refereed && (_netThread == null || !_netThread.waitsForServer())) {
 
             // Any UI changes must be done on the original thread
             // Timer make their own, so we have to do this
@@ -237,14 +296,37 @@ public class GameActivity extends AppCompatActivity implements SensorEventListen
             });
         }
 
+        // A lockstep world only moves when everyone's input is in
+        LockstepSession lockstep;
+        GameState state;
+        synchronized (this) {
+            lockstep = _lockstep;
+            state = _state;
+        }
+
         // Ensure that we have the lock on the state
-        synchronized (_state) {
-            _state.update();
-            GameState.State _mode = _state.getState();
+        synchronized (state) {
+            if (lockstep != null) {
+                float[] grav = state.getGravity();
+                if (!lockstep.step(grav[0], grav[1]) && lockstep instanceof RollbackSession
+                        && ((RollbackSession) lockstep).isDesynced()) {
+                    // Our world has stopped, and can't catch up with everyone else's. Leaving tells them where we stopped
+                    Log.e("Net", "Lost sync with the other players");
+                    finish();
+                    return;
+                }
+            } else {
+                state.update();
+            }
+            GameState.State _mode = state.getState();
 
-            if (_mode == GameState.State.Spectating) {
+            // Finishing on a guess doesn't count until the guess is confirmed
+            // Players in a host's room stay to watch the others
+            NetThread netThread = _netThread;
+            boolean watching = netThread != null && netThread.isWatching();
+            if (_mode == GameState.State.Spectating && (lockstep == null || lockstep.isSettled()) && !watching) {
                 Intent i = new Intent();
-                i.putExtra(EXTRA_SCORE, _state.getScore());
+                i.putExtra(EXTRA_SCORE, state.getScore());
 
                 setResult(RESULT_OK, i);
                 finish();
@@ -252,18 +334,70 @@ public class GameActivity extends AppCompatActivity implements SensorEventListen
         }
     }
 
+    private synchronized LockstepSession getLockstep() {
+        return _lockstep;
+    }
+
+    /**
+     * Stops playing in lockstep, if we were, and stops the session hearing from the network
+     *
+     * @return Session that was ended, or null if there wasn't one
+     */
+    private LockstepSession endLockstep() {
+        LockstepSession lockstep;
+        synchronized (this) {
+            lockstep = _lockstep;
+            _lockstep = null;
+        }
+        if (lockstep != null && _network != null)
+            _network.unregisterListener(lockstep);
+        return lockstep;
+    }
+
     public void startLevel() {
+        startLevel(new LevelDescriptor(getUnsharedLevel(), GameRandom.forThread().nextLong()));
+    }
 
-        // Get a GameState.Level from intent system
-        GameState.Level levelNum = (GameState.Level) getIntent().getSerializableExtra(EXTRA_LEVEL);
-        if (levelNum == null)
-            levelNum = GameState.Level.Random;
-        // Save state
-        _state = GameState.GENERATE(levelNum, this);
+    public void startLevel(LevelDescriptor level) {
+        GameState state = LevelResources.create(level, this);
+
+        int[] nodes = _startNodes;
 
-        List<GenericSprite> spriteList = _state.getSprites();
-        for (Object s : _otherPlayers.values()) {
-            spriteList.add((GenericSprite) s);
+        // Rollback rewinds the world, which a recording can't follow
+        if (_isRecording && !(nodes != null && _isRollback))
+            startRecording(state, level);
+        GameState old = _state;
+        if (old != null) {
+            synchronized (old) {
+                stopRecording(old);
+            }
+        }
+        // The last level's session stops listening, or every level played would leave one behind
+        endLockstep();
+        if (nodes != null) {
+            // Every device builds the same world from the same descriptor, and simulates everyone in it
+            _startNodes = null;
+            LockstepSession lockstep = _isRollback
+                    ? new RollbackSession(_network, state, nodes, _network.getNodeId())
+                    : new LockstepSession(_network, state, nodes, _network.getNodeId());
+            _network.registerListener(lockstep);
+            synchronized (this) {
+                _state = state;
+                _lockstep = lockstep;
+            }
+        } else {
+            // Save state
+            _state = state;
+            _state.setRefereed(_refereed);
+            if (_isWatching)
+                _state.spectate(false);
+
+            synchronized (_peers) {
+                for (MultiPlayerGhostSprite s : _ghosts) {
+                    if (s != null)
+                        _state.addGhost(s);
+                }
+            }
         }
 
         _view.setState(_state);
@@ -279,6 +413,64 @@ public class GameActivity extends AppCompatActivity implements SensorEventListen
     }
 
 
+    /**
+     * Records everything that happens in a new level to a file, for InputReplay
+     *
+     * @param state Level, before anything has happened to it
+     * @param level Descriptor it was built from
+     */
+    private void startRecording(GameState state, LevelDescriptor level) {
+        File dir = getExternalFilesDir(null);
+        if (dir == null)
+            dir = getFilesDir();
+        File file = new File(dir, "recording-" + System.currentTimeMillis() + ".bin");
+        try {
+            state.setRecorder(new InputRecorder(file, level));
+            Log.i("Level", "Recording to " + file);
+        } catch (IOException e) {
+            Log.e("Level", "Couldn't record to " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Finishes off a level's recording, if it has one
+     *
+     * @param state Level being recorded
+     */
+    private static void stopRecording(GameState state) {
+        InputRecorder recorder = state.getRecorder();
+        if (!state.stopRecording())
+            Log.e("Level", "Recording stopped early: " + recorder.getError().getMessage());
+    }
+
+    /**
+     * Gets the level chosen when the activity was started
+     *
+     * @return Level
+     */
+    private GameState.Level getIntentLevel() {
+        // Get a GameState.Level from intent system
+        GameState.Level levelNum = (GameState.Level) getIntent().getSerializableExtra(EXTRA_LEVEL);
+        if (levelNum == null)
+            levelNum = GameState.Level.Random;
+        return levelNum;
+    }
+
+    /**
+     * Gets the level to play when it isn't in lockstep
+     * Played with others, levels only lockstep can keep in step (see GameState.isLockstepOnly()) become Random
+     *
+     * @return Level
+     */
+    private GameState.Level getUnsharedLevel() {
+        GameState.Level level = getIntentLevel();
+        if (_isMp && GameState.isLockstepOnly(level)) {
+            Log.w("Level", level + " can only be played with others in lockstep. Playing " + GameState.Level.Random + " instead");
+            return GameState.Level.Random;
+        }
+        return level;
+    }
+
     //endregion
 
     //region Debug Handlers
@@ -392,6 +584,24 @@ public class GameActivity extends AppCompatActivity implements SensorEventListen
                     pdx.setText("dx: " + player.getMotion().x);
                     pdy.setText("dy: " + player.getMotion().y);
                 }
+
+                NetThread netThread = _netThread;
+                RateController rate = netThread != null ? netThread.getRateController() : null;
+                if (rate != null) {
+                    TextView netRate = (TextView) findViewById(R.id.net_rate);
+                    TextView netPeers = (TextView) findViewById(R.id.net_peers);
+                    netRate.setText("net: " + rate.getRate() + "/s, " + (int) (rate.getLoss() * 100) + "% lost, backlog " + rate.getBacklog());
+                    netPeers.setText("peers: " + rate.getPeers());
+                }
+
+                LockstepSession lockstep = getLockstep();
+                if (lockstep instanceof RollbackSession) {
+                    RollbackSession rollback = (RollbackSession) lockstep;
+                    TextView budget = (TextView) findViewById(R.id.rollback_budget);
+                    budget.setText("rollback: " + rollback.getResimulated() + " ticks, " + (int) (rollback.getBudgetUsed() * 100)
+                            + "% of update (max " + rollback.getMaxResimulated() + ", " + (int) (rollback.getMaxBudgetUsed() * 100) + "%)"
+                            + (rollback.isDesynced() ? ", out of sync" : ""));
+                }
             }
         }
     }
@@ -414,15 +624,8 @@ public class GameActivity extends AppCompatActivity implements SensorEventListen
         button.setEnabled(false);
         _amReady = true;
 
-        // Network must be done off the UI thread
-        Thread quick = new Thread(new Runnable() {
-            @Override
-            public void run() {
-                _network.sendCode(103, "");
-            }
-        });
-
-        quick.start();
+        // Only queued here, the network thread sends it on its next tick
+        _network.queueReliable(103);
     }
 
     /**
@@ -430,8 +633,20 @@ public class GameActivity extends AppCompatActivity implements SensorEventListen
      */
     private class NetThread extends Thread implements MultiplayerEventListener {
 
-        private String _myIP;
         private Timer _netTimer;
+        private PositionCodec _positionCodec = new PositionCodec();
+        private RoomDiscovery _discovery;
+        private volatile RateController _rateController;
+        private int _sendChances; // Times the rate controller has let us send
+        private final SpectatorStream _stream = new SpectatorStream();
+        private boolean _levelStarted; // Host rooms only start once, however often the start is repeated
+        private boolean _spectating; // Moved from our room to its watchers' stream
+        private long _leaveDeadline; // Last time we'll wait for the room to hear we've left for the stream. 0 once we're on it
+        private volatile boolean _watchOver; // Nobody left playing in the game we're watching
+        private final byte[] _input = new byte[4];
+        private int _sentInputX;
+        private int _sentInputY;
+        private int _inputTicks;
 
         private final int NETWORK_UPDATES_PER_SECOND = 20;
 
@@ -440,36 +655,235 @@ public class GameActivity extends AppCompatActivity implements SensorEventListen
          */
         @Override
         public void run() {
-            try {
-
-                _myIP = getIPAddress();
-                if (_myIP == null)
-                    _myIP = InetAddress.getLocalHost().getHostAddress();
-            } catch (UnknownHostException e) {
-                // TODO: Implement nicer error message
-                finish();
+            // Start hosting first, so we find our own room
+            if (_isHosting) {
+                _hostNetwork = new MultiplayerNetwork();
+                _host = new GameHost(_hostNetwork, new LevelDescriptor(getUnsharedLevel(), 0));
+                _host.start();
             }
 
             _network = new MultiplayerNetwork();
             _network.registerListener(this);
+            if (_isCapturing)
+                startCapture();
+            _rateController = new RateController(_network, RateController.MIN_RATE, NETWORK_UPDATES_PER_SECOND);
+
+            // Find a game to be part of
+            _discovery = new RoomDiscovery(_network, Build.MODEL, _isLockstep ? RoomDiscovery.FLAG_LOCKSTEP : 0);
+            _network.registerListener(_discovery);
+            if (_isWatching)
+                _discovery.startWatching();
+            else
+                _discovery.start();
 
             // Start net loop
             _netTimer = new Timer("Network");
             _netTimer.scheduleAtFixedRate(new TimerTask() {
                 @Override
                 public void run() {
+                    // Nobody to tell until we're in a room
+                    _discovery.tick();
+                    if (!_discovery.isJoined())
+                        return;
+
+                    // Watchers have nothing to say
+                    if (_isWatching || _spectating) {
+                        if (_leaveDeadline != 0)
+                            joinStream();
+                        return;
+                    }
+
+                    // Lockstep sends its own inputs every update
+                    if (getLockstep() != null)
+                        return;
+
+                    if (_discovery.isAuthoritative()) {
+                        // The host works out where we are
+                        _refereed = true;
+                        boolean out;
+                        synchronized (_state) {
+                            out = _state.getState() == GameState.State.Spectating;
+                        }
+                        if (out)
+                            startSpectating();
+                        else
+                            sendInput();
+                        _network.flush();
+                        return;
+                    }
+
+                    // Busy rooms send less often, so there's less for everyone to receive
+                    if (!_rateController.tick()) {
+                        _network.flush();
+                        return;
+                    }
+
+                    int code = 0;
                     synchronized (_state) {
                         PlayerSprite player = _state.getPlayer();
-                        synchronized (_network) {
-                            _network.sendCode(102, player.getXPos() + "," + player.getYPos());
+                        // Nobody needs to hear much about a player they can't see
+                        if (AreaOfInterest.isDue(AreaOfInterest.classify(_state, player), _sendChances++)) {
+                            IntVec2 levelSize = _state.getLevelSize();
+                            code = _positionCodec.prepare(player.getXPos(), player.getYPos(),
+                                    player.getMotion().x, player.getMotion().y,
+                                    _state.getGameTime(), levelSize.x, levelSize.y);
                         }
                     }
 
+                    // Only send if the others can't work out where we are
+                    if (code != 0)
+                        _network.queueCode(code, _positionCodec.getPayload(), _positionCodec.getPayloadLength());
+
+                    // Everything from this tick goes out together
+                    _network.flush();
+
                 }
             }, 0, 1000 / NETWORK_UPDATES_PER_SECOND);
 
         }
 
+        /**
+         * Gets what decides how often we send our position
+         *
+         * @return Rate controller, or null until the network has started
+         */
+        public RateController getRateController() {
+            return _rateController;
+        }
+
+        /**
+         * Whether we're watching a GameHost's game, rather than playing or being done
+         * Players in a host's room watch once they've finished or died, until everyone has
+         *
+         * @return True if the game shouldn't end yet
+         */
+        public boolean isWatching() {
+            return !_watchOver && (_isWatching || _discovery != null && _discovery.isAuthoritative());
+        }
+
+        /**
+         * Leaves our room for its watchers' stream, once our player is out
+         * The host stops simulating us, and we only hear about everyone a few times a second
+         */
+        private void startSpectating() {
+            _spectating = true;
+            synchronized (_state) {
+                _state.spectate(true);
+            }
+            _network.queueReliable(104);
+            _network.flush();
+            // Waiting for the acknowledgement here would hold up the timer, so joinStream() checks each tick
+            _leaveDeadline = System.currentTimeMillis() + LEAVE_TIMEOUT_MS;
+        }
+
+        /**
+         * Moves to the watchers' stream, once the room has heard we've left or we've waited long enough
+         */
+        private void joinStream() {
+            if (!_network.isAcked() && System.currentTimeMillis() < _leaveDeadline)
+                return;
+            _leaveDeadline = 0;
+            _network.setSession(SpectatorStream.getSession(_network.getSession()));
+        }
+
+        /**
+         * Whether the room's server starts our games, so we wait for its 200
+         * Lockstep joiners have to play the server's world, not one of their own
+         *
+         * @return True if we shouldn't start a level ourselves
+         */
+        public boolean waitsForServer() {
+            return _discovery != null && _discovery.waitsForServer();
+        }
+
+        /**
+         * Whether our room plays in lockstep, and we're its server
+         *
+         * @return True if we should start the room's games
+         */
+        public boolean isLockstepRoom() {
+            return _discovery != null && _discovery.isLockstep() && _discovery.isHost();
+        }
+
+        /**
+         * Starts a lockstep game for everyone in the room, us included
+         * Sent reliably, as 200 <level, count, nodes>. Only the first LockstepSession.MAX_PLAYERS can play
+         *
+         * @param level Level to play, with the seed everyone will use
+         */
+        public void announceLockstep(LevelDescriptor level) {
+            int[] nodes;
+            synchronized (_peers) {
+                nodes = new int[Math.min(_peers.getCount() + 1, LockstepSession.MAX_PLAYERS)];
+                int n = 0;
+                for (int i = 0; i < PeerRegistry.MAX_PEERS && n < nodes.length - 1; i++) {
+                    if (_peers.isUsed(i))
+                        nodes[n++] = _peers.getNode(i);
+                }
+                nodes[n] = _network.getNodeId();
+            }
+
+            ByteBuffer b = ByteBuffer.allocate(level.getSize() + 1 + nodes.length * 4);
+            level.write(b);
+            b.put((byte) nodes.length);
+            for (int node : nodes)
+                b.putInt(node);
+            _network.queueReliable(GameHost.CODE_START, b.array(), b.position());
+            _network.flush();
+
+            _startNodes = nodes;
+            _startLevel = level;
+        }
+
+        /**
+         * Reads a lockstep game start from the room's server
+         *
+         * @param event 200 payload
+         */
+        private void lockstepStarted(ByteBuffer event) {
+            LevelDescriptor level = LevelDescriptor.read(event);
+            if (level == null || !event.hasRemaining())
+                return;
+            int count = event.get() & 0xFF;
+            if (event.remaining() < count * 4)
+                return;
+            int[] nodes = new int[count];
+            boolean playing = false;
+            for (int i = 0; i < count; i++) {
+                nodes[i] = event.getInt();
+                playing |= nodes[i] == _network.getNodeId();
+            }
+            if (!playing) {
+                Log.w("Net", "Lockstep game started without us, the room is full");
+                return;
+            }
+
+            _startNodes = nodes;
+            _startLevel = level;
+        }
+
+        /**
+         * Tells the host which way we're tilted
+         * Only sent when it changes, or once a second so the host knows we're still here
+         */
+        private void sendInput() {
+            int x;
+            int y;
+            synchronized (_state) {
+                float[] grav = _state.getGravity();
+                x = GameHost.quantiseInput(grav[0]);
+                y = GameHost.quantiseInput(grav[1]);
+            }
+
+            if (x == _sentInputX && y == _sentInputY && ++_inputTicks < NETWORK_UPDATES_PER_SECOND)
+                return;
+            _inputTicks = 0;
+            _sentInputX = x;
+            _sentInputY = y;
+            ByteBuffer.wrap(_input).putShort((short) x).putShort((short) y);
+            _network.queueCode(GameHost.CODE_INPUT, _input, _input.length);
+        }
+
         @Override
         public void onNetworkError(Exception e, String text) {
             // Handle Errors
@@ -479,7 +893,7 @@ public class GameActivity extends AppCompatActivity implements SensorEventListen
         }
 
         @Override
-        public void message(int statusCode, String event, InetAddress from) {
+        public void message(int statusCode, ByteBuffer event, int from, int session) {
 
         /*
         THE STUART TABLE
@@ -488,112 +902,252 @@ public class GameActivity extends AppCompatActivity implements SensorEventListen
 
         | Code                | Description                        |
         |---------------------|------------------------------------|
-        | 102 <x,y>           | Update Location of Client.         |
+        | 102 <s,x,y,dx,dy>   | Update Location of Client.         |
         | 103                 | I am ready                         |
         | 104                 | I am leaving                       |
+        | 105 <s,x,y,dx,dy>   | Location relative to keyframe s.   |
+        | 106 <x,y>           | My tilt, for the GameHost          |
+        | 107 <tick,players>  | Where everyone is, from GameHost   |
+        | 108 <inputs>        | Lockstep tilts, LockstepSession's  |
+        | 112 <players>       | Where everyone is, for watchers    |
+        | 113 <players>       | Same, relative to the last 112     |
+        | 200 <level,seed>    | GameHost is starting the level     |
+        | 200 <level,seed,nodes> | Lockstep server is starting it  |
+
+        103 and 104 are sent reliably. MultiplayerNetwork also gives us a 104
+        for any peer that goes quiet, so ghosts don't hang around forever.
 
         */
-            synchronized (_otherPlayers) {
-                // Ignore messages from ourselves
-                String otherAddress = from.getHostAddress();
-                if (!otherAddress.equals(_myIP)) {
-
-                    // If this is an ip we haven't seen, add it
-                    if (!_otherPlayers.containsKey(otherAddress)) {
-                        addPlayerToHashtable(otherAddress);
-                        _othersReady = false;
+            // Room discovery isn't our concern, and shouldn't make ghosts
+            if (MultiplayerNetwork.isDiscoveryCode(statusCode))
+                return;
+
+            // A GameHost isn't a player
+            if (_discovery != null && _discovery.isAuthoritative() && from == _discovery.getHostNode()) {
+                hostMessage(statusCode, event);
+                return;
+            }
+
+            // Our own messages and other rooms' messages are already filtered out by the network
+            // Only this thread adds or removes peers, so looking up doesn't need a lock
+            int peer = _peers.lookup(from);
+            if (peer < 0) {
+                if (statusCode == 104)
+                    return; // Already gone
+                peer = addPlayer(from);
+                if (peer < 0)
+                    return; // No room for them
+            }
+            MultiPlayerGhostSprite s = _ghosts[peer];
+
+            switch (statusCode) {
+                case PositionCodec.CODE_KEYFRAME:
+                case PositionCodec.CODE_DELTA:
+                    // Update sprite position
+                    synchronized (_state) {
+                        IntVec2 levelSize = _state.getLevelSize();
+                        PositionCodec.decode(statusCode, event, s, levelSize.x, levelSize.y);
+                        _state.ghostMoved(s);
+                    }
+                    break;
+                case 103:
+                    // Set player to ready
+                    _peers.setReady(peer);
+
+                    // Check overall readiness
+                    _othersReady = _peers.allReady();
+                    break;
+                case 104:
+                    // Remove sprite from lists
+                    synchronized (_peers) {
+                        _peers.remove(peer);
+                        _ghosts[peer] = null;
+                    }
+                    synchronized (_state) {
+                        _state.removeGhost(s);
                     }
-                    MultiPlayerGhostSprite s = (MultiPlayerGhostSprite) _otherPlayers.get(otherAddress);
-
-                    switch (statusCode) {
-                        case 102:
-                            // Parse values
-                            String[] messageSplit = event.split(",");
-                            float[] posArray = new float[2];
-                            try {
-                                posArray[0] = Float.parseFloat(messageSplit[0]);
-                                posArray[1] = Float.parseFloat(messageSplit[1]);
-                            } catch (Exception ex) {
-                                posArray[0] = 0;
-                                posArray[1] = 0;
-                            }
 
-                            // Update sprite position
-                            s.setXPos(posArray[0]);
-                            s.setYPos(posArray[1]);
-                            break;
-                        case 103:
-                            // Set sprite to ready
-                            s.setReady();
-
-                            // Check overall readiness
-                            boolean tempReady = true;
-                            for (Object sprite : _otherPlayers.values()) {
-                                if (!((MultiPlayerGhostSprite) sprite).isReady()) {
-                                    tempReady = false;
-                                    break;
-                                }
-                            }
-                            if (tempReady)
-                                _othersReady = true;
-                            break;
-                        case 104:
-                            // Remove sprite from lists
-                            _otherPlayers.remove(otherAddress);
+                    // Check overall readiness
+                    _othersReady = _peers.allReady();
+                    break;
+                case GameHost.CODE_INPUT:
+                    // Only the host needs these
+                    break;
+                case LockstepSession.CODE_INPUTS:
+                    // The lockstep session listens for these itself
+                    break;
+                case GameHost.CODE_START:
+                    // Only the room's server can start a lockstep game
+                    if (from == _discovery.getHostNode() && _discovery.isLockstep())
+                        lockstepStarted(event);
+                    break;
+                default:
+                    Log.e("Net", "Unknown code " + statusCode + " received with " + event.remaining() + " bytes");
+                    break;
+            }
+        }
+
+        /**
+         * Handles a message from the GameHost running our room
+         *
+         * @param statusCode Code received
+         * @param event      Message payload
+         */
+        private void hostMessage(int statusCode, ByteBuffer event) {
+            switch (statusCode) {
+                case GameHost.CODE_START:
+                    // Watchers are sent it again every few seconds
+                    if (_levelStarted)
+                        break;
+                    LevelDescriptor level = LevelDescriptor.read(event);
+                    if (level != null) {
+                        _levelStarted = true;
+                        _startLevel = level;
+                    }
+                    break;
+                case SpectatorStream.CODE_KEYFRAME:
+                case SpectatorStream.CODE_DELTA:
+                    watchFrame(statusCode, event);
+                    break;
+                case GameHost.CODE_SNAPSHOT:
+                    event.getInt(); // Host's tick, which we don't need yet
+                    while (event.remaining() >= GameHost.ENTRY_SIZE) {
+                        int node = event.getInt();
+                        int flags = event.get();
+                        int qx = event.getShort();
+                        int qy = event.getShort();
+                        int qdx = event.getShort();
+                        int qdy = event.getShort();
+
+                        if (node == _network.getNodeId()) {
                             synchronized (_state) {
-                                _state.getSprites().remove(s);
+                                correctPlayer(flags, qx, qy, qdx, qdy);
                             }
+                            continue;
+                        }
 
-                            // Check overall readiness
-                            boolean maybeReady = true;
-                            for (Object sprite : _otherPlayers.values()) {
-                                if (!((MultiPlayerGhostSprite) sprite).isReady()) {
-                                    maybeReady = false;
-                                    break;
-                                }
-                            }
-                            if (maybeReady)
-                                _othersReady = true;
-                            break;
-                        default:
-                            Log.e("Net", "Unknown code " + statusCode + " received with message " + event);
-                            break;
+                        int peer = _peers.lookup(node);
+                        if (peer < 0)
+                            peer = addPlayer(node);
+                        if (peer < 0)
+                            continue;
+                        MultiPlayerGhostSprite s = _ghosts[peer];
+                        synchronized (_state) {
+                            IntVec2 levelSize = _state.getLevelSize();
+                            s.applyKeyframe(0, qx, qy, qdx, qdy, levelSize.x, levelSize.y);
+                            _state.ghostMoved(s);
+                        }
+                    }
+                    break;
+                case 104:
+                    // Host has gone. Nothing more will happen in this room
+                    if (_spectating || _isWatching && _levelStarted) {
+                        _watchOver = true; // Ends the game with whatever score we got
+                        break;
                     }
+                    Log.e("Net", "Lost the host");
+                    finish();
+                    break;
+            }
+        }
+
+        /**
+         * Moves ghosts to where a host's SpectatorStream says everyone is
+         *
+         * @param statusCode Code received
+         * @param event      Message payload
+         */
+        private void watchFrame(int statusCode, ByteBuffer event) {
+            IntVec2 levelSize;
+            synchronized (_state) {
+                levelSize = _state.getLevelSize();
+            }
+            if (!_stream.read(statusCode, event, levelSize.x, levelSize.y))
+                return;
+
+            for (int i = 0; i < _stream.getCount(); i++) {
+                int node = _stream.getNode(i);
+                if (node == _network.getNodeId())
+                    continue;
+                int peer = _peers.lookup(node);
+                if (peer < 0)
+                    peer = addPlayer(node);
+                if (peer < 0)
+                    continue;
+                MultiPlayerGhostSprite s = _ghosts[peer];
+                synchronized (_state) {
+                    s.applyKeyframe(0, _stream.getX(i), _stream.getY(i),
+                            _stream.getVelocityX(i), _stream.getVelocityY(i), levelSize.x, levelSize.y);
+                    _state.ghostMoved(s);
                 }
             }
+
+            if (_stream.isOver())
+                _watchOver = true;
         }
 
-        private void addPlayerToHashtable(String address) {
+        /**
+         * Moves our player to where the host says it is, if we've drifted too far
+         * Must hold the state lock
+         */
+        private void correctPlayer(int flags, int qx, int qy, int qdx, int qdy) {
+            PlayerSprite player = _state.getPlayer();
+            if (player == null || _state.getState() == GameState.State.Spectating)
+                return;
+            if ((flags & GameHost.FLAG_FINISHED) != 0) {
+                _state.endGame(true);
+                return;
+            }
+            if ((flags & GameHost.FLAG_DEAD) != 0) {
+                _state.endGame(false);
+                return;
+            }
+
+            IntVec2 levelSize = _state.getLevelSize();
+            float x = PositionCodec.dequantisePosition(qx, levelSize.x);
+            float y = PositionCodec.dequantisePosition(qy, levelSize.y);
+            float errX = x - player.getXPos();
+            float errY = y - player.getYPos();
+            if (errX * errX + errY * errY > PositionCodec.ERROR_THRESHOLD * PositionCodec.ERROR_THRESHOLD)
+                _state.movePlayer(x, y, PositionCodec.dequantiseVelocity(qdx), PositionCodec.dequantiseVelocity(qdy));
+        }
+
+        /**
+         * Gives a new player a peer id and a ghost
+         *
+         * @param node Node id of the player
+         * @return Peer id, or -1 if there are too many players
+         */
+        private int addPlayer(int node) {
             MultiPlayerGhostSprite newSprite = new MultiPlayerGhostSprite(0, 0);
-            _otherPlayers.put(address, newSprite);
+            int peer;
+            synchronized (_peers) {
+                peer = _peers.add(node);
+                if (peer < 0)
+                    return -1;
+                _ghosts[peer] = newSprite;
+            }
+            _othersReady = false;
             synchronized (_state) {
-                _state.getSprites().add(newSprite);
+                _state.addGhost(newSprite);
             }
+            return peer;
         }
 
         /**
-         * Big thanks to http://stackoverflow.com/questions/6064510/how-to-get-ip-address-of-the-device
-         * for this. I wouldn't have been able to figure it out myself.
-         * Get IP address from first non-localhost interface
-         *
-         * @return address or empty string
+         * Records the network's traffic to a new file, for CaptureReplay
          */
-        public String getIPAddress() {
+        private void startCapture() {
+            File dir = getExternalFilesDir(null);
+            if (dir == null)
+                dir = getFilesDir();
+            File file = new File(dir, "capture-" + System.currentTimeMillis() + ".bin");
             try {
-                List<NetworkInterface> interfaces = Collections.list(NetworkInterface.getNetworkInterfaces());
-                for (NetworkInterface intf : interfaces) {
-                    List<InetAddress> addrs = Collections.list(intf.getInetAddresses());
-                    for (InetAddress addr : addrs) {
-                        if (!addr.isLoopbackAddress()) {
-                            String sAddr = addr.getHostAddress().toUpperCase();
-                            if (sAddr.matches("\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}"))
-                                return sAddr;
-                        }
-                    }
-                }
-            } catch (Exception ex) {
-            } // for now eat exceptions
-            return null;
+                _network.startCapture(file);
+                Log.i("Net", "Capturing to " + file);
+            } catch (IOException e) {
+                Log.e("Net", "Couldn't capture to " + file + ": " + e.getMessage());
+            }
         }
 
         public void stopTimer() {
@@ -0,0 +1,64 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import android.content.Context;
+
+/**
+ * Builds levels with their titles from the app's string resources
+ * The engine doesn't know about resources, so it's given the title to use
+ */
+public final class LevelResources {
+
+    private LevelResources() {
+    }
+
+    /**
+     * Generates a level in the form of a GameState object
+     *
+     * @param l Level to generate
+     * @param c Context. Used to get resources
+     * @return A new level
+     */
+    public static GameState generate(GameState.Level l, Context c) {
+        return GameState.GENERATE(l, c.getString(getTitleId(l)));
+    }
+
+    /**
+     * Builds the level a descriptor describes
+     *
+     * @param level Level, as sent by whoever started the game
+     * @param c     Context. Used to get titles of built in levels
+     * @return A new level
+     */
+    public static GameState create(LevelDescriptor level, Context c) {
+        return level.create(c.getString(getTitleId(level.getLevel())));
+    }
+
+    /**
+     * Gets the string resource holding a level's title
+     *
+     * @param l Level
+     * @return Resource id
+     */
+    public static int getTitleId(GameState.Level l) {
+        switch (l) {
+            case Random:
+                return R.string.level_random;
+            case Scrolling:
+                return R.string.level_scrolling;
+            case Empty:
+                return R.string.level_empty;
+            case LevelOne:
+                return R.string.level_one;
+            case Death:
+                return R.string.level_death;
+            case Happy:
+                return R.string.level_happy;
+            case Maze:
+                return R.string.level_maze;
+            case Balls:
+                return R.string.level_balls;
+            default:
+                throw new IllegalArgumentException("Level not defined yet");
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long one update of a big world takes, by how many sprites are in it
+ * and how many threads it's split across
+ *
+ * Players only look for walls and bumpers in the cells of a grid around them, so an update
+ * should grow with the number of sprites, not the number of pairs.
+ * Threads of 0 means one for every core.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class ArenaBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int sprites;
+
+    @Param({"1", "0"})
+    public int threads;
+
+    private GameState _state;
+    private WorkerPool _workers;
+
+    @Setup(org.openjdk.jmh.annotations.Level.Trial)
+    public void setUp() {
+        _state = Worlds.arena(sprites);
+        _workers = new WorkerPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+        _state.setWorkers(_workers);
+    }
+
+    @TearDown(org.openjdk.jmh.annotations.Level.Trial)
+    public void tearDown() {
+        _workers.shutdown();
+    }
+
+    @Benchmark
+    public GameState update() {
+        _state.update();
+        return _state;
+    }
+}
@@ -0,0 +1,107 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The pieces every update is made of, one at a time
+ *
+ * Anything that changes a sprite's motion puts it back first, so every call does the same work.
+ * In the same package as the sprites, so the protected limitVelocity() and doFriction() can be called.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollisionBenchmark {
+
+    private static final float DX = 0.15f;
+    private static final float DY = 0.1f;
+
+    private GameState _state;
+    private PlayerSprite _player;
+    private PlayerSprite _other; // Overlapping the player
+    private WallSprite _wall; // Overlapping the player's right side
+    private WallSprite _thin; // Ahead of the player, closer than DX * 20
+    private BumperSprite _bumper;
+    private final float[] _bumperSaved = new float[GenericSprite.SAVED_FLOATS];
+
+    @Setup
+    public void setUp() {
+        _state = Worlds.level(GameState.Level.Empty);
+        _player = new PlayerSprite(1, 1);
+        _other = new PlayerSprite(1.3f, 1.2f);
+        _wall = new WallSprite(1.4f, 0.5f, 1, 1.5f);
+        _thin = new WallSprite(2.5f, 0, 0.05f, 3);
+        _bumper = new BumperSprite(1, 1);
+        _bumper.save(_bumperSaved, 0, _state);
+    }
+
+    @Benchmark
+    public boolean circleIntersectsCircle() {
+        return _player.intersects(_other);
+    }
+
+    @Benchmark
+    public boolean circleIntersectsRect() {
+        return _player.intersects(_wall);
+    }
+
+    @Benchmark
+    public Vec2 rectReflect() {
+        _player.getMotion().set(DX, DY);
+        _wall.reflect(_player, _state);
+        return _player.getMotion();
+    }
+
+    @Benchmark
+    public Vec2 circleReflect() {
+        _player.getMotion().set(DX, DY);
+        _other.reflect(_player, _state);
+        return _player.getMotion();
+    }
+
+    @Benchmark
+    public float circleSweepRect() {
+        // A move that would take the player straight past the wall
+        Box p = _player.getRectangle();
+        Box w = _thin.getRectangle();
+        return Sweep.circleBox(p.centerX(), p.centerY(), p.width() / 2, DX * 20, DY, w.left, w.top, w.right, w.bottom);
+    }
+
+    @Benchmark
+    public Vec2 limitVelocity() {
+        _player.getMotion().set(DX * 2, DY * 2); // Over the limit, so it's scaled down
+        _player.limitVelocity();
+        return _player.getMotion();
+    }
+
+    @Benchmark
+    public Vec2 doFriction() {
+        _player.getMotion().set(DX, DY);
+        _player.doFriction();
+        return _player.getMotion();
+    }
+
+    @Benchmark
+    public Vec2 bumperReflect() {
+        // Bumpers ignore anything that hits them while cooling down
+        _bumper.restore(_bumperSaved, 0, 0, _state);
+        _state.clearTimers(); // Or the last call's cooldown would never be let go
+        _player.getMotion().set(DX, DY);
+        _bumper.reflect(_player, _state);
+        return _player.getMotion();
+    }
+}
@@ -0,0 +1,103 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Records a scripted session on every built in level, for PerfGate to replay
+ *
+ * A player tilts this way and that, the way someone feeling their way round a level would,
+ * while two players on other devices send their positions ten times a second. Everything is
+ * seeded, so running it again gives the same recordings. Has to be run again whenever the
+ * simulation is meant to change what it does, as the old recordings won't match any more.
+ *
+ * Recordings from real devices can go in the same directory, and are replayed the same way.
+ *
+ * Usage: CorpusRecorder directory [-ticks 900]
+ */
+public class CorpusRecorder {
+
+    private static final float MAX_TILT = 0.0045f; // GameActivity's MAX_GRAVITY * SPEED
+    private static final int TILT_INTERVAL = 15; // Ticks between changes of mind
+    private static final int GHOST_INTERVAL = 3; // Ticks between ghost positions
+    private static final int GHOSTS = 2;
+
+    /**
+     * Records one session
+     *
+     * @param level Level to play
+     * @param file  File to record to
+     * @param ticks Number of updates
+     * @throws IOException If the recording couldn't be written
+     */
+    public static void record(GameState.Level level, File file, int ticks) throws IOException {
+        LevelDescriptor descriptor = new LevelDescriptor(level, Worlds.SEED);
+        GameState state = descriptor.create(level.name());
+        state.setRecorder(new InputRecorder(file, descriptor));
+
+        Random random = new Random(level.ordinal());
+        IntVec2 size = state.getLevelSize();
+        MultiPlayerGhostSprite[] ghosts = new MultiPlayerGhostSprite[GHOSTS];
+        for (int i = 0; i < GHOSTS; i++) {
+            ghosts[i] = new MultiPlayerGhostSprite(0, 0);
+            state.addGhost(ghosts[i]);
+        }
+
+        float tiltX = 0;
+        float tiltY = 0;
+        for (int t = 0; t < ticks; t++) {
+            if (t % TILT_INTERVAL == 0) {
+                tiltX = (random.nextFloat() * 2 - 1) * MAX_TILT;
+                tiltY = (random.nextFloat() * 2 - 1) * MAX_TILT;
+            }
+            state.setGravity(tiltX, tiltY, 0);
+
+            if (t % GHOST_INTERVAL == 0) {
+                for (int i = 0; i < GHOSTS; i++) {
+                    // Round and round the level, one lap every 10 seconds
+                    double angle = 2 * StrictMath.PI * (t + i * 150) / 300.0;
+                    float x = size.x / 2f + (float) StrictMath.cos(angle) * size.x / 3f;
+                    float y = size.y / 2f + (float) StrictMath.sin(angle) * size.y / 3f;
+                    float dx = (float) -StrictMath.sin(angle) * 0.05f;
+                    float dy = (float) StrictMath.cos(angle) * 0.05f;
+                    ghosts[i].applyKeyframe(t, PositionCodec.quantisePosition(x, size.x), PositionCodec.quantisePosition(y, size.y),
+                            PositionCodec.quantiseVelocity(dx), PositionCodec.quantiseVelocity(dy), size.x, size.y);
+                    state.ghostMoved(ghosts[i]);
+                }
+            }
+
+            state.update();
+        }
+        InputRecorder recorder = state.getRecorder();
+        if (!state.stopRecording())
+            throw recorder.getError();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: CorpusRecorder directory [-ticks 900]");
+            return;
+        }
+        int ticks = 900;
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "-ticks": ticks = Integer.parseInt(args[i + 1]); break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    return;
+            }
+        }
+
+        File dir = new File(args[0]);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            System.err.println("Couldn't make " + dir);
+            return;
+        }
+        for (GameState.Level level : GameState.Level.values()) {
+            File file = new File(dir, level.name() + ".bin");
+            record(level, file, ticks);
+            System.out.println(file + ": " + file.length() + " bytes");
+        }
+    }
+}
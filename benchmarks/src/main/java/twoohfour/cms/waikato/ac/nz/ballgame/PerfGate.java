@@ -0,0 +1,257 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Replays a corpus of recordings and fails if the simulation has got slower
+ *
+ * Each recording is replayed a few times to warm up, then measured over a few runs.
+ * Small levels replay in a millisecond or two, so a run replays the recording as many
+ * times as fit in half a second. Measured are:
+ *   ticksPerSecond   Updates a second, from the fastest run. Anything else running only slows it down
+ *   p99Micros        99th percentile of single update times, over every measured run
+ *   bytesPerTick     Heap allocated by the replaying thread, per update
+ * and compared with the baseline. Each metric may be worse by its tolerance, a fraction
+ * of the baseline, before it counts as a regression. Update times and allocation also get
+ * some slack on top, as on small levels they're close to 0, and a few microseconds either
+ * way is just the JIT or a GC. An update has 33ms, so 50us at the 99th percentile is noise.
+ *
+ * Every replay also has to end up exactly where its recording did. If it doesn't, the
+ * simulation has changed what it does, and the corpus needs recording again with
+ * CorpusRecorder.
+ *
+ * Timings depend on the machine, so the baseline is only meaningful on the one it was
+ * made on. Make a new one with -update, and check it in along with the change that
+ * made it necessary. -verify leaves timings out, and only checks every recording still
+ * ends up where it did, which holds on any machine.
+ *
+ * Baseline:  <recording>.<metric>=value, plus tolerance.<metric>=fraction
+ * Usage: PerfGate corpus baseline.properties [-update | -verify] [-warmup 10] [-runs 5]
+ * Warming up stops early after a few seconds, so slow levels don't take forever.
+ * Exits with 1 on any regression or mismatch.
+ */
+public class PerfGate {
+
+    //region Variables
+    private static final String[] METRICS = {"ticksPerSecond", "p99Micros", "bytesPerTick"};
+    private static final boolean[] HIGHER_IS_BETTER = {true, false, false};
+    private static final double[] DEFAULT_TOLERANCES = {0.3, 1.0, 0.5};
+    private static final double[] SLACK = {0, 50, 16}; // On top of the tolerance, in each metric's units
+    private static final long MAX_WARMUP_NANOS = 3000000000L;
+    private static final long MIN_RUN_NANOS = 500000000L;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    //endregion
+
+    /**
+     * Measures one recording
+     *
+     * @param file   Recording
+     * @param warmup Replays to throw away first. At least one is done, to find out how many ticks there are
+     * @param runs   Replays to measure
+     * @return Metrics, in the same order as METRICS, or null if a replay didn't match
+     * @throws IOException If the recording can't be read
+     */
+    static double[] measure(File file, int warmup, int runs) throws IOException {
+        InputReplay replay = new InputReplay(file);
+        long warmupStart = System.nanoTime();
+        for (int i = 0; i < Math.max(warmup, 1); i++) {
+            if (i > 0 && System.nanoTime() - warmupStart > MAX_WARMUP_NANOS)
+                break;
+            replay.replay();
+            if (!replay.isMatch())
+                return null;
+        }
+
+        int ticks = Math.max(replay.getTicks(), 1);
+        long[] times = new long[ticks];
+        long[] all = new long[ticks * runs];
+        int samples = 0;
+        double[] rates = new double[runs];
+        long thread = Thread.currentThread().getId();
+        long allocated = 0;
+        long replayed = 0;
+        for (int i = 0; i < runs; i++) {
+            long elapsed = 0;
+            long runTicks = 0;
+            while (elapsed < MIN_RUN_NANOS) {
+                long before = THREADS.getThreadAllocatedBytes(thread);
+                replay.replay(times);
+                allocated += THREADS.getThreadAllocatedBytes(thread) - before;
+                if (!replay.isMatch())
+                    return null;
+                elapsed += replay.getElapsed();
+                runTicks += ticks;
+
+                if (samples + ticks > all.length)
+                    all = Arrays.copyOf(all, all.length * 2);
+                System.arraycopy(times, 0, all, samples, ticks);
+                samples += ticks;
+            }
+            rates[i] = runTicks * 1e9 / elapsed;
+            replayed += runTicks;
+        }
+
+        Arrays.sort(rates);
+        Arrays.sort(all, 0, samples);
+        return new double[]{
+                rates[runs - 1],
+                all[(int) (samples * 0.99)] / 1e3,
+                allocated / (double) replayed
+        };
+    }
+
+    private static double getTolerance(Properties baseline, int metric) {
+        String value = baseline.getProperty("tolerance." + METRICS[metric]);
+        return value == null ? DEFAULT_TOLERANCES[metric] : Double.parseDouble(value);
+    }
+
+    /**
+     * Whether a measurement is worse than the baseline allows
+     */
+    private static boolean isRegression(int metric, double measured, double base, double tolerance) {
+        if (HIGHER_IS_BETTER[metric])
+            return measured < base * (1 - tolerance);
+        return measured > base * (1 + tolerance) + SLACK[metric];
+    }
+
+    /**
+     * Writes a new baseline, keeping the old tolerances
+     * Written by hand rather than with Properties.store(), so it's sorted and diffs well
+     */
+    private static void writeBaseline(File file, Properties old, List<String> names, List<double[]> results) throws IOException {
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            out.write("# Written by PerfGate -update. See PerfGate for what each metric means\n");
+            for (int m = 0; m < METRICS.length; m++)
+                out.write("tolerance." + METRICS[m] + "=" + getTolerance(old, m) + "\n");
+            for (int i = 0; i < names.size(); i++) {
+                for (int m = 0; m < METRICS.length; m++)
+                    out.write(names.get(i) + "." + METRICS[m] + "=" + String.format("%.1f", results.get(i)[m]) + "\n");
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Replays every recording once, without timing anything
+     *
+     * @param files Recordings
+     * @return Whether every one ended up where it was recorded
+     * @throws IOException If a recording can't be read
+     */
+    private static boolean verify(File[] files) throws IOException {
+        boolean matched = true;
+        for (File file : files) {
+            if (!file.getName().endsWith(".bin"))
+                continue;
+            String name = file.getName().substring(0, file.getName().length() - 4);
+            InputReplay replay = new InputReplay(file);
+            replay.replay();
+            if (replay.isMatch()) {
+                System.out.println(String.format("%-16s matches", name));
+            } else {
+                System.out.println(String.format("%-16s didn't end up where it was recorded. Record the corpus again", name));
+                matched = false;
+            }
+        }
+        return matched;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: PerfGate corpus baseline.properties [-update | -verify] [-warmup 10] [-runs 5]");
+            System.exit(1);
+        }
+        boolean update = false;
+        boolean verify = false;
+        int warmup = 10;
+        int runs = 5;
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "-update": update = true; break;
+                case "-verify": verify = true; break;
+                case "-warmup": warmup = Integer.parseInt(args[++i]); break;
+                case "-runs": runs = Integer.parseInt(args[++i]); break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(1);
+            }
+        }
+
+        File[] files = new File(args[0]).listFiles();
+        if (files == null || files.length == 0) {
+            System.err.println("No recordings in " + args[0]);
+            System.exit(1);
+        }
+        Arrays.sort(files);
+        if (verify)
+            System.exit(verify(files) ? 0 : 1);
+
+        File baselineFile = new File(args[1]);
+        Properties baseline = new Properties();
+        if (baselineFile.exists()) {
+            InputStream in = new FileInputStream(baselineFile);
+            try {
+                baseline.load(in);
+            } finally {
+                in.close();
+            }
+        }
+
+        List<String> names = new ArrayList<String>();
+        List<double[]> results = new ArrayList<double[]>();
+        boolean failed = false;
+        System.out.println(String.format("%-16s %14s %14s %14s", "", METRICS[0], METRICS[1], METRICS[2]));
+        for (File file : files) {
+            if (!file.getName().endsWith(".bin"))
+                continue;
+            String name = file.getName().substring(0, file.getName().length() - 4);
+            double[] result = measure(file, warmup, runs);
+            if (result == null) {
+                System.out.println(String.format("%-16s didn't end up where it was recorded. Record the corpus again", name));
+                failed = true;
+                continue;
+            }
+            names.add(name);
+            results.add(result);
+
+            StringBuilder line = new StringBuilder(String.format("%-16s", name));
+            for (int m = 0; m < METRICS.length; m++) {
+                String base = baseline.getProperty(name + "." + METRICS[m]);
+                String verdict = "";
+                if (base == null) {
+                    verdict = " (new)";
+                } else if (isRegression(m, result[m], Double.parseDouble(base), getTolerance(baseline, m))) {
+                    verdict = " (was " + base + ")";
+                    if (!update)
+                        failed = true;
+                }
+                line.append(String.format(" %14s", String.format("%.1f", result[m]) + verdict));
+            }
+            System.out.println(line);
+        }
+
+        if (update) {
+            writeBaseline(baselineFile, baseline, names, results);
+            System.out.println("Wrote " + baselineFile);
+        }
+        if (failed) {
+            System.err.println("Performance has regressed past the baseline's tolerance");
+            System.exit(1);
+        }
+    }
+}
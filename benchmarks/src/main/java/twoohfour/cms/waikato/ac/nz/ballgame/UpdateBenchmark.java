@@ -0,0 +1,46 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How many updates a second each built in level manages
+ *
+ * The level is built again for every iteration, so each one plays the same opening
+ * rather than measuring a player that has long since finished.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UpdateBenchmark {
+
+    @Param({"Random", "Scrolling", "Empty", "LevelOne", "Death", "Happy", "Maze", "Balls"})
+    public String level;
+
+    private GameState _state;
+
+    @Setup(org.openjdk.jmh.annotations.Level.Iteration)
+    public void setUp() {
+        _state = Worlds.level(GameState.Level.valueOf(level));
+    }
+
+    @Benchmark
+    public GameState update() {
+        _state.update();
+        return _state;
+    }
+}
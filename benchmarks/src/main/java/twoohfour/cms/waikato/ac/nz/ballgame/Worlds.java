@@ -0,0 +1,81 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds worlds for benchmarks
+ */
+public final class Worlds {
+
+    public static final long SEED = 42;
+    public static final float GRAVITY_X = 0.002f; // A steady tilt, so players keep moving
+    public static final float GRAVITY_Y = 0.003f;
+
+    private Worlds() {
+    }
+
+    /**
+     * Generates a built in level, tilted so the player moves
+     *
+     * @param level Level
+     * @return New world. The same every time
+     */
+    public static GameState level(GameState.Level level) {
+        GameState state = GameState.GENERATE(level, level.name(), SEED);
+        state.setGravity(GRAVITY_X, GRAVITY_Y, 0);
+        return state;
+    }
+
+    /**
+     * Builds a square arena filled with sprites
+     * A tenth are players with their own tilt, a fifth bumpers, and the rest walls,
+     * scattered so there are roughly four sprites to every square unit
+     *
+     * @param count Number of sprites, not counting the arena's edges and own player
+     * @return New world. The same every time for the same count
+     */
+    public static GameState arena(int count) {
+        Random random = new Random(SEED);
+        int size = Math.max(4, (int) Math.ceil(Math.sqrt(count / 4.0)));
+        List<GenericSprite> sprites = new ArrayList<GenericSprite>(count + 4);
+        sprites.add(new WallSprite(0, -1, size, 1));
+        sprites.add(new WallSprite(-1, 0, 1, size));
+        sprites.add(new WallSprite(0, size, size, 1));
+        sprites.add(new WallSprite(size, 0, 1, size));
+
+        List<PlayerSprite> players = new ArrayList<PlayerSprite>();
+        for (int i = 0; i < count; i++) {
+            float x = random.nextFloat() * (size - 0.5f);
+            float y = random.nextFloat() * (size - 0.5f);
+            if (i % 10 == 0) {
+                PlayerSprite p = new PlayerSprite(x, y);
+                p.setInput((random.nextFloat() - 0.5f) * 0.01f, (random.nextFloat() - 0.5f) * 0.01f);
+                players.add(p);
+                sprites.add(p);
+            } else if (i % 10 < 3) {
+                sprites.add(new BumperSprite((int) x, (int) y));
+            } else {
+                sprites.add(new WallSprite(x, y, 0.25f, 0.25f));
+            }
+        }
+
+        GameState state = new GameState("Arena " + count, new IntVec2(size, size), new Vec2(size / 2f, size / 2f), sprites);
+        state.setSeed(SEED); // Bumpers bounce with the world's random numbers
+        state.setGravity(GRAVITY_X, GRAVITY_Y, 0);
+        return state;
+    }
+
+    /**
+     * Builds a pit of loose balls, all knocking into each other, tilted so they pile up
+     *
+     * @param count Number of balls
+     * @return New world. The same every time for the same count
+     */
+    public static GameState balls(int count) {
+        GameState state = GameState.GENERATE_BALLS(count, "Balls " + count, SEED);
+        state.setGravity(GRAVITY_X, GRAVITY_Y, 0);
+        return state;
+    }
+}
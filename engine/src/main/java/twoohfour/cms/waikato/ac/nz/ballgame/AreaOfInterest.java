@@ -0,0 +1,65 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+
+/**
+ * Decides how much a player is worth telling others about, by where they are
+ *
+ * Every device draws the same part of the level, one screen's worth scrolled along by
+ * the game's offset. A player on screen is seen by everyone, so gets full rate updates.
+ * One just off it could be back soon, so gets half. Anyone further away can't be seen
+ * by anyone, so is only sent a quarter as often, which is still enough to find them if
+ * they come back.
+ *
+ * Receivers don't move or draw ghosts that are off screen either, see GameState.
+ */
+public final class AreaOfInterest {
+
+    //region Variables
+    public static final int VISIBLE = 0;
+    public static final int NEAR = 1;
+    public static final int FAR = 2;
+
+    public static final float NEAR_MARGIN = 0.25f; // Of the screen's size, on each side
+    private static final int[] INTERVALS = new int[]{1, 2, 4}; // Sends skipped, indexed by interest
+    //endregion
+
+    private AreaOfInterest() {
+    }
+
+    /**
+     * Works out how interesting a sprite is to everyone watching
+     *
+     * @param state  Game the sprite is in
+     * @param sprite Sprite, usually a player
+     * @return VISIBLE, NEAR or FAR
+     */
+    public static int classify(GameState state, GenericSprite sprite) {
+        Box camera = state.getCamera();
+        if (sprite.overlaps(camera))
+            return VISIBLE;
+
+        camera.inset(-camera.width() * NEAR_MARGIN, -camera.height() * NEAR_MARGIN);
+        return sprite.overlaps(camera) ? NEAR : FAR;
+    }
+
+    /**
+     * Gets how often a player should be sent
+     *
+     * @param interest VISIBLE, NEAR or FAR
+     * @return Send once every this many chances
+     */
+    public static int getInterval(int interest) {
+        return INTERVALS[interest];
+    }
+
+    /**
+     * Whether a player is due to be sent this time
+     *
+     * @param interest VISIBLE, NEAR or FAR
+     * @param count    Number of chances to send so far
+     * @return True if it should be sent
+     */
+    public static boolean isDue(int interest, int count) {
+        return count % INTERVALS[interest] == 0;
+    }
+}
@@ -0,0 +1,53 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+
+/**
+ * A loose ball that rolls with the tilt, and knocks into other balls and players
+ * Heavier balls are darker, and push lighter ones out of the way
+ * The tilt is GameState.getSharedGravity(), so every device in a lockstep game rolls them the same way
+ */
+public strictfp class BallSprite extends CircleSprite implements IDynamic {
+
+    public BallSprite(float x, float y) {
+        this(x, y, 1);
+    }
+
+    public BallSprite(float x, float y, float weight) {
+        super(x, y, 0.5f, 0.5f, weight);
+        _friction = 1;
+        int shade = Math.max(0, Math.min(255, (int) (255 * _weightModifier / 2)));
+        _color = Colors.rgb(shade / 3, shade / 2, Math.max(shade, 80));
+    }
+
+    @Override
+    public float getBounciness() {
+        return 0.5f; // Piles have to settle down some time
+    }
+
+    @Override
+    public void draw(Renderer renderer, float scale, Vec2 offset) {
+        float radius = getWidth() / 2;
+        renderer.fillCircle((getXPos() + radius + offset.x) * scale, (getYPos() + radius + offset.y) * scale, radius * scale, _color);
+    }
+
+    @Override
+    public boolean canSleep(GameState state) {
+        float[] grav = state.getSharedGravity();
+        return grav[0] == 0 && grav[1] == 0;
+    }
+
+    /**
+     * Update the ball
+     * @param state Current state of the game
+     */
+    @Override
+    public void update(GameState state) {
+        // Everything falls at the same rate, however heavy
+        float[] grav = state.getSharedGravity();
+        _motion.x += grav[0];
+        _motion.y += grav[1];
+        limitVelocity();
+
+        super.update(state);
+    }
+}
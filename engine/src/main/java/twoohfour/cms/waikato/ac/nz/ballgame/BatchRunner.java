@@ -0,0 +1,163 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * Runs many independent worlds at once, across every core
+ *
+ * For checking levels, training bots, or hosting lots of games on one machine. Each world
+ * is played by a bot that tilts at random, from its own generator, and worlds never share
+ * anything, so they don't have to wait for each other. Workers in a fixed pool take the
+ * next world that hasn't been run and play it to the end. Worlds on some levels take far
+ * longer than others, so taking them one at a time keeps every worker busy to the end.
+ *
+ * Each world and its bot are seeded from the world's number, so whatever the number of
+ * threads, every world ends up in the same place. The checksum of all of them is reported,
+ * and has to be the same for every thread count.
+ *
+ * Usage: BatchRunner [option value] ...
+ *   -worlds 1000   -ticks 900   -level Empty|all   -threads 1,2,4,8   -seed 1
+ * A Maze world takes a few hundred times longer than an Empty one, so mind the level.
+ * Threads default to powers of two up to the number of cores.
+ */
+public class BatchRunner {
+
+    //region Variables
+    private static final float MAX_TILT = 0.0045f; // GameActivity's MAX_GRAVITY * SPEED
+    private static final int TILT_INTERVAL = 15; // Ticks between the bot changing its mind
+
+    private final GameState.Level[] _levels;
+    private final int _worlds;
+    private final int _ticks;
+    private final long _seed;
+    //endregion
+
+    /**
+     * Sets up a batch
+     *
+     * @param levels Levels to play. World n plays levels[n % levels.length]
+     * @param worlds Number of worlds
+     * @param ticks  Updates each world gets
+     * @param seed   Seed for the levels and the bots
+     */
+    public BatchRunner(GameState.Level[] levels, int worlds, int ticks, long seed) {
+        _levels = levels;
+        _worlds = worlds;
+        _ticks = ticks;
+        _seed = seed;
+    }
+
+    /**
+     * Plays one world to the end
+     *
+     * @param n Number of the world
+     * @return Checksum of where it ended up
+     */
+    long play(int n) {
+        long seed = _seed * 0x9E3779B97F4A7C15L + n;
+        GameState.Level level = _levels[n % _levels.length];
+        GameState state = GameState.GENERATE(level, level.name(), seed);
+        GameRandom bot = new GameRandom(~seed); // Kept apart from the world's own
+
+        for (int t = 0; t < _ticks; t++) {
+            if (t % TILT_INTERVAL == 0)
+                state.setGravity((bot.nextFloat() * 2 - 1) * MAX_TILT, (bot.nextFloat() * 2 - 1) * MAX_TILT, 0);
+            state.update();
+        }
+        return InputRecorder.checksum(state);
+    }
+
+    /**
+     * Plays every world once
+     *
+     * @param threads Number of worker threads
+     * @return Checksum of every world, in order
+     * @throws Exception If a world couldn't be played
+     */
+    public long run(int threads) throws Exception {
+        final long[] checksums = new long[_worlds];
+        final AtomicInteger next = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> workers = new ArrayList<Future<?>>();
+            for (int i = 0; i < threads; i++) {
+                workers.add(pool.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int n = next.getAndIncrement(); n < _worlds; n = next.getAndIncrement())
+                            checksums[n] = play(n);
+                    }
+                }));
+            }
+            for (Future<?> f : workers)
+                f.get(); // Passes on anything a worker threw
+        } finally {
+            pool.shutdown();
+        }
+
+        CRC32 crc = new CRC32();
+        for (long c : checksums) {
+            for (int shift = 0; shift < 32; shift += 8)
+                crc.update((int) (c >>> shift));
+        }
+        return crc.getValue();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int worlds = 1000;
+        int ticks = 900;
+        String level = "Empty";
+        String threads = null;
+        long seed = 1;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "-worlds": worlds = Integer.parseInt(value); break;
+                case "-ticks": ticks = Integer.parseInt(value); break;
+                case "-level": level = value; break;
+                case "-threads": threads = value; break;
+                case "-seed": seed = Long.parseLong(value); break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    return;
+            }
+        }
+
+        if (threads == null) {
+            int cores = Runtime.getRuntime().availableProcessors();
+            StringBuilder counts = new StringBuilder("1");
+            for (int n = 2; n < cores; n *= 2)
+                counts.append(',').append(n);
+            if (cores > 1)
+                counts.append(',').append(cores);
+            threads = counts.toString();
+        }
+        GameState.Level[] levels = level.equals("all") ? GameState.Level.values() : new GameState.Level[]{GameState.Level.valueOf(level)};
+        BatchRunner runner = new BatchRunner(levels, worlds, ticks, seed);
+
+        // Once through on one thread first, so the JIT has done its work before anything is timed
+        long expected = runner.run(1);
+        long single = 0;
+        System.out.println(worlds + " worlds of " + ticks + " ticks, " + Runtime.getRuntime().availableProcessors() + " cores");
+        for (String t : threads.split(",")) {
+            int count = Integer.parseInt(t.trim());
+            long start = System.nanoTime();
+            long checksum = runner.run(count);
+            long elapsed = System.nanoTime() - start;
+            long rate = (long) worlds * ticks * 1000000000L / Math.max(elapsed, 1);
+            if (single == 0)
+                single = rate;
+            System.out.println(String.format("  %3d threads: %10d ticks/s, %5.2fx%s", count, rate, rate / (double) single,
+                    checksum == expected ? "" : ", WORLDS DIFFER"));
+        }
+        System.exit(0);
+    }
+}
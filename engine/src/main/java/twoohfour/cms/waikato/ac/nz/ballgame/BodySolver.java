@@ -0,0 +1,456 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+
+/**
+ * Impulse based collisions for IDynamic sprites: with each other, with players, and with walls
+ *
+ * Bodies are sorted into a grid of cells as wide as the biggest of them, so each only has to
+ * look at the nine cells around it for other bodies. Walls are kept in a SpriteGrid laid out
+ * the same way, in every cell they cover. Touching bodies trade motion along the line between their centres, split by weight
+ * (_weightModifier is 1 / weight), and are pushed apart by some of the overlap.
+ *
+ * Every body works out its own new motion from where everything was at the start of the tick,
+ * and how the last pass left everything moving, so bodies can be solved in any order, on any
+ * number of threads, and a pair always gets equal and opposite pushes. A few passes let a push
+ * get through a pile. Nothing is written back to the sprites until the last pass is done.
+ * Walls don't move, so each body goes through the walls it touches one after another, which
+ * stops it being bounced twice by two walls side by side.
+ *
+ * Players are pushed around by bodies like any other, but still bounce off walls the way they
+ * always have, in GameState.update().
+ *
+ * Bodies that are asleep aren't touching anything else asleep, as nothing goes to sleep touching
+ * anything, and sleeping bodies don't move. So they're left alone unless something awake is
+ * touching them, in which case they wake up and are solved like the rest.
+ */
+strictfp class BodySolver {
+
+    //region Variables
+    private static final float CORRECTION = 0.5f; // Fraction of an overlap pushed out each tick
+    private static final float SLOP = 0.005f; // Overlap left alone, so piles at rest don't jitter
+    private static final float RESTING = 0.01f; // Closing slower than this doesn't bounce, it just stops
+    private static final float RELAXATION = 0.5f; // Every contact is solved at once, so each only does part of the work
+    static final int PASSES = 4; // Each pass sees the motion the last one left, so pushes get through a pile
+    private static final float MAX_PUSH = 0.05f; // Most other bodies can move one in a tick, however squashed it is
+    private static final int CELLS_PER_BODY = 4; // Cells get bigger rather than the grid having more than this
+
+    private GenericSprite[] _all;
+    private int[] _bodies = new int[0]; // Sprite indexes
+    private int _bodyCount;
+    private boolean[] _awake = new boolean[0]; // Which bodies were awake before any were woken, as the others are woken in parallel
+    private int[] _statics = new int[0];
+    private int _staticCount;
+
+    // Grid. Cells are in rows, each holding the numbers of the bodies in it
+    private float _originX;
+    private float _originY;
+    private float _cell;
+    private int _cols;
+    private int _rows;
+    private int[] _bodyStart = new int[1]; // Where each cell's bodies start in _bodyCells. One extra at the end
+    private int[] _bodyCells = new int[0];
+    private final SpriteGrid _staticGrid = new SpriteGrid(); // Same cells, holding the numbers of the statics
+
+    // What solve() works out for each body, applied by apply(). Motion is swapped with the next pass's
+    private int _pass;
+    private float[] _vx = new float[0];
+    private float[] _vy = new float[0];
+    private float[] _nextVx = new float[0];
+    private float[] _nextVy = new float[0];
+    private float[] _px = new float[0];
+    private float[] _py = new float[0];
+    //endregion
+
+    /**
+     * Gets the number of bodies found by the last build()
+     *
+     * @return Body count, including players
+     */
+    int getBodyCount() {
+        return _bodyCount;
+    }
+
+    /**
+     * Finds the bodies and walls in a world, and sorts them into the grid
+     *
+     * @param state World
+     * @param all   Its sprites
+     * @param count Number of sprites
+     * @return False if there's nothing for the solver to do
+     */
+    boolean build(GameState state, GenericSprite[] all, int count) {
+        _all = all;
+        _bodyCount = 0;
+        _staticCount = 0;
+        if (_bodies.length < count)
+            _bodies = new int[count];
+        for (int i = 0; i < count; i++) {
+            if ((all[i]._kind & GenericSprite.DYNAMIC) != 0)
+                _bodies[_bodyCount++] = i;
+        }
+        if (_bodyCount == 0)
+            return false; // Players on their own are left to GameState
+
+        boolean stirring = false; // Anything awake for sleepers to have touched
+
+        if (_statics.length < count)
+            _statics = new int[count];
+        for (int i = 0; i < count; i++) {
+            GenericSprite s = all[i];
+            if ((s._kind & GenericSprite.PLAYER) != 0) {
+                PlayerSprite p = (PlayerSprite) s;
+                if (!p.isOut() && !(p == state.getPlayer() && state.getState() == GameState.State.Spectating))
+                    _bodies[_bodyCount++] = i;
+            } else if ((s._kind & (GenericSprite.COLLIDABLE | GenericSprite.DYNAMIC)) == GenericSprite.COLLIDABLE) {
+                _statics[_staticCount++] = i;
+                stirring |= !s._asleep;
+            }
+        }
+        if (_awake.length < _bodyCount)
+            _awake = new boolean[_bodyCount];
+        for (int b = 0; b < _bodyCount; b++) {
+            _awake[b] = !all[_bodies[b]]._asleep;
+            stirring |= _awake[b];
+        }
+        if (!stirring)
+            return false; // Everything's asleep, so nothing would change
+
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        float size = 0;
+        for (int b = 0; b < _bodyCount; b++) {
+            Box r = all[_bodies[b]]._rect;
+            minX = Math.min(minX, r.left);
+            minY = Math.min(minY, r.top);
+            maxX = Math.max(maxX, r.right);
+            maxY = Math.max(maxY, r.bottom);
+            size = Math.max(size, Math.max(r.width(), r.height()));
+        }
+        _originX = minX;
+        _originY = minY;
+        _cell = Math.max(size, 0.01f);
+        while (true) {
+            _cols = (int) ((maxX - minX) / _cell) + 1;
+            _rows = (int) ((maxY - minY) / _cell) + 1;
+            if ((long) _cols * _rows <= (long) _bodyCount * CELLS_PER_BODY + 16)
+                break;
+            _cell *= 2; // Bodies are spread thin, so there's no point in small cells
+        }
+        int cells = _cols * _rows;
+        if (_bodyStart.length < cells + 1)
+            _bodyStart = new int[cells + 1];
+        if (_bodyCells.length < _bodyCount) {
+            _bodyCells = new int[_bodyCount];
+            _vx = new float[_bodyCount];
+            _vy = new float[_bodyCount];
+            _nextVx = new float[_bodyCount];
+            _nextVy = new float[_bodyCount];
+            _px = new float[_bodyCount];
+            _py = new float[_bodyCount];
+        }
+
+        _pass = 0;
+        for (int b = 0; b < _bodyCount; b++) {
+            Vec2 motion = all[_bodies[b]]._motion;
+            _vx[b] = motion.x;
+            _vy[b] = motion.y;
+        }
+
+        // Counting sort, so each cell has its bodies in the order of the sprite list
+        for (int c = 0; c <= cells; c++)
+            _bodyStart[c] = 0;
+        for (int b = 0; b < _bodyCount; b++)
+            _bodyStart[cellOf(all[_bodies[b]]._rect) + 1]++;
+        for (int c = 0; c < cells; c++)
+            _bodyStart[c + 1] += _bodyStart[c];
+        for (int b = 0; b < _bodyCount; b++)
+            _bodyCells[_bodyStart[cellOf(all[_bodies[b]]._rect)]++] = b;
+        for (int c = cells; c > 0; c--)
+            _bodyStart[c] = _bodyStart[c - 1];
+        _bodyStart[0] = 0;
+
+        // Statics go in every cell they cover. Anything off the grid can't touch a body
+        _staticGrid.setCells(_originX, _originY, _cell, _cols, _rows);
+        _staticGrid.build(all, _statics, _staticCount);
+        return true;
+    }
+
+    /**
+     * Works out the new motion of some bodies, and on the first pass where they're pushed to
+     * Only reads sprites and the last pass, so any number of ranges can be solved at once
+     *
+     * @param from First body
+     * @param to   One past the last body
+     */
+    void solve(int from, int to) {
+        // Bounces are only worked out from how fast things hit. Later passes just stop them going into each other
+        boolean first = _pass == 0;
+        for (int b = from; b < to; b++) {
+            GenericSprite s = _all[_bodies[b]];
+            if (s._asleep) {
+                if (first && touchesAwake(b))
+                    s._asleep = false;
+                else {
+                    // Touching nothing, so nothing changes
+                    _nextVx[b] = _vx[b];
+                    _nextVy[b] = _vy[b];
+                    _px[b] = 0;
+                    _py[b] = 0;
+                    continue;
+                }
+            }
+            Box r = s._rect;
+            float cx = r.centerX();
+            float cy = r.centerY();
+            float rad = r.width() / 2;
+            float w = s._weightModifier;
+            float vx = _vx[b];
+            float vy = _vy[b];
+            float dvx = 0, dvy = 0, px = 0, py = 0;
+            boolean touched = false;
+
+            // Other bodies, where they were at the start of the tick and how the last pass left them moving
+            int col = clamp(column(cx), _cols), row = clamp(row(cy), _rows);
+            for (int y = Math.max(0, row - 1); y <= Math.min(_rows - 1, row + 1); y++) {
+                for (int x = Math.max(0, col - 1); x <= Math.min(_cols - 1, col + 1); x++) {
+                    int cell = y * _cols + x;
+                    for (int k = _bodyStart[cell]; k < _bodyStart[cell + 1]; k++) {
+                        int o = _bodyCells[k];
+                        if (o == b)
+                            continue;
+                        GenericSprite t = _all[_bodies[o]];
+                        Box tr = t._rect;
+                        float dx = tr.centerX() - cx;
+                        float dy = tr.centerY() - cy;
+                        float radSum = rad + tr.width() / 2;
+                        float distSq = dx * dx + dy * dy;
+                        if (distSq >= radSum * radSum)
+                            continue;
+                        touched = true;
+
+                        // Normal points from this body to the other
+                        float dist = (float) Math.sqrt(distSq);
+                        float nx = dist > 0 ? dx / dist : (o > b ? 1 : -1);
+                        float ny = dist > 0 ? dy / dist : 0;
+                        float share = w / (w + t._weightModifier); // Lighter bodies take more of it
+                        float closing = (vx - _vx[o]) * nx + (vy - _vy[o]) * ny;
+                        if (closing > 0) {
+                            float bounce = first && closing > RESTING ? 1 + s.getBounciness() * t.getBounciness() : 1;
+                            float impulse = bounce * closing * share * RELAXATION;
+                            dvx -= nx * impulse;
+                            dvy -= ny * impulse;
+                        }
+                        float overlap = radSum - dist - SLOP;
+                        if (overlap > 0) {
+                            px -= nx * overlap * CORRECTION * share;
+                            py -= ny * overlap * CORRECTION * share;
+                        }
+                    }
+                }
+            }
+            vx += dvx;
+            vy += dvy;
+            if (first) {
+                float push = (float) Math.sqrt(px * px + py * py);
+                if (push > MAX_PUSH) {
+                    // Everything around it pushing at once would send it straight through a wall
+                    px *= MAX_PUSH / push;
+                    py *= MAX_PUSH / push;
+                }
+            } else {
+                px = _px[b];
+                py = _py[b];
+            }
+
+            if (!(s instanceof PlayerSprite)) {
+                // Walls, one at a time, each seeing what the last did
+                int x0 = clamp(column(cx + px - rad), _cols), x1 = clamp(column(cx + px + rad), _cols);
+                int y0 = clamp(row(cy + py - rad), _rows), y1 = clamp(row(cy + py + rad), _rows);
+                for (int y = y0; y <= y1; y++) {
+                    for (int x = x0; x <= x1; x++) {
+                        int cell = y * _cols + x;
+                        for (int k = _staticGrid.start(cell); k < _staticGrid.end(cell); k++) {
+                            int st = _staticGrid.get(k);
+                            // A static in several of these cells is only done in the first both cover
+                            if (!_staticGrid.isFirst(st, x, y, x0, y0))
+                                continue;
+
+                            GenericSprite t = _all[_statics[st]];
+                            Box tr = t._rect;
+                            float bx = cx + px, by = cy + py;
+                            float nx, ny, depth;
+                            if (t instanceof CircleSprite) {
+                                float dx = bx - tr.centerX();
+                                float dy = by - tr.centerY();
+                                float radSum = rad + tr.width() / 2;
+                                float distSq = dx * dx + dy * dy;
+                                if (distSq >= radSum * radSum)
+                                    continue;
+                                touched = true;
+                                float dist = (float) Math.sqrt(distSq);
+                                nx = dist > 0 ? dx / dist : 0;
+                                ny = dist > 0 ? dy / dist : -1;
+                                depth = radSum - dist;
+                            } else {
+                                // Closest point of the box to the centre
+                                float dx = bx - Math.max(tr.left, Math.min(bx, tr.right));
+                                float dy = by - Math.max(tr.top, Math.min(by, tr.bottom));
+                                float distSq = dx * dx + dy * dy;
+                                if (distSq >= rad * rad)
+                                    continue;
+                                touched = true;
+                                if (distSq > 0) {
+                                    float dist = (float) Math.sqrt(distSq);
+                                    nx = dx / dist;
+                                    ny = dy / dist;
+                                    depth = rad - dist;
+                                } else {
+                                    // Centre is inside, so out through the nearest side
+                                    float left = bx - tr.left, right = tr.right - bx, top = by - tr.top, bottom = tr.bottom - by;
+                                    float least = Math.min(Math.min(left, right), Math.min(top, bottom));
+                                    nx = least == left ? -1 : least == right ? 1 : 0;
+                                    ny = nx != 0 ? 0 : least == top ? -1 : 1;
+                                    depth = rad + least;
+                                }
+                            }
+
+                            // Normal points from the wall to the body
+                            float closing = vx * nx + vy * ny;
+                            if (closing < 0) {
+                                float bounce = first && closing < -RESTING ? 1 + s.getBounciness() * t.getBounciness() : 1;
+                                vx -= nx * closing * bounce;
+                                vy -= ny * closing * bounce;
+                            }
+                            if (first && depth > SLOP) {
+                                px += nx * (depth - SLOP);
+                                py += ny * (depth - SLOP);
+                            }
+                        }
+                    }
+                }
+            }
+
+            _nextVx[b] = vx;
+            _nextVy[b] = vy;
+            _px[b] = px;
+            _py[b] = py;
+            if (first && touched)
+                s._touched = true;
+        }
+    }
+
+    /**
+     * Whether a sleeping body is touching anything that was awake at the start of the update
+     *
+     * @param b Body
+     * @return True if it has to wake up
+     */
+    private boolean touchesAwake(int b) {
+        GenericSprite s = _all[_bodies[b]];
+        Box r = s._rect;
+        float cx = r.centerX();
+        float cy = r.centerY();
+        float rad = r.width() / 2;
+        int col = clamp(column(cx), _cols), row = clamp(row(cy), _rows);
+        for (int y = Math.max(0, row - 1); y <= Math.min(_rows - 1, row + 1); y++) {
+            for (int x = Math.max(0, col - 1); x <= Math.min(_cols - 1, col + 1); x++) {
+                int cell = y * _cols + x;
+                for (int k = _bodyStart[cell]; k < _bodyStart[cell + 1]; k++) {
+                    int o = _bodyCells[k];
+                    if (o == b || !_awake[o])
+                        continue;
+                    Box tr = _all[_bodies[o]]._rect;
+                    float dx = tr.centerX() - cx;
+                    float dy = tr.centerY() - cy;
+                    float radSum = rad + tr.width() / 2;
+                    if (dx * dx + dy * dy < radSum * radSum)
+                        return true;
+                }
+            }
+        }
+        if (s instanceof PlayerSprite)
+            return false; // Walls are up to GameState
+
+        // Statics don't change while bodies are solved, so they can be asked directly
+        int x0 = clamp(column(cx - rad), _cols), x1 = clamp(column(cx + rad), _cols);
+        int y0 = clamp(row(cy - rad), _rows), y1 = clamp(row(cy + rad), _rows);
+        for (int y = y0; y <= y1; y++) {
+            for (int x = x0; x <= x1; x++) {
+                int cell = y * _cols + x;
+                for (int k = _staticGrid.start(cell); k < _staticGrid.end(cell); k++) {
+                    GenericSprite t = _all[_statics[_staticGrid.get(k)]];
+                    if (t._asleep)
+                        continue;
+                    Box tr = t._rect;
+                    if (t instanceof CircleSprite) {
+                        float dx = cx - tr.centerX();
+                        float dy = cy - tr.centerY();
+                        float radSum = rad + tr.width() / 2;
+                        if (dx * dx + dy * dy < radSum * radSum)
+                            return true;
+                    } else {
+                        float dx = cx - Math.max(tr.left, Math.min(cx, tr.right));
+                        float dy = cy - Math.max(tr.top, Math.min(cy, tr.bottom));
+                        if (dx * dx + dy * dy < rad * rad)
+                            return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finishes a pass, once every body has been solved
+     */
+    void endPass() {
+        float[] swap = _vx;
+        _vx = _nextVx;
+        _nextVx = swap;
+        swap = _vy;
+        _vy = _nextVy;
+        _nextVy = swap;
+        _pass++;
+    }
+
+    /**
+     * Gives some bodies the motion and position solve() worked out
+     *
+     * @param from First body
+     * @param to   One past the last body
+     */
+    void apply(int from, int to) {
+        for (int b = from; b < to; b++) {
+            GenericSprite s = _all[_bodies[b]];
+            if (s._asleep)
+                continue; // Still touching nothing
+            s._motion.x = _vx[b];
+            s._motion.y = _vy[b];
+            s.limitVelocity();
+            s.moveX(_px[b]);
+            s.moveY(_py[b]);
+        }
+    }
+
+    /**
+     * Lets go of the world's sprites once the update is done
+     */
+    void clear() {
+        _all = null;
+    }
+
+    private int cellOf(Box r) {
+        return clamp(row(r.centerY()), _rows) * _cols + clamp(column(r.centerX()), _cols);
+    }
+
+    private int column(float x) {
+        return (int) Math.floor((x - _originX) / _cell);
+    }
+
+    private int row(float y) {
+        return (int) Math.floor((y - _originY) / _cell);
+    }
+
+    private static int clamp(int i, int count) {
+        return Math.max(0, Math.min(count - 1, i));
+    }
+}
@@ -0,0 +1,134 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+/**
+ * An axis aligned rectangle with float coordinates
+ * The engine's own, so it runs without Android. Edges behave exactly as a Box's do:
+ * touching boxes don't intersect, so results are the same as they always were.
+ */
+public strictfp class Box {
+
+    public float left;
+    public float top;
+    public float right;
+    public float bottom;
+
+    public Box() {
+    }
+
+    public Box(float left, float top, float right, float bottom) {
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+
+    public Box(Box b) {
+        this(b.left, b.top, b.right, b.bottom);
+    }
+
+    //region Getters
+
+    public float width() {
+        return right - left;
+    }
+
+    public float height() {
+        return bottom - top;
+    }
+
+    public float centerX() {
+        return (left + right) * 0.5f;
+    }
+
+    public float centerY() {
+        return (top + bottom) * 0.5f;
+    }
+
+    /**
+     * Whether the box has no area
+     *
+     * @return True if it's zero or negative in either direction
+     */
+    public boolean isEmpty() {
+        return left >= right || top >= bottom;
+    }
+    //endregion
+
+    /**
+     * Sets all four edges
+     *
+     * @param left   Left edge
+     * @param top    Top edge
+     * @param right  Right edge
+     * @param bottom Bottom edge
+     */
+    public void set(float left, float top, float right, float bottom) {
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+
+    /**
+     * Moves every edge in, or out for negative amounts
+     *
+     * @param dx Amount to move the left and right edges in
+     * @param dy Amount to move the top and bottom edges in
+     */
+    public void inset(float dx, float dy) {
+        left += dx;
+        top += dy;
+        right -= dx;
+        bottom -= dy;
+    }
+
+    /**
+     * Whether this box overlaps another. Neither is changed
+     *
+     * @param left   Other's left edge
+     * @param top    Other's top edge
+     * @param right  Other's right edge
+     * @param bottom Other's bottom edge
+     * @return True if they overlap by more than an edge
+     */
+    public boolean intersects(float left, float top, float right, float bottom) {
+        return this.left < right && left < this.right && this.top < bottom && top < this.bottom;
+    }
+
+    /**
+     * Whether two boxes overlap
+     *
+     * @param a One box
+     * @param b The other
+     * @return True if they overlap by more than an edge
+     */
+    public static boolean intersects(Box a, Box b) {
+        return a.left < b.right && b.left < a.right && a.top < b.bottom && b.top < a.bottom;
+    }
+
+    /**
+     * Whether another box is entirely inside this one
+     *
+     * @param b Other box
+     * @return True if inside or equal. An empty box contains nothing
+     */
+    public boolean contains(Box b) {
+        return !isEmpty() && left <= b.left && top <= b.top && right >= b.right && bottom >= b.bottom;
+    }
+
+    /**
+     * Whether a point is inside the box
+     *
+     * @param x X coordinate
+     * @param y Y coordinate
+     * @return True if inside. Points on the right or bottom edge aren't
+     */
+    public boolean contains(float x, float y) {
+        return left < right && top < bottom && x >= left && x < right && y >= top && y < bottom;
+    }
+
+    @Override
+    public String toString() {
+        return "Box(" + left + ", " + top + ", " + right + ", " + bottom + ")";
+    }
+}
@@ -0,0 +1,83 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+
+/**
+ * Created by Stuart on 30/09/2015.
+ */
+public strictfp class BumperSprite extends CircleSprite implements ICollidable {
+
+    private static final int COOLDOWN = 30; // Updates a bumper ignores things for after bouncing one
+
+    private TimerWheel.Timer _cooldown; // Null unless cooling down
+    private final Runnable _cooled = new Runnable() {
+        @Override
+        public void run() {
+            _cooldown = null;
+        }
+    };
+
+    /**
+     * Construct a bouncy sprite
+     * @param leftPos How far away are we from the left wall
+     * @param topPos How far down from the top wall
+     */
+    public BumperSprite(int leftPos, int topPos) {
+        super(leftPos, topPos, 0.5f, 0.5f);
+    }
+
+    @Override
+    public void draw(Renderer renderer, float scale, Vec2 offset) {
+        float radius = getWidth() / 2;
+
+        if (_cooldown != null)
+            _color = Colors.rgb(170, 50, 150);
+        else
+            _color = Colors.rgb(140, 20, 115);
+
+        renderer.fillCircle((getXPos() + radius + offset.x) * scale, (getYPos() + radius + offset.y) * scale, radius * scale, _color);
+    }
+
+    @Override
+    public int save(float[] values, int offset, GameState state) {
+        super.save(values, offset, state);
+        return _cooldown == null ? 0 : state.ticksLeft(_cooldown);
+    }
+
+    @Override
+    public void restore(float[] values, int offset, int extra, GameState state) {
+        super.restore(values, offset, extra, state);
+        if (_cooldown != null)
+            _cooldown.cancel();
+        _cooldown = extra > 0 ? state.schedule(_cooled, extra) : null;
+    }
+
+    @Override
+    public boolean hasSharedReflect() {
+        return true; // Takes random numbers from the world, and starts its own cooldown
+    }
+
+    @Override
+    public void reflect(GenericSprite sprite, GameState state) {
+
+        if (_cooldown != null)
+            return;
+
+        Vec2 sprMotion = sprite.getMotion();
+
+        float oldSpeed = (float)Math.sqrt(sprMotion.x * sprMotion.x + sprMotion.y * sprMotion.y);
+
+        // The world's own generator, so every device bounces the same way
+        float newX = (state.getRandom().nextFloat() * 2) - 1;
+        float newY = (state.getRandom().nextFloat() * 2) - 1;
+
+        float tempSpeed = (float)Math.sqrt(newX * newX + newY * newY);
+        float ratio = oldSpeed / tempSpeed;
+
+        newX *= ratio * getBounciness();
+        newY *= ratio * getBounciness();
+
+        sprite.setMotion(newX, newY);
+
+        _cooldown = state.schedule(_cooled, COOLDOWN);
+    }
+}
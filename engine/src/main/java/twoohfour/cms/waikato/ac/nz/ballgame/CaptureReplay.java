@@ -0,0 +1,221 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Plays a PacketCapture back through a MultiplayerNetwork's receive path, as fast as it can
+ *
+ * Only datagrams the captured device received are played, minus its own looped back ones.
+ * They're unpacked, sessions filtered, reliable messages deduplicated and acknowledged,
+ * and every message handed to a listener that decodes positions into ghosts, just like
+ * the real thing. Anything the network sends back is thrown away.
+ *
+ * The listener also keeps a CRC of every message it was given. Replaying the same capture
+ * must always give the same CRC, so a change to the receive path that changes it has
+ * changed what the game sees. The time taken gives decode throughput.
+ *
+ * Usage: CaptureReplay capture.bin [-repeat 5] [-level Empty]
+ * Repeats let the JIT warm up. The fastest run is reported.
+ */
+public class CaptureReplay {
+
+    //region Variables
+    private final List<byte[]> _datagrams = new ArrayList<byte[]>();
+    private final List<Integer> _sessions = new ArrayList<Integer>();
+    private final GameState.Level _level;
+    private long _bytes;
+    private long _elapsed; // Nanos the last replay took
+    //endregion
+
+    /**
+     * Feeds the captured datagrams to a network, one at a time
+     */
+    private class ReplayTransport implements Transport {
+        private int _next;
+        private boolean _finished;
+
+        @Override
+        public void send(byte[] data, int length) {
+            // Nobody to send to
+        }
+
+        @Override
+        public synchronized int receive(byte[] buffer, int timeoutMs) {
+            // Asking for another means the last has been dealt with
+            if (_next == _datagrams.size()) {
+                _finished = true;
+                notifyAll();
+                try {
+                    wait(timeoutMs);
+                } catch (InterruptedException e) {
+                    // Give up waiting
+                }
+                return -1;
+            }
+            byte[] d = _datagrams.get(_next++);
+            System.arraycopy(d, 0, buffer, 0, d.length);
+            return d.length;
+        }
+
+        @Override
+        public int getLastSource() {
+            return 0;
+        }
+
+        /**
+         * Waits until every datagram has been received and handled
+         *
+         * @throws InterruptedException If interrupted while waiting
+         */
+        synchronized void awaitFinished() throws InterruptedException {
+            while (!_finished)
+                wait();
+        }
+
+        @Override
+        public synchronized void close() {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Counts, checksums and decodes everything the network hands over
+     */
+    private class ReplayListener implements MultiplayerEventListener {
+        final GameState state = GameState.GENERATE(_level, _level.name(), 0);
+        final PeerRegistry peers = new PeerRegistry();
+        final MultiPlayerGhostSprite[] ghosts = new MultiPlayerGhostSprite[PeerRegistry.MAX_PEERS];
+        final CRC32 crc = new CRC32();
+        final long[] counts = new long[256];
+        long messages;
+
+        @Override
+        public void message(int statusCode, ByteBuffer data, int from, int session) {
+            messages++;
+            counts[statusCode - 100]++;
+
+            crc.update(statusCode);
+            crc.update(from);
+            crc.update(from >>> 8);
+            crc.update(from >>> 16);
+            crc.update(from >>> 24);
+            crc.update(data.array(), data.position(), data.remaining());
+
+            if (statusCode == PositionCodec.CODE_KEYFRAME || statusCode == PositionCodec.CODE_DELTA) {
+                int peer = peers.lookup(from);
+                if (peer < 0) {
+                    peer = peers.add(from);
+                    if (peer < 0)
+                        return;
+                    ghosts[peer] = new MultiPlayerGhostSprite(0, 0);
+                }
+                IntVec2 levelSize = state.getLevelSize();
+                PositionCodec.decode(statusCode, data, ghosts[peer], levelSize.x, levelSize.y);
+            }
+        }
+
+        @Override
+        public void onNetworkError(Exception e, String text) {
+            System.err.println(e.getMessage() + " " + text);
+        }
+    }
+
+    /**
+     * Loads a capture to replay
+     *
+     * @param file  Capture file
+     * @param level Level positions are decoded against. Only its size matters
+     * @throws IOException If the capture can't be read
+     */
+    public CaptureReplay(File file, GameState.Level level) throws IOException {
+        _level = level;
+        int self = PacketCapture.readNodeId(file);
+        for (PacketCapture.Record r : PacketCapture.read(file)) {
+            if (r.outbound || r.data.length < 9)
+                continue;
+            ByteBuffer header = ByteBuffer.wrap(r.data);
+            header.get(); // Version
+            int session = header.getInt();
+            if (header.getInt() == self)
+                continue; // Our own, looped back
+
+            // Take the traffic for every room the device was in
+            if (session != MultiplayerNetwork.DISCOVERY_SESSION && !_sessions.contains(session))
+                _sessions.add(session);
+            _datagrams.add(r.data);
+            _bytes += r.data.length;
+        }
+    }
+
+    /**
+     * Replays the whole capture once, through a new network
+     *
+     * @return Listener with what was received
+     * @throws InterruptedException If interrupted while waiting
+     */
+    private ReplayListener replay() throws InterruptedException {
+        ReplayTransport transport = new ReplayTransport();
+        ReplayListener listener = new ReplayListener();
+
+        // Nothing arrives until the first receive(), so set up before it's called
+        synchronized (transport) {
+            MultiplayerNetwork network = new MultiplayerNetwork(transport);
+            for (int session : _sessions)
+                network.addSession(session);
+            network.registerListener(listener);
+
+            long start = System.nanoTime();
+            transport.awaitFinished();
+            _elapsed = System.nanoTime() - start;
+            network.close();
+        }
+        return listener;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: CaptureReplay capture.bin [-repeat 5] [-level Empty]");
+            return;
+        }
+        int repeat = 5;
+        GameState.Level level = GameState.Level.Empty;
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "-repeat": repeat = Integer.parseInt(args[i + 1]); break;
+                case "-level": level = GameState.Level.valueOf(args[i + 1]); break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    return;
+            }
+        }
+
+        CaptureReplay replay = new CaptureReplay(new File(args[0]), level);
+        long best = Long.MAX_VALUE;
+        ReplayListener result = null;
+        for (int i = 0; i < repeat; i++) {
+            ReplayListener listener = replay.replay();
+            if (result != null && listener.crc.getValue() != result.crc.getValue())
+                System.err.println("Run " + i + " gave a different CRC");
+            result = listener;
+            best = Math.min(best, replay._elapsed);
+        }
+
+        int count = replay._datagrams.size();
+        System.out.println(count + " datagrams, " + replay._bytes + " bytes, " + result.messages + " messages, in "
+                + replay._sessions.size() + " sessions");
+        System.out.println("Fastest run: " + best / 1000 + "us, " + (best == 0 ? 0 : count * 1000000000L / best) + " datagrams/s, "
+                + (best == 0 ? 0 : result.messages * 1000000000L / best) + " messages/s");
+        for (int code = 0; code < result.counts.length; code++) {
+            if (result.counts[code] > 0)
+                System.out.println("  " + (code + 100) + ": " + result.counts[code]);
+        }
+        System.out.println("CRC: " + Long.toHexString(result.crc.getValue()));
+        System.exit(0);
+    }
+}
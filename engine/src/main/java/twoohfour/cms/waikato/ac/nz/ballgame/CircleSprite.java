@@ -1,12 +1,10 @@
 package twoohfour.cms.waikato.ac.nz.ballgame;
 
-import android.graphics.PointF;
-import android.graphics.RectF;
 
 /**
  * Created by Stuart on 18/10/2015.
  */
-public abstract class CircleSprite extends GenericSprite {
+public abstract strictfp class CircleSprite extends GenericSprite {
 
     public CircleSprite() {
         super(0, 0);
@@ -43,16 +41,16 @@ public abstract class CircleSprite extends GenericSprite {
     @Override
     public boolean intersects(GenericSprite sprite) {
         float myRad = _rect.height() / 2;
-        RectF otherRect = sprite.getRectangle();
+        Box otherRect = sprite.getRectangle();
 
         if (sprite instanceof RectSprite){
 
-            PointF circleCentre = new PointF(_rect.centerX(), _rect.centerY());
+            Vec2 circleCentre = new Vec2(_rect.centerX(), _rect.centerY());
             float circleRadius = myRad;
 
             return sprite.getRectangle().intersects(_rect.left, _rect.top, _rect.right, _rect.bottom);
 
-//            RectF otherRect = sprite.getRectangle();
+//            Box otherRect = sprite.getRectangle();
 //
 //            if (_rect.right + myRad < otherRect.left)
 //                return false;
@@ -65,8 +63,11 @@ public abstract class CircleSprite extends GenericSprite {
 //
 //            return true;
         } else if (sprite instanceof CircleSprite){
-            float distSq = (float)Math.pow(Math.abs(_rect.centerX() - otherRect.centerX()), 2) + (float)Math.pow(Math.abs(_rect.centerY() - otherRect.centerY()), 2);
-            float radSumSq = (float)Math.pow(myRad + (otherRect.height() / 2), 2);
+            float distX = _rect.centerX() - otherRect.centerX();
+            float distY = _rect.centerY() - otherRect.centerY();
+            float radSum = myRad + (otherRect.height() / 2);
+            float distSq = distX * distX + distY * distY;
+            float radSumSq = radSum * radSum;
 
             return distSq < radSumSq;
         } else
@@ -74,12 +75,12 @@ public abstract class CircleSprite extends GenericSprite {
     }
 
     @Override
-    public void reflect(GenericSprite sprite) {
+    public void reflect(GenericSprite sprite, GameState state) {
         float bounceStrength = getBounciness() * sprite.getBounciness();
 
         if (sprite instanceof RectSprite || sprite instanceof CircleSprite){
-            RectF othrRect = sprite.getRectangle();
-            PointF othrMotion = sprite.getMotion();
+            Box othrRect = sprite.getRectangle();
+            Vec2 othrMotion = sprite.getMotion();
 
             boolean bounceX = ((othrRect.right > _rect.left && othrRect.left < _rect.left &&  othrMotion.x > 0) || (othrRect.left < _rect.right && othrRect.right > _rect.right && othrMotion.x < 0));
             boolean bounceY = ((othrRect.bottom > _rect.top && othrRect.top < _rect.top && othrMotion.y > 0) || (othrRect.top < _rect.bottom && othrRect.bottom > _rect.bottom && othrMotion.y < 0));
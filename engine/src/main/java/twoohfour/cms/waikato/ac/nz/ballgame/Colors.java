@@ -0,0 +1,44 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+/**
+ * Colours sprites are drawn in, as ARGB ints
+ * The same values as android.graphics.Color, so a Renderer can pass them straight through
+ */
+public final class Colors {
+
+    public static final int BLACK = 0xFF000000;
+    public static final int DKGRAY = 0xFF444444;
+    public static final int WHITE = 0xFFFFFFFF;
+    public static final int RED = 0xFFFF0000;
+    public static final int GREEN = 0xFF00FF00;
+    public static final int BLUE = 0xFF0000FF;
+    public static final int YELLOW = 0xFFFFFF00;
+    public static final int CYAN = 0xFF00FFFF;
+    public static final int MAGENTA = 0xFFFF00FF;
+
+    private Colors() {
+    }
+
+    /**
+     * Makes an opaque colour
+     *
+     * @param red   Red, 0 to 255
+     * @param green Green, 0 to 255
+     * @param blue  Blue, 0 to 255
+     * @return ARGB colour
+     */
+    public static int rgb(int red, int green, int blue) {
+        return 0xFF000000 | (red << 16) | (green << 8) | blue;
+    }
+
+    /**
+     * Changes how see-through a colour is
+     *
+     * @param color Colour
+     * @param alpha Alpha, 0 (invisible) to 255 (opaque)
+     * @return ARGB colour
+     */
+    public static int withAlpha(int color, int alpha) {
+        return (color & 0x00FFFFFF) | (alpha << 24);
+    }
+}
@@ -0,0 +1,43 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+
+/**
+ * Created by Stuart on 17/10/2015.
+ */
+public class DisappearingWallSprite extends RectSprite {
+
+    protected int _border;
+
+    /**
+     * Construct the wall obsticals
+     * @param leftPos How far away are we from the left wall
+     * @param topPos How far down from the top wall
+     * @param width Width of my Wall
+     * @param height Height of Wall
+     */
+    public DisappearingWallSprite(float leftPos, float topPos, float width, float height) {
+        super(leftPos, topPos, width, height);
+        _color = Colors.DKGRAY;
+        _border = Colors.BLACK;
+
+    }
+
+
+    /**
+     * Draw the wall
+     * @param renderer Where to draw
+     * @param scale Scale at which to draw
+     */
+    @Override
+    public void draw(Renderer renderer, float scale, Vec2 offset) {
+        float left = (_rect.left + offset.x) * scale;
+        float top = (_rect.top + offset.y) * scale;
+        float right = (_rect.right + offset.x) * scale;
+        float bottom = (_rect.bottom + offset.y) * scale;
+
+        renderer.fillRect(left, top, right, bottom, _color);
+        // border
+        renderer.strokeRect(left, top, right, bottom, _border);
+
+    }
+}
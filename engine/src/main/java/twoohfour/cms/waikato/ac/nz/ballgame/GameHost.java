@@ -0,0 +1,458 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Runs games for other players, without playing in them
+ *
+ * Each room is a session with its own GameState. Players only send their tilt (106 <x, y>),
+ * the host simulates everyone, and sends back where they all are (107). Nobody else
+ * decides whether a player has finished or died, so players can't disagree about it.
+ *
+ * Rooms are made as players look for them, up to ROOM_SIZE players each. A room starts
+ * its level once everyone in it is ready, and is closed when they've all left. The start
+ * (200) carries a LevelDescriptor, with a new seed for each room, so players build the
+ * same level the host does.
+ *
+ * Anyone watching a room, rather than playing in it, gets a SpectatorStream in a session
+ * of its own, with the start alongside every keyframe so they can join late.
+ * Watchers ask who the server is with FLAG_SPECTATE, and are told about a running room.
+ *
+ * Can run on a phone alongside a player, or on its own with main().
+ *
+ * Snapshot payload: | tick (4) | player | player | ...
+ * Player:           | node (4) | flags (1) | x (2) | y (2) | dx (2) | dy (2) |
+ */
+public class GameHost implements MultiplayerEventListener {
+
+    //region Variables
+    public static final int CODE_INPUT = 106;
+    public static final int CODE_SNAPSHOT = 107;
+    public static final int CODE_START = 200;
+
+    public static final int FLAG_FINISHED = 1;
+    public static final int FLAG_DEAD = 2;
+    public static final int ENTRY_SIZE = 13;
+
+    public static final int UPDATES_PER_SECOND = 30; // Same as GameActivity
+    public static final int SNAPSHOT_INTERVAL = 2; // Ticks between snapshots
+    public static final int ROOM_SIZE = 16;
+    public static final int MAX_ROOMS = 64;
+    public static final float INPUT_RANGE = 0.02f; // Just over the most tilt at the highest sensitivity
+    public static final GameState.Level DEFAULT_LEVEL = GameState.Level.LevelOne;
+
+    private static final int TIMEOUT_TICKS = MultiplayerNetwork.PEER_TIMEOUT_MS * UPDATES_PER_SECOND / 1000;
+
+    private final MultiplayerNetwork _network;
+    private final LevelDescriptor _level; // Seed is replaced for each room
+    private final List<Room> _rooms = new ArrayList<Room>();
+    private final ByteBuffer _snapshot = ByteBuffer.allocate(MultiplayerNetwork.MAX_PAYLOAD_SIZE);
+    private final byte[] _buffer = new byte[16];
+    private final int[] _streamNodes = new int[ROOM_SIZE];
+    private final int[] _streamFlags = new int[ROOM_SIZE];
+    private final int[] _streamX = new int[ROOM_SIZE];
+    private final int[] _streamY = new int[ROOM_SIZE];
+    private final Random _random = new Random();
+
+    private Timer _timer;
+    private int _ticks;
+    //endregion
+
+    /**
+     * A game being run for a group of players
+     */
+    private static class Room {
+        final int session;
+        final int spectators; // Session watchers listen in
+        final SpectatorStream stream = new SpectatorStream();
+        final PeerRegistry members = new PeerRegistry();
+        final PlayerSprite[] players = new PlayerSprite[PeerRegistry.MAX_PEERS]; // Indexed by peer id, once started
+        final int[] lastHeard = new int[PeerRegistry.MAX_PEERS];
+        GameState state; // Null until the level starts
+        byte[] start; // Start message, for watchers
+        int snapshots; // Sent since the level started
+
+        Room(int session) {
+            this.session = session;
+            this.spectators = SpectatorStream.getSession(session);
+        }
+    }
+
+    /**
+     * Creates a host
+     * Nothing happens until start() is called
+     *
+     * @param network Network to host on. Should only be used by this host
+     * @param level   Level every room plays
+     */
+    public GameHost(MultiplayerNetwork network, LevelDescriptor level) {
+        if (GameState.isLockstepOnly(level.getLevel()))
+            throw new IllegalArgumentException(level.getLevel() + " can only be played in lockstep");
+        _network = network;
+        _level = level;
+    }
+
+    //region Getters
+
+    /**
+     * Gets the number of rooms being run
+     *
+     * @return Room count
+     */
+    public synchronized int getRoomCount() {
+        return _rooms.size();
+    }
+    //endregion
+
+    /**
+     * Starts answering players, and running rooms
+     */
+    public synchronized void start() {
+        _network.registerListener(this);
+        _timer = new Timer("Host");
+        _timer.scheduleAtFixedRate(new TimerTask() {
+            @Override
+            public void run() {
+                tick();
+            }
+        }, 0, 1000 / UPDATES_PER_SECOND);
+    }
+
+    /**
+     * Stops running rooms
+     * The network is left open
+     */
+    public synchronized void close() {
+        if (_timer != null)
+            _timer.cancel();
+        _network.unregisterListener(this);
+        for (Room r : _rooms) {
+            _network.removeSession(r.session);
+            _network.removeSession(r.spectators);
+        }
+        _rooms.clear();
+    }
+
+    /**
+     * Moves every room on by one update
+     */
+    public synchronized void tick() {
+        _ticks++;
+        boolean snapshot = _ticks % SNAPSHOT_INTERVAL == 0;
+        boolean checkTimeouts = _ticks % UPDATES_PER_SECOND == 0;
+
+        for (int i = _rooms.size() - 1; i >= 0; i--) {
+            Room r = _rooms.get(i);
+            if (checkTimeouts)
+                dropSilent(r);
+            if (r.members.getCount() == 0) {
+                closeRoom(r);
+                continue;
+            }
+
+            if (r.state != null)
+                r.state.update();
+            // Sent while waiting too, so players know we're still here
+            if (snapshot)
+                sendSnapshot(r);
+            if (r.state != null && _ticks % SpectatorStream.INTERVAL == 0)
+                sendSpectators(r);
+        }
+
+        _network.flush();
+    }
+
+    //region Messages
+
+    @Override
+    public synchronized void message(int statusCode, ByteBuffer data, int from, int session) {
+        if (session == MultiplayerNetwork.DISCOVERY_SESSION) {
+            discoveryMessage(statusCode, data, from);
+            return;
+        }
+
+        Room r = findRoom(session);
+        if (r == null)
+            return;
+        int peer = r.members.lookup(from);
+        if (peer < 0)
+            return; // Never asked to join
+        r.lastHeard[peer] = _ticks;
+
+        switch (statusCode) {
+            case CODE_INPUT:
+                PlayerSprite p = r.players[peer];
+                if (p != null)
+                    p.setInput(dequantiseInput(data.getShort()), dequantiseInput(data.getShort()));
+                break;
+            case 103:
+                r.members.setReady(peer);
+                if (r.state == null && r.members.allReady())
+                    startRoom(r);
+                break;
+            case MultiplayerNetwork.CODE_LEAVE:
+                leave(r, peer);
+                break;
+        }
+    }
+
+    private void discoveryMessage(int statusCode, ByteBuffer data, int from) {
+        switch (statusCode) {
+            case RoomDiscovery.CODE_WHO_IS_SERVER: {
+                if (data.hasRemaining() && (data.get() & RoomDiscovery.FLAG_SPECTATE) != 0) {
+                    // Point watchers at the busiest game, if there is one
+                    Room watched = null;
+                    for (Room r : _rooms) {
+                        if (r.state != null && (watched == null || r.members.getCount() > watched.members.getCount()))
+                            watched = r;
+                    }
+                    if (watched != null) {
+                        ByteBuffer b = ByteBuffer.wrap(_buffer);
+                        b.putInt(watched.spectators);
+                        b.put((byte) (RoomDiscovery.FLAG_AUTHORITATIVE | RoomDiscovery.FLAG_SPECTATE));
+                        _network.sendDiscovery(RoomDiscovery.CODE_I_AM_SERVER, _buffer, b.position());
+                    }
+                    break;
+                }
+
+                Room r = openRoom();
+                if (r != null) {
+                    ByteBuffer b = ByteBuffer.wrap(_buffer);
+                    b.putInt(r.session);
+                    b.put((byte) RoomDiscovery.FLAG_AUTHORITATIVE);
+                    _network.sendDiscovery(RoomDiscovery.CODE_I_AM_SERVER, _buffer, b.position());
+                }
+                break;
+            }
+            case RoomDiscovery.CODE_JOIN: {
+                Room r = findRoom(data.getInt());
+                if (r == null)
+                    return;
+                int peer = r.members.lookup(from);
+                if (peer < 0) {
+                    // Too late, or too many. They'll give up and look again
+                    if (r.state != null || r.members.getCount() >= ROOM_SIZE)
+                        return;
+                    peer = r.members.add(from);
+                    if (peer < 0)
+                        return;
+                }
+                r.lastHeard[peer] = _ticks;
+
+                // Answer every time, in case the last answer was lost
+                ByteBuffer b = ByteBuffer.wrap(_buffer);
+                b.putInt(r.session);
+                b.putInt(from);
+                _network.sendDiscovery(RoomDiscovery.CODE_ACCEPTED, _buffer, b.position());
+                break;
+            }
+        }
+    }
+
+    @Override
+    public void onNetworkError(Exception e, String text) {
+        System.err.println(e.getMessage() + " " + text);
+    }
+    //endregion
+
+    //region Rooms
+
+    private Room findRoom(int session) {
+        for (Room r : _rooms) {
+            if (r.session == session)
+                return r;
+        }
+        return null;
+    }
+
+    /**
+     * Finds a room that new players can join, making one if needed
+     *
+     * @return Room, or null if we're running as many as we can
+     */
+    private Room openRoom() {
+        for (Room r : _rooms) {
+            if (r.state == null && r.members.getCount() < ROOM_SIZE)
+                return r;
+        }
+        if (_rooms.size() >= MAX_ROOMS)
+            return null;
+
+        int session;
+        do {
+            session = _random.nextInt();
+        } while (session == MultiplayerNetwork.DISCOVERY_SESSION || findRoom(session) != null);
+
+        Room r = new Room(session);
+        _rooms.add(r);
+        _network.addSession(session);
+        // Only joined so datagrams to watchers get numbered. Nobody talks in it
+        _network.addSession(r.spectators);
+        return r;
+    }
+
+    private void startRoom(Room r) {
+        if (r.members.getCount() == 0)
+            return;
+
+        LevelDescriptor level = _level.withSeed(_random.nextLong());
+        r.state = level.create(level.toString());
+        // Nobody plays on the host itself
+        r.state.removePlayer(r.state.getPlayer());
+        for (int i = 0; i < PeerRegistry.MAX_PEERS; i++) {
+            if (r.members.isUsed(i))
+                r.players[i] = r.state.addPlayer();
+        }
+
+        ByteBuffer b = ByteBuffer.allocate(level.getSize());
+        level.write(b);
+        r.start = b.array();
+        _network.queueReliableTo(r.session, CODE_START, r.start, r.start.length);
+    }
+
+    private void leave(Room r, int peer) {
+        if (r.players[peer] != null) {
+            r.state.removePlayer(r.players[peer]);
+            r.players[peer] = null;
+        }
+        r.members.remove(peer);
+
+        // The one everyone was waiting for may have just left
+        if (r.state == null && r.members.getCount() > 0 && r.members.allReady())
+            startRoom(r);
+    }
+
+    /**
+     * Drops members we haven't heard from in a while
+     * The network does this too, but only for peers that made it into the session
+     */
+    private void dropSilent(Room r) {
+        for (int i = 0; i < PeerRegistry.MAX_PEERS; i++) {
+            if (r.members.isUsed(i) && _ticks - r.lastHeard[i] > TIMEOUT_TICKS)
+                leave(r, i);
+        }
+    }
+
+    private void closeRoom(Room r) {
+        // An empty frame tells watchers it's over, sooner than them noticing we've gone quiet
+        if (r.state != null) {
+            int code = r.stream.write(r.state.getGameTime(), 0, _streamNodes, _streamFlags, _streamX, _streamY);
+            _network.queueCodeTo(r.spectators, code, r.stream.getPayload(), r.stream.getPayloadLength());
+        }
+        _rooms.remove(r);
+        _network.removeSession(r.session);
+        _network.removeSession(r.spectators);
+    }
+
+    private void sendSnapshot(Room r) {
+        _snapshot.clear();
+        _snapshot.putInt(r.state == null ? 0 : r.state.getGameTime());
+        if (r.state != null) {
+            IntVec2 levelSize = r.state.getLevelSize();
+            for (int i = 0; i < PeerRegistry.MAX_PEERS; i++) {
+                PlayerSprite p = r.players[i];
+                if (p == null)
+                    continue;
+                // Players off screen are sent less often
+                if (!AreaOfInterest.isDue(AreaOfInterest.classify(r.state, p), r.snapshots))
+                    continue;
+                if (_snapshot.remaining() < ENTRY_SIZE) {
+                    // Carry on in another message
+                    _network.queueCodeTo(r.session, CODE_SNAPSHOT, _snapshot.array(), _snapshot.position());
+                    _snapshot.clear();
+                    _snapshot.putInt(r.state.getGameTime());
+                }
+
+                _snapshot.putInt(r.members.getNode(i));
+                _snapshot.put((byte) getFlags(p));
+                _snapshot.putShort((short) PositionCodec.quantisePosition(p.getXPos(), levelSize.x));
+                _snapshot.putShort((short) PositionCodec.quantisePosition(p.getYPos(), levelSize.y));
+                _snapshot.putShort((short) PositionCodec.quantiseVelocity(p.getMotion().x));
+                _snapshot.putShort((short) PositionCodec.quantiseVelocity(p.getMotion().y));
+            }
+        }
+        _network.queueCodeTo(r.session, CODE_SNAPSHOT, _snapshot.array(), _snapshot.position());
+        r.snapshots++;
+    }
+
+    private static int getFlags(PlayerSprite p) {
+        int flags = 0;
+        if (p.isFinished())
+            flags |= FLAG_FINISHED;
+        if (p.isDead())
+            flags |= FLAG_DEAD;
+        return flags;
+    }
+
+    /**
+     * Sends where everyone is to the room's watchers
+     */
+    private void sendSpectators(Room r) {
+        IntVec2 levelSize = r.state.getLevelSize();
+        int count = 0;
+        for (int i = 0; i < PeerRegistry.MAX_PEERS && count < ROOM_SIZE; i++) {
+            PlayerSprite p = r.players[i];
+            if (p == null)
+                continue;
+            _streamNodes[count] = r.members.getNode(i);
+            _streamFlags[count] = getFlags(p);
+            _streamX[count] = PositionCodec.quantisePosition(p.getXPos(), levelSize.x);
+            _streamY[count] = PositionCodec.quantisePosition(p.getYPos(), levelSize.y);
+            count++;
+        }
+
+        int code = r.stream.write(r.state.getGameTime(), count, _streamNodes, _streamFlags, _streamX, _streamY);
+        // Anyone who starts watching part way through still needs to build the level
+        if (code == SpectatorStream.CODE_KEYFRAME)
+            _network.queueCodeTo(r.spectators, CODE_START, r.start, r.start.length);
+        _network.queueCodeTo(r.spectators, code, r.stream.getPayload(), r.stream.getPayloadLength());
+    }
+    //endregion
+
+    //region Quantisation
+
+    /**
+     * Converts a player's tilt into fixed point
+     *
+     * @param g Gravity along one axis
+     * @return Signed 16 bit value
+     */
+    public static int quantiseInput(float g) {
+        int q = Math.round(g / INPUT_RANGE * Short.MAX_VALUE);
+        return Math.max(-Short.MAX_VALUE, Math.min(Short.MAX_VALUE, q));
+    }
+
+    /**
+     * Converts a fixed point tilt back into gravity
+     *
+     * @param q Signed 16 bit value
+     * @return Gravity along one axis
+     */
+    public static float dequantiseInput(int q) {
+        return q * INPUT_RANGE / Short.MAX_VALUE;
+    }
+    //endregion
+
+    /**
+     * Runs a host on its own
+     *
+     * @param args Optionally, the name of the level to play (see GameState.Level)
+     */
+    public static void main(String[] args) {
+        GameState.Level level = args.length > 0 ? GameState.Level.valueOf(args[0]) : DEFAULT_LEVEL;
+        if (GameState.isLockstepOnly(level)) {
+            System.err.println(level + " can only be played in lockstep, not run by a GameHost");
+            System.exit(1);
+        }
+        MultiplayerNetwork network = new MultiplayerNetwork();
+        GameHost host = new GameHost(network, new LevelDescriptor(level, 0));
+        host.start();
+        System.out.println("Hosting " + level + " as node " + network.getNodeId());
+    }
+}
@@ -0,0 +1,99 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+/**
+ * Random numbers for a single game world
+ *
+ * Every device seeding one with the same value gets the same numbers, so worlds built
+ * and simulated with it stay identical. Unlike java.util.Random, the state can be read
+ * and put back, so a world can be saved and rewound.
+ *
+ * Uses SplitMix64. Not thread safe, but a world is only ever updated by one thread.
+ * Anything that doesn't have a world of its own, like picking a new seed, uses forThread(),
+ * so worlds being built on many threads at once don't fight over one generator.
+ */
+public strictfp class GameRandom {
+
+    private long _state;
+
+    private static final ThreadLocal<GameRandom> THREAD = new ThreadLocal<GameRandom>() {
+        @Override
+        protected GameRandom initialValue() {
+            // Threads started together still get different seeds, from their ids
+            return new GameRandom(System.nanoTime() ^ Thread.currentThread().getId() * 0x9E3779B97F4A7C15L);
+        }
+    };
+
+    /**
+     * Creates a generator
+     *
+     * @param seed Seed. Generators with the same seed give the same numbers
+     */
+    public GameRandom(long seed) {
+        _state = seed;
+    }
+
+    /**
+     * Gets this thread's generator, for numbers that don't have to agree between devices
+     * Such as seeds for new levels, and colours. Never use it for anything in a world
+     *
+     * @return Generator only ever used by this thread
+     */
+    public static GameRandom forThread() {
+        return THREAD.get();
+    }
+
+    //region Getters & Setters
+
+    /**
+     * Gets the current state, so it can be restored later
+     *
+     * @return State
+     */
+    public long getState() {
+        return _state;
+    }
+
+    /**
+     * Restores a state given by getState()
+     *
+     * @param state State
+     */
+    public void setState(long state) {
+        _state = state;
+    }
+    //endregion
+
+    /**
+     * Gets the next random 64 bits
+     *
+     * @return Random long
+     */
+    public long nextLong() {
+        long z = (_state += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Gets a random int between 0 (inclusive) and bound (exclusive)
+     *
+     * @param bound Upper bound. Must be positive
+     * @return Random int
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0)
+            throw new IllegalArgumentException("Bound must be positive");
+        // Top 31 bits, scaled into range
+        return (int) (((nextLong() >>> 33) * bound) >>> 31);
+    }
+
+    /**
+     * Gets a random float between 0 (inclusive) and 1 (exclusive)
+     *
+     * @return Random float
+     */
+    public float nextFloat() {
+        return (nextLong() >>> 40) / (float) (1 << 24);
+    }
+}
@@ -0,0 +1,58 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+/**
+ * Everything about a GameState that changes during play, at one tick
+ *
+ * Filled in by GameState.save() and put back by GameState.restore(). Sprites are kept
+ * by reference along with their positions, so a snapshot can only be restored into
+ * the state it came from. Arrays grow as needed and are reused, so saving every tick
+ * doesn't make garbage.
+ */
+public class GameSnapshot {
+
+    //region Variables
+    int ticks;
+    int score;
+    GameState.State state;
+    float offsetX;
+    float offsetY;
+    long random;
+    float sharedGravX;
+    float sharedGravY;
+
+    int count; // Sprites in the game when saved
+    GenericSprite[] sprites = new GenericSprite[0];
+    float[] values = new float[0]; // GenericSprite.SAVED_FLOATS per sprite
+    int[] extras = new int[0];
+    float[] edges = new float[0]; // Right and bottom of each sprite. Moving keeps them apart from left and top, not exactly a width away
+    byte[] rest = new byte[0]; // ASLEEP and TOUCHED for each sprite
+    //endregion
+
+    static final byte ASLEEP = 1;
+    static final byte TOUCHED = 2;
+
+    /**
+     * Gets the tick the snapshot was taken at
+     *
+     * @return Number of updates the game had had
+     */
+    public int getGameTime() {
+        return ticks;
+    }
+
+    /**
+     * Makes sure there's room for a number of sprites
+     *
+     * @param count Number of sprites
+     */
+    void ensureCapacity(int count) {
+        if (sprites.length >= count)
+            return;
+        int size = Math.max(count, sprites.length * 2);
+        sprites = new GenericSprite[size];
+        values = new float[size * GenericSprite.SAVED_FLOATS];
+        extras = new int[size];
+        edges = new float[size * 2];
+        rest = new byte[size];
+    }
+}
@@ -0,0 +1,1541 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Created by Stuart on 25/09/2015.
+ *
+ * Updates are deterministic. Given the same seed, level and inputs, every device
+ * ends up with exactly the same world, tick for tick. Anything random during play
+ * must come from getRandom(), and float maths is strictfp.
+ */
+public strictfp class GameState {
+
+    //region Variables
+    protected float[] _grav;
+    private final float[] _sharedGrav = new float[2]; // See getSharedGravity()
+    protected List<GenericSprite> _sprites;
+    protected IntVec2 _levelSize;
+    protected int _score;
+    protected PlayerSprite _player;
+    protected String _title;
+    protected int _ticks;
+    protected boolean _isComplete;
+    protected Vec2 _offset;
+    protected State _state;
+    protected Vec2 _spawn;
+    protected boolean _refereed;
+    protected boolean _watching; // Only showing a game played elsewhere
+    protected boolean _hidePlayer;
+    protected long _seed;
+    protected GameRandom _random;
+    protected InputRecorder _recorder; // Null unless recording
+    protected WorkerPool _workers; // Null to update on one thread
+    private final TimerWheel _timers = new TimerWheel(64); // Sprites' timed effects, see schedule()
+
+    // Reused by every update(), see there
+    private static final int PARALLEL_MIN_SPRITES = 512; // Fewer than this isn't worth waking the workers for
+    private GenericSprite[] _all = new GenericSprite[0];
+    private int[] _movers = new int[0];
+    private int _moverCount;
+    private int[] _targets = new int[0];
+    private int _targetCount;
+    private boolean[] _awakeTargets = new boolean[0]; // Whether each target was awake. Only those can have touched a sleeping mover
+    private final SpriteGrid _targetGrid = new SpriteGrid(); // Only built when there are enough pairs to check
+    private boolean _gridded;
+    private static final int GRID_MIN_PAIRS = 8192; // Fewer movers times targets than this are quicker checked one by one
+    private static final int CELLS_PER_TARGET = 4; // Cells get bigger rather than the grid having more than this
+    private boolean _regravity; // Gravity has changed since the last update, so some sleeping sprites may have to wake
+    private int _dynamicCount;
+    private float[] _walls = new float[0]; // Left, top, right and bottom of every wall, for sweep()
+    private int _wallCount;
+    private static final float SWEEP_DEPTH = 0.01f; // How far into a wall sweep() lets a sprite go, so it bounces off
+    private int[][] _contacts = new int[1][16]; // Pairs of sprite indexes, one list for each chunk
+    private int[] _contactCounts = new int[1];
+    private final List<GenericSprite> _toRemove = new ArrayList<GenericSprite>();
+    private Box _camera;
+    private final BodySolver _solver = new BodySolver();
+
+    public enum State {Waiting, Playing, Spectating}
+
+    public enum Level {Random, Scrolling, Empty, LevelOne, Death, Happy, Maze, Balls}
+
+    public static final int BALL_COUNT = 1000; // In Level.Balls
+
+    /**
+     * Whether a level can only be played with others in lockstep
+     * Loose balls are never sent over the network, so they only stay in step when every device
+     * simulates the whole world from the same inputs. Sharing positions, or with a GameHost,
+     * every device's balls would go their own way
+     *
+     * @param l Level
+     * @return True if it needs lockstep to be played with others
+     */
+    public static boolean isLockstepOnly(Level l) {
+        return l == Level.Balls;
+    }
+    //endregion
+
+    /**
+     * Class used to pass values between drawing and updating classes
+     */
+    public GameState(String title, IntVec2 levelSize, Vec2 playerPosition) {
+        this(title, levelSize, playerPosition, new ArrayList<GenericSprite>());
+    }
+
+    /**
+     * Class used to pass values between drawing and updating classes
+     */
+    public GameState(String title, IntVec2 levelSize, Vec2 playerPosition, List<GenericSprite> sprites) {
+        this(title, levelSize, playerPosition, sprites, State.Playing);
+    }
+
+    /**
+     * Class used to pass values between drawing and updating classes
+     */
+    public GameState(String title, IntVec2 levelSize, Vec2 playerPosition, List<GenericSprite> sprites, State state) {
+        _grav = new float[3];
+        _sprites = sprites; // As it's a reference, external class can still add sprites
+        _levelSize = levelSize;
+        _spawn = new Vec2(playerPosition.x, playerPosition.y);
+        _player = new PlayerSprite(playerPosition.x, playerPosition.y);
+        _sprites.add(_player);
+        _title = title;
+        _offset = new Vec2(0, 0);
+        _state = state;
+        _seed = GameRandom.forThread().nextLong();
+        _random = new GameRandom(_seed);
+    }
+
+    //region Getters & Setters
+
+    /**
+     * Gets the title of the level to display
+     *
+     * @return Title
+     */
+    public String getTitle() {
+        return _title;
+    }
+
+    /**
+     * Gets the gravity value array
+     *
+     * @return Gravity values
+     */
+    public float[] getGravity() {
+        return _grav;
+    }
+
+    /**
+     * Gets the gravity for everything that isn't a player, like loose balls
+     * On its own that's just the device's tilt. But when players' input comes over the network
+     * (lockstep, rollback, or a GameHost), every device has to agree, so it's the average of
+     * every player's input instead. Worked out at the start of each update
+     *
+     * @return X and Y acceleration
+     */
+    public float[] getSharedGravity() {
+        return _sharedGrav;
+    }
+
+    /**
+     * Gets the dimensions of the level
+     *
+     * @return Level size
+     */
+    public IntVec2 getLevelSize() {
+        return _levelSize;
+    }
+
+    /**
+     * Gets the part of the level that's on screen
+     * Every device shows the same part, as the offset only depends on the game time
+     *
+     * @return Visible area, in level coordinates
+     */
+    public Box getCamera() {
+        return new Box(-_offset.x, -_offset.y, _levelSize.x - _offset.x, _levelSize.y - _offset.y);
+    }
+
+    /**
+     * Gets the player sprite in this game
+     *
+     * @return Player
+     */
+    public PlayerSprite getPlayer() {
+        return _player;
+    }
+
+    /**
+     * Gets a list of all sprites in the GameState
+     *
+     * @return List of GenericSprite
+     */
+    public List<GenericSprite> getSprites() {
+        return _sprites;
+    }
+
+    /**
+     * Gets the score of this game
+     *
+     * @return
+     */
+    public int getScore() {
+        return _score;
+    }
+
+    /**
+     * Gets the number of updates the game has had
+     *
+     * @return Number of ticks
+     */
+    public int getGameTime() {
+        return _ticks;
+    }
+
+    /**
+     * Gets the number of updates the game has had
+     *
+     * @return Number of ticks
+     */
+    public State getState() {
+        return _state;
+    }
+
+    /**
+     * Gets the seed the level was generated from
+     *
+     * @return Seed
+     */
+    public long getSeed() {
+        return _seed;
+    }
+
+    /**
+     * Gets where players start
+     *
+     * @return Spawn position
+     */
+    public Vec2 getSpawn() {
+        return _spawn;
+    }
+
+    /**
+     * Reseeds the world's random numbers
+     * For levels built without GENERATE, which need to play the same everywhere
+     *
+     * @param seed Seed
+     */
+    public void setSeed(long seed) {
+        _seed = seed;
+        _random = new GameRandom(seed);
+    }
+
+    /**
+     * Gets the world's random number generator
+     * Anything random that affects the game must come from here
+     *
+     * @return Generator
+     */
+    public GameRandom getRandom() {
+        return _random;
+    }
+
+    /**
+     * Whether a GameHost decides when our player finishes or dies
+     *
+     * @return True if the game is refereed
+     */
+    public boolean isRefereed() {
+        return _refereed;
+    }
+
+    /**
+     * Sets whether a GameHost decides when our player finishes or dies
+     * If so, touching the finish or death only counts once the host says so
+     *
+     * @param refereed Whether the game is refereed
+     */
+    public void setRefereed(boolean refereed) {
+        _refereed = refereed;
+        if (_recorder != null)
+            _recorder.setRefereed(refereed);
+    }
+
+    /**
+     * Whether the game is only being shown, not simulated
+     *
+     * @return True once spectate() has been called
+     */
+    public boolean isWatching() {
+        return _watching;
+    }
+
+    /**
+     * Stops simulating the game, and just shows it
+     * Sprites still move, and ghosts go where they're told, but nothing collides
+     *
+     * @param showPlayer Whether to keep drawing our own player where it ended up. Not if we never played
+     */
+    public void spectate(boolean showPlayer) {
+        if (_recorder != null)
+            _recorder.spectate(showPlayer);
+        _watching = true;
+        _wallCount = 0;
+        _state = State.Spectating;
+        if (!showPlayer && _player != null) {
+            _hidePlayer = true;
+            _sprites.remove(_player);
+        }
+    }
+
+    /**
+     * Sets the values of gravity in the array
+     *
+     * @param x Acceleration in X direction
+     * @param y Acceleration in Y direction
+     * @param z Acceleration in Z direction
+     */
+    public void setGravity(float x, float y, float z) {
+        if (x != _grav[0] || y != _grav[1])
+            _regravity = true;
+        _grav[0] = x;
+        _grav[1] = y;
+        _grav[2] = z;
+    }
+
+    /**
+     * Sets the score to the specified value
+     *
+     * @param score New score
+     */
+    public void setScore(int score) {
+        _score = score;
+    }
+
+    /**
+     * Adds the given value onto the score
+     *
+     * @param score Number to add to the score
+     */
+    public void addScore(int score) {
+        _score += score;
+    }
+
+    /**
+     * Gets the recorder everything that happens to the game is going to
+     *
+     * @return Recorder, or null if not recording
+     */
+    public InputRecorder getRecorder() {
+        return _recorder;
+    }
+
+    /**
+     * Starts recording the game, so InputReplay can play it again
+     * Must be called before anything happens to a new level
+     *
+     * @param recorder Recorder, made with the descriptor the level was built from
+     */
+    public void setRecorder(InputRecorder recorder) {
+        _recorder = recorder;
+    }
+
+    /**
+     * Stops recording, and finishes the recording off with where the game ended up
+     *
+     * @return False if the recording couldn't all be written, see InputRecorder.getError()
+     */
+    public boolean stopRecording() {
+        InputRecorder recorder = _recorder;
+        _recorder = null;
+        return recorder == null || recorder.close(this);
+    }
+
+    /**
+     * Gets the threads updates are split across
+     *
+     * @return Pool, or null if updates only use the calling thread
+     */
+    public WorkerPool getWorkers() {
+        return _workers;
+    }
+
+    /**
+     * Splits updates across a pool of threads
+     * Only worth it for worlds with thousands of sprites. Smaller ones still update on one thread
+     * The world ends up exactly the same whatever the number of threads
+     *
+     * @param workers Pool, or null to only use the thread calling update()
+     */
+    public void setWorkers(WorkerPool workers) {
+        _workers = workers;
+    }
+    //endregion
+
+    //region Players
+
+    /**
+     * Adds another player at the start position
+     * Used by a GameHost, which simulates every player in its room
+     *
+     * @return New player. Should be given its own input
+     */
+    public PlayerSprite addPlayer() {
+        if (_recorder != null)
+            _recorder.addPlayer();
+        PlayerSprite p = new PlayerSprite(_spawn.x, _spawn.y);
+        p.setInput(0, 0);
+        _sprites.add(p);
+        return p;
+    }
+
+    /**
+     * Removes a player from the game
+     *
+     * @param p Player to remove. May be our own player, when nobody is playing on this device
+     */
+    public void removePlayer(PlayerSprite p) {
+        int index = _sprites.indexOf(p);
+        if (_recorder != null && (index >= 0 || p == _player))
+            _recorder.removeSprite(index);
+        if (index >= 0)
+            _sprites.remove(index);
+        if (p == _player)
+            _player = null;
+    }
+
+    /**
+     * Makes one of the players our own
+     * Used when every player is simulated, so the players can be added in an agreed order
+     *
+     * @param p Player, which must already be in the game
+     */
+    public void setPlayer(PlayerSprite p) {
+        if (_recorder != null)
+            _recorder.setPlayer(_sprites.indexOf(p));
+        _player = p;
+    }
+
+    /**
+     * Gives a player its own gravity, instead of the game's
+     * Used for players whose input comes over the network
+     *
+     * @param p Player, which must already be in the game
+     * @param x Acceleration in X direction
+     * @param y Acceleration in Y direction
+     */
+    public void setInput(PlayerSprite p, float x, float y) {
+        if (_recorder != null) {
+            float[] input = p.getInput();
+            if (input == null || Float.floatToRawIntBits(input[0]) != Float.floatToRawIntBits(x)
+                    || Float.floatToRawIntBits(input[1]) != Float.floatToRawIntBits(y))
+                _recorder.input(_sprites.indexOf(p), x, y);
+        }
+        p.setInput(x, y);
+    }
+
+    /**
+     * Moves our player to where a GameHost says it is
+     *
+     * @param x  X position
+     * @param y  Y position
+     * @param dx X motion
+     * @param dy Y motion
+     */
+    public void movePlayer(float x, float y, float dx, float dy) {
+        _player.setXPos(x);
+        _player.setYPos(y);
+        _player.setMotion(dx, dy);
+        if (_recorder != null)
+            _recorder.movePlayer(_player);
+    }
+
+    /**
+     * Ends the game for our own player
+     *
+     * @param finished Whether the player got to the finish
+     */
+    public void endGame(boolean finished) {
+        if (_recorder != null)
+            _recorder.endGame(finished);
+        end(finished);
+    }
+
+    private void end(boolean finished) {
+        _state = State.Spectating;
+        if (finished)
+            addScore(1);
+    }
+
+    private void playerFinished(PlayerSprite p) {
+        if (p == _player) {
+            if (_refereed)
+                return; // Only counts once the host says so
+            end(true);
+        }
+        p.setFinished();
+    }
+
+    private void playerDied(PlayerSprite p) {
+        if (p == _player) {
+            if (_refereed)
+                return;
+            end(false);
+        }
+        p.setDead();
+    }
+    //endregion
+
+    //region Ghosts
+
+    /**
+     * Adds the ghost of a player on another device
+     *
+     * @param ghost Ghost, wherever it was last put
+     */
+    public void addGhost(MultiPlayerGhostSprite ghost) {
+        _sprites.add(ghost);
+        if (_recorder != null)
+            _recorder.addGhost(ghost);
+    }
+
+    /**
+     * Removes a ghost, once its player has gone
+     *
+     * @param ghost Ghost
+     */
+    public void removeGhost(MultiPlayerGhostSprite ghost) {
+        int index = _sprites.indexOf(ghost);
+        if (index < 0)
+            return;
+        if (_recorder != null)
+            _recorder.removeSprite(index);
+        _sprites.remove(index);
+    }
+
+    /**
+     * Should be called after the network moves a ghost, so a recording knows where it went
+     *
+     * @param ghost Ghost that was moved
+     */
+    public void ghostMoved(MultiPlayerGhostSprite ghost) {
+        if (_recorder == null)
+            return;
+        int index = _sprites.indexOf(ghost);
+        if (index >= 0)
+            _recorder.moveGhost(index, ghost);
+    }
+    //endregion
+
+    /**
+     * Update loop
+     * Handles all updating of the game
+     *
+     * Done in three phases, so big worlds can share it out across threads (see setWorkers()):
+     * first every pair of sprites that touch is found, then they're bounced off each other, then
+     * everything moves. Nothing moves while contacts are found, so that can be done in any order.
+     * Bouncing only changes the motion of the sprite that hit something, so sprites are bounced
+     * in parallel, each with its own contacts in order. Contacts that change anything else
+     * (bumpers, finishing, dying, disappearing walls) are done afterwards, one sprite at a time,
+     * in the order of the sprite list. Each sprite only moves itself. So the world comes out
+     * exactly the same as if every pair had been done in order on one thread, however many there are.
+     * IDynamic sprites are then pushed about by BodySolver, which is just as happy on any number of threads.
+     * Sprites that have come to rest are put to sleep (see GenericSprite.rest()) and skip all of this,
+     * except being hit, until something touches them, moves them, or changes the gravity.
+     */
+    public void update() {
+        // Allows us to handle updates separately
+        // from drawing if we want to
+        // Principle of game design
+        // Stops things going wrong when FPS forced to different values
+        _ticks++;
+        if (_recorder != null)
+            _recorder.tick(_grav);
+
+        int count = fillSprites();
+        shareGravity(count);
+        if (!_watching) { // Nothing collides when we're only showing the game
+            findBodies(count);
+            int chunks = _workers == null ? 1 : _workers.getChunks();
+            if (_contacts.length < chunks) {
+                _contacts = new int[chunks][16];
+                _contactCounts = new int[chunks];
+            }
+            for (int c = 0; c < _contactCounts.length; c++)
+                _contactCounts[c] = 0;
+
+            runChunks(_moverCount, _findContacts);
+            runChunks(_moverCount, _resolveContacts);
+            for (int c = 0; c < _contactCounts.length; c++)
+                resolve(c, true);
+
+            if (!_toRemove.isEmpty()) {
+                for (GenericSprite s : _toRemove)
+                    _sprites.remove(s);
+                _toRemove.clear();
+                count = fillSprites();
+                findWalls(count); // So nothing is swept into a wall that's gone
+            }
+
+            if (_dynamicCount > 0)
+                solveBodies(count);
+        }
+
+        integrate(count);
+        _timers.advance(_ticks);
+
+        // Don't hang on to sprites that might be taken out of the level
+        for (int i = 0; i < count; i++)
+            _all[i] = null;
+    }
+
+    //region Update phases
+
+    /**
+     * Works out getSharedGravity(), from players' inputs in the order they're in the level
+     * Sleeping sprites are woken if it has changed
+     */
+    private void shareGravity(int count) {
+        float x = 0;
+        float y = 0;
+        int inputs = 0;
+        for (int i = 0; i < count; i++) {
+            GenericSprite s = _all[i];
+            if ((s._kind & GenericSprite.PLAYER) == 0)
+                continue;
+            float[] input = ((PlayerSprite) s).getInput();
+            if (input != null) {
+                x += input[0];
+                y += input[1];
+                inputs++;
+            }
+        }
+        if (inputs > 0) {
+            x /= inputs;
+            y /= inputs;
+        } else {
+            x = _grav[0];
+            y = _grav[1];
+        }
+        if (x != _sharedGrav[0] || y != _sharedGrav[1]) {
+            _sharedGrav[0] = x;
+            _sharedGrav[1] = y;
+            _regravity = true;
+        }
+    }
+
+    /**
+     * Moves everything, apart from sprites that are asleep and have no reason to wake up
+     */
+    private void integrate(int count) {
+        _camera = getCamera();
+        runChunks(count, _integrate);
+        _regravity = false;
+    }
+
+    /**
+     * Lets BodySolver push loose balls about, and anything they hit
+     */
+    private void solveBodies(int count) {
+        if (!_solver.build(this, _all, count))
+            return;
+        for (int i = 0; i < BodySolver.PASSES; i++) {
+            runChunks(_solver.getBodyCount(), _solveBodies);
+            _solver.endPass();
+        }
+        runChunks(_solver.getBodyCount(), _applyBodies);
+        _solver.clear();
+    }
+
+    private int fillSprites() {
+        int count = _sprites.size();
+        if (_all.length < count)
+            _all = new GenericSprite[count + count / 2];
+        for (int i = 0; i < count; i++)
+            _all[i] = _sprites.get(i);
+        return count;
+    }
+
+    /**
+     * Sorts out which sprites can hit anything, and which can be hit
+     * Walls never go looking for what they touch, which saves checking most pairs
+     */
+    private void findBodies(int count) {
+        if (_movers.length < count) {
+            _movers = new int[count];
+            _targets = new int[count];
+            _awakeTargets = new boolean[count];
+        }
+        _moverCount = 0;
+        _targetCount = 0;
+        _dynamicCount = 0;
+        _wallCount = 0;
+        for (int i = 0; i < count; i++) {
+            GenericSprite s = _all[i];
+            int kind = s._kind;
+            if ((kind & GenericSprite.DYNAMIC) != 0)
+                _dynamicCount++;
+            if ((kind & GenericSprite.TARGET) != 0) {
+                // Movers are woken while contacts are found, so whether targets were awake is kept from before
+                _awakeTargets[_targetCount] = !s._asleep;
+                _targets[_targetCount++] = i;
+            }
+            if ((kind & GenericSprite.WALL) != 0)
+                addWall(s._rect);
+
+            if ((kind & GenericSprite.PLAYER) != 0 && ((PlayerSprite) s).isOut())
+                continue; // Finished players don't touch anything
+            if ((kind & GenericSprite.GHOST) != 0)
+                continue; // Neither do ghosts, wherever they are
+            if ((kind & (GenericSprite.COLLIDES | GenericSprite.PLAYER)) != 0)
+                _movers[_moverCount++] = i;
+        }
+
+        _gridded = (long) _moverCount * _targetCount >= GRID_MIN_PAIRS;
+        if (!_gridded)
+            return;
+        // Cells about as big as the biggest mover, so each only looks in a few
+        float size = 0;
+        for (int m = 0; m < _moverCount; m++) {
+            Box r = _all[_movers[m]]._rect;
+            size = Math.max(size, Math.max(r.width(), r.height()));
+        }
+        _targetGrid.fit(_all, _targets, _targetCount, size, _targetCount * CELLS_PER_TARGET + 16);
+    }
+
+    /**
+     * Finds every wall again, after sprites have been taken out of the level
+     */
+    private void findWalls(int count) {
+        _wallCount = 0;
+        for (int i = 0; i < count; i++) {
+            GenericSprite s = _all[i];
+            if ((s._kind & GenericSprite.WALL) != 0)
+                addWall(s._rect);
+        }
+    }
+
+    /**
+     * Keeps where a wall is, for sweep()
+     */
+    private void addWall(Box r) {
+        if (_walls.length < (_wallCount + 1) * 4) {
+            float[] bigger = new float[Math.max(64, _walls.length * 2)];
+            System.arraycopy(_walls, 0, bigger, 0, _wallCount * 4);
+            _walls = bigger;
+        }
+        int i = _wallCount++ * 4;
+        _walls[i] = r.left;
+        _walls[i + 1] = r.top;
+        _walls[i + 2] = r.right;
+        _walls[i + 3] = r.bottom;
+    }
+
+    /**
+     * How far a sprite can move before it hits a wall, so fast ones can't skip straight over one
+     * Walls are taken from where they were before anything moved, so any thread can ask
+     *
+     * @param s  Sprite, taken to be a circle as wide as it is
+     * @param dx Move in X
+     * @param dy Move in Y
+     * @return Fraction of the move it can make, from 0 to 1. Short of 1 it ends up just inside
+     * the wall, so it bounces off the next update the same way it always has
+     */
+    float sweep(GenericSprite s, float dx, float dy) {
+        Box r = s._rect;
+        float radius = r.width() / 2;
+        float cx = r.centerX();
+        float cy = r.centerY();
+        // Anything the whole move doesn't reach is skipped without working it out
+        float minX = Math.min(r.left, r.left + dx), maxX = Math.max(r.right, r.right + dx);
+        float minY = Math.min(r.top, r.top + dy), maxY = Math.max(r.bottom, r.bottom + dy);
+
+        float first = Sweep.MISS;
+        for (int i = 0; i < _wallCount * 4; i += 4) {
+            if (_walls[i] >= maxX || _walls[i + 2] <= minX || _walls[i + 1] >= maxY || _walls[i + 3] <= minY)
+                continue;
+            first = Math.min(first, Sweep.circleBox(cx, cy, radius, dx, dy, _walls[i], _walls[i + 1], _walls[i + 2], _walls[i + 3]));
+        }
+        if (first > 1)
+            return 1;
+        return Math.min(1, first + SWEEP_DEPTH / (float) Math.sqrt(dx * dx + dy * dy));
+    }
+
+    /**
+     * Finds everything each mover in a chunk is touching
+     * In a big world, only targets in the cells a mover covers are looked at. Either way, a mover's
+     * contacts are in the order of the sprite list, as if every target had been checked in turn.
+     * Only reads where sprites are, so chunks can run at the same time
+     */
+    private final WorkerPool.Task _findContacts = new WorkerPool.Task() {
+        @Override
+        public void run(int chunk, int from, int to) {
+            _contactCounts[chunk] = 0;
+            SpriteGrid grid = _targetGrid;
+            int cols = grid.getColumns();
+            for (int m = from; m < to; m++) {
+                GenericSprite s = _all[_movers[m]];
+                // Nothing asleep moves, and nothing goes to sleep touching anything, so sleepers can only touch what's awake
+                boolean asleep = s._asleep;
+                if (!_gridded) {
+                    for (int j = 0; j < _targetCount; j++) {
+                        if (!asleep || _awakeTargets[j])
+                            findContact(chunk, m, j);
+                    }
+                    continue;
+                }
+
+                Box r = s._rect;
+                int x0 = grid.column(r.left), x1 = grid.column(r.right);
+                int y0 = grid.row(r.top), y1 = grid.row(r.bottom);
+                int first = _contactCounts[chunk];
+                for (int y = y0; y <= y1; y++) {
+                    for (int x = x0; x <= x1; x++) {
+                        int cell = y * cols + x;
+                        for (int k = grid.start(cell); k < grid.end(cell); k++) {
+                            int j = grid.get(k);
+                            if ((!asleep || _awakeTargets[j]) && grid.isFirst(j, x, y, x0, y0))
+                                findContact(chunk, m, j);
+                        }
+                    }
+                }
+
+                // Cells were gone through in turn, so put the targets back in order. There are only ever a few
+                int[] contacts = _contacts[chunk];
+                int n = _contactCounts[chunk];
+                for (int i = first + 3; i < n; i += 2) {
+                    int target = contacts[i];
+                    int c = i;
+                    while (c > first + 1 && contacts[c - 2] > target) {
+                        contacts[c] = contacts[c - 2];
+                        c -= 2;
+                    }
+                    contacts[c] = target;
+                }
+            }
+        }
+    };
+
+    /**
+     * Adds a mover and target to a chunk's contacts if they're touching
+     *
+     * @param chunk Chunk finding contacts
+     * @param m     Mover, from _movers
+     * @param j     Target, from _targets
+     */
+    private void findContact(int chunk, int m, int j) {
+        GenericSprite s = _all[_movers[m]];
+        GenericSprite t = _all[_targets[j]];
+        if (t == s)
+            return;
+        if (((t._kind & GenericSprite.COLLIDABLE) != 0 ? (s._kind & GenericSprite.COLLIDES) != 0 : (s._kind & GenericSprite.PLAYER) != 0) && t.intersects(s)) {
+            s._touched = true;
+            s._asleep = false;
+            int[] contacts = _contacts[chunk];
+            int n = _contactCounts[chunk];
+            if (n + 2 > contacts.length) {
+                int[] bigger = new int[contacts.length * 2];
+                System.arraycopy(contacts, 0, bigger, 0, n);
+                contacts = bigger;
+                _contacts[chunk] = contacts;
+            }
+            contacts[n] = _movers[m];
+            contacts[n + 1] = _targets[j];
+            _contactCounts[chunk] = n + 2;
+        }
+    }
+
+    private final WorkerPool.Task _resolveContacts = new WorkerPool.Task() {
+        @Override
+        public void run(int chunk, int from, int to) {
+            resolve(chunk, false);
+        }
+    };
+
+    private final WorkerPool.Task _solveBodies = new WorkerPool.Task() {
+        @Override
+        public void run(int chunk, int from, int to) {
+            _solver.solve(from, to);
+        }
+    };
+
+    private final WorkerPool.Task _applyBodies = new WorkerPool.Task() {
+        @Override
+        public void run(int chunk, int from, int to) {
+            _solver.apply(from, to);
+        }
+    };
+
+    private final WorkerPool.Task _integrate = new WorkerPool.Task() {
+        @Override
+        public void run(int chunk, int from, int to) {
+            for (int i = from; i < to; i++) {
+                GenericSprite s = _all[i];
+                if (s instanceof PlayerSprite && (s == _player ? _state == State.Spectating : ((PlayerSprite) s).isOut())) {
+                    continue;
+                }
+                if (s instanceof MultiPlayerGhostSprite && !s.overlaps(_camera)) {
+                    // Nobody can see it, so it can catch up once it's back on screen
+                    ((MultiPlayerGhostSprite) s).skipUpdate();
+                    continue;
+                }
+                if (s._asleep) {
+                    if (!_regravity || s.canSleep(GameState.this))
+                        continue; // Updating it would do nothing
+                    s._asleep = false;
+                }
+                if (s.rest(GameState.this))
+                    continue;
+                s.update(GameState.this);
+            }
+        }
+    };
+
+    /**
+     * Bounces the movers in one chunk off what they're touching
+     *
+     * @param chunk  Chunk the contacts were found by
+     * @param shared False for movers that only touch things whose bounce changes nothing else,
+     *               true for the rest, which have to be done in order
+     */
+    private void resolve(int chunk, boolean shared) {
+        int[] contacts = _contacts[chunk];
+        int n = _contactCounts[chunk];
+        int i = 0;
+        while (i < n) {
+            // Contacts for one mover are together, in the order of the sprite list
+            int end = i;
+            boolean isShared = false;
+            while (end < n && contacts[end] == contacts[i]) {
+                GenericSprite t = _all[contacts[end + 1]];
+                if (!(t instanceof ICollidable) || t.hasSharedReflect())
+                    isShared = true;
+                end += 2;
+            }
+            if (isShared == shared) {
+                for (int c = i; c < end; c += 2)
+                    resolve(_all[contacts[c]], _all[contacts[c + 1]]);
+            }
+            i = end;
+        }
+    }
+
+    private void resolve(GenericSprite s, GenericSprite t) {
+        if (t instanceof ICollidable) {
+            if (t.hasSharedReflect())
+                t.wake(); // Bouncing changes it, and these are done one at a time
+            t.reflect(s, this);
+        } else if (t instanceof FinishSprite) {
+            playerFinished((PlayerSprite) s);
+        } else if (t instanceof DeathSprite) {
+            playerDied((PlayerSprite) s);
+        } else if (t instanceof DisappearingWallSprite) {
+            _toRemove.add(t);
+        }
+    }
+
+    private void runChunks(int count, WorkerPool.Task task) {
+        if (_workers == null || _sprites.size() < PARALLEL_MIN_SPRITES)
+            task.run(0, 0, count);
+        else
+            _workers.run(count, task);
+    }
+    //endregion
+
+    //region Timers
+
+    /**
+     * Runs a task at the end of a later update
+     * For sprites' timed effects, so only sprites whose timers come due do anything, however many are waiting.
+     * Tasks run one at a time, in the order they were scheduled. Only schedule them where the world
+     * is changed one sprite at a time: from a shared reflect (see GenericSprite.hasSharedReflect()),
+     * from another task, or between updates. Timers aren't saved in snapshots, see GenericSprite.restore()
+     *
+     * @param task  Task to run
+     * @param ticks Number of updates to wait, counting the one going on. Always at least 1
+     * @return Handle that can cancel the task
+     */
+    public TimerWheel.Timer schedule(Runnable task, int ticks) {
+        return _timers.schedule(task, ticks);
+    }
+
+    /**
+     * Gets how long a timer has left
+     *
+     * @param timer Handle from schedule()
+     * @return Number of updates before it runs, counting the one going on
+     */
+    public int ticksLeft(TimerWheel.Timer timer) {
+        return (int) (timer.getDue() - _timers.getTick());
+    }
+
+    /**
+     * Drops every timer without running it
+     * For benchmarks, which schedule over and over without updating
+     */
+    void clearTimers() {
+        _timers.clear(_timers.getTick());
+    }
+    //endregion
+
+    //region Snapshots
+
+    /**
+     * Saves everything that changes during play, so the game can be rewound
+     *
+     * @param snapshot Snapshot to fill in. Its arrays are reused
+     */
+    public void save(GameSnapshot snapshot) {
+        snapshot.ticks = _ticks;
+        snapshot.score = _score;
+        snapshot.state = _state;
+        snapshot.offsetX = _offset.x;
+        snapshot.offsetY = _offset.y;
+        snapshot.random = _random.getState();
+        snapshot.sharedGravX = _sharedGrav[0];
+        snapshot.sharedGravY = _sharedGrav[1];
+
+        int count = _sprites.size();
+        snapshot.ensureCapacity(count);
+        snapshot.count = count;
+        for (int i = 0; i < count; i++) {
+            GenericSprite s = _sprites.get(i);
+            snapshot.sprites[i] = s;
+            snapshot.extras[i] = s.save(snapshot.values, i * GenericSprite.SAVED_FLOATS, this);
+            snapshot.edges[i * 2] = s._rect.right;
+            snapshot.edges[i * 2 + 1] = s._rect.bottom;
+            snapshot.rest[i] = (byte) ((s._asleep ? GameSnapshot.ASLEEP : 0) | (s._touched ? GameSnapshot.TOUCHED : 0));
+        }
+    }
+
+    /**
+     * Rewinds the game to a snapshot
+     * Sprites removed since then are put back
+     *
+     * @param snapshot Snapshot saved from this game
+     */
+    public void restore(GameSnapshot snapshot) {
+        _ticks = snapshot.ticks;
+        _score = snapshot.score;
+        _state = snapshot.state;
+        _offset.x = snapshot.offsetX;
+        _offset.y = snapshot.offsetY;
+        _random.setState(snapshot.random);
+        _sharedGrav[0] = snapshot.sharedGravX;
+        _sharedGrav[1] = snapshot.sharedGravY;
+
+        // Sprites schedule their timers again as they're put back
+        _timers.clear(_ticks);
+        _sprites.clear();
+        for (int i = 0; i < snapshot.count; i++) {
+            GenericSprite s = snapshot.sprites[i];
+            s.restore(snapshot.values, i * GenericSprite.SAVED_FLOATS, snapshot.extras[i], this);
+            // Exactly as it was, or the next update wouldn't be the same
+            s._rect.right = snapshot.edges[i * 2];
+            s._rect.bottom = snapshot.edges[i * 2 + 1];
+            s._asleep = (snapshot.rest[i] & GameSnapshot.ASLEEP) != 0;
+            s._touched = (snapshot.rest[i] & GameSnapshot.TOUCHED) != 0;
+            _sprites.add(s);
+        }
+    }
+    //endregion
+
+    public void draw(Renderer renderer, float ratio) {
+
+        // Draw all sprites, leaving out ghosts that are off screen
+        Box camera = getCamera();
+        if (!_hidePlayer)
+            _player.draw(renderer, ratio, _offset);
+        for (GenericSprite s : _sprites) {
+            if (s instanceof MultiPlayerGhostSprite && !s.overlaps(camera))
+                continue;
+            s.draw(renderer, ratio, _offset);
+        }
+    }
+
+    /**
+     * Generates a level in the form of a GameState object
+     * The app looks titles up in its resources, see LevelResources
+     *
+     * @param l     Level to generate
+     * @param title Title to give the level
+     * @return A new level
+     */
+    public static GameState GENERATE(Level l, String title) {
+        return GENERATE(l, title, GameRandom.forThread().nextLong());
+    }
+
+    /**
+     * Generates a level in the form of a GameState object
+     * Devices using the same seed get the same level
+     *
+     * @param l     Level to generate
+     * @param title Title to give the level
+     * @param seed  Seed for the world's random numbers
+     * @return A new level
+     */
+    public static GameState GENERATE(Level l, String title, long seed) {
+        GameRandom random = new GameRandom(seed);
+        GameState state = build(l, title, random);
+        // Carry on with the same generator, so play is seeded too
+        state._seed = seed;
+        state._random = random;
+        return state;
+    }
+
+    /**
+     * Generates a pit of loose balls of different weights, with a few bumpers
+     * For seeing how collisions between many bodies scale. Level.Balls has BALL_COUNT
+     *
+     * @param count Number of balls
+     * @param title Title to give the level
+     * @param seed  Seed for the level and the world's random numbers
+     * @return A new level
+     */
+    public static GameState GENERATE_BALLS(int count, String title, long seed) {
+        GameRandom random = new GameRandom(seed);
+        GameState state = balls(count, title, random);
+        state._seed = seed;
+        state._random = random;
+        return state;
+    }
+
+    private static GameState balls(int count, String title, GameRandom random) {
+        // Balls cover about a fifth of the floor
+        int size = Math.max(5, (int) Math.ceil(Math.sqrt(count)));
+        List<GenericSprite> sprites = new ArrayList<GenericSprite>(count + size / 2 + 4);
+        // Corners filled in, or a pile pressed into one could squeeze balls out between the walls
+        sprites.add(new WallSprite(-1, -1, size + 2, 1));
+        sprites.add(new WallSprite(-1, 0, 1, size));
+        sprites.add(new WallSprite(-1, size, size + 2, 1));
+        sprites.add(new WallSprite(size, 0, 1, size));
+
+        for (int i = 0; i < size / 2; i++)
+            sprites.add(new BumperSprite(random.nextInt(size - 1), random.nextInt(size - 1)));
+
+        for (int i = 0; i < count; i++) {
+            float x = random.nextFloat() * (size - 0.5f);
+            float y = random.nextFloat() * (size - 0.5f);
+            sprites.add(new BallSprite(x, y, 0.5f + random.nextFloat() * 1.5f));
+        }
+
+        return new GameState(title, new IntVec2(size, size), new Vec2(size / 2f, size / 2f), sprites);
+    }
+
+    private static GameState build(Level l, String title, GameRandom random) {
+        if (l == Level.Balls)
+            return balls(BALL_COUNT, title, random);
+
+        if (l == Level.Random) {
+            int levelX = random.nextInt(10) + 10;
+            int levelY = random.nextInt(10) + 10;
+            // Create simple sprites
+            List<GenericSprite> sprites = new ArrayList<GenericSprite>();
+            // Adding in our walls etc
+
+            sprites.add(new WallSprite(0, -1, levelX, 1));
+            sprites.add(new WallSprite(-1, 0, 1, levelY));
+            sprites.add(new WallSprite(0, levelY, levelX, 1));
+            sprites.add(new WallSprite(levelX, 0, 1, levelY));
+
+            for (int i = 0; i < 5; i++) {
+
+                // _state.getViewSize()[1]
+                //_state.getViewSize()[0]
+                int left = random.nextInt(levelX - 1) + 1;
+                int top = random.nextInt(levelY - 1) + 1;
+                int width = random.nextInt(levelX - left) + 1;
+                int height = random.nextInt(levelY - top) + 1;
+
+                WallSprite wallSprite = new WallSprite(left, top, width, height);
+                sprites.add(wallSprite);
+
+            }
+
+            for (int i = 0; i < 5; i++) {
+
+                int left = random.nextInt(levelX - 1) + 1;
+                int top = random.nextInt(levelY - 1) + 1;
+
+                BumperSprite bSprite = new BumperSprite(left, top);
+                sprites.add(bSprite);
+
+            }
+
+            sprites.add(new FinishSprite(0, levelY - 1));
+
+            GameState newLevel = new GameState(title, new IntVec2(levelX, levelY), new Vec2(0, 0), sprites);
+            return newLevel;
+        } else if (l == Level.Scrolling) {
+            List<GenericSprite> sprites = new ArrayList<GenericSprite>();
+
+            FinishSprite fs = new FinishSprite(10, 0, 1, 5);
+            sprites.add(fs);
+
+            sprites.add(new WallSprite(3, 0, 4, 1));
+            sprites.add(new WallSprite(3, 2, 1, 3));
+            sprites.add(new WallSprite(5, 1, 2, 2));
+            sprites.add(new WallSprite(5, 4, 1, 1));
+            sprites.add(new WallSprite(7, 3, 1, 1));
+            sprites.add(new WallSprite(8, 1, 1, 1));
+            sprites.add(new WallSprite(9, 2, 1, 3));
+            sprites.add(new WallSprite(10, 0, 1, 1));
+            sprites.add(new WallSprite(10, 2, 1, 3));
+            sprites.add(new WallSprite(11, 0, 5, 5));
+
+            DeathSprite ds = new DeathSprite(-0.75f, 0, 1, 5);
+            ds.setMotion(0.01f, 0);
+            sprites.add(ds);
+
+            StickyWallSprite sws = new StickyWallSprite(4.75f, 0, 1, 5);
+            sws.setMotion(0.01f, 0f);
+            sprites.add(sws);
+
+            sprites.add(new WallSprite(0, -1, 10, 1));
+            sprites.add(new WallSprite(0, 5, 10, 1));
+
+            //sprites.add(new WallSprite(1, 1, 3, 3));
+
+            return new ScrollingGameState(title, new IntVec2(5, 5), new Vec2(2.5f, 2.5f), sprites, -0.01f);
+        } else if (l == Level.Empty) {
+            List<GenericSprite> sprites = new ArrayList<GenericSprite>();
+            sprites.add(new WallSprite(0, -1, 10, 1));
+            sprites.add(new WallSprite(-1, 0, 1, 10));
+            sprites.add(new WallSprite(0, 10, 10, 1));
+            sprites.add(new WallSprite(10, 0, 1, 10));
+            return new GameState(title, new IntVec2(10, 10), new Vec2(5, 5), sprites);
+        } else if (l == Level.LevelOne) {
+            List<GenericSprite> sprites = new ArrayList<GenericSprite>();
+
+            FinishSprite fs = new FinishSprite(6, 2, 1, 1);
+            sprites.add(fs);
+
+            sprites.add(new WallSprite(1, 0, 1, 1));
+            sprites.add(new WallSprite(0, 2, 4, 1));
+            sprites.add(new WallSprite(3, 1, 1, 1));
+            sprites.add(new WallSprite(0, 3, 1, 3));
+            sprites.add(new WallSprite(2, 4, 4, 1));
+            sprites.add(new WallSprite(5, 0, 1, 4));
+            sprites.add(new WallSprite(7, 5, 1, 1));
+            sprites.add(new WallSprite(9, 4, 1, 1));
+            sprites.add(new WallSprite(6, 3, 3, 1));
+            sprites.add(new WallSprite(7, 1, 1, 2));
+            sprites.add(new WallSprite(9, 0, 2, 2));
+            sprites.add(new WallSprite(10, 2, 1, 1));
+
+            sprites.add(new WallSprite(0, -1, 11, 1));
+            sprites.add(new WallSprite(-1, 0, 1, 6));
+            sprites.add(new WallSprite(0, 6, 11, 1));
+            sprites.add(new WallSprite(11, 0, 1, 6));
+
+            return new GameState(title, new IntVec2(11, 6), new Vec2(0, 0), sprites);
+        } else if (l == Level.Death) {
+            List<GenericSprite> sprites = new ArrayList<GenericSprite>();
+
+            FinishSprite fs = new FinishSprite(1, 1, 1, 1);
+            sprites.add(fs);
+
+            sprites.add(new DeathSprite(0, 0, 4, 1));
+            sprites.add(new DeathSprite(0, 1, 1, 4));
+            sprites.add(new DeathSprite(1, 4, 4, 1));
+            sprites.add(new DeathSprite(4, 0, 1, 4));
+            sprites.add(new DeathSprite(1, 2, 2, 1));
+
+            return new GameState(title, new IntVec2(5, 5), new Vec2(1.25f, 3.25f), sprites);
+        } else if (l == Level.Happy) {
+            List<GenericSprite> sprites = new ArrayList<GenericSprite>();
+
+            FinishSprite fs = new FinishSprite(1, 1, 1, 1);
+            sprites.add(fs);
+
+            sprites.add(new WallSprite(0, 0, 4, 1));
+            sprites.add(new WallSprite(0, 1, 1, 4));
+            sprites.add(new WallSprite(1, 4, 4, 1));
+            sprites.add(new WallSprite(4, 0, 1, 4));
+            sprites.add(new WallSprite(1, 2, 2, 1));
+
+            return new GameState(title, new IntVec2(5, 5), new Vec2(1.25f, 3.25f), sprites);
+        } else if (l == Level.Maze) {
+            List<GenericSprite> sprites = new ArrayList<GenericSprite>();
+
+            FinishSprite fs = new FinishSprite(5, 17, 1, 1);
+            sprites.add(fs);
+
+            //region LONG LIST OF SPRITES; KEEP COLLAPSED
+            sprites.add(new WallSprite(0, 1, 1, 1));
+            sprites.add(new DisappearingWallSprite(0, 2, 1, 1));
+            sprites.add(new WallSprite(0, 3, 1, 1));
+            sprites.add(new DisappearingWallSprite(0, 4, 1, 1));
+            sprites.add(new DisappearingWallSprite(0, 5, 1, 1));
+            sprites.add(new DisappearingWallSprite(0, 6, 1, 1));
+            sprites.add(new DisappearingWallSprite(0, 7, 1, 1));
+            sprites.add(new WallSprite(0, 8, 1, 1));
+            sprites.add(new DisappearingWallSprite(0, 9, 1, 1));
+            sprites.add(new DisappearingWallSprite(0, 10, 1, 1));
+            sprites.add(new WallSprite(0, 11, 1, 1));
+            sprites.add(new DisappearingWallSprite(0, 12, 1, 1));
+            sprites.add(new DisappearingWallSprite(0, 13, 1, 1));
+            sprites.add(new DisappearingWallSprite(0, 14, 1, 1));
+            sprites.add(new DisappearingWallSprite(0, 15, 1, 1));
+            sprites.add(new DisappearingWallSprite(0, 16, 1, 1));
+            sprites.add(new WallSprite(0, 17, 1, 1));
+            sprites.add(new DisappearingWallSprite(0, 18, 1, 1));
+            sprites.add(new DisappearingWallSprite(0, 19, 1, 1));
+            sprites.add(new DisappearingWallSprite(0, 20, 1, 1));
+            sprites.add(new DisappearingWallSprite(1, 0, 1, 1));
+            sprites.add(new DisappearingWallSprite(1, 1, 1, 1));
+            sprites.add(new DisappearingWallSprite(1, 2, 1, 1));
+            sprites.add(new DisappearingWallSprite(1, 3, 1, 1));
+            sprites.add(new DisappearingWallSprite(1, 4, 1, 1));
+            sprites.add(new WallSprite(1, 5, 1, 1));
+            sprites.add(new WallSprite(1, 6, 1, 1));
+            sprites.add(new DisappearingWallSprite(1, 7, 1, 1));
+            sprites.add(new DisappearingWallSprite(1, 8, 1, 1));
+            sprites.add(new WallSprite(1, 9, 1, 1));
+            sprites.add(new DisappearingWallSprite(1, 10, 1, 1));
+            sprites.add(new DisappearingWallSprite(1, 11, 1, 1));
+            sprites.add(new DisappearingWallSprite(1, 12, 1, 1));
+            sprites.add(new WallSprite(1, 13, 1, 1));
+            sprites.add(new WallSprite(1, 14, 1, 1));
+            sprites.add(new WallSprite(1, 15, 1, 1));
+            sprites.add(new DisappearingWallSprite(1, 16, 1, 1));
+            sprites.add(new DisappearingWallSprite(1, 17, 1, 1));
+            sprites.add(new DisappearingWallSprite(1, 18, 1, 1));
+            sprites.add(new WallSprite(1, 19, 1, 1));
+            sprites.add(new DisappearingWallSprite(1, 20, 1, 1));
+            sprites.add(new DisappearingWallSprite(2, 0, 1, 1));
+            sprites.add(new WallSprite(2, 1, 1, 1));
+            sprites.add(new WallSprite(2, 2, 1, 1));
+            sprites.add(new DisappearingWallSprite(2, 3, 1, 1));
+            sprites.add(new WallSprite(2, 4, 1, 1));
+            sprites.add(new WallSprite(2, 5, 1, 1));
+            sprites.add(new DisappearingWallSprite(2, 6, 1, 1));
+            sprites.add(new WallSprite(2, 7, 1, 1));
+            sprites.add(new DisappearingWallSprite(2, 8, 1, 1));
+            sprites.add(new DisappearingWallSprite(2, 9, 1, 1));
+            sprites.add(new DisappearingWallSprite(2, 10, 1, 1));
+            sprites.add(new WallSprite(2, 11, 1, 1));
+            sprites.add(new WallSprite(2, 12, 1, 1));
+            sprites.add(new DisappearingWallSprite(2, 13, 1, 1));
+            sprites.add(new DisappearingWallSprite(2, 14, 1, 1));
+            sprites.add(new DisappearingWallSprite(2, 15, 1, 1));
+            sprites.add(new WallSprite(2, 16, 1, 1));
+            sprites.add(new WallSprite(2, 17, 1, 1));
+            sprites.add(new DisappearingWallSprite(2, 18, 1, 1));
+            sprites.add(new DisappearingWallSprite(2, 19, 1, 1));
+            sprites.add(new WallSprite(2, 20, 1, 1));
+            sprites.add(new WallSprite(3, 0, 1, 1));
+            sprites.add(new DisappearingWallSprite(3, 1, 1, 1));
+            sprites.add(new DisappearingWallSprite(3, 2, 1, 1));
+            sprites.add(new DisappearingWallSprite(3, 3, 1, 1));
+            sprites.add(new WallSprite(3, 4, 1, 1));
+            sprites.add(new DisappearingWallSprite(3, 5, 1, 1));
+            sprites.add(new DisappearingWallSprite(3, 6, 1, 1));
+            sprites.add(new DisappearingWallSprite(3, 7, 1, 1));
+            sprites.add(new WallSprite(3, 8, 1, 1));
+            sprites.add(new WallSprite(3, 9, 1, 1));
+            sprites.add(new WallSprite(3, 10, 1, 1));
+            sprites.add(new DisappearingWallSprite(3, 11, 1, 1));
+            sprites.add(new DisappearingWallSprite(3, 12, 1, 1));
+            sprites.add(new DisappearingWallSprite(3, 13, 1, 1));
+            sprites.add(new WallSprite(3, 14, 1, 1));
+            sprites.add(new DisappearingWallSprite(3, 15, 1, 1));
+            sprites.add(new DisappearingWallSprite(3, 16, 1, 1));
+            sprites.add(new DisappearingWallSprite(3, 17, 1, 1));
+            sprites.add(new WallSprite(3, 18, 1, 1));
+            sprites.add(new DisappearingWallSprite(3, 19, 1, 1));
+            sprites.add(new DisappearingWallSprite(3, 20, 1, 1));
+            sprites.add(new DisappearingWallSprite(4, 0, 1, 1));
+            sprites.add(new DisappearingWallSprite(4, 1, 1, 1));
+            sprites.add(new WallSprite(4, 2, 1, 1));
+            sprites.add(new WallSprite(4, 3, 1, 1));
+            sprites.add(new DisappearingWallSprite(4, 4, 1, 1));
+            sprites.add(new DisappearingWallSprite(4, 5, 1, 1));
+            sprites.add(new WallSprite(4, 6, 1, 1));
+            sprites.add(new WallSprite(4, 7, 1, 1));
+            sprites.add(new DisappearingWallSprite(4, 8, 1, 1));
+            sprites.add(new DisappearingWallSprite(4, 9, 1, 1));
+            sprites.add(new DisappearingWallSprite(4, 10, 1, 1));
+            sprites.add(new DisappearingWallSprite(4, 11, 1, 1));
+            sprites.add(new WallSprite(4, 12, 1, 1));
+            sprites.add(new WallSprite(4, 13, 1, 1));
+            sprites.add(new DisappearingWallSprite(4, 14, 1, 1));
+            sprites.add(new DisappearingWallSprite(4, 15, 1, 1));
+            sprites.add(new WallSprite(4, 16, 1, 1));
+            sprites.add(new DisappearingWallSprite(4, 17, 1, 1));
+            sprites.add(new DisappearingWallSprite(4, 18, 1, 1));
+            sprites.add(new WallSprite(4, 19, 1, 1));
+            sprites.add(new DisappearingWallSprite(4, 20, 1, 1));
+            sprites.add(new DisappearingWallSprite(5, 0, 1, 1));
+            sprites.add(new WallSprite(5, 1, 1, 1));
+            sprites.add(new DisappearingWallSprite(5, 2, 1, 1));
+            sprites.add(new WallSprite(5, 3, 1, 1));
+            sprites.add(new DisappearingWallSprite(5, 4, 1, 1));
+            sprites.add(new WallSprite(5, 5, 1, 1));
+            sprites.add(new DisappearingWallSprite(5, 6, 1, 1));
+            sprites.add(new DisappearingWallSprite(5, 7, 1, 1));
+            sprites.add(new DisappearingWallSprite(5, 8, 1, 1));
+            sprites.add(new WallSprite(5, 9, 1, 1));
+            sprites.add(new DisappearingWallSprite(5, 10, 1, 1));
+            sprites.add(new WallSprite(5, 11, 1, 1));
+            sprites.add(new DisappearingWallSprite(5, 12, 1, 1));
+            sprites.add(new DisappearingWallSprite(5, 13, 1, 1));
+            sprites.add(new WallSprite(5, 14, 1, 1));
+            sprites.add(new DisappearingWallSprite(5, 15, 1, 1));
+            sprites.add(new WallSprite(5, 16, 1, 1));
+            sprites.add(new DisappearingWallSprite(5, 17, 1, 1));
+            sprites.add(new WallSprite(5, 18, 1, 1));
+            sprites.add(new DisappearingWallSprite(5, 19, 1, 1));
+            sprites.add(new DisappearingWallSprite(5, 20, 1, 1));
+            sprites.add(new DisappearingWallSprite(6, 0, 1, 1));
+            sprites.add(new DisappearingWallSprite(6, 1, 1, 1));
+            sprites.add(new DisappearingWallSprite(6, 2, 1, 1));
+            sprites.add(new DisappearingWallSprite(6, 3, 1, 1));
+            sprites.add(new DisappearingWallSprite(6, 4, 1, 1));
+            sprites.add(new DisappearingWallSprite(6, 5, 1, 1));
+            sprites.add(new DisappearingWallSprite(6, 6, 1, 1));
+            sprites.add(new WallSprite(6, 7, 1, 1));
+            sprites.add(new WallSprite(6, 8, 1, 1));
+            sprites.add(new DisappearingWallSprite(6, 9, 1, 1));
+            sprites.add(new DisappearingWallSprite(6, 10, 1, 1));
+            sprites.add(new DisappearingWallSprite(6, 11, 1, 1));
+            sprites.add(new WallSprite(6, 12, 1, 1));
+            sprites.add(new DisappearingWallSprite(6, 13, 1, 1));
+            sprites.add(new WallSprite(6, 14, 1, 1));
+            sprites.add(new DisappearingWallSprite(6, 15, 1, 1));
+            sprites.add(new DisappearingWallSprite(6, 16, 1, 1));
+            sprites.add(new WallSprite(6, 17, 1, 1));
+            sprites.add(new WallSprite(6, 18, 1, 1));
+            sprites.add(new DisappearingWallSprite(6, 19, 1, 1));
+            sprites.add(new WallSprite(6, 20, 1, 1));
+            sprites.add(new WallSprite(7, 0, 1, 1));
+            sprites.add(new DisappearingWallSprite(7, 1, 1, 1));
+            sprites.add(new DisappearingWallSprite(7, 2, 1, 1));
+            sprites.add(new WallSprite(7, 3, 1, 1));
+            sprites.add(new DisappearingWallSprite(7, 4, 1, 1));
+            sprites.add(new WallSprite(7, 5, 1, 1));
+            sprites.add(new DisappearingWallSprite(7, 6, 1, 1));
+            sprites.add(new DisappearingWallSprite(7, 7, 1, 1));
+            sprites.add(new DisappearingWallSprite(7, 8, 1, 1));
+            sprites.add(new DisappearingWallSprite(7, 9, 1, 1));
+            sprites.add(new WallSprite(7, 10, 1, 1));
+            sprites.add(new DisappearingWallSprite(7, 11, 1, 1));
+            sprites.add(new DisappearingWallSprite(7, 12, 1, 1));
+            sprites.add(new DisappearingWallSprite(7, 13, 1, 1));
+            sprites.add(new DisappearingWallSprite(7, 14, 1, 1));
+            sprites.add(new WallSprite(7, 15, 1, 1));
+            sprites.add(new DisappearingWallSprite(7, 16, 1, 1));
+            sprites.add(new DisappearingWallSprite(7, 17, 1, 1));
+            sprites.add(new DisappearingWallSprite(7, 18, 1, 1));
+            sprites.add(new WallSprite(7, 19, 1, 1));
+            sprites.add(new DisappearingWallSprite(7, 20, 1, 1));
+            sprites.add(new DisappearingWallSprite(8, 0, 1, 1));
+            sprites.add(new DisappearingWallSprite(8, 1, 1, 1));
+            sprites.add(new WallSprite(8, 2, 1, 1));
+            sprites.add(new DisappearingWallSprite(8, 3, 1, 1));
+            sprites.add(new WallSprite(8, 4, 1, 1));
+            sprites.add(new DisappearingWallSprite(8, 5, 1, 1));
+            sprites.add(new DisappearingWallSprite(8, 6, 1, 1));
+            sprites.add(new WallSprite(8, 7, 1, 1));
+            sprites.add(new DisappearingWallSprite(8, 8, 1, 1));
+            sprites.add(new WallSprite(8, 9, 1, 1));
+            sprites.add(new DisappearingWallSprite(8, 10, 1, 1));
+            sprites.add(new DisappearingWallSprite(8, 11, 1, 1));
+            sprites.add(new WallSprite(8, 12, 1, 1));
+            sprites.add(new WallSprite(8, 13, 1, 1));
+            sprites.add(new DisappearingWallSprite(8, 14, 1, 1));
+            sprites.add(new DisappearingWallSprite(8, 15, 1, 1));
+            sprites.add(new WallSprite(8, 16, 1, 1));
+            sprites.add(new WallSprite(8, 17, 1, 1));
+            sprites.add(new DisappearingWallSprite(8, 18, 1, 1));
+            sprites.add(new DisappearingWallSprite(8, 19, 1, 1));
+            sprites.add(new DisappearingWallSprite(8, 20, 1, 1));
+            sprites.add(new DisappearingWallSprite(9, 0, 1, 1));
+            sprites.add(new WallSprite(9, 1, 1, 1));
+            sprites.add(new DisappearingWallSprite(9, 2, 1, 1));
+            sprites.add(new DisappearingWallSprite(9, 3, 1, 1));
+            sprites.add(new DisappearingWallSprite(9, 4, 1, 1));
+            sprites.add(new DisappearingWallSprite(9, 5, 1, 1));
+            sprites.add(new WallSprite(9, 6, 1, 1));
+            sprites.add(new DisappearingWallSprite(9, 7, 1, 1));
+            sprites.add(new DisappearingWallSprite(9, 8, 1, 1));
+            sprites.add(new DisappearingWallSprite(9, 9, 1, 1));
+            sprites.add(new WallSprite(9, 10, 1, 1));
+            sprites.add(new WallSprite(9, 11, 1, 1));
+            sprites.add(new DisappearingWallSprite(9, 12, 1, 1));
+            sprites.add(new DisappearingWallSprite(9, 13, 1, 1));
+            sprites.add(new WallSprite(9, 14, 1, 1));
+            sprites.add(new DisappearingWallSprite(9, 15, 1, 1));
+            sprites.add(new DisappearingWallSprite(9, 16, 1, 1));
+            sprites.add(new DisappearingWallSprite(9, 17, 1, 1));
+            sprites.add(new DisappearingWallSprite(9, 18, 1, 1));
+            sprites.add(new WallSprite(9, 19, 1, 1));
+            sprites.add(new DisappearingWallSprite(9, 20, 1, 1));
+            sprites.add(new DisappearingWallSprite(10, 0, 1, 1));
+            sprites.add(new DisappearingWallSprite(10, 1, 1, 1));
+            sprites.add(new DisappearingWallSprite(10, 2, 1, 1));
+            sprites.add(new WallSprite(10, 3, 1, 1));
+            sprites.add(new DisappearingWallSprite(10, 4, 1, 1));
+            sprites.add(new WallSprite(10, 5, 1, 1));
+            sprites.add(new DisappearingWallSprite(10, 6, 1, 1));
+            sprites.add(new DisappearingWallSprite(10, 7, 1, 1));
+            sprites.add(new WallSprite(10, 8, 1, 1));
+            sprites.add(new DisappearingWallSprite(10, 9, 1, 1));
+            sprites.add(new DisappearingWallSprite(10, 10, 1, 1));
+            sprites.add(new DisappearingWallSprite(10, 11, 1, 1));
+            sprites.add(new DisappearingWallSprite(10, 12, 1, 1));
+            sprites.add(new WallSprite(10, 13, 1, 1));
+            sprites.add(new WallSprite(10, 14, 1, 1));
+            sprites.add(new DisappearingWallSprite(10, 15, 1, 1));
+            sprites.add(new WallSprite(10, 16, 1, 1));
+            sprites.add(new DisappearingWallSprite(10, 17, 1, 1));
+            sprites.add(new WallSprite(10, 18, 1, 1));
+            sprites.add(new DisappearingWallSprite(10, 19, 1, 1));
+            sprites.add(new DisappearingWallSprite(10, 20, 1, 1));
+            //endregion
+
+            sprites.add(new WallSprite(0, -1, 11, 1));
+            sprites.add(new WallSprite(-1, 0, 1, 21));
+            sprites.add(new WallSprite(0, 21, 11, 1));
+            sprites.add(new WallSprite(11, 0, 1, 21));
+
+            return new GameState(title, new IntVec2(11, 21), new Vec2(0.25f, 0.25f), sprites);
+        }
+
+
+        throw new IllegalArgumentException("Level not defined yet");
+    }
+
+    /**
+     * Gets the GameState.Level that corresponds to the given string
+     *
+     * @param name String representation of the level name
+     * @return Requested GameState.Level
+     */
+    public static Level getLevelFromString(String name) {
+        switch (name) {
+            case "Random":
+                return Level.Random;
+            case "Level One":
+                return Level.LevelOne;
+            case "Scrolling":
+                return Level.Scrolling;
+            case "Empty":
+                return Level.Empty;
+            case "Happy Valley":
+                return Level.Happy;
+            case "Death Valley":
+                return Level.Death;
+            case "Maze":
+                return Level.Maze;
+            case "Ball Pit":
+                return Level.Balls;
+            default:
+                throw new IllegalArgumentException("Level not defined yet");
+        }
+    }
+}
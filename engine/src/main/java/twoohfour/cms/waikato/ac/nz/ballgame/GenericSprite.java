@@ -0,0 +1,446 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+
+/**
+ * Created by timhampton on 25/09/15.
+ */
+public abstract strictfp class GenericSprite {
+
+    //region Variables
+    protected Box _rect;
+    protected int _color;
+
+    protected Vec2 _motion;
+    protected float MAX_VELOCITY = 0.2f;
+    protected float _weightModifier = 1; // This is 1 / Weight, so it can be multiplied straight into motion calculations
+    protected float _friction = 0;
+    protected final float FRICTION_CONSTANT = 0.05f;
+
+    public static final int SAVED_FLOATS = 4; // Written by save()
+    public static final float REST_SPEED = 0.001f; // Slower than this, with nothing pushing it or touching it, and a sprite stops
+
+    protected boolean _asleep; // Left out of updates until something wakes it, see rest()
+    protected boolean _touched; // Found touching something this update, so it can't sleep
+
+    // What kind of sprite it is, for GameState, which looks at every sprite every update.
+    // Worked out once, as asking whether a sprite has an interface it doesn't have is slow
+    static final int DYNAMIC = 1; // IDynamic
+    static final int COLLIDABLE = 2; // ICollidable
+    static final int COLLIDES = 4; // ICollides
+    static final int TARGET = 8; // Something movers can touch: ICollidable, finish, death or a disappearing wall
+    static final int WALL = 16;
+    static final int PLAYER = 32;
+    static final int GHOST = 64;
+    final int _kind = kindOf(this);
+    //endregion
+
+    public GenericSprite() {
+        this(0, 0);
+    }
+
+    public GenericSprite(float x, float y) {
+        this(x, y, 1, 1);
+    }
+
+    public GenericSprite(float x, float y, float weight) {
+        this(x, y, 1, 1, weight);
+    }
+
+    public GenericSprite(float x, float y, float w, float h) {
+        this(x, y, w, h, 0, 0);
+    }
+
+    public GenericSprite(float x, float y, float w, float h, float weight) {
+        this(x, y, w, h, 0, 0, weight);
+    }
+
+    public GenericSprite(float x, float y, float w, float h, float dx, float dy) {
+        this(x, y, w, h, dx, dy, 1);
+    }
+
+    public GenericSprite(float x, float y, float w, float h, float dx, float dy, float weight) {
+        this(x, y, w, h, dx, dy, weight, 0);
+    }
+
+    public GenericSprite(float x, float y, float w, float h, float dx, float dy, float weight, float friction) {
+        _rect = new Box(x, y, x + w, y + h);
+        _color = Colors.WHITE;
+        _friction = friction;
+
+        setWeight(weight);
+
+        _motion = new Vec2(dx, dy);
+        // Make sure speed is valid
+        limitVelocity();
+    }
+
+    private static int kindOf(GenericSprite s) {
+        int kind = 0;
+        if (s instanceof IDynamic)
+            kind |= DYNAMIC;
+        if (s instanceof ICollidable)
+            kind |= COLLIDABLE;
+        if (s instanceof ICollides)
+            kind |= COLLIDES;
+        if (s instanceof ICollidable || s instanceof FinishSprite || s instanceof DeathSprite || s instanceof DisappearingWallSprite)
+            kind |= TARGET;
+        if (s instanceof WallSprite)
+            kind |= WALL;
+        if (s instanceof PlayerSprite)
+            kind |= PLAYER;
+        if (s instanceof MultiPlayerGhostSprite)
+            kind |= GHOST;
+        return kind;
+    }
+
+    //region Getters & Setters
+
+    /**
+     * Gets the bounding rectangle for this sprite
+     * @return Bounding box
+     */
+    public Box getRectangle() {
+        return new Box(_rect);
+    }
+
+    /**
+     * Whether any of the sprite is inside an area
+     * @param area Area, such as the camera
+     * @return True if they overlap
+     */
+    public boolean overlaps(Box area) {
+        return Box.intersects(_rect, area);
+    }
+
+    /**
+     * Gets the X position of the top-left corner
+     * @return X position
+     */
+    public float getXPos() {
+        return _rect.left;
+    }
+
+    /**
+     * Gets the Y position of the top-left corner
+     * @return Y Position
+     */
+    public float getYPos() {
+        return _rect.top;
+    }
+
+    /**
+     * Gets the width of the sprite
+     * @return Width
+     */
+    public float getWidth() {
+        return _rect.width();
+    }
+
+    /**
+     * Gets the height of the sprite
+     * @return Height
+     */
+    public float getHeight() {
+        return _rect.height();
+    }
+
+    /**
+     * Gets the motion of the sprite
+     * @return Vec2 containing motion values
+     */
+    public Vec2 getMotion() {
+        return _motion;
+    }
+
+    /**
+     * Returns how bouncy the sprite is
+     */
+    public float getBounciness() {
+        return 1;
+    }
+
+    /**
+     * Sets the bounding rectangle of the sprite
+     * @param r New bounding box
+     */
+    public void setRectangle(Box r) {
+        _rect = r;
+        _asleep = false;
+    }
+
+    /**
+     * Set the colour of this sprite
+     * May cause strange behaviour if used
+     * with Images
+     * @param colorCode Integer representing the color, see Colors
+     */
+    public void setPaint(int colorCode) {
+        _color = colorCode;
+    }
+
+    /**
+     * Sets the x position of the top-left corner
+     * @param xPos X position
+     */
+    public void setXPos(float xPos) {
+        float oldWidth = _rect.width();
+        _rect.left = xPos;
+        setWidth(oldWidth);
+        _asleep = false;
+    }
+
+    /**
+     * Sets the y position of the top-left corner
+     * @param yPos Y position
+     */
+    public void setYPos(float yPos) {
+        float oldHeight = _rect.height();
+        _rect.top = yPos;
+        setHeight(oldHeight);
+        _asleep = false;
+    }
+
+    /**
+     * Sets the width of the sprite
+     * @param width Width
+     */
+    public void setWidth(float width) {
+        _rect.right = _rect.left + width;
+    }
+
+    /**
+     * Sets the height of the sprite
+     * @param height Height
+     */
+    public void setHeight(float height) {
+        _rect.bottom = _rect.top + height;
+    }
+
+    /**
+     * Sets the weight of this sprite
+     * @param weight Weight
+     */
+    public void setWeight(float weight) {
+        _weightModifier = 1 / weight;
+    }
+
+    /**
+     * Sets the motion of the sprite
+     * @param dx Change in x
+     * @param dy Change in y
+     */
+    public void setMotion(float dx, float dy) {
+        _motion = new Vec2(dx * _weightModifier, dy * _weightModifier);
+        _asleep = false;
+
+        // Make sure we're withing the speed limit
+        limitVelocity();
+    }
+
+    /**
+     * Add the specified values to the motion
+     * @param dx Change in x
+     * @param dy Change in y
+     */
+    public void addMotion(float dx, float dy) {
+        _motion.x += dx * _weightModifier;
+        _motion.y += dy * _weightModifier;
+        _asleep = false;
+
+        // Make sure we're not going too fast
+        limitVelocity();
+    }
+
+    /**
+     * Moves the sprite in the X direction
+     * @param x Change in X position
+     */
+    public void moveX(float x) {
+        _rect.left += x;
+        _rect.right += x;
+    }
+
+    /**
+     * Moves the sprite in the Y direction
+     * @param y Change in Y position
+     */
+    public void moveY(float y) {
+        _rect.top += y;
+        _rect.bottom += y;
+    }
+    //endregion
+
+    /**
+     * Ensures the current velocity is within the limits
+     * Prevents the 'super-fast diagonal' bug where
+     * the max speed is sqrt(2) * limit
+     */
+    protected void limitVelocity() {
+        // If the current velocity is too great
+        float currVelocity = (float)Math.sqrt(_motion.x * _motion.x + _motion.y * _motion.y);
+        if (currVelocity > MAX_VELOCITY){
+            float scaleF = Math.abs(MAX_VELOCITY /currVelocity);
+            _motion.x *= scaleF;
+            _motion.y *= scaleF;
+        }
+    }
+
+    /**
+     * Slow down the sprite according to friction
+     */
+    protected void doFriction() {
+        if (_friction == 0)
+            return;
+
+        float currVelocity = (float)Math.sqrt(_motion.x * _motion.x + _motion.y * _motion.y);
+        float frictionFactor = (_friction * FRICTION_CONSTANT) * currVelocity * (1 / _weightModifier);
+        float scaleF = 1 - frictionFactor;
+        _motion.x *= scaleF;
+        _motion.y *= scaleF;
+    }
+
+    //region Snapshots
+
+    /**
+     * Saves everything about the sprite that changes during play
+     * Position and motion go in values, anything else is returned
+     * @param values Array to save into
+     * @param offset Where to start. SAVED_FLOATS values are written
+     * @param state  World the sprite is in
+     * @return Anything else the sprite needs to keep, or 0
+     */
+    public int save(float[] values, int offset, GameState state) {
+        values[offset] = _rect.left;
+        values[offset + 1] = _rect.top;
+        values[offset + 2] = _motion.x;
+        values[offset + 3] = _motion.y;
+        return 0;
+    }
+
+    /**
+     * Puts the sprite back how it was when save() was called
+     * Timers aren't kept in snapshots, so a sprite waiting on one schedules it again here
+     * @param values Array saved into
+     * @param offset Where save() started
+     * @param extra What save() returned
+     * @param state World the sprite is in
+     */
+    public void restore(float[] values, int offset, int extra, GameState state) {
+        setXPos(values[offset]);
+        setYPos(values[offset + 1]);
+        _motion.x = values[offset + 2];
+        _motion.y = values[offset + 3];
+        _asleep = false;
+        _touched = false;
+    }
+    //endregion
+
+    //region Sleeping
+
+    /**
+     * Whether the sprite has come to rest, and is being left out of updates
+     * @return True if asleep
+     */
+    public boolean isAsleep() {
+        return _asleep;
+    }
+
+    /**
+     * Starts updating the sprite again
+     * Moving it or setting its motion does this already
+     */
+    public void wake() {
+        _asleep = false;
+    }
+
+    /**
+     * Whether nothing is pushing the sprite along, so it can stop once it's slow enough
+     * @param state State of the game
+     * @return True if it can sleep
+     */
+    public boolean canSleep(GameState state) {
+        return true;
+    }
+
+    /**
+     * Puts the sprite to sleep if it's come to rest: slower than REST_SPEED, touching nothing
+     * this update, and with nothing pushing it. It stops dead rather than creeping along forever
+     * Called by GameState before update(), on whichever thread does the update
+     * @param state State of the game
+     * @return True if it's gone to sleep, and doesn't need updating
+     */
+    boolean rest(GameState state) {
+        boolean touched = _touched;
+        _touched = false;
+        if (touched || _motion.x * _motion.x + _motion.y * _motion.y >= REST_SPEED * REST_SPEED || !canSleep(state))
+            return false;
+        _motion.x = 0;
+        _motion.y = 0;
+        _asleep = true;
+        return true;
+    }
+    //endregion
+
+    public abstract boolean intersects(GenericSprite sprite);
+
+    /**
+     * Bounce another sprite off this one
+     * @param sprite Sprite that hit this one
+     * @param state Current state of the game
+     */
+    public abstract void reflect(GenericSprite sprite, GameState state);
+
+    /**
+     * Whether reflect() changes anything besides the other sprite's motion, like this sprite or the game
+     * Sprites that hit one of these are bounced one at a time, in order, rather than in parallel
+     * @return True if bouncing off it changes more than the sprite that hit it
+     */
+    public boolean hasSharedReflect() {
+        return false;
+    }
+
+    /**
+     * Draw the sprite at the given scale
+     * @param renderer Where to draw
+     * @param scale Scale at which to draw
+     */
+    public abstract void draw(Renderer renderer, float scale, Vec2 offset);
+
+    /**
+     * Update the sprite
+     * @param state Current state of the game
+     */
+    public void update(GameState state) {
+        move(state);
+        doFriction();
+    }
+
+    /**
+     * Moves the sprite by its motion, or as far as it can go before it hits a wall
+     *
+     * @param state State of the game
+     */
+    private void move(GameState state) {
+        float t = sweep(state);
+        moveX(_motion.x * t);
+        moveY(_motion.y * t);
+    }
+
+    /**
+     * Works out how much of its motion the sprite can make without going through a wall
+     *
+     * @param state State of the game
+     * @return Fraction of the motion, from 0 to 1
+     */
+    private float sweep(GameState state) {
+        float speed = _motion.x * _motion.x + _motion.y * _motion.y;
+        if (speed == 0)
+            return 1;
+        // Moving more than a quarter of its size could take it past something thin before it's seen to touch
+        float size = Math.min(_rect.width(), _rect.height()) / 4;
+        if (speed <= size * size || (_kind & (COLLIDES | DYNAMIC)) == 0)
+            return 1;
+        return state.sweep(this, _motion.x, _motion.y);
+    }
+
+}
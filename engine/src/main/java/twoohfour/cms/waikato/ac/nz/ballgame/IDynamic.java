@@ -0,0 +1,9 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+/**
+ * Sprites pushed around by BodySolver
+ * They collide with each other and with players, trading motion by weight,
+ * and are pushed out of anything ICollidable
+ */
+public interface IDynamic {
+}
@@ -0,0 +1,392 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * Records everything that changes a GameState from outside, so it can be played again exactly
+ *
+ * Updates are deterministic, so the level, its seed, the gravity each tick and whatever the
+ * network did to the world are enough to get the same world back, tick for tick. InputReplay
+ * plays a recording back with no device or network at all.
+ *
+ * Recording is started by GameState.setRecorder(), and the GameState tells the recorder
+ * what happens to it from then on. Sprites are referred to by where they are in the
+ * sprite list. The list changes the same way during a replay, so that's always the same sprite.
+ *
+ * File:    | magic "BREC" (4) | version (1) | level descriptor | entry | ... | END (1) | ticks (4) | checksum (8) |
+ * Entry:   | tag (1) | fields |
+ *
+ * Gravity is only written for the axes that changed, as the difference between the float's
+ * bits and last time's, zigzagged into a varint. Ticks where nothing changed are counted up
+ * and written as one REPEAT. Indexes and counts are varints too.
+ *
+ * TICK | axes       | ...    | One update. The low 3 bits say which axes follow (x, y, z)
+ * REPEAT            | n      | n updates with the same gravity as the last
+ * ADD_PLAYER        |        | GameState.addPlayer()
+ * REMOVE_SPRITE     | index  | A player or ghost taken out. -1 for our player when it isn't in the list
+ * SET_PLAYER        | index  | GameState.setPlayer()
+ * INPUT             | index, x (4), y (4) | A player's own gravity, only when it changes
+ * ADD_GHOST         | bounds, skipped | A ghost joins the end of the list
+ * MOVE_GHOST        | index, bounds, skipped | Where the network says a ghost is
+ * MOVE_PLAYER       | bounds | Our player put back where a GameHost says it is
+ *
+ * Bounds are left, top, right, bottom, dx and dy, 4 bytes each. Written whole, as setting
+ * a position works the right edge out again, which doesn't always round the same way.
+ * END_GAME          | finished (1) | GameState.endGame()
+ * SPECTATE          | show player (1) | GameState.spectate()
+ * REFEREED          | refereed (1) | GameState.setRefereed()
+ *
+ * The checksum at the end is checksum() of the world when recording stopped, so a replay
+ * can tell whether it ended up in exactly the same place. A recording cut short, by the
+ * app being killed, has no END and can still be replayed, just not checked.
+ *
+ * A write that fails stops the recording rather than the game. getError() says what went wrong.
+ */
+public strictfp class InputRecorder {
+
+    //region Variables
+    public static final int MAGIC = 0x42524543; // "BREC"
+    public static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    // Entry tags
+    static final int TICK = 0x00; // To 0x07, with the axes that changed
+    static final int AXES = 0x07;
+    static final int REPEAT = 0x08;
+    static final int ADD_PLAYER = 0x10;
+    static final int REMOVE_SPRITE = 0x11;
+    static final int SET_PLAYER = 0x12;
+    static final int INPUT = 0x13;
+    static final int ADD_GHOST = 0x14;
+    static final int MOVE_GHOST = 0x15;
+    static final int MOVE_PLAYER = 0x16;
+    static final int END_GAME = 0x17;
+    static final int SPECTATE = 0x18;
+    static final int REFEREED = 0x19;
+    static final int END = 0xFF;
+
+    private final DataOutputStream _out;
+    private final int[] _grav = new int[3]; // Bits of the last gravity written
+    private int _repeats; // Unchanged ticks not written yet
+    private int _ticks;
+    private long _bytes;
+    private IOException _error; // What stopped the recording. Null while it's going
+    //endregion
+
+    /**
+     * Starts a new recording
+     * Should be given to the GameState built from the same descriptor, before anything happens to it
+     *
+     * @param file  File to write. Replaced if it already exists
+     * @param level Level being played, with the seed it was built from
+     * @throws IOException If the file couldn't be written
+     */
+    public InputRecorder(File file, LevelDescriptor level) throws IOException {
+        _out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+        _out.writeInt(MAGIC);
+        _out.writeByte(VERSION);
+        byte[] descriptor = new byte[level.getSize()];
+        level.write(ByteBuffer.wrap(descriptor));
+        _out.write(descriptor);
+    }
+
+    //region Getters
+
+    /**
+     * Gets the number of updates recorded
+     *
+     * @return Tick count
+     */
+    public synchronized int getTicks() {
+        return _ticks;
+    }
+
+    /**
+     * Gets the number of bytes written, not counting the header
+     *
+     * @return Byte count
+     */
+    public synchronized long getBytes() {
+        return _bytes + (_repeats > 0 ? 1 + varintSize(_repeats) : 0);
+    }
+
+    /**
+     * Gets the write that failed, stopping the recording
+     * Anything recorded before it is still there, and can be replayed, just not checked
+     *
+     * @return Error, or null if nothing has gone wrong
+     */
+    public synchronized IOException getError() {
+        return _error;
+    }
+    //endregion
+
+    //region Recording. Called by GameState
+
+    /**
+     * Records an update, with the gravity it was given
+     *
+     * @param grav Gravity values
+     */
+    synchronized void tick(float[] grav) {
+        _ticks++;
+        int axes = 0;
+        for (int i = 0; i < 3; i++) {
+            if (Float.floatToRawIntBits(grav[i]) != _grav[i])
+                axes |= 1 << i;
+        }
+        if (axes == 0) {
+            _repeats++;
+            return;
+        }
+
+        if (!begin(TICK | axes))
+            return;
+        try {
+            for (int i = 0; i < 3; i++) {
+                if ((axes & (1 << i)) == 0)
+                    continue;
+                int bits = Float.floatToRawIntBits(grav[i]);
+                writeVarint(zigzag(bits - _grav[i]));
+                _grav[i] = bits;
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    synchronized void addPlayer() {
+        begin(ADD_PLAYER);
+    }
+
+    synchronized void removeSprite(int index) {
+        if (!begin(REMOVE_SPRITE))
+            return;
+        try {
+            writeVarint(zigzag(index));
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    synchronized void setPlayer(int index) {
+        if (!begin(SET_PLAYER))
+            return;
+        try {
+            writeVarint(index);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    synchronized void input(int index, float x, float y) {
+        if (!begin(INPUT))
+            return;
+        try {
+            writeVarint(index);
+            writeFloat(x);
+            writeFloat(y);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    synchronized void addGhost(MultiPlayerGhostSprite ghost) {
+        if (!begin(ADD_GHOST))
+            return;
+        try {
+            writeSprite(ghost);
+            writeVarint(ghost.getSkipped());
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    synchronized void moveGhost(int index, MultiPlayerGhostSprite ghost) {
+        if (!begin(MOVE_GHOST))
+            return;
+        try {
+            writeVarint(index);
+            writeSprite(ghost);
+            writeVarint(ghost.getSkipped());
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    synchronized void movePlayer(GenericSprite player) {
+        if (!begin(MOVE_PLAYER))
+            return;
+        try {
+            writeSprite(player);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    synchronized void endGame(boolean finished) {
+        flag(END_GAME, finished);
+    }
+
+    synchronized void spectate(boolean showPlayer) {
+        flag(SPECTATE, showPlayer);
+    }
+
+    synchronized void setRefereed(boolean refereed) {
+        flag(REFEREED, refereed);
+    }
+
+    /**
+     * Finishes the recording, with a checksum of where the world ended up
+     *
+     * @param state World that was recorded
+     * @return False if the recording stopped early, see getError()
+     */
+    synchronized boolean close(GameState state) {
+        if (begin(END)) {
+            try {
+                _out.writeInt(_ticks);
+                _out.writeLong(checksum(state));
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+        try {
+            _out.close();
+        } catch (IOException e) {
+            fail(e);
+        }
+        return _error == null;
+    }
+    //endregion
+
+    //region Writing
+
+    private void flag(int tag, boolean value) {
+        if (!begin(tag))
+            return;
+        try {
+            _out.writeByte(value ? 1 : 0);
+            _bytes++;
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Writes out any unchanged ticks, then the tag of a new entry
+     *
+     * @return False if the recording has already failed
+     */
+    private boolean begin(int tag) {
+        if (_error != null)
+            return false;
+        try {
+            if (_repeats > 0) {
+                _out.writeByte(REPEAT);
+                _bytes++;
+                writeVarint(_repeats);
+                _repeats = 0;
+            }
+            _out.writeByte(tag);
+            _bytes++;
+            return true;
+        } catch (IOException e) {
+            fail(e);
+            return false;
+        }
+    }
+
+    private void fail(IOException e) {
+        // Not worth stopping the game for. Whoever stops recording can find out
+        if (_error == null)
+            _error = e;
+    }
+
+    private void writeSprite(GenericSprite s) throws IOException {
+        Box bounds = s.getRectangle();
+        writeFloat(bounds.left);
+        writeFloat(bounds.top);
+        writeFloat(bounds.right);
+        writeFloat(bounds.bottom);
+        writeFloat(s.getMotion().x);
+        writeFloat(s.getMotion().y);
+    }
+
+    private void writeFloat(float f) throws IOException {
+        _out.writeInt(Float.floatToRawIntBits(f));
+        _bytes += 4;
+    }
+
+    private void writeVarint(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            _out.writeByte((value & 0x7F) | 0x80);
+            _bytes++;
+            value >>>= 7;
+        }
+        _out.writeByte(value);
+        _bytes++;
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            size++;
+            value >>>= 7;
+        }
+        return size;
+    }
+
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+    //endregion
+
+    /**
+     * Sums up everything about a world that changes during play
+     * Two worlds with the same checksum are, as far as anyone can tell, the same
+     *
+     * @param state World
+     * @return CRC of its tick, score, state, offset, random numbers, shared gravity and every sprite
+     */
+    public static long checksum(GameState state) {
+        GameSnapshot snapshot = new GameSnapshot();
+        state.save(snapshot);
+        CRC32 crc = new CRC32();
+        updateInt(crc, snapshot.ticks);
+        updateInt(crc, snapshot.score);
+        updateInt(crc, snapshot.state.ordinal());
+        updateInt(crc, Float.floatToRawIntBits(snapshot.offsetX));
+        updateInt(crc, Float.floatToRawIntBits(snapshot.offsetY));
+        updateInt(crc, (int) snapshot.random);
+        updateInt(crc, (int) (snapshot.random >>> 32));
+        updateInt(crc, Float.floatToRawIntBits(snapshot.sharedGravX));
+        updateInt(crc, Float.floatToRawIntBits(snapshot.sharedGravY));
+        for (int i = 0; i < snapshot.count; i++) {
+            updateInt(crc, snapshot.extras[i]);
+            for (int j = 0; j < GenericSprite.SAVED_FLOATS; j++)
+                updateInt(crc, Float.floatToRawIntBits(snapshot.values[i * GenericSprite.SAVED_FLOATS + j]));
+            updateInt(crc, Float.floatToRawIntBits(snapshot.edges[i * 2]));
+            updateInt(crc, Float.floatToRawIntBits(snapshot.edges[i * 2 + 1]));
+            crc.update(snapshot.rest[i]);
+        }
+        return crc.getValue();
+    }
+
+    private static void updateInt(CRC32 crc, int value) {
+        crc.update(value);
+        crc.update(value >>> 8);
+        crc.update(value >>> 16);
+        crc.update(value >>> 24);
+    }
+}
@@ -0,0 +1,310 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Plays an InputRecorder recording back, as fast as it can
+ *
+ * The level is built from the recording's descriptor, then given the same gravity and
+ * the same network events before the same ticks as when it was recorded. Nothing else
+ * is needed, so it runs anywhere there's a JVM.
+ *
+ * Updates are deterministic, so the world ends up exactly where it did on the device.
+ * If the recording was finished properly, the checksum it ended with is checked against
+ * the replay's, and every repeat has to agree too. A mismatch means something in the
+ * simulation has changed what it does, or isn't deterministic any more.
+ *
+ * Usage: InputReplay recording.bin [-repeat 5]
+ * Repeats let the JIT warm up. The fastest run is reported. Exits with 1 on a mismatch.
+ */
+public strictfp class InputReplay {
+
+    //region Variables
+    private final LevelDescriptor _level;
+    private final byte[] _entries; // Everything after the header
+
+    // Filled in by replay()
+    private int _ticks;
+    private long _checksum;
+    private boolean _finished; // Whether the recording had an END
+    private int _recordedTicks;
+    private long _recordedChecksum;
+    private long _elapsed; // Nanos the last replay took
+    //endregion
+
+    /**
+     * Loads a recording to replay
+     *
+     * @param file Recording
+     * @throws IOException If the file isn't a recording we understand
+     */
+    public InputReplay(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(data);
+        } finally {
+            in.close();
+        }
+
+        ByteBuffer b = ByteBuffer.wrap(data);
+        if (b.remaining() < 5 || b.getInt() != InputRecorder.MAGIC)
+            throw new IOException("Not a recording");
+        int version = b.get();
+        if (version != InputRecorder.VERSION)
+            throw new IOException("Recording version " + version + ", can only read " + InputRecorder.VERSION);
+        _level = LevelDescriptor.read(b);
+        if (_level == null)
+            throw new IOException("Recording is of a level we don't know");
+        _entries = new byte[b.remaining()];
+        b.get(_entries);
+    }
+
+    //region Getters
+
+    /**
+     * Gets the level that was recorded
+     *
+     * @return Level, with the seed it was built from
+     */
+    public LevelDescriptor getLevel() {
+        return _level;
+    }
+
+    /**
+     * Gets the number of updates the last replay did
+     *
+     * @return Tick count
+     */
+    public int getTicks() {
+        return _ticks;
+    }
+
+    /**
+     * Gets how long the last replay took, not counting building the level
+     *
+     * @return Nanoseconds
+     */
+    public long getElapsed() {
+        return _elapsed;
+    }
+
+    /**
+     * Gets the checksum of where the last replay ended up
+     *
+     * @return Checksum, see InputRecorder.checksum()
+     */
+    public long getChecksum() {
+        return _checksum;
+    }
+
+    /**
+     * Whether the recording was finished properly, so there's something to check against
+     *
+     * @return True if the recording has its checksum
+     */
+    public boolean isFinished() {
+        return _finished;
+    }
+
+    /**
+     * Gets the number of updates the recording says it had
+     * Only known after a replay has reached the end
+     *
+     * @return Tick count, or 0 if the recording was cut short
+     */
+    public int getRecordedTicks() {
+        return _finished ? _recordedTicks : 0;
+    }
+
+    /**
+     * Whether the last replay ended up exactly where the recording did
+     *
+     * @return True if it matched, or there was nothing to check against
+     */
+    public boolean isMatch() {
+        return !_finished || (_recordedTicks == _ticks && _recordedChecksum == _checksum);
+    }
+    //endregion
+
+    /**
+     * Plays the recording back once, into a new world
+     *
+     * @return World, where the recording left it
+     * @throws IOException If the recording refers to something that isn't there
+     */
+    public GameState replay() throws IOException {
+        return replay(null);
+    }
+
+    /**
+     * Plays the recording back once, into a new world, timing every update
+     *
+     * @param tickNanos Filled in with how long each update took, as far as it goes. May be null
+     * @return World, where the recording left it
+     * @throws IOException If the recording refers to something that isn't there
+     */
+    public GameState replay(long[] tickNanos) throws IOException {
+        GameState state = _level.create(_level.toString());
+        List<GenericSprite> sprites = state.getSprites();
+        float[] grav = new float[3];
+        int[] bits = new int[3];
+        _ticks = 0;
+        _finished = false;
+
+        ByteBuffer b = ByteBuffer.wrap(_entries);
+        long start = System.nanoTime();
+        try {
+            while (b.hasRemaining() && !_finished) {
+                int tag = b.get() & 0xFF;
+                switch (tag) {
+                    case InputRecorder.REPEAT:
+                        for (int n = readVarint(b); n > 0; n--)
+                            update(state, tickNanos);
+                        break;
+                    case InputRecorder.ADD_PLAYER:
+                        state.addPlayer();
+                        break;
+                    case InputRecorder.REMOVE_SPRITE:
+                        int index = InputRecorder.unzigzag(readVarint(b));
+                        GenericSprite removed = index < 0 ? state.getPlayer() : sprites.get(index);
+                        if (removed instanceof MultiPlayerGhostSprite)
+                            state.removeGhost((MultiPlayerGhostSprite) removed);
+                        else
+                            state.removePlayer((PlayerSprite) removed);
+                        break;
+                    case InputRecorder.SET_PLAYER:
+                        state.setPlayer((PlayerSprite) sprites.get(readVarint(b)));
+                        break;
+                    case InputRecorder.INPUT:
+                        PlayerSprite p = (PlayerSprite) sprites.get(readVarint(b));
+                        state.setInput(p, b.getFloat(), b.getFloat());
+                        break;
+                    case InputRecorder.ADD_GHOST:
+                        MultiPlayerGhostSprite ghost = new MultiPlayerGhostSprite(0, 0);
+                        readBounds(b, ghost);
+                        ghost.setSkipped(readVarint(b));
+                        state.addGhost(ghost);
+                        break;
+                    case InputRecorder.MOVE_GHOST:
+                        MultiPlayerGhostSprite moved = (MultiPlayerGhostSprite) sprites.get(readVarint(b));
+                        readBounds(b, moved);
+                        moved.setSkipped(readVarint(b));
+                        break;
+                    case InputRecorder.MOVE_PLAYER:
+                        readBounds(b, state.getPlayer());
+                        break;
+                    case InputRecorder.END_GAME:
+                        state.endGame(b.get() != 0);
+                        break;
+                    case InputRecorder.SPECTATE:
+                        state.spectate(b.get() != 0);
+                        break;
+                    case InputRecorder.REFEREED:
+                        state.setRefereed(b.get() != 0);
+                        break;
+                    case InputRecorder.END:
+                        _recordedTicks = b.getInt();
+                        _recordedChecksum = b.getLong();
+                        _finished = true;
+                        break;
+                    default:
+                        if ((tag & ~InputRecorder.AXES) != InputRecorder.TICK)
+                            throw new IOException("Unknown entry " + tag + " at byte " + (b.position() - 1));
+                        for (int i = 0; i < 3; i++) {
+                            if ((tag & (1 << i)) != 0) {
+                                bits[i] += InputRecorder.unzigzag(readVarint(b));
+                                grav[i] = Float.intBitsToFloat(bits[i]);
+                            }
+                        }
+                        state.setGravity(grav[0], grav[1], grav[2]);
+                        update(state, tickNanos);
+                        break;
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            // Cut short while recording. Play what there is
+        } catch (IndexOutOfBoundsException | ClassCastException e) {
+            throw new IOException("Recording doesn't match the level at byte " + b.position(), e);
+        }
+        _elapsed = System.nanoTime() - start;
+        _checksum = InputRecorder.checksum(state);
+        return state;
+    }
+
+    private void update(GameState state, long[] tickNanos) {
+        if (tickNanos != null && _ticks < tickNanos.length) {
+            long start = System.nanoTime();
+            state.update();
+            tickNanos[_ticks] = System.nanoTime() - start;
+        } else {
+            state.update();
+        }
+        _ticks++;
+    }
+
+    private static void readBounds(ByteBuffer b, GenericSprite s) {
+        s.setRectangle(new Box(b.getFloat(), b.getFloat(), b.getFloat(), b.getFloat()));
+        s.getMotion().set(b.getFloat(), b.getFloat());
+    }
+
+    private static int readVarint(ByteBuffer b) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int next = b.get();
+            value |= (next & 0x7F) << shift;
+            if ((next & 0x80) == 0)
+                return value;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: InputReplay recording.bin [-repeat 5]");
+            return;
+        }
+        int repeat = 5;
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "-repeat": repeat = Integer.parseInt(args[i + 1]); break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    return;
+            }
+        }
+
+        InputReplay replay = new InputReplay(new File(args[0]));
+        long best = Long.MAX_VALUE;
+        long first = 0;
+        boolean match = true;
+        for (int i = 0; i < repeat; i++) {
+            replay.replay();
+            if (i == 0)
+                first = replay.getChecksum();
+            else if (replay.getChecksum() != first) {
+                System.err.println("Run " + i + " gave a different checksum");
+                match = false;
+            }
+            if (!replay.isMatch()) {
+                System.err.println("Run " + i + " ended at tick " + replay.getTicks() + " with " + Long.toHexString(replay.getChecksum())
+                        + ", recording ended at " + replay._recordedTicks + " with " + Long.toHexString(replay._recordedChecksum));
+                match = false;
+            }
+            best = Math.min(best, replay.getElapsed());
+        }
+
+        int ticks = replay.getTicks();
+        System.out.println(replay.getLevel() + " (seed " + replay.getLevel().getSeed() + "), " + ticks + " ticks, "
+                + replay._entries.length + " bytes");
+        System.out.println("Fastest run: " + best / 1000 + "us, " + (best == 0 ? 0 : ticks * 1000000000L / best) + " ticks/s");
+        System.out.println("Checksum: " + Long.toHexString(first) + (replay.isFinished() ? (match ? ", matches the recording" : ", MISMATCH") : ", recording was cut short"));
+        System.exit(match ? 0 : 1);
+    }
+}
@@ -0,0 +1,37 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+/**
+ * A point or size with int coordinates, such as a level's size
+ * The engine's own, so it runs without Android
+ */
+public class IntVec2 {
+
+    public int x;
+    public int y;
+
+    public IntVec2() {
+    }
+
+    public IntVec2(int x, int y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof IntVec2))
+            return false;
+        IntVec2 v = (IntVec2) o;
+        return x == v.x && y == v.y;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * x + y;
+    }
+
+    @Override
+    public String toString() {
+        return "IntVec2(" + x + ", " + y + ")";
+    }
+}
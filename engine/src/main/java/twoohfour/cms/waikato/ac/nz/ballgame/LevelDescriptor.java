@@ -0,0 +1,117 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+
+import java.nio.ByteBuffer;
+
+/**
+ * Everything a device needs to build the same level as everyone else
+ *
+ * Levels are sent as their id and a seed. Generation only depends on the seed,
+ * so that's enough even for Random. Only built in levels can be described.
+ *
+ * Payload: | level (1) | seed (8) |
+ */
+public class LevelDescriptor {
+
+    //region Variables
+    private static final int SIZE = 9; // Bytes write() uses
+
+    private final GameState.Level _level;
+    private final long _seed;
+    //endregion
+
+    /**
+     * Describes a built in level
+     *
+     * @param level Level to play
+     * @param seed  Seed it's generated and played with
+     */
+    public LevelDescriptor(GameState.Level level, long seed) {
+        _level = level;
+        _seed = seed;
+    }
+
+    //region Getters
+
+    /**
+     * Gets the built in level being played
+     *
+     * @return Level
+     */
+    public GameState.Level getLevel() {
+        return _level;
+    }
+
+    /**
+     * Gets the seed the level is generated and played with
+     *
+     * @return Seed
+     */
+    public long getSeed() {
+        return _seed;
+    }
+
+    /**
+     * Gets the number of bytes write() will use
+     *
+     * @return Size in bytes
+     */
+    public int getSize() {
+        return SIZE;
+    }
+    //endregion
+
+    /**
+     * Describes the same level, played with a different seed
+     *
+     * @param seed Seed
+     * @return Descriptor
+     */
+    public LevelDescriptor withSeed(long seed) {
+        return new LevelDescriptor(_level, seed);
+    }
+
+    /**
+     * Builds the level
+     *
+     * @param title Title to give it
+     * @return A new level
+     */
+    public GameState create(String title) {
+        return GameState.GENERATE(_level, title, _seed);
+    }
+
+    @Override
+    public String toString() {
+        return _level.name();
+    }
+
+    //region Wire format
+
+    /**
+     * Writes the descriptor into a message
+     *
+     * @param b Buffer to write into. Needs getSize() bytes left
+     */
+    public void write(ByteBuffer b) {
+        b.put((byte) _level.ordinal());
+        b.putLong(_seed);
+    }
+
+    /**
+     * Reads a descriptor from a message
+     *
+     * @param b Buffer to read from
+     * @return Descriptor, or null if it isn't one we understand
+     */
+    public static LevelDescriptor read(ByteBuffer b) {
+        if (b.remaining() < SIZE)
+            return null;
+        int level = b.get() & 0xFF;
+        long seed = b.getLong();
+        if (level >= GameState.Level.values().length)
+            return null;
+        return new LevelDescriptor(GameState.Level.values()[level], seed);
+    }
+    //endregion
+}
@@ -0,0 +1,345 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Fills a room with bots, to find out how many players the game copes with
+ *
+ * Each bot is a whole client: its own network, level and ghosts, a game timer at 30Hz
+ * and a network timer at 20Hz, just like GameActivity. They tilt at random, or in
+ * circles, and speak the real protocol over a LoopbackHub or the real multicast group.
+ *
+ * Once a second every bot also sends a 109 probe holding System.nanoTime(), in the same
+ * datagram as its position. All the bots share a clock, so whoever gets a probe knows
+ * how long the ghost it just moved took to get there.
+ *
+ * For each room size it reports, per bot:
+ *  - positions received each second
+ *  - time spent decoding them, including waiting for the level's lock
+ *  - probe latency, from queueing to the listener
+ *  - how many game ticks finished after the next one was due
+ *
+ * Usage: LoadGenerator [option value] ...
+ *   -peers 2,8,32,128   -seconds 10   -transport loopback|multicast
+ *   -input random|circle   -level Empty   -seed 1   -adaptive false
+ * With -adaptive true, bots send their positions as often as a RateController says.
+ */
+public class LoadGenerator {
+
+    //region Variables
+    public static final int CODE_PROBE = 109;
+    public static final int UPDATES_PER_SECOND = 30; // Same as GameActivity
+    public static final int NETWORK_UPDATES_PER_SECOND = 20;
+    public static final int PROBES_PER_SECOND = 1;
+
+    private final boolean _multicast;
+    private final boolean _circle;
+    private final boolean _adaptive;
+    private final GameState.Level _level;
+    private final long _seed;
+    private LoopbackHub _hub; // Null when using multicast
+    private volatile long _deadline; // System.nanoTime() when bots stop, so an overloaded room still ends
+    //endregion
+
+    /**
+     * A headless client
+     */
+    private class Bot implements MultiplayerEventListener {
+        final MultiplayerNetwork network;
+        final GameState state;
+        final PeerRegistry peers = new PeerRegistry();
+        final MultiPlayerGhostSprite[] ghosts = new MultiPlayerGhostSprite[PeerRegistry.MAX_PEERS];
+        final PositionCodec codec = new PositionCodec();
+        final RateController rate; // Null if sending at the full rate
+        final byte[] probe = new byte[8];
+        final Random random;
+        final float phase;
+        Timer updateTimer;
+        Timer netTimer;
+        int netTicks;
+        boolean stopped; // Guarded by the bot, so nothing is sent once it's stopped
+
+        // Stats. Positions and decoding are only touched by the listener, ticks by the game timer
+        long positions;
+        long decodeNanos;
+        long[] latencies = new long[64];
+        int latencyCount;
+        long ticks;
+        long overruns;
+        long maxLateMs;
+
+        Bot(int index, int session) {
+            network = _multicast ? new MultiplayerNetwork() : new MultiplayerNetwork(_hub.connect());
+            state = GameState.GENERATE(_level, _level.name(), _seed);
+            random = new Random(_seed + index);
+            phase = index;
+            network.setSession(session);
+            network.registerListener(this);
+            rate = _adaptive ? new RateController(network, RateController.MIN_RATE, NETWORK_UPDATES_PER_SECOND) : null;
+        }
+
+        void start() {
+            updateTimer = new Timer("Bot update");
+            updateTimer.scheduleAtFixedRate(new TimerTask() {
+                @Override
+                public void run() {
+                    update();
+                    if (System.nanoTime() > _deadline)
+                        return;
+
+                    // Late if the next tick should already have started
+                    long late = System.currentTimeMillis() - scheduledExecutionTime() - 1000 / UPDATES_PER_SECOND;
+                    ticks++;
+                    if (late > 0) {
+                        overruns++;
+                        maxLateMs = Math.max(maxLateMs, late);
+                    }
+                }
+            }, 0, 1000 / UPDATES_PER_SECOND);
+
+            netTimer = new Timer("Bot network");
+            netTimer.scheduleAtFixedRate(new TimerTask() {
+                @Override
+                public void run() {
+                    send();
+                }
+            }, 0, 1000 / NETWORK_UPDATES_PER_SECOND);
+        }
+
+        synchronized void stop() {
+            stopped = true;
+            updateTimer.cancel();
+            netTimer.cancel();
+        }
+
+        private void update() {
+            if (System.nanoTime() > _deadline) {
+                updateTimer.cancel();
+                return;
+            }
+            synchronized (state) {
+                if (_circle) {
+                    float angle = phase + state.getGameTime() * 0.05f;
+                    state.setGravity((float) Math.cos(angle) * 0.005f, (float) Math.sin(angle) * 0.005f, 0);
+                } else if (random.nextInt(UPDATES_PER_SECOND) == 0) {
+                    state.setGravity((random.nextFloat() - 0.5f) * 0.02f, (random.nextFloat() - 0.5f) * 0.02f, 0);
+                }
+                state.update();
+            }
+        }
+
+        private synchronized void send() {
+            if (stopped || System.nanoTime() > _deadline) {
+                netTimer.cancel();
+                return;
+            }
+
+            if (rate == null || rate.tick()) {
+                int code;
+                synchronized (state) {
+                    PlayerSprite player = state.getPlayer();
+                    IntVec2 levelSize = state.getLevelSize();
+                    code = codec.prepare(player.getXPos(), player.getYPos(),
+                            player.getMotion().x, player.getMotion().y,
+                            state.getGameTime(), levelSize.x, levelSize.y);
+                }
+                if (code != 0)
+                    network.queueCode(code, codec.getPayload(), codec.getPayloadLength());
+            }
+
+            if (netTicks++ % (NETWORK_UPDATES_PER_SECOND / PROBES_PER_SECOND) == 0) {
+                ByteBuffer.wrap(probe).putLong(System.nanoTime());
+                network.queueCode(CODE_PROBE, probe, probe.length);
+            }
+            network.flush();
+        }
+
+        @Override
+        public void message(int statusCode, ByteBuffer event, int from, int session) {
+            if (MultiplayerNetwork.isDiscoveryCode(statusCode) || System.nanoTime() > _deadline)
+                return;
+
+            switch (statusCode) {
+                case PositionCodec.CODE_KEYFRAME:
+                case PositionCodec.CODE_DELTA:
+                    long start = System.nanoTime();
+                    int peer = peers.lookup(from);
+                    if (peer < 0)
+                        peer = addGhost(from);
+                    if (peer < 0)
+                        return;
+                    synchronized (state) {
+                        IntVec2 levelSize = state.getLevelSize();
+                        PositionCodec.decode(statusCode, event, ghosts[peer], levelSize.x, levelSize.y);
+                    }
+                    decodeNanos += System.nanoTime() - start;
+                    positions++;
+                    break;
+                case CODE_PROBE:
+                    if (latencyCount == latencies.length)
+                        latencies = Arrays.copyOf(latencies, latencies.length * 2);
+                    latencies[latencyCount++] = System.nanoTime() - event.getLong();
+                    break;
+                case 104:
+                    peer = peers.lookup(from);
+                    if (peer < 0)
+                        return;
+                    synchronized (state) {
+                        state.getSprites().remove(ghosts[peer]);
+                    }
+                    peers.remove(peer);
+                    ghosts[peer] = null;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private int addGhost(int node) {
+            int peer = peers.add(node);
+            if (peer < 0)
+                return -1;
+            ghosts[peer] = new MultiPlayerGhostSprite(0, 0);
+            synchronized (state) {
+                state.getSprites().add(ghosts[peer]);
+            }
+            return peer;
+        }
+
+        @Override
+        public void onNetworkError(Exception e, String text) {
+            System.err.println(e.getMessage() + " " + text);
+        }
+    }
+
+    /**
+     * Sets up a load generator
+     *
+     * @param multicast Whether bots use the real multicast group, rather than a LoopbackHub
+     * @param circle    Whether bots tilt in circles, rather than at random
+     * @param adaptive  Whether bots use a RateController
+     * @param level     Level every bot plays
+     * @param seed      Seed for levels and tilting
+     */
+    public LoadGenerator(boolean multicast, boolean circle, boolean adaptive, GameState.Level level, long seed) {
+        _multicast = multicast;
+        _circle = circle;
+        _adaptive = adaptive;
+        _level = level;
+        _seed = seed;
+    }
+
+    /**
+     * Plays one room full of bots, and prints how they got on
+     *
+     * @param count   Number of bots
+     * @param seconds How long to play for
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public void run(int count, int seconds) throws InterruptedException {
+        _hub = _multicast ? null : new LoopbackHub(_seed);
+        int session = new Random(_seed + count).nextInt() | 1; // Away from real rooms, and never 0
+
+        List<Bot> bots = new ArrayList<Bot>();
+        for (int i = 0; i < count; i++)
+            bots.add(new Bot(i, session));
+        _deadline = System.nanoTime() + seconds * 1000000000L;
+        for (Bot b : bots)
+            b.start();
+
+        Thread.sleep(seconds * 1000L);
+
+        for (Bot b : bots)
+            b.stop();
+        for (Bot b : bots)
+            b.network.close();
+        report(bots, seconds);
+    }
+
+    private void report(List<Bot> bots, int seconds) {
+        long positions = 0;
+        long decodeNanos = 0;
+        long ticks = 0;
+        long overruns = 0;
+        long maxLate = 0;
+        int latencyCount = 0;
+        for (Bot b : bots) {
+            positions += b.positions;
+            decodeNanos += b.decodeNanos;
+            ticks += b.ticks;
+            overruns += b.overruns;
+            maxLate = Math.max(maxLate, b.maxLateMs);
+            latencyCount += b.latencyCount;
+        }
+
+        long[] latencies = new long[latencyCount];
+        int n = 0;
+        for (Bot b : bots) {
+            System.arraycopy(b.latencies, 0, latencies, n, b.latencyCount);
+            n += b.latencyCount;
+        }
+        Arrays.sort(latencies);
+
+        int count = bots.size();
+        System.out.println(count + " peers, " + seconds + "s" + (_hub != null ? ", " + _hub.getDelivered() + " datagrams delivered" : ""));
+        System.out.println("  Received per bot:  " + positions / count / seconds + " positions/s");
+        System.out.println("  Decoding per bot:  " + (positions == 0 ? 0 : decodeNanos / positions) + "ns each, "
+                + (float) decodeNanos * 100 / count / (seconds * 1000000000L) + "% of a core");
+        if (latencyCount > 0) {
+            System.out.println("  Ghost latency:     mean " + mean(latencies) / 1000 + "us, p99 "
+                    + latencies[(latencyCount - 1) * 99 / 100] / 1000 + "us, max " + latencies[latencyCount - 1] / 1000 + "us");
+        }
+        if (_adaptive) {
+            float rate = 0;
+            for (Bot b : bots)
+                rate += b.rate.getRate();
+            System.out.println("  Send rate:         " + rate / count + "/s on average");
+        }
+        System.out.println("  Tick overruns:     " + overruns + " of " + ticks + ", worst " + maxLate + "ms late");
+    }
+
+    private static long mean(long[] values) {
+        long sum = 0;
+        for (long v : values)
+            sum += v;
+        return sum / values.length;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        String peers = "2,8,32,128";
+        int seconds = 10;
+        boolean multicast = false;
+        boolean circle = false;
+        boolean adaptive = false;
+        GameState.Level level = GameState.Level.Empty;
+        long seed = 1;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "-peers": peers = value; break;
+                case "-seconds": seconds = Integer.parseInt(value); break;
+                case "-transport": multicast = value.equals("multicast"); break;
+                case "-input": circle = value.equals("circle"); break;
+                case "-adaptive": adaptive = Boolean.parseBoolean(value); break;
+                case "-level": level = GameState.Level.valueOf(value); break;
+                case "-seed": seed = Long.parseLong(value); break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    return;
+            }
+        }
+
+        LoadGenerator generator = new LoadGenerator(multicast, circle, adaptive, level, seed);
+        for (String count : peers.split(","))
+            generator.run(Integer.parseInt(count.trim()), seconds);
+        System.exit(0);
+    }
+}
@@ -0,0 +1,501 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Keeps every player's world identical by sharing only their inputs
+ *
+ * Every device simulates every player. A player's tilt for tick t is taken at tick
+ * t - INPUT_DELAY and sent to everyone (108). A tick is only simulated once everyone's
+ * input for it has arrived, so the worlds can't drift apart. The delay hides the time
+ * the input takes to get there. Bandwidth doesn't depend on what's in the level.
+ *
+ * Players are added to the world in order of node id, and the world is seeded the same
+ * on every device, so the simulation order and random numbers agree too.
+ *
+ * Inputs are sent again until everyone has them, so they don't need the reliable channel.
+ * Each message carries the sender's confirmed tick, the last tick it has every player's
+ * input up to, and every input of ours past the lowest confirmed tick we've heard.
+ *
+ * Input payload: | first tick (4) | confirmed tick (4) | count (1) | x (2) | y (2) | ...
+ * A player leaving sends a reliable 104 with its last tick in front of the same fields,
+ * so everyone takes its ball out on the same tick.
+ *
+ * A player who goes quiet can't say which tick was its last, and every device may have had
+ * a different amount of its input by then. So every player still here reports, reliably,
+ * how far it got and the inputs it has (114, not decided). Nobody takes any more of the quiet
+ * player's input after reporting, so nobody gets further than they said. The lowest player still
+ * here waits for everyone's report, then sends the furthest one as the decision (114, decided).
+ * Its inputs bring everyone up to that tick, and everyone takes the ball out on the tick after.
+ *
+ * Gone payload: | node (4) | decided (1) | last tick (4) | first tick (4) | count (1) | x (2) | y (2) | ...
+ */
+public strictfp class LockstepSession implements MultiplayerEventListener {
+
+    //region Variables
+    public static final int CODE_INPUTS = 108;
+    public static final int CODE_GONE = 114;
+    public static final int INPUT_DELAY = 3; // 100ms at 30 updates per second
+    public static final int HISTORY = 128; // Ticks of input kept. Well past the network's peer timeout
+    public static final int MAX_INPUTS_PER_MESSAGE = 32;
+    public static final int MAX_PLAYERS = 255; // Counted in a byte by the 200 that starts the game
+
+    protected static final int PLAYING = Integer.MAX_VALUE;
+
+    protected final MultiplayerNetwork _network;
+    protected final GameState _state;
+    protected final int[] _nodes; // Sorted
+    protected final PlayerSprite[] _players; // Same order as _nodes. Kept after they leave
+    protected final short[][] _inputs; // [player][(tick % HISTORY) * 2 + axis]
+    protected final int[] _received; // Last tick we have all of each player's inputs up to
+    protected final int[] _confirmed; // Last tick each player has everyone's inputs up to
+    protected final int[] _lastTick; // Last tick a player has input for. PLAYING until they leave
+    protected final int _local;
+    private final ByteBuffer _out = ByteBuffer.allocate(13 + MAX_INPUTS_PER_MESSAGE * 4);
+
+    // Agreeing when a player who went quiet left, see the class comment
+    private final int[] _limit; // Last tick of each player's input we'll take. PLAYING until we've reported them gone
+    private final boolean[] _quiet; // Timed out by our network
+    private final boolean[] _decided; // Gone, at a tick everyone has agreed on
+    private final boolean[][] _reports; // [player][reporter] Who has reported each player gone
+    private final byte[][] _furthest; // Report that got furthest for each player, to send as the decision
+    private final int[] _furthestTick;
+    private final ByteBuffer _gone = ByteBuffer.allocate(14 + HISTORY * 4);
+
+    protected int _tick;
+    protected int _stalls;
+    //endregion
+
+    /**
+     * Sets up a world for lockstep play
+     * Every device must call this with the same nodes, and a world generated from the same seed
+     *
+     * @param network   Network to share inputs over
+     * @param state     World to simulate. Its players are replaced by one for each node
+     * @param nodes     Node ids of every player, including ours
+     * @param localNode Our node id
+     */
+    public LockstepSession(MultiplayerNetwork network, GameState state, int[] nodes, int localNode) {
+        _network = network;
+        _state = state;
+        _nodes = nodes.clone();
+        Arrays.sort(_nodes);
+        _local = Arrays.binarySearch(_nodes, localNode);
+        if (_local < 0)
+            throw new IllegalArgumentException("We aren't one of the players");
+
+        int count = _nodes.length;
+        _players = new PlayerSprite[count];
+        _inputs = new short[count][HISTORY * 2];
+        _received = new int[count];
+        _confirmed = new int[count];
+        _lastTick = new int[count];
+        _limit = new int[count];
+        _quiet = new boolean[count];
+        _decided = new boolean[count];
+        _reports = new boolean[count][count];
+        _furthest = new byte[count][];
+        _furthestTick = new int[count];
+
+        // Same players, in the same order, on every device
+        state.removePlayer(state.getPlayer());
+        for (int i = 0; i < count; i++) {
+            _players[i] = state.addPlayer();
+            // Nobody moves for the first few ticks, as no input can arrive in time
+            _received[i] = INPUT_DELAY - 1;
+            _confirmed[i] = INPUT_DELAY - 1;
+            _lastTick[i] = PLAYING;
+            _limit[i] = PLAYING;
+        }
+        state.setPlayer(_players[_local]);
+    }
+
+    //region Getters
+
+    /**
+     * Gets the world being simulated
+     *
+     * @return Game state
+     */
+    public GameState getState() {
+        return _state;
+    }
+
+    /**
+     * Gets the next tick to be simulated
+     *
+     * @return Tick
+     */
+    public synchronized int getTick() {
+        return _tick;
+    }
+
+    /**
+     * Gets the number of updates that were spent waiting for someone's input
+     *
+     * @return Number of stalled updates
+     */
+    public synchronized int getStalls() {
+        return _stalls;
+    }
+
+    /**
+     * Whether the world can no longer change its mind about the ticks simulated so far
+     * Always true in lockstep, as nothing is simulated without everyone's input
+     *
+     * @return True if the world is final
+     */
+    public synchronized boolean isSettled() {
+        return true;
+    }
+    //endregion
+
+    /**
+     * Moves the world on by a tick, if everyone's input for it has arrived
+     * Should be called once per update, holding the state's lock
+     *
+     * @param gx Our tilt in the X direction
+     * @param gy Our tilt in the Y direction
+     * @return Whether the world was updated
+     */
+    public synchronized boolean step(float gx, float gy) {
+        takeInput(gx, gy);
+        sendInputs();
+
+        for (int i = 0; i < _players.length; i++) {
+            if (isWaitingFor(i)) {
+                _stalls++;
+                return false;
+            }
+        }
+
+        simulate();
+        return true;
+    }
+
+    /**
+     * Takes our input for the future, once per tick however long we wait
+     *
+     * @param gx Our tilt in the X direction
+     * @param gy Our tilt in the Y direction
+     */
+    protected void takeInput(float gx, float gy) {
+        int future = _tick + INPUT_DELAY;
+        if (_received[_local] < future) {
+            store(_local, future, (short) GameHost.quantiseInput(gx), (short) GameHost.quantiseInput(gy));
+            _received[_local] = future;
+        }
+    }
+
+    /**
+     * Updates the world with the inputs stored for the current tick
+     */
+    protected void simulate() {
+        int slot = (_tick % HISTORY) * 2;
+        for (int i = 0; i < _players.length; i++) {
+            if (hasLeft(i)) {
+                // Players who've left come out on the tick after their last input, on every device
+                _state.removePlayer(_players[i]);
+            } else {
+                _state.setInput(_players[i], GameHost.dequantiseInput(_inputs[i][slot]), GameHost.dequantiseInput(_inputs[i][slot + 1]));
+            }
+        }
+        _state.update();
+        _tick++;
+    }
+
+    /**
+     * Whether a player is gone by the current tick
+     */
+    protected boolean hasLeft(int player) {
+        return _tick > _lastTick[player];
+    }
+
+    /**
+     * Called for an input that arrives for a tick that has already been simulated
+     * Never happens in lockstep. The input hasn't been stored yet
+     *
+     * @param player Player it's from
+     * @param tick   Tick it's for
+     * @param x      Quantised tilt in the X direction
+     * @param y      Quantised tilt in the Y direction
+     */
+    protected void lateInput(int player, int tick, short x, short y) {
+    }
+
+    /**
+     * Called once we know the last tick a player has input for
+     *
+     * @param player Player who is leaving
+     */
+    protected void playerLeaving(int player) {
+    }
+
+    /**
+     * Tells everyone we're leaving, along with any inputs they might not have
+     * Sent reliably, so they don't wait forever for inputs that aren't coming
+     */
+    public synchronized void sendLeave() {
+        _out.clear();
+        _out.putInt(_received[_local]);
+        writeInputs();
+        _network.queueReliable(MultiplayerNetwork.CODE_LEAVE, _out.array(), _out.position());
+        _network.flush();
+    }
+
+    private boolean isWaitingFor(int player) {
+        return !hasLeft(player) && needsInputFrom(player) && _received[player] < _tick;
+    }
+
+    /**
+     * Whether a player's input still matters
+     * Finished players are finished on every device at the same tick, so their input doesn't
+     */
+    protected boolean needsInputFrom(int player) {
+        return !_players[player].isOut();
+    }
+
+    protected void store(int player, int tick, short x, short y) {
+        int slot = (tick % HISTORY) * 2;
+        _inputs[player][slot] = x;
+        _inputs[player][slot + 1] = y;
+    }
+
+    protected void sendInputs() {
+        _out.clear();
+        if (writeInputs()) {
+            _network.queueCode(CODE_INPUTS, _out.array(), _out.position());
+            _network.flush();
+        }
+    }
+
+    /**
+     * Adds every input of ours that someone might still be missing to _out
+     *
+     * @return Whether there is anyone to send to
+     */
+    private boolean writeInputs() {
+        int lowest = Integer.MAX_VALUE;
+        for (int i = 0; i < _players.length; i++) {
+            // Even finished players are still watching, so need everyone's input
+            if (i != _local && _lastTick[i] == PLAYING)
+                lowest = Math.min(lowest, _confirmed[i]);
+        }
+        if (lowest == Integer.MAX_VALUE)
+            return false;
+
+        int latest = _received[_local];
+        int first = Math.max(Math.max(INPUT_DELAY, lowest + 1), latest - HISTORY + 1);
+        int count = Math.max(0, Math.min(latest - first + 1, MAX_INPUTS_PER_MESSAGE));
+
+        _out.putInt(first);
+        _out.putInt(getConfirmedTick());
+        _out.put((byte) count);
+        for (int t = first; t < first + count; t++) {
+            int slot = (t % HISTORY) * 2;
+            _out.putShort(_inputs[_local][slot]);
+            _out.putShort(_inputs[_local][slot + 1]);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the last tick we have every player's input up to
+     */
+    protected int getConfirmedTick() {
+        int confirmed = Integer.MAX_VALUE;
+        for (int i = 0; i < _players.length; i++) {
+            if (!needsInputFrom(i) || _received[i] >= _lastTick[i])
+                continue; // Nothing more coming from them
+            confirmed = Math.min(confirmed, _received[i]);
+        }
+        return confirmed;
+    }
+
+    private void readInputs(int player, ByteBuffer data) {
+        int first = data.getInt();
+        int confirmed = data.getInt();
+        int count = data.get() & 0xFF;
+        if (confirmed > _confirmed[player])
+            _confirmed[player] = confirmed;
+
+        for (int i = 0; i < count; i++) {
+            short x = data.getShort();
+            short y = data.getShort();
+            int t = first + i;
+            // Only take the next one in line, and only if there's room to keep it
+            if (t == _received[player] + 1 && t < _tick + HISTORY && t <= _limit[player]) {
+                if (t < _tick)
+                    lateInput(player, t, x, y);
+                store(player, t, x, y);
+                _received[player] = t;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void message(int statusCode, ByteBuffer data, int from, int session) {
+        int player = Arrays.binarySearch(_nodes, from);
+        if (player < 0 || player == _local)
+            return;
+
+        if (statusCode == CODE_INPUTS) {
+            readInputs(player, data);
+        } else if (statusCode == MultiplayerNetwork.CODE_LEAVE) {
+            if (data.remaining() >= 4) {
+                if (_limit[player] != PLAYING)
+                    return; // Too late, everyone is already agreeing on when they left
+                int last = data.getInt();
+                if (data.remaining() >= 9)
+                    readInputs(player, data);
+                _lastTick[player] = last;
+                playerLeaving(player);
+            } else {
+                // Timed out. Others may have heard more or less of them, or never heard the goodbye
+                _quiet[player] = true;
+                reportGone(player);
+                decideGone();
+            }
+        } else if (statusCode == CODE_GONE) {
+            readGone(player, data);
+        }
+    }
+
+    //region Players going quiet
+
+    /**
+     * Tells everyone how far we got with a player's input, and stops taking any more of it
+     * Done once, when the player times out or when anyone else reports them
+     */
+    private void reportGone(int player) {
+        if (player == _local || _decided[player] || _reports[player][_local])
+            return;
+        int last = _received[player];
+        _limit[player] = last;
+        _reports[player][_local] = true;
+
+        // Enough input to bring anyone up to where we are
+        int lowest = last;
+        for (int i = 0; i < _players.length; i++) {
+            if (i != player && i != _local && _lastTick[i] == PLAYING)
+                lowest = Math.min(lowest, _confirmed[i]);
+        }
+        int first = Math.max(Math.max(INPUT_DELAY, lowest + 1), last - HISTORY + 1);
+        int count = Math.max(0, last - first + 1);
+
+        _gone.clear();
+        _gone.putInt(_nodes[player]);
+        _gone.put((byte) 0);
+        _gone.putInt(last);
+        _gone.putInt(first);
+        _gone.put((byte) count);
+        for (int t = first; t < first + count; t++) {
+            int slot = (t % HISTORY) * 2;
+            _gone.putShort(_inputs[player][slot]);
+            _gone.putShort(_inputs[player][slot + 1]);
+        }
+        keepFurthest(player, last, _gone.array(), _gone.position());
+        _network.queueReliable(CODE_GONE, _gone.array(), _gone.position());
+        _network.flush();
+    }
+
+    /**
+     * Takes a report or decision about a player who went quiet
+     *
+     * @param reporter Player it's from
+     * @param data     Payload
+     */
+    private void readGone(int reporter, ByteBuffer data) {
+        int start = data.position();
+        int player = Arrays.binarySearch(_nodes, data.getInt());
+        boolean decided = data.get() != 0;
+        int last = data.getInt();
+        if (player < 0 || player == reporter || _decided[player])
+            return;
+
+        if (decided) {
+            gone(player, last, data);
+            return;
+        }
+        _reports[player][reporter] = true;
+        byte[] report = new byte[data.limit() - start];
+        data.position(start);
+        data.get(report);
+        keepFurthest(player, last, report, report.length);
+
+        // Everyone has to say how far they got
+        reportGone(player);
+        decideGone();
+    }
+
+    private void keepFurthest(int player, int last, byte[] report, int length) {
+        if (_furthest[player] == null || last > _furthestTick[player]) {
+            _furthest[player] = Arrays.copyOf(report, length);
+            _furthestTick[player] = last;
+        }
+    }
+
+    /**
+     * Sends the decision for anyone reported gone, if it's down to us and everyone has reported
+     * It's down to the lowest player still here, so a decider going quiet is taken over by the next
+     */
+    private void decideGone() {
+        for (int p = 0; p < _players.length; p++) {
+            if (_decided[p] || _furthest[p] == null)
+                continue;
+
+            boolean ready = true;
+            int decider = -1;
+            for (int i = 0; i < _players.length; i++) {
+                if (i == p || _quiet[i] || _lastTick[i] != PLAYING)
+                    continue;
+                if (decider < 0)
+                    decider = i;
+                ready &= _reports[p][i];
+            }
+            if (decider != _local || !ready)
+                continue;
+
+            byte[] decision = _furthest[p];
+            decision[4] = 1;
+            _network.queueReliable(CODE_GONE, decision, decision.length);
+            _network.flush();
+            ByteBuffer data = ByteBuffer.wrap(decision);
+            data.position(9);
+            gone(p, _furthestTick[p], data);
+        }
+    }
+
+    /**
+     * Takes a player out after the agreed tick
+     *
+     * @param last Last tick of theirs, as decided
+     * @param data Their inputs up to it, from first tick on
+     */
+    private void gone(int player, int last, ByteBuffer data) {
+        _limit[player] = last;
+        int first = data.getInt();
+        int count = data.get() & 0xFF;
+        for (int i = 0; i < count; i++) {
+            short x = data.getShort();
+            short y = data.getShort();
+            int t = first + i;
+            if (t == _received[player] + 1 && t <= last) {
+                if (t < _tick)
+                    lateInput(player, t, x, y);
+                store(player, t, x, y);
+                _received[player] = t;
+            }
+        }
+        _decided[player] = true;
+        _lastTick[player] = last;
+        playerLeaving(player);
+    }
+    //endregion
+
+    @Override
+    public void onNetworkError(Exception e, String text) {
+        // The game's listener deals with these
+    }
+}
@@ -0,0 +1,317 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * A pretend multicast group, in memory
+ *
+ * Lets many MultiplayerNetworks run in one process, over a network as bad as we like.
+ * Each datagram is delayed by latency plus a random amount of jitter, which also reorders
+ * them. They can be lost or duplicated at random, and each sender's uplink can be capped,
+ * in which case datagrams queue up behind each other, and are dropped once the queue
+ * gets too long.
+ *
+ * Conditions are applied separately for each receiver, as a datagram on Wi-Fi can reach
+ * one phone and not another. Randomness comes from a seed, so runs can be repeated,
+ * although thread timing still varies.
+ */
+public class LoopbackHub {
+
+    //region Variables
+    private static final int LOOPBACK = 0x7F000000; // Endpoints pretend to be 127.0.0.1, 127.0.0.2, ...
+
+    private final List<Endpoint> _endpoints = new ArrayList<Endpoint>();
+    private final Random _random;
+    private int _connected;
+
+    // Conditions
+    private int _latencyMs;
+    private int _jitterMs;
+    private float _loss;
+    private float _duplication;
+    private int _bandwidth; // Bytes per second each sender can send. 0 for no limit
+    private int _maxQueueMs = 500; // Longest a datagram waits for a capped uplink before it's dropped
+
+    // Stats
+    private long _sent;
+    private long _bytesSent;
+    private long _delivered;
+    private long _lost;
+    private long _duplicated;
+    private long _queueDropped;
+    //endregion
+
+    /**
+     * Creates a perfect network, to be made worse with the setters
+     *
+     * @param seed Seed for losses, duplicates and jitter
+     */
+    public LoopbackHub(long seed) {
+        _random = new Random(seed);
+    }
+
+    //region Getters & Setters
+
+    /**
+     * Sets how long every datagram takes to arrive
+     *
+     * @param latencyMs Latency in milliseconds
+     * @param jitterMs  Most extra time, chosen at random for each datagram
+     */
+    public synchronized void setLatency(int latencyMs, int jitterMs) {
+        _latencyMs = latencyMs;
+        _jitterMs = jitterMs;
+    }
+
+    /**
+     * Sets the chance of a datagram not reaching a receiver
+     *
+     * @param loss Probability between 0 and 1
+     */
+    public synchronized void setLoss(float loss) {
+        _loss = loss;
+    }
+
+    /**
+     * Sets the chance of a receiver getting a datagram twice
+     *
+     * @param duplication Probability between 0 and 1
+     */
+    public synchronized void setDuplication(float duplication) {
+        _duplication = duplication;
+    }
+
+    /**
+     * Caps how fast each sender can send
+     *
+     * @param bytesPerSecond Uplink speed, or 0 for no limit
+     * @param maxQueueMs     Longest a datagram can wait to be sent before it's dropped instead
+     */
+    public synchronized void setBandwidth(int bytesPerSecond, int maxQueueMs) {
+        _bandwidth = bytesPerSecond;
+        _maxQueueMs = maxQueueMs;
+    }
+
+    /**
+     * Gets the number of datagrams sent, before any were lost
+     *
+     * @return Datagram count
+     */
+    public synchronized long getSent() {
+        return _sent;
+    }
+
+    /**
+     * Gets the number of bytes sent, before any were lost
+     *
+     * @return Byte count
+     */
+    public synchronized long getBytesSent() {
+        return _bytesSent;
+    }
+
+    /**
+     * Gets the number of datagrams handed to receivers, duplicates included
+     *
+     * @return Datagram count
+     */
+    public synchronized long getDelivered() {
+        return _delivered;
+    }
+
+    /**
+     * Gets the number of datagrams that didn't reach a receiver at random
+     *
+     * @return Datagram count, counted once per receiver
+     */
+    public synchronized long getLost() {
+        return _lost;
+    }
+
+    /**
+     * Gets the number of extra copies made
+     *
+     * @return Datagram count, counted once per receiver
+     */
+    public synchronized long getDuplicated() {
+        return _duplicated;
+    }
+
+    /**
+     * Gets the number of datagrams dropped because a sender's uplink was too far behind
+     *
+     * @return Datagram count
+     */
+    public synchronized long getQueueDropped() {
+        return _queueDropped;
+    }
+    //endregion
+
+    /**
+     * Connects a new endpoint, for a MultiplayerNetwork to use
+     *
+     * @return Transport that can reach every other endpoint on this hub
+     */
+    public synchronized Transport connect() {
+        Endpoint e = new Endpoint(LOOPBACK + ++_connected);
+        _endpoints.add(e);
+        return e;
+    }
+
+    private synchronized void send(Endpoint from, byte[] data, int length) {
+        long now = System.nanoTime();
+        _sent++;
+        _bytesSent += length;
+
+        // Wait for the uplink to finish what it's already sending
+        long departs = now;
+        if (_bandwidth > 0) {
+            departs = Math.max(now, from.linkFreeAt);
+            if (departs - now > _maxQueueMs * 1000000L) {
+                _queueDropped++;
+                return;
+            }
+            departs += length * 1000000000L / _bandwidth;
+            from.linkFreeAt = departs;
+        }
+
+        byte[] copy = null;
+        for (Endpoint to : _endpoints) {
+            if (to == from)
+                continue; // The network drops its own datagrams anyway
+            if (_random.nextFloat() < _loss) {
+                _lost++;
+                continue;
+            }
+            if (copy == null) {
+                copy = new byte[length];
+                System.arraycopy(data, 0, copy, 0, length);
+            }
+
+            int copies = 1;
+            if (_random.nextFloat() < _duplication) {
+                copies++;
+                _duplicated++;
+            }
+            for (int i = 0; i < copies; i++) {
+                long arrives = departs + (_latencyMs + (_jitterMs > 0 ? _random.nextInt(_jitterMs + 1) : 0)) * 1000000L;
+                to.deliver(new Datagram(arrives, from.address, copy));
+            }
+        }
+    }
+
+    private synchronized void disconnect(Endpoint e) {
+        _endpoints.remove(e);
+    }
+
+    private synchronized void countDelivered() {
+        _delivered++;
+    }
+
+    /**
+     * A datagram on its way to an endpoint
+     */
+    private static class Datagram implements Comparable<Datagram> {
+        final long arrives; // System.nanoTime()
+        final int source;
+        final byte[] data; // Shared between receivers, so never changed
+
+        Datagram(long arrives, int source, byte[] data) {
+            this.arrives = arrives;
+            this.source = source;
+            this.data = data;
+        }
+
+        @Override
+        public int compareTo(Datagram other) {
+            return arrives < other.arrives ? -1 : (arrives == other.arrives ? 0 : 1);
+        }
+    }
+
+    /**
+     * One device's connection to the hub
+     */
+    private class Endpoint implements Transport {
+        private final PriorityQueue<Datagram> _queue = new PriorityQueue<Datagram>();
+        private boolean _closed;
+        private volatile int _lastSource;
+        final int address;
+        long linkFreeAt; // When the uplink finishes sending what it's got. Guarded by the hub
+
+        Endpoint(int address) {
+            this.address = address;
+        }
+
+        synchronized void deliver(Datagram d) {
+            if (_closed)
+                return;
+            _queue.add(d);
+            notifyAll();
+        }
+
+        @Override
+        public void send(byte[] data, int length) throws IOException {
+            synchronized (this) {
+                if (_closed)
+                    throw new IOException("Transport closed");
+            }
+            LoopbackHub.this.send(this, data, length);
+        }
+
+        @Override
+        public int receive(byte[] buffer, int timeoutMs) throws IOException {
+            Datagram d;
+            synchronized (this) {
+                long deadline = System.nanoTime() + timeoutMs * 1000000L;
+                while (true) {
+                    if (_closed)
+                        throw new IOException("Transport closed");
+
+                    long now = System.nanoTime();
+                    Datagram next = _queue.peek();
+                    if (next != null && next.arrives <= now) {
+                        d = _queue.poll();
+                        break;
+                    }
+                    if (now >= deadline)
+                        return -1;
+
+                    // Until the next one is due, or we give up
+                    long wait = deadline - now;
+                    if (next != null)
+                        wait = Math.min(wait, next.arrives - now);
+                    try {
+                        wait(Math.max(1, wait / 1000000L));
+                    } catch (InterruptedException e) {
+                        return -1;
+                    }
+                }
+            }
+
+            countDelivered();
+            _lastSource = d.source;
+            int length = Math.min(d.data.length, buffer.length);
+            System.arraycopy(d.data, 0, buffer, 0, length);
+            return length;
+        }
+
+        @Override
+        public int getLastSource() {
+            return _lastSource;
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                _closed = true;
+                _queue.clear();
+                notifyAll();
+            }
+            disconnect(this);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Created by Tim on 11/10/2015.
+ */
+public class MultiPlayerGhostSprite extends CircleSprite {
+
+    // Last keyframe received, deltas are relative to this
+    private int _keySeq = -1;
+    private int _keyX;
+    private int _keyY;
+
+    private int _skipped; // Updates missed while off screen
+
+    private static final int[] COLORS = new int[]{
+            Colors.BLUE,
+            Colors.CYAN,
+            Colors.GREEN,
+            Colors.MAGENTA,
+            Colors.RED,
+            Colors.YELLOW
+    };
+
+    public MultiPlayerGhostSprite(float x, float y) {
+        this(x, y, 1);
+    }
+
+    public MultiPlayerGhostSprite(float x, float y, float weight) {
+        super(x, y, 0.5f, 0.5f, weight);
+
+        int colorIndex = GameRandom.forThread().nextInt(COLORS.length);
+        _color = Colors.withAlpha(COLORS[colorIndex], 128);
+    }
+
+    /**
+     * Moves the ghost to an absolute position sent by its player
+     *
+     * @param seq       Keyframe number
+     * @param qx        Quantised X position
+     * @param qy        Quantised Y position
+     * @param qdx       Quantised X motion
+     * @param qdy       Quantised Y motion
+     * @param levelW    Width of the level being played
+     * @param levelH    Height of the level being played
+     */
+    public void applyKeyframe(int seq, int qx, int qy, int qdx, int qdy, float levelW, float levelH) {
+        _keySeq = seq;
+        _keyX = qx;
+        _keyY = qy;
+        applyPosition(qx, qy, qdx, qdy, levelW, levelH);
+    }
+
+    /**
+     * Moves the ghost relative to the last keyframe
+     * Ignored if we missed the keyframe it refers to
+     *
+     * @param seq       Keyframe the delta is relative to
+     * @param ddx       Change in quantised X position
+     * @param ddy       Change in quantised Y position
+     * @param qdx       Quantised X motion
+     * @param qdy       Quantised Y motion
+     * @param levelW    Width of the level being played
+     * @param levelH    Height of the level being played
+     */
+    public void applyDelta(int seq, int ddx, int ddy, int qdx, int qdy, float levelW, float levelH) {
+        if (seq != _keySeq)
+            return;
+        applyPosition(_keyX + ddx, _keyY + ddy, qdx, qdy, levelW, levelH);
+    }
+
+    /**
+     * Called instead of update() while the ghost is off screen
+     */
+    public void skipUpdate() {
+        _skipped++;
+    }
+
+    /**
+     * Gets the number of updates missed while off screen, still to be caught up
+     *
+     * @return Updates skipped
+     */
+    int getSkipped() {
+        return _skipped;
+    }
+
+    /**
+     * Sets the number of updates missed while off screen, as a recording says
+     *
+     * @param skipped Updates skipped
+     */
+    void setSkipped(int skipped) {
+        _skipped = skipped;
+    }
+
+    private void applyPosition(int qx, int qy, int qdx, int qdy, float levelW, float levelH) {
+        _skipped = 0;
+        setXPos(PositionCodec.dequantisePosition(qx, levelW));
+        setYPos(PositionCodec.dequantisePosition(qy, levelH));
+        // Keep moving the way the player was, until we're told otherwise
+        setMotion(PositionCodec.dequantiseVelocity(qdx), PositionCodec.dequantiseVelocity(qdy));
+    }
+
+
+    /**
+     * Draw the player
+     *
+     * @param renderer Where to draw
+     * @param scale  Scale at which to draw
+     */
+    @Override
+    public void draw(Renderer renderer, float scale, Vec2 offset) {
+        float radius = getWidth() / 2;
+        renderer.fillCircle((getXPos() + radius + offset.x) * scale, (getYPos() + radius + offset.y) * scale, radius * scale, _color);
+    }
+
+    /**
+     * Update the player
+     *
+     * @param state Current state of the game
+     */
+    @Override
+    public void update(GameState state) {
+        // Ghosts have no friction, so missed updates are just more of the same motion
+        if (_skipped > 0) {
+            moveX(getMotion().x * _skipped);
+            moveY(getMotion().y * _skipped);
+            _skipped = 0;
+        }
+
+        super.update(state);
+    }
+
+    @Override
+    public boolean canSleep(GameState state) {
+        return false; // Goes wherever the network says, with no warning
+    }
+}
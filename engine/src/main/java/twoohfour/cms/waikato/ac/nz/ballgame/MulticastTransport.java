@@ -0,0 +1,89 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.MulticastSocket;
+import java.net.SocketTimeoutException;
+
+/**
+ * Sends datagrams over a real UDP multicast group
+ */
+public class MulticastTransport implements Transport {
+
+    private final MulticastSocket ms;
+    private final InetAddress inetAd;
+    private final int _port;
+    private final DatagramPacket _out;
+    private final DatagramPacket _in;
+    private int _timeout = -1;
+
+    /**
+     * Joins a multicast group
+     *
+     * @param ip   Group address
+     * @param port Port, which is both sent to and listened on
+     * @throws IOException If the group couldn't be joined
+     */
+    public MulticastTransport(String ip, int port) throws IOException {
+        _port = port;
+        ms = new MulticastSocket(port);
+        inetAd = InetAddress.getByName(ip);
+        ms.joinGroup(inetAd);
+
+        _out = new DatagramPacket(new byte[0], 0, inetAd, port);
+        _in = new DatagramPacket(new byte[0], 0);
+
+        System.out.println("Listening on port:  " + port);
+    }
+
+    @Override
+    public void send(byte[] data, int length) throws IOException {
+        synchronized (_out) {
+            _out.setData(data, 0, length);
+            ms.send(_out);
+        }
+    }
+
+    @Override
+    public int receive(byte[] buffer, int timeoutMs) throws IOException {
+        if (timeoutMs != _timeout) {
+            ms.setSoTimeout(timeoutMs);
+            _timeout = timeoutMs;
+        }
+
+        _in.setData(buffer, 0, buffer.length);
+        try {
+            ms.receive(_in);
+        } catch (SocketTimeoutException e) {
+            // Nothing arrived, which is fine
+            return -1;
+        }
+        //Log.i("NetIn", _in.getAddress() + " : " + _in.getLength());
+        return _in.getLength();
+    }
+
+    @Override
+    public int getLastSource() {
+        InetAddress from = _in.getAddress();
+        if (from == null || from.getAddress().length != 4)
+            return 0;
+        byte[] a = from.getAddress();
+        return ((a[0] & 0xFF) << 24) | ((a[1] & 0xFF) << 16) | ((a[2] & 0xFF) << 8) | (a[3] & 0xFF);
+    }
+
+    @Override
+    public void close() {
+        try {
+            ms.leaveGroup(inetAd);
+        } catch (IOException e) {
+            // Closing anyway
+        }
+        ms.close();
+    }
+
+    @Override
+    public String toString() {
+        return inetAd.getHostAddress() + ":" + _port;
+    }
+}
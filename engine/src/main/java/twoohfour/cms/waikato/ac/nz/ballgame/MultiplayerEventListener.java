@@ -0,0 +1,20 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * Created by timhampton on 6/10/15.
+ */
+public interface MultiplayerEventListener {
+
+    // On message
+    // The payload is between data's position and limit
+    // data is reused for the next message, so copy anything that needs keeping
+    // from is the node id of the sender
+    // session is the session (room) it was sent in
+    void message(int statusCode, ByteBuffer data, int from, int session);
+
+    // If we get a network error.
+    void onNetworkError(Exception e, String text);
+}
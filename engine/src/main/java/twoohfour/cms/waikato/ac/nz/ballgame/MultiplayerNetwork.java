@@ -0,0 +1,1144 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+
+/**
+ * Created by timhampton on 6/10/15.
+ * Code extended from COMP202 Networking.
+ *
+ * Messages are batched. Everything queued during a tick goes out in a single datagram
+ * when flush() is called. Acknowledgements and resends that come due between flushes are sent
+ * by the receive thread in a datagram of their own, so they never split a tick's batch.
+ *
+ * Datagram format:
+ * | version (1 byte) | session id (4 bytes) | sender node id (4 bytes) | datagram number (2 bytes) | message | message | ...
+ * Datagrams are numbered separately for each session, so receivers can count how many went missing.
+ * Message format:
+ * | code - 100 (1 byte) | payload length (1 or 2 bytes) | payload |
+ * Lengths under 128 take one byte. Otherwise the top bit is set, and the length takes two.
+ *
+ * Control messages can be sent reliably. They are wrapped in a 110 with a sequence number,
+ * and retransmitted with backoff until every peer we know of acknowledges them with a 111.
+ * Each 110 also carries the oldest sequence number the sender is still waiting on, so a receiver
+ * that missed the first few starts its window there rather than at whatever it heard first.
+ * Position updates stay unreliable, as a newer one will be along shortly anyway.
+ *
+ * Peers that go quiet for PEER_TIMEOUT_MS are dropped, and listeners are given a 104 on their behalf.
+ *
+ * Every game on the network shares the multicast group, so datagrams carry the id of the session (room)
+ * they belong to. Datagrams for other sessions are dropped before any messages are decoded.
+ * Session 0 is shared by everyone, and only carries the room discovery codes (see RoomDiscovery).
+ *
+ * A player is in one session at a time (setSession). A GameHost can be in many at once (addSession),
+ * so one socket serves every room it runs. Peers and reliable messages are tracked per session.
+ *
+ * Datagrams go over a Transport. Normally that's the multicast group, but a LoopbackHub
+ * can stand in for it, to run lots of networks in one process over a simulated bad network.
+ *
+ * Every datagram sent and received can be recorded to a PacketCapture, to be looked at or
+ * played back later with CaptureReplay.
+ */
+public class MultiplayerNetwork {
+
+    public static int port = 40202;
+    public static String ip = "239.0.202.1";
+
+    public static final int PROTOCOL_VERSION = 6;
+    public static final int MAX_DATAGRAM_SIZE = 1200; // Stays under the MTU of anything we're likely to be on
+    public static final int MAX_PAYLOAD_SIZE = MAX_DATAGRAM_SIZE - 16;
+    private static final int HEADER_SIZE = 11;
+    private static final long BACKLOG_NANOS = 100000; // A receive() this quick found its datagram already waiting
+    private static final int REORDER_WINDOW = 16; // Datagrams that can arrive out of order before the missing ones count as lost
+    private static final int CODE_OFFSET = 100; // Codes are 100 - 355, so fit in a byte once this is taken off
+
+    // Reliability
+    public static final int CODE_LEAVE = 104;
+    public static final int CODE_RELIABLE = 110;
+    public static final int CODE_ACK = 111;
+    public static final int SERVICE_INTERVAL_MS = 50; // Resolution of the timer wheel
+    public static final int INITIAL_RTO_MS = 100;
+    public static final int MAX_RTO_MS = 1600;
+    public static final int MAX_ATTEMPTS = 8;
+    public static final int PEER_TIMEOUT_MS = 3000;
+    private static final int ACK_WINDOW = 32;
+
+    private final Transport _transport; // Null if the multicast group couldn't be joined
+    private volatile boolean _running = true;
+    private volatile PacketCapture _capture; // Null unless capturing
+
+    // Added to and removed from on any thread, while the receive thread goes through them
+    private final List<MultiplayerEventListener> _listeners = new CopyOnWriteArrayList<MultiplayerEventListener>();
+
+    private final int _nodeId;
+
+    // Sessions
+    public static final int DISCOVERY_SESSION = 0;
+    private volatile int _session = DISCOVERY_SESSION; // Where queueCode() sends to
+    private volatile int[] _accepted = new int[0]; // Every session we take traffic for. Replaced, never changed
+    private final List<Session> _sessions = new ArrayList<Session>();
+
+    private final Batch _batch = new Batch(); // Built up by the caller for the next flush
+    private final Batch _control = new Batch(); // Acks, resends and discovery, sent as soon as they're made
+
+    // Stats
+    private long _datagramsSent;
+    private long _bytesSent;
+    private long _payloadBytesSent; // Just the messages' payloads, to see what the rest costs
+    private long _datagramsReceived; // From peers in our sessions
+    private long _datagramsLost; // Gaps in peers' datagram numbers
+    private volatile int _maxBacklog; // Most datagrams found waiting in a row. Only the listener raises it
+
+    // Reliable channel state
+    private final TimerWheel _wheel = new TimerWheel(64);
+    private final long _startTime = System.currentTimeMillis();
+    private final List<Pending> _pending = new ArrayList<Pending>();
+    private final List<int[]> _evicted = new ArrayList<int[]>(); // Node and session of peers that went quiet
+
+    // What we know about each peer's connection, indexed by peer id
+    private final PeerRegistry _peers = new PeerRegistry();
+    private final int[] _peerSession = new int[PeerRegistry.MAX_PEERS];
+    private final long[] _lastHeard = new long[PeerRegistry.MAX_PEERS];
+    private final int[] _recvBase = new int[PeerRegistry.MAX_PEERS]; // Next sequence number we expect. -1 until we hear one
+    private final int[] _recvMask = new int[PeerRegistry.MAX_PEERS]; // Bit i set means recvBase + 1 + i has been received
+    private final int[] _datagramBase = new int[PeerRegistry.MAX_PEERS]; // Oldest datagram number still missing. -1 until we hear one
+    private final int[] _datagramMask = new int[PeerRegistry.MAX_PEERS]; // Bit i set means datagramBase + i has arrived
+    private final boolean[] _ackDue = new boolean[PeerRegistry.MAX_PEERS];
+    private final byte[] _ack = new byte[10];
+
+    /**
+     * A session we're taking part in
+     */
+    private static class Session {
+        final int id;
+        int nextSeq; // Reliable sequence numbers are counted separately for each session
+        int nextDatagram;
+
+        Session(int id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * A datagram being built
+     */
+    private static class Batch {
+        final byte[] data = new byte[MAX_DATAGRAM_SIZE];
+        int length;
+        int session;
+    }
+
+    /**
+     * A reliable message that hasn't been acknowledged by everyone yet
+     */
+    private class Pending implements Runnable {
+        final int session;
+        final int seq;
+        final byte[] body; // Sequence number, oldest still waited on, code and payload, ready to go in a 110
+        final boolean[] waitingFor = new boolean[PeerRegistry.MAX_PEERS]; // Indexed by peer id
+        int waitingCount;
+        int rto = INITIAL_RTO_MS;
+        int attempts = 1;
+
+        Pending(int session, int seq, byte[] body) {
+            this.session = session;
+            this.seq = seq;
+            this.body = body;
+        }
+
+        /**
+         * Stops waiting for a peer
+         *
+         * @return Whether nobody else is left to wait for
+         */
+        boolean acked(int peer) {
+            if (waitingFor[peer]) {
+                waitingFor[peer] = false;
+                waitingCount--;
+            }
+            return waitingCount == 0;
+        }
+
+        @Override
+        public void run() {
+            // Retransmit timer
+            if (waitingCount == 0 || !_pending.contains(this))
+                return;
+            if (attempts >= MAX_ATTEMPTS) {
+                _pending.remove(this);
+                return;
+            }
+
+            attempts++;
+            rto = Math.min(rto * 2, MAX_RTO_MS);
+            writeShort(body, 2, oldestPending(session, seq)); // Might have moved on since last time
+            appendMessage(_control, session, CODE_RELIABLE, body, body.length);
+            _wheel.schedule(this, rto / SERVICE_INTERVAL_MS);
+        }
+    }
+
+
+    /**
+     * Joins the multicast group
+     */
+    public MultiplayerNetwork() {
+        this(openMulticast());
+    }
+
+    /**
+     * Sends and receives over the given transport
+     *
+     * @param transport Transport to use, such as one from a LoopbackHub. Closed along with the network
+     */
+    public MultiplayerNetwork(Transport transport) {
+        int id;
+        do {
+            id = new Random().nextInt();
+        } while (id == 0);
+        _nodeId = id;
+        _transport = transport;
+
+        Runnable listen = new Runnable() {
+            public void run() {
+                if (_transport == null)
+                    return;
+
+                // Buffers are reused for every datagram
+                // so listeners must not hold on to the data they're given
+                byte[] buffer = new byte[MAX_DATAGRAM_SIZE + 300];
+                ByteBuffer data = ByteBuffer.wrap(buffer);
+
+                int backlog = 0;
+
+                // Check for messages and output them
+                while (_running) {
+                    try {
+                        // Wake up regularly, even if nothing arrives, so the timers keep running
+                        long waitStart = System.nanoTime();
+                        int length = _transport.receive(buffer, SERVICE_INTERVAL_MS);
+                        if (length >= 0) {
+                            // Datagrams that were already waiting mean we're falling behind
+                            backlog = System.nanoTime() - waitStart < BACKLOG_NANOS ? backlog + 1 : 1;
+                            if (backlog > _maxBacklog)
+                                _maxBacklog = backlog;
+                            capture(false, _transport.getLastSource(), buffer, length);
+                            data.limit(length);
+                            data.position(0);
+                            unpack(data);
+                        }
+                    } catch (IOException e) {
+                        if (!_running)
+                            break;
+                        e.printStackTrace();
+                        for ( MultiplayerEventListener mel : _listeners ) {
+                            mel.onNetworkError(e, "Error in attempting to retrive code.");
+                        }
+                    }
+
+                    service();
+                }
+
+
+            }
+        };
+
+        new Thread(listen).start();
+
+
+
+    }
+
+    private static Transport openMulticast() {
+        try {
+            return new MulticastTransport(ip, port);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            return null;
+        }
+    }
+
+
+    /**
+     * Starts handing messages to a listener
+     * Safe from any thread. Messages already being handed out might not reach it
+     *
+     * @param m Listener
+     */
+    public void registerListener(MultiplayerEventListener m) {
+        _listeners.add(m);
+    }
+
+    /**
+     * Stops handing messages to a listener
+     * Safe from any thread. It might still be given a message that was already being handed out
+     *
+     * @param m Listener
+     */
+    public void unregisterListener(MultiplayerEventListener m) {
+        _listeners.remove(m);
+    }
+
+    /**
+     * Gets the id this node puts on its datagrams
+     *
+     * @return Node id
+     */
+    public int getNodeId() {
+        return _nodeId;
+    }
+
+    /**
+     * Gets the number of datagrams sent so far
+     *
+     * @return Datagram count
+     */
+    public synchronized long getDatagramsSent() {
+        return _datagramsSent;
+    }
+
+    /**
+     * Gets the number of bytes sent so far, headers included
+     *
+     * @return Byte count
+     */
+    public synchronized long getBytesSent() {
+        return _bytesSent;
+    }
+
+    /**
+     * Gets the number of bytes of message payload sent so far
+     * Whatever else getBytesSent() counts is the protocol's overhead
+     *
+     * @return Byte count
+     */
+    public synchronized long getPayloadBytesSent() {
+        return _payloadBytesSent;
+    }
+
+    /**
+     * Gets the number of datagrams received from peers in our sessions so far
+     *
+     * @return Datagram count
+     */
+    public synchronized long getDatagramsReceived() {
+        return _datagramsReceived;
+    }
+
+    /**
+     * Gets the number of peers' datagrams that never arrived, going by their numbers
+     *
+     * @return Datagram count
+     */
+    public synchronized long getDatagramsLost() {
+        return _datagramsLost;
+    }
+
+    /**
+     * Gets the most datagrams found already waiting in a row, since this was last called
+     * A long run means they're arriving faster than we can deal with them
+     *
+     * @return Datagram count
+     */
+    public int takeMaxBacklog() {
+        int backlog = _maxBacklog;
+        _maxBacklog = 0;
+        return backlog;
+    }
+
+    /**
+     * Gets the number of peers we're hearing from, in all our sessions
+     *
+     * @return Peer count
+     */
+    public synchronized int getPeerCount() {
+        return _peers.getCount();
+    }
+
+    /**
+     * Gets the session we're currently in
+     *
+     * @return Session id, or DISCOVERY_SESSION if we aren't in one
+     */
+    public synchronized int getSession() {
+        return _session;
+    }
+
+    /**
+     * Moves into a different session, leaving any others
+     * Anything known about the old sessions' peers is forgotten
+     *
+     * @param session Session id
+     */
+    public synchronized void setSession(int session) {
+        if (session == _session && _sessions.size() == (session == DISCOVERY_SESSION ? 0 : 1))
+            return;
+        send(_batch);
+        _session = session;
+        _sessions.clear();
+        _peers.clear();
+        Arrays.fill(_ackDue, false);
+        _evicted.clear();
+        _pending.clear();
+        if (session != DISCOVERY_SESSION)
+            _sessions.add(new Session(session));
+        updateAccepted();
+        notifyAll();
+    }
+
+    /**
+     * Starts taking traffic for another session, without leaving the ones we're in
+     * Used by a GameHost to run several rooms from one socket
+     *
+     * @param session Session id. Must not be DISCOVERY_SESSION
+     */
+    public synchronized void addSession(int session) {
+        if (session == DISCOVERY_SESSION)
+            throw new IllegalArgumentException("Can't join the discovery session");
+        if (findSession(session) != null)
+            return;
+        _sessions.add(new Session(session));
+        updateAccepted();
+    }
+
+    /**
+     * Stops taking traffic for a session, and forgets its peers
+     *
+     * @param session Session id
+     */
+    public synchronized void removeSession(int session) {
+        Session s = findSession(session);
+        if (s == null)
+            return;
+        send(_batch);
+        _sessions.remove(s);
+        if (session == _session)
+            _session = DISCOVERY_SESSION;
+        updateAccepted();
+
+        for (int i = 0; i < PeerRegistry.MAX_PEERS; i++) {
+            if (_peers.isUsed(i) && _peerSession[i] == session)
+                forgetPeer(i);
+        }
+        Iterator<Pending> it = _pending.iterator();
+        while (it.hasNext()) {
+            if (it.next().session == session)
+                it.remove();
+        }
+        Iterator<int[]> ev = _evicted.iterator();
+        while (ev.hasNext()) {
+            if (ev.next()[1] == session)
+                ev.remove();
+        }
+        notifyAll();
+    }
+
+    /**
+     * Whether we take traffic for a session
+     * Doesn't lock, so it's cheap enough to call on every datagram
+     *
+     * @param session Session id
+     * @return True if the session has been joined
+     */
+    public boolean accepts(int session) {
+        for (int id : _accepted) {
+            if (id == session)
+                return true;
+        }
+        return false;
+    }
+
+    private Session findSession(int session) {
+        for (Session s : _sessions) {
+            if (s.id == session)
+                return s;
+        }
+        return null;
+    }
+
+    private void updateAccepted() {
+        int[] accepted = new int[_sessions.size()];
+        for (int i = 0; i < accepted.length; i++)
+            accepted[i] = _sessions.get(i).id;
+        _accepted = accepted;
+    }
+
+    /**
+     * Whether a code is part of room discovery, and so allowed in the discovery session
+     *
+     * @param code Code to check
+     * @return True for 100, 101, 300 and 301
+     */
+    public static boolean isDiscoveryCode(int code) {
+        return code == 100 || code == 101 || code == 300 || code == 301;
+    }
+
+    //region Receiving
+
+    /**
+     * Splits a received datagram into messages, and hands each to the listeners
+     *
+     * @param data Datagram contents, from position to limit
+     */
+    private void unpack(ByteBuffer data) {
+        int end = data.limit();
+        try {
+            if ((data.get() & 0xFF) != PROTOCOL_VERSION)
+                return;
+
+            // Throw away other games' traffic before doing anything else with it
+            int session = data.getInt();
+            boolean discovery = session == DISCOVERY_SESSION;
+            if (!discovery && !accepts(session))
+                return;
+
+            int from = data.getInt();
+            if (from == _nodeId)
+                return; // Our own datagram, looped back
+            int number = data.getShort() & 0xFFFF;
+
+            int peer = -1;
+            if (!discovery) {
+                synchronized (this) {
+                    if (!accepts(session))
+                        return; // Left the session while we were reading
+                    peer = heardFrom(from, session);
+                    if (peer >= 0)
+                        countDatagram(peer, number);
+                }
+                if (peer < 0)
+                    return; // Room is full
+            }
+
+            while (data.position() < end) {
+                int code = (data.get() & 0xFF) + CODE_OFFSET;
+                int length = data.get() & 0xFF;
+                if ((length & 0x80) != 0)
+                    length = ((length & 0x7F) << 8) | (data.get() & 0xFF);
+
+                int payloadEnd = data.position() + length;
+                if (payloadEnd > end)
+                    return; // Truncated, throw the rest away
+
+                data.limit(payloadEnd);
+                if (discovery) {
+                    // Only room discovery happens out here
+                    if (isDiscoveryCode(code))
+                        dispatch(code, data, from, session);
+                } else if (code == CODE_RELIABLE) {
+                    int seq = data.getShort() & 0xFFFF;
+                    int first = data.getShort() & 0xFFFF;
+                    code = (data.get() & 0xFF) + CODE_OFFSET;
+
+                    boolean isNew;
+                    synchronized (this) {
+                        isNew = receivedReliable(peer, seq, first);
+                    }
+                    if (isNew)
+                        dispatch(code, data, from, session);
+                } else if (code == CODE_ACK) {
+                    int target = data.getInt();
+                    if (target == _nodeId) {
+                        int base = data.getShort() & 0xFFFF;
+                        int mask = data.getInt();
+                        synchronized (this) {
+                            receivedAck(peer, base, mask);
+                        }
+                    }
+                } else {
+                    dispatch(code, data, from, session);
+                }
+
+                // Move on, no matter how much the listeners read
+                data.limit(end);
+                data.position(payloadEnd);
+            }
+        } catch (BufferUnderflowException e) {
+            // Malformed datagram, nothing more to get out of it
+        }
+    }
+
+    /**
+     * Hands a message to every listener
+     * Must not be called while holding the lock, as listeners lock the game state
+     */
+    private void dispatch(int code, ByteBuffer data, int from, int session) {
+        int start = data.position();
+        for ( MultiplayerEventListener mel : _listeners ) {
+            data.position(start);
+            mel.message(code, data, from, session);
+        }
+    }
+    //endregion
+
+    //region Reliability
+
+    /**
+     * Gets the current time in timer wheel ticks
+     */
+    private long now() {
+        return (System.currentTimeMillis() - _startTime) / SERVICE_INTERVAL_MS;
+    }
+
+    /**
+     * Records that a peer is still alive, adding it if it's new
+     *
+     * @return Peer id, or -1 if there's no room for a new peer
+     */
+    private int heardFrom(int from, int session) {
+        int peer = _peers.lookup(from);
+        if (peer >= 0 && _peerSession[peer] != session) {
+            // Moved to another of our rooms. Start again, as sequence numbers are per session
+            forgetPeer(peer);
+            peer = -1;
+        }
+        if (peer < 0) {
+            peer = _peers.add(from);
+            if (peer < 0)
+                return -1;
+            _peerSession[peer] = session;
+            _recvBase[peer] = -1;
+            _recvMask[peer] = 0;
+            _datagramBase[peer] = -1;
+            _ackDue[peer] = false;
+            scheduleTimeout(peer, from, PEER_TIMEOUT_MS / SERVICE_INTERVAL_MS);
+        }
+        _lastHeard[peer] = now();
+        return peer;
+    }
+
+    /**
+     * Counts a datagram from a peer
+     * Missing ones are counted as lost once REORDER_WINDOW newer ones have arrived.
+     * Any that turn up after that, and duplicates, aren't counted at all
+     */
+    private void countDatagram(int peer, int number) {
+        int base = _datagramBase[peer];
+        int mask = _datagramMask[peer];
+        if (base < 0) {
+            base = number;
+            mask = 0;
+        }
+
+        int offset = (number - base) & 0xFFFF;
+        if (offset >= 0x8000)
+            return; // Too late, already counted as lost
+
+        if (offset >= REORDER_WINDOW) {
+            // Make room, losing whatever never arrived
+            int shift = offset - REORDER_WINDOW + 1;
+            if (shift >= REORDER_WINDOW) {
+                _datagramsLost += shift - Integer.bitCount(mask);
+                mask = 0;
+            } else {
+                _datagramsLost += shift - Integer.bitCount(mask & ((1 << shift) - 1));
+                mask >>>= shift;
+            }
+            base = (base + shift) & 0xFFFF;
+            offset -= shift;
+        }
+
+        if ((mask & (1 << offset)) == 0) {
+            mask |= 1 << offset;
+            _datagramsReceived++;
+        }
+
+        // Move past everything that has arrived
+        while ((mask & 1) != 0) {
+            mask >>>= 1;
+            base = (base + 1) & 0xFFFF;
+        }
+        _datagramBase[peer] = base;
+        _datagramMask[peer] = mask;
+    }
+
+    /**
+     * Sets up the liveness check for a peer
+     * Rather than moving the timer every time we hear from the peer,
+     * the check reschedules itself if the peer has been heard from since
+     */
+    private void scheduleTimeout(final int peer, final int node, long delay) {
+        _wheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (_peers.getNode(peer) != node)
+                    return; // Forgotten when we changed session
+                long quiet = _wheel.getTick() - _lastHeard[peer];
+                long timeout = PEER_TIMEOUT_MS / SERVICE_INTERVAL_MS;
+                if (quiet < timeout) {
+                    scheduleTimeout(peer, node, timeout - quiet);
+                } else {
+                    _evicted.add(new int[]{node, _peerSession[peer]});
+                    forgetPeer(peer);
+                }
+            }
+        }, delay);
+    }
+
+    /**
+     * Removes a peer, and stops waiting for it to acknowledge anything
+     */
+    private void forgetPeer(int peer) {
+        _peers.remove(peer);
+        _ackDue[peer] = false;
+        Iterator<Pending> it = _pending.iterator();
+        while (it.hasNext()) {
+            if (it.next().acked(peer))
+                it.remove();
+        }
+    }
+
+    /**
+     * Tracks a reliable message from a peer
+     *
+     * @param first Oldest sequence number the peer is still waiting on anyone for
+     * @return Whether the message hasn't been seen before
+     */
+    private boolean receivedReliable(int peer, int seq, int first) {
+        _ackDue[peer] = true;
+
+        if (_recvBase[peer] < 0) {
+            // First one we've seen from this peer. Anything it sent before this that
+            // didn't get here is still being resent, so has to be waited for
+            _recvBase[peer] = first;
+            _recvMask[peer] = 0;
+        } else {
+            slide(peer, first, false); // Whatever it isn't sending any more isn't coming
+        }
+
+        int base = _recvBase[peer];
+        int offset = (short) (seq - base); // Wraps correctly
+        if (offset < 0)
+            return false; // Already had it
+        if (offset == 0) {
+            slide(peer, base, true); // Next in line
+            return true;
+        }
+        if (offset > ACK_WINDOW)
+            return false; // Too far ahead to track. It'll be sent again
+        int mask = _recvMask[peer];
+        int bit = 1 << (offset - 1);
+        if ((mask & bit) != 0)
+            return false;
+        _recvMask[peer] = mask | bit;
+        return true;
+    }
+
+    /**
+     * Moves a peer's window up to a sequence number, then past anything after it already received
+     *
+     * @param to  Sequence number the window starts at, at least
+     * @param had Whether the message at the start of the window has been received
+     */
+    private void slide(int peer, int to, boolean had) {
+        int base = _recvBase[peer];
+        int mask = _recvMask[peer];
+        while ((short) (to - base) > 0 || had) {
+            if (mask == 0 && !had) {
+                base = to; // Nothing received in between, so straight there
+                break;
+            }
+            had = (mask & 1) != 0;
+            mask >>>= 1;
+            base = (base + 1) & 0xFFFF;
+        }
+        _recvBase[peer] = base;
+        _recvMask[peer] = mask;
+    }
+
+    /**
+     * Removes a peer from everything it has acknowledged
+     */
+    private void receivedAck(int peer, int base, int mask) {
+        Iterator<Pending> it = _pending.iterator();
+        while (it.hasNext()) {
+            Pending pending = it.next();
+            int offset = (short) (pending.seq - base);
+            boolean acked = offset < 0 || (offset > 0 && offset <= ACK_WINDOW && (mask & (1 << (offset - 1))) != 0);
+            if (acked && pending.acked(peer))
+                it.remove();
+        }
+        notifyAll();
+    }
+
+    /**
+     * Runs timers, and tells listeners about peers that have gone quiet
+     * Called regularly by the receive thread. Any acks and resends that are due go out
+     * on their own, leaving whatever the caller has queued for its next flush()
+     */
+    private void service() {
+        List<int[]> evicted = null;
+        synchronized (this) {
+            _wheel.advance(now());
+            if (!_evicted.isEmpty()) {
+                evicted = new ArrayList<int[]>(_evicted);
+                _evicted.clear();
+                notifyAll();
+            }
+            queueAcks(_control);
+            send(_control);
+        }
+
+        if (evicted != null) {
+            ByteBuffer empty = ByteBuffer.allocate(0);
+            for (int[] e : evicted)
+                dispatch(CODE_LEAVE, empty, e[0], e[1]);
+        }
+    }
+
+    /**
+     * Adds a message to the next datagram, and keeps resending it until every known peer has it
+     *
+     * @param code Code to send
+     */
+    public synchronized void queueReliable(int code) {
+        queueReliable(code, null, 0);
+    }
+
+    /**
+     * Adds a message to the next datagram, and keeps resending it until every known peer has it
+     *
+     * @param code    Code to send
+     * @param payload Parameters of the message
+     * @param length  Number of bytes of the payload to send
+     */
+    public synchronized void queueReliable(int code, byte[] payload, int length) {
+        queueReliableTo(_session, code, payload, length);
+    }
+
+    /**
+     * Adds a message for a particular session to the next datagram,
+     * and keeps resending it until every known peer in that session has it
+     *
+     * Dropped if we aren't in the session, as there's nobody to deliver it to
+     *
+     * @param session Session to send to
+     * @param code    Code to send
+     * @param payload Parameters of the message
+     * @param length  Number of bytes of the payload to send
+     */
+    public synchronized void queueReliableTo(int session, int code, byte[] payload, int length) {
+        Session s = findSession(session);
+        if (s == null)
+            return;
+        int seq = s.nextSeq;
+        s.nextSeq = (seq + 1) & 0xFFFF;
+
+        byte[] body = new byte[5 + length];
+        writeShort(body, 0, seq);
+        writeShort(body, 2, oldestPending(session, seq));
+        body[4] = (byte) (code - CODE_OFFSET);
+        if (length > 0)
+            System.arraycopy(payload, 0, body, 5, length);
+        queueCodeTo(session, CODE_RELIABLE, body, body.length);
+
+        Pending pending = new Pending(session, seq, body);
+        for (int i = 0; i < PeerRegistry.MAX_PEERS; i++) {
+            if (_peers.isUsed(i) && _peerSession[i] == session) {
+                pending.waitingFor[i] = true;
+                pending.waitingCount++;
+            }
+        }
+
+        // Nobody to wait for means nothing to resend
+        if (pending.waitingCount == 0)
+            return;
+        _pending.add(pending);
+        _wheel.schedule(pending, pending.rto / SERVICE_INTERVAL_MS);
+    }
+
+    /**
+     * Gets the oldest reliable message in a session that someone still has to acknowledge
+     *
+     * @param session Session
+     * @param seq     Sequence number to give if nothing older is waiting
+     * @return Sequence number
+     */
+    private int oldestPending(int session, int seq) {
+        // Kept in the order they were sent
+        for (Pending pending : _pending) {
+            if (pending.session == session)
+                return (short) (pending.seq - seq) < 0 ? pending.seq : seq;
+        }
+        return seq;
+    }
+
+    /**
+     * Sends a reliable message straight away, along with anything already queued
+     *
+     * @param code Code to send
+     */
+    public synchronized void sendReliable(int code) {
+        queueReliable(code);
+        flush();
+    }
+
+    /**
+     * Whether every reliable message has been acknowledged, or given up on
+     * For waiting on a timer, without holding it up like awaitAcks()
+     *
+     * @return True if nothing is still being resent
+     */
+    public synchronized boolean isAcked() {
+        return _pending.isEmpty();
+    }
+
+    /**
+     * Waits until every reliable message has been acknowledged, or given up on
+     *
+     * @param timeoutMs Longest time to wait
+     * @return Whether everything was acknowledged
+     */
+    public synchronized boolean awaitAcks(long timeoutMs) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (!_pending.isEmpty()) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0)
+                return false;
+            try {
+                wait(left);
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds acknowledgements for every peer that has sent us something reliable
+     */
+    private void queueAcks(Batch batch) {
+        for (int i = 0; i < PeerRegistry.MAX_PEERS; i++) {
+            if (!_ackDue[i])
+                continue;
+            _ackDue[i] = false;
+            writeInt(_ack, 0, _peers.getNode(i));
+            _ack[4] = (byte) (_recvBase[i] >> 8);
+            _ack[5] = (byte) _recvBase[i];
+            writeInt(_ack, 6, _recvMask[i]);
+            appendMessage(batch, _peerSession[i], CODE_ACK, _ack, _ack.length);
+        }
+    }
+    //endregion
+
+    //region Sending
+
+    /**
+     * Adds a message with no parameters to the next datagram
+     *
+     * @param code Code to send
+     */
+    public synchronized void queueCode(int code) {
+        queueCode(code, null, 0);
+    }
+
+    /**
+     * Adds a message to the next datagram
+     * If it won't fit, the current datagram is sent first
+     *
+     * @param code    Code to send
+     * @param payload Parameters of the message
+     * @param length  Number of bytes of the payload to send
+     */
+    public synchronized void queueCode(int code, byte[] payload, int length) {
+        queueCodeTo(_session, code, payload, length);
+    }
+
+    /**
+     * Adds a message for a particular session to the next datagram
+     * If it won't fit, or the datagram is for another session, the current datagram is sent first
+     *
+     * @param session Session to send to
+     * @param code    Code to send
+     * @param payload Parameters of the message
+     * @param length  Number of bytes of the payload to send
+     */
+    public synchronized void queueCodeTo(int session, int code, byte[] payload, int length) {
+        if (code < CODE_OFFSET || code > CODE_OFFSET + 0xFF)
+            throw new IllegalArgumentException("Code out of range: " + code);
+        if (length > MAX_PAYLOAD_SIZE)
+            throw new IllegalArgumentException("Payload too large: " + length);
+        appendMessage(_batch, session, code, payload, length);
+    }
+
+    private void appendMessage(Batch batch, int session, int code, byte[] payload, int length) {
+        int headerLength = length < 0x80 ? 2 : 3;
+        if (batch.length + headerLength + length > MAX_DATAGRAM_SIZE || session != batch.session)
+            send(batch);
+        byte[] data = batch.data;
+        if (batch.length == 0) {
+            batch.session = session;
+            data[0] = (byte) PROTOCOL_VERSION;
+            writeInt(data, 1, session);
+            writeInt(data, 5, _nodeId);
+            Session s = findSession(session);
+            int number = 0;
+            if (s != null) {
+                number = s.nextDatagram;
+                s.nextDatagram = (number + 1) & 0xFFFF;
+            }
+            data[9] = (byte) (number >> 8);
+            data[10] = (byte) number;
+            batch.length = HEADER_SIZE;
+        }
+
+        data[batch.length++] = (byte) (code - CODE_OFFSET);
+        _payloadBytesSent += length;
+        if (length < 0x80) {
+            data[batch.length++] = (byte) length;
+        } else {
+            data[batch.length++] = (byte) (0x80 | (length >> 8));
+            data[batch.length++] = (byte) length;
+        }
+        if (length > 0) {
+            System.arraycopy(payload, 0, data, batch.length, length);
+            batch.length += length;
+        }
+    }
+
+    private static void writeShort(byte[] b, int offset, int value) {
+        b[offset] = (byte) (value >> 8);
+        b[offset + 1] = (byte) value;
+    }
+
+    private static void writeInt(byte[] b, int offset, int value) {
+        b[offset] = (byte) (value >> 24);
+        b[offset + 1] = (byte) (value >> 16);
+        b[offset + 2] = (byte) (value >> 8);
+        b[offset + 3] = (byte) value;
+    }
+
+    /**
+     * Sends a room discovery message to everyone, whichever session they're in
+     * Goes out straight away, in a datagram of its own, leaving anything queued for the next flush()
+     *
+     * @param code    Code to send. Must be a discovery code
+     * @param payload Parameters of the message
+     * @param length  Number of bytes of the payload to send
+     */
+    public synchronized void sendDiscovery(int code, byte[] payload, int length) {
+        if (!isDiscoveryCode(code))
+            throw new IllegalArgumentException("Not a discovery code: " + code);
+        appendMessage(_control, DISCOVERY_SESSION, code, payload, length);
+        send(_control);
+    }
+
+    /**
+     * Sends everything that has been queued as a single datagram
+     * Any acknowledgements that are due ride along
+     */
+    public synchronized void flush() {
+        queueAcks(_batch);
+        send(_batch);
+    }
+
+    private void send(Batch batch) {
+        if (batch.length == 0 || _transport == null)
+            return;
+
+        int length = batch.length;
+        batch.length = 0;
+        _datagramsSent++;
+        _bytesSent += length;
+        capture(true, 0, batch.data, length);
+        try {
+            _transport.send(batch.data, length);
+        } catch (IOException e) {
+            e.printStackTrace();
+            for ( MultiplayerEventListener mel : _listeners ) {
+                mel.onNetworkError(e, "Error in attempting to send code.");
+            }
+        }
+    }
+
+    /**
+     * Sends a message with no parameters straight away, along with anything already queued
+     *
+     * @param code Code to send
+     */
+    public synchronized void sendCode(int code) {
+        queueCode(code);
+        flush();
+    }
+
+    /**
+     * Sends a message straight away, along with anything already queued
+     *
+     * @param code    Code to send
+     * @param payload Parameters of the message
+     * @param length  Number of bytes of the payload to send
+     */
+    public synchronized void sendCode(int code, byte[] payload, int length) {
+        queueCode(code, payload, length);
+        flush();
+    }
+    //endregion
+
+    //region Capture
+
+    /**
+     * Starts recording every datagram sent and received
+     * Replaces any capture already running
+     *
+     * @param file File to record to
+     * @throws IOException If the file couldn't be written
+     */
+    public void startCapture(File file) throws IOException {
+        PacketCapture old = _capture;
+        _capture = new PacketCapture(file, _nodeId);
+        if (old != null)
+            old.close();
+    }
+
+    /**
+     * Stops recording, and writes out the rest of the capture
+     */
+    public void stopCapture() {
+        PacketCapture capture = _capture;
+        _capture = null;
+        if (capture == null)
+            return;
+        try {
+            capture.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void capture(boolean outbound, int address, byte[] data, int length) {
+        PacketCapture capture = _capture;
+        if (capture == null)
+            return;
+        try {
+            capture.record(outbound, address, data, length);
+        } catch (IOException e) {
+            // Not worth stopping the game for
+            e.printStackTrace();
+            _capture = null;
+        }
+    }
+    //endregion
+
+    /**
+     * Stops listening, and leaves the multicast group
+     */
+    public void close() {
+        stopCapture();
+        _running = false;
+        synchronized (this) {
+            _pending.clear();
+            notifyAll();
+        }
+        if (_transport != null)
+            _transport.close();
+    }
+
+}
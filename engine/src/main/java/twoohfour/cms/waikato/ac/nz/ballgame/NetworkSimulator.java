@@ -0,0 +1,267 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Plays a position sharing game between simulated players, over a LoopbackHub
+ *
+ * Every player tilts at random in their own copy of a level, and sends where they are
+ * with a PositionCodec, the same way GameActivity does. Every update, each ghost is
+ * compared with where its player really is, which shows how smooth the ghosts look
+ * under the hub's conditions. Also reports what was sent, and how much of it was
+ * headers rather than payload.
+ *
+ * Usage: NetworkSimulator [option value] ...
+ *   -players 4     -seconds 10    -level Empty   -seed 1
+ *   -latency 0     -jitter 0      -loss 0        -dup 0
+ *   -bandwidth 0   -queue 500     -capture file
+ * Latency, jitter and queue are in milliseconds, loss and dup are 0 to 1, bandwidth is
+ * bytes per second for each player. The first player's traffic can be captured, for CaptureReplay.
+ */
+public class NetworkSimulator {
+
+    //region Variables
+    public static final int UPDATES_PER_SECOND = 30; // Same as GameActivity
+    public static final int NETWORK_UPDATES_PER_SECOND = 20;
+    public static final int SESSION = 1; // Everyone starts in the same room, without discovery
+
+    private final LoopbackHub _hub;
+    private final List<Player> _players = new ArrayList<Player>();
+    private final Random _random;
+
+    // Ghost error, over every ghost and every update
+    private double _errorSum;
+    private double _errorSquaredSum;
+    private float _maxError;
+    private long _samples;
+    //endregion
+
+    /**
+     * Someone playing, with their own network and copy of the level
+     */
+    private static class Player implements MultiplayerEventListener {
+        final MultiplayerNetwork network;
+        final GameState state;
+        final PositionCodec codec = new PositionCodec();
+        final Map<Integer, MultiPlayerGhostSprite> ghosts = new HashMap<Integer, MultiPlayerGhostSprite>();
+        long received;
+
+        Player(Transport transport, GameState state) {
+            this.network = new MultiplayerNetwork(transport);
+            this.state = state;
+            network.setSession(SESSION);
+            network.registerListener(this);
+        }
+
+        @Override
+        public void message(int statusCode, ByteBuffer data, int from, int session) {
+            if (statusCode != PositionCodec.CODE_KEYFRAME && statusCode != PositionCodec.CODE_DELTA)
+                return;
+            synchronized (state) {
+                MultiPlayerGhostSprite ghost = ghosts.get(from);
+                if (ghost == null) {
+                    ghost = new MultiPlayerGhostSprite(0, 0);
+                    ghosts.put(from, ghost);
+                }
+                IntVec2 levelSize = state.getLevelSize();
+                PositionCodec.decode(statusCode, data, ghost, levelSize.x, levelSize.y);
+                received++;
+            }
+        }
+
+        @Override
+        public void onNetworkError(Exception e, String text) {
+            System.err.println(e.getMessage() + " " + text);
+        }
+    }
+
+    /**
+     * Sets up players on a hub
+     *
+     * @param hub     Network to play over
+     * @param players Number of players
+     * @param level   Level everyone plays
+     * @param seed    Seed for the level, and everyone's tilting
+     */
+    public NetworkSimulator(LoopbackHub hub, int players, GameState.Level level, long seed) {
+        _hub = hub;
+        _random = new Random(seed);
+        for (int i = 0; i < players; i++)
+            _players.add(new Player(hub.connect(), GameState.GENERATE(level, level.name(), seed)));
+    }
+
+    /**
+     * Plays for a while, in real time
+     *
+     * @param seconds How long to play
+     * @throws InterruptedException If interrupted while waiting for the next update
+     */
+    public void run(int seconds) throws InterruptedException {
+        int updates = seconds * UPDATES_PER_SECOND;
+        long interval = 1000000000L / UPDATES_PER_SECOND;
+        long next = System.nanoTime();
+        float nextSend = 0;
+
+        for (int tick = 0; tick < updates; tick++) {
+            for (Player p : _players)
+                update(p);
+            measure();
+
+            // The network runs slower than the game, as it does on a phone
+            if (tick >= nextSend) {
+                nextSend += (float) UPDATES_PER_SECOND / NETWORK_UPDATES_PER_SECOND;
+                for (Player p : _players)
+                    sendPosition(p);
+            }
+
+            next += interval;
+            long wait = next - System.nanoTime();
+            if (wait > 0)
+                Thread.sleep(wait / 1000000L, (int) (wait % 1000000L));
+        }
+    }
+
+    /**
+     * Disconnects everyone
+     */
+    public void close() {
+        for (Player p : _players)
+            p.network.close();
+    }
+
+    private void update(Player p) {
+        synchronized (p.state) {
+            // Lean a different way every now and then
+            if (_random.nextInt(UPDATES_PER_SECOND) == 0)
+                p.state.setGravity((_random.nextFloat() - 0.5f) * 0.02f, (_random.nextFloat() - 0.5f) * 0.02f, 0);
+            p.state.update();
+            for (MultiPlayerGhostSprite ghost : p.ghosts.values())
+                ghost.update(p.state);
+        }
+    }
+
+    private void sendPosition(Player p) {
+        int code;
+        synchronized (p.state) {
+            PlayerSprite player = p.state.getPlayer();
+            IntVec2 levelSize = p.state.getLevelSize();
+            code = p.codec.prepare(player.getXPos(), player.getYPos(),
+                    player.getMotion().x, player.getMotion().y,
+                    p.state.getGameTime(), levelSize.x, levelSize.y);
+        }
+        if (code != 0)
+            p.network.queueCode(code, p.codec.getPayload(), p.codec.getPayloadLength());
+        p.network.flush();
+    }
+
+    /**
+     * Compares every ghost with the player it stands for
+     */
+    private void measure() {
+        for (Player p : _players) {
+            synchronized (p.state) {
+                for (Player other : _players) {
+                    if (other == p)
+                        continue;
+                    MultiPlayerGhostSprite ghost = p.ghosts.get(other.network.getNodeId());
+                    if (ghost == null)
+                        continue;
+                    PlayerSprite truth = other.state.getPlayer();
+                    float dx = ghost.getXPos() - truth.getXPos();
+                    float dy = ghost.getYPos() - truth.getYPos();
+                    float error = (float) Math.sqrt(dx * dx + dy * dy);
+                    _errorSum += error;
+                    _errorSquaredSum += error * error;
+                    _maxError = Math.max(_maxError, error);
+                    _samples++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Prints what happened
+     *
+     * @param seconds How long was played
+     */
+    public void report(int seconds) {
+        long datagrams = 0;
+        long bytes = 0;
+        long payload = 0;
+        long received = 0;
+        for (Player p : _players) {
+            datagrams += p.network.getDatagramsSent();
+            bytes += p.network.getBytesSent();
+            payload += p.network.getPayloadBytesSent();
+            received += p.received;
+        }
+        int count = _players.size();
+
+        System.out.println(count + " players for " + seconds + "s");
+        System.out.println("Sent per player:    " + datagrams / count / seconds + " datagrams/s, " + bytes / count / seconds + " bytes/s");
+        System.out.println("Overhead:           " + (bytes == 0 ? 0 : (bytes - payload) * 100 / bytes) + "% of bytes sent aren't payload");
+        System.out.println("Hub:                " + _hub.getSent() + " sent, " + _hub.getDelivered() + " delivered, " + _hub.getLost() + " lost, "
+                + _hub.getDuplicated() + " duplicated, " + _hub.getQueueDropped() + " dropped by full uplinks");
+        System.out.println("Positions received: " + received);
+        if (_samples > 0) {
+            System.out.println("Ghost error:        mean " + (float) (_errorSum / _samples) + ", rms " + (float) Math.sqrt(_errorSquaredSum / _samples)
+                    + ", max " + _maxError + " (threshold " + PositionCodec.ERROR_THRESHOLD + ")");
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        int players = 4;
+        int seconds = 10;
+        GameState.Level level = GameState.Level.Empty;
+        long seed = 1;
+        int latency = 0;
+        int jitter = 0;
+        float loss = 0;
+        float dup = 0;
+        int bandwidth = 0;
+        int queue = 500;
+        String capture = null;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "-players": players = Integer.parseInt(value); break;
+                case "-seconds": seconds = Integer.parseInt(value); break;
+                case "-level": level = GameState.Level.valueOf(value); break;
+                case "-seed": seed = Long.parseLong(value); break;
+                case "-latency": latency = Integer.parseInt(value); break;
+                case "-jitter": jitter = Integer.parseInt(value); break;
+                case "-loss": loss = Float.parseFloat(value); break;
+                case "-dup": dup = Float.parseFloat(value); break;
+                case "-bandwidth": bandwidth = Integer.parseInt(value); break;
+                case "-queue": queue = Integer.parseInt(value); break;
+                case "-capture": capture = value; break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    return;
+            }
+        }
+
+        LoopbackHub hub = new LoopbackHub(seed);
+        hub.setLatency(latency, jitter);
+        hub.setLoss(loss);
+        hub.setDuplication(dup);
+        hub.setBandwidth(bandwidth, queue);
+
+        NetworkSimulator sim = new NetworkSimulator(hub, players, level, seed);
+        if (capture != null)
+            sim._players.get(0).network.startCapture(new File(capture));
+        sim.run(seconds);
+        sim.close();
+        sim.report(seconds);
+        System.exit(0);
+    }
+}
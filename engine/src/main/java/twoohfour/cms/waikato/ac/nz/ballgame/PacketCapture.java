@@ -0,0 +1,178 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records every datagram a MultiplayerNetwork sends and receives, to a file
+ *
+ * Writes are buffered and only ever appended, so recording costs little more than a copy.
+ * A capture can be played back through a network with CaptureReplay.
+ *
+ * File:    | magic "BCAP" (4) | version (1) | node id (4) | started, wall clock ms (8) | started, nanos (8) | record | ...
+ * Record:  | nanos (8) | direction and length (2) | address (4) | datagram |
+ * The top bit of the length is set for datagrams we sent. Address is the IPv4 address
+ * of whoever sent a received datagram, or 0 if unknown. Sent datagrams go to everyone,
+ * so theirs is always 0. Nanos are System.nanoTime(), so only mean anything relative
+ * to the start.
+ */
+public class PacketCapture {
+
+    //region Variables
+    public static final int MAGIC = 0x42434150; // "BCAP"
+    public static final int VERSION = 1;
+    private static final int OUTBOUND = 0x8000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final DataOutputStream _out;
+    private long _records;
+    private long _bytes;
+    //endregion
+
+    /**
+     * A datagram read back from a capture
+     */
+    public static class Record {
+        public final long nanos;
+        public final boolean outbound;
+        public final int address;
+        public final byte[] data;
+
+        Record(long nanos, boolean outbound, int address, byte[] data) {
+            this.nanos = nanos;
+            this.outbound = outbound;
+            this.address = address;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Starts a new capture
+     *
+     * @param file   File to write. Replaced if it already exists
+     * @param nodeId Node id of the network being captured, so its own looped back datagrams can be told apart
+     * @throws IOException If the file couldn't be written
+     */
+    public PacketCapture(File file, int nodeId) throws IOException {
+        _out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+        _out.writeInt(MAGIC);
+        _out.writeByte(VERSION);
+        _out.writeInt(nodeId);
+        _out.writeLong(System.currentTimeMillis());
+        _out.writeLong(System.nanoTime());
+    }
+
+    /**
+     * Appends a datagram
+     *
+     * @param outbound Whether we sent it
+     * @param address  IPv4 address it came from, or 0
+     * @param data     Datagram
+     * @param length   Length of the datagram
+     * @throws IOException If the file couldn't be written
+     */
+    public synchronized void record(boolean outbound, int address, byte[] data, int length) throws IOException {
+        _out.writeLong(System.nanoTime());
+        _out.writeShort(length | (outbound ? OUTBOUND : 0));
+        _out.writeInt(address);
+        _out.write(data, 0, length);
+        _records++;
+        _bytes += length;
+    }
+
+    /**
+     * Gets the number of datagrams recorded
+     *
+     * @return Record count
+     */
+    public synchronized long getRecords() {
+        return _records;
+    }
+
+    /**
+     * Gets the number of datagram bytes recorded, not counting the capture's own headers
+     *
+     * @return Byte count
+     */
+    public synchronized long getBytes() {
+        return _bytes;
+    }
+
+    /**
+     * Writes out anything buffered, and finishes the capture
+     *
+     * @throws IOException If the file couldn't be written
+     */
+    public synchronized void close() throws IOException {
+        _out.close();
+    }
+
+    //region Reading
+
+    /**
+     * Gets the node id a capture was made by
+     *
+     * @param file Capture file
+     * @return Node id
+     * @throws IOException If the file isn't a capture we understand
+     */
+    public static int readNodeId(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            return readHeader(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads a whole capture into memory
+     * A record cut short, by the app being killed while capturing, ends it
+     *
+     * @param file Capture file
+     * @return Every datagram, in the order they were recorded
+     * @throws IOException If the file isn't a capture we understand
+     */
+    public static List<Record> read(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+        List<Record> records = new ArrayList<Record>();
+        try {
+            readHeader(in);
+            while (true) {
+                long nanos = in.readLong();
+                int length = in.readShort() & 0xFFFF;
+                int address = in.readInt();
+                byte[] data = new byte[length & ~OUTBOUND];
+                in.readFully(data);
+                records.add(new Record(nanos, (length & OUTBOUND) != 0, address, data));
+            }
+        } catch (EOFException e) {
+            // End of the capture
+        } finally {
+            in.close();
+        }
+        return records;
+    }
+
+    private static int readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC)
+            throw new IOException("Not a capture");
+        int version = in.readByte();
+        if (version != VERSION)
+            throw new IOException("Capture version " + version + ", can only read " + VERSION);
+        int nodeId = in.readInt();
+        in.readLong(); // Wall clock
+        in.readLong(); // Nanos
+        return nodeId;
+    }
+    //endregion
+}
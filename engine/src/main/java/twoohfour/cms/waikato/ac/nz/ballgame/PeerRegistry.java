@@ -0,0 +1,218 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import java.util.Arrays;
+
+/**
+ * Gives each peer a small integer id when it joins, so per-peer state can live in
+ * plain arrays indexed by that id. Node id lookups use an open addressing table
+ * of ints, so finding a peer doesn't allocate or compare strings.
+ *
+ * Also keeps count of how many peers are ready, so checking if everyone is
+ * ready doesn't need to look at every peer.
+ *
+ * Not thread safe. Lookups are meant to happen on the one thread that adds and removes
+ * peers (the network's receive thread). Anything else must lock around the registry.
+ */
+public class PeerRegistry {
+
+    //region Variables
+    public static final int MAX_PEERS = 256;
+    private static final int TABLE_SIZE = MAX_PEERS * 2; // Keeps the table at most half full
+    private static final int EMPTY = 0; // Node ids are never 0
+
+    // Node id -> peer id
+    private final int[] _tableNodes = new int[TABLE_SIZE];
+    private final int[] _tablePeers = new int[TABLE_SIZE];
+
+    // Peer id -> state
+    private final int[] _nodes = new int[MAX_PEERS];
+    private final boolean[] _ready = new boolean[MAX_PEERS];
+    private final int[] _free = new int[MAX_PEERS];
+
+    private int _freeCount;
+    private int _count;
+    private int _readyCount;
+    //endregion
+
+    public PeerRegistry() {
+        clear();
+    }
+
+    //region Getters
+
+    /**
+     * Gets the number of peers
+     *
+     * @return Peer count
+     */
+    public int getCount() {
+        return _count;
+    }
+
+    /**
+     * Gets the number of peers that are ready
+     *
+     * @return Ready count
+     */
+    public int getReadyCount() {
+        return _readyCount;
+    }
+
+    /**
+     * Whether every peer is ready. True when there are no peers
+     *
+     * @return Readiness
+     */
+    public boolean allReady() {
+        return _readyCount == _count;
+    }
+
+    /**
+     * Whether a peer id is currently given to a peer
+     *
+     * @param peer Peer id
+     * @return True if in use
+     */
+    public boolean isUsed(int peer) {
+        return _nodes[peer] != EMPTY;
+    }
+
+    /**
+     * Gets the node id of a peer
+     *
+     * @param peer Peer id
+     * @return Node id, or 0 if the id is not in use
+     */
+    public int getNode(int peer) {
+        return _nodes[peer];
+    }
+
+    /**
+     * Whether a peer is ready
+     *
+     * @param peer Peer id
+     * @return Readiness
+     */
+    public boolean isReady(int peer) {
+        return _ready[peer];
+    }
+    //endregion
+
+    /**
+     * Finds the peer id for a node
+     *
+     * @param node Node id
+     * @return Peer id, or -1 if the node isn't known
+     */
+    public int lookup(int node) {
+        int i = hash(node);
+        while (true) {
+            int n = _tableNodes[i];
+            if (n == node)
+                return _tablePeers[i];
+            if (n == EMPTY)
+                return -1;
+            i = (i + 1) & (TABLE_SIZE - 1);
+        }
+    }
+
+    /**
+     * Gives a node a peer id
+     *
+     * @param node Node id. Must not already be known
+     * @return New peer id, or -1 if there's no room
+     */
+    public int add(int node) {
+        if (node == EMPTY)
+            throw new IllegalArgumentException("Node id can't be 0");
+        if (_freeCount == 0)
+            return -1;
+
+        int peer = _free[--_freeCount];
+        _nodes[peer] = node;
+        _ready[peer] = false;
+        _count++;
+
+        int i = hash(node);
+        while (_tableNodes[i] != EMPTY)
+            i = (i + 1) & (TABLE_SIZE - 1);
+        _tableNodes[i] = node;
+        _tablePeers[i] = peer;
+        return peer;
+    }
+
+    /**
+     * Frees a peer id, to be given to the next peer that joins
+     *
+     * @param peer Peer id
+     */
+    public void remove(int peer) {
+        int node = _nodes[peer];
+        if (node == EMPTY)
+            return;
+
+        if (_ready[peer])
+            _readyCount--;
+        _ready[peer] = false;
+        _nodes[peer] = EMPTY;
+        _free[_freeCount++] = peer;
+        _count--;
+
+        // Find it in the table
+        int i = hash(node);
+        while (_tableNodes[i] != node)
+            i = (i + 1) & (TABLE_SIZE - 1);
+
+        // Shift later entries back, so lookups don't stop at the gap
+        int gap = i;
+        int j = i;
+        while (true) {
+            j = (j + 1) & (TABLE_SIZE - 1);
+            int n = _tableNodes[j];
+            if (n == EMPTY)
+                break;
+            int home = hash(n);
+            // Entry at j can fill the gap if its home isn't between the gap and j
+            boolean between = gap <= j ? (gap < home && home <= j) : (gap < home || home <= j);
+            if (!between) {
+                _tableNodes[gap] = n;
+                _tablePeers[gap] = _tablePeers[j];
+                gap = j;
+            }
+        }
+        _tableNodes[gap] = EMPTY;
+    }
+
+    /**
+     * Marks a peer as ready
+     *
+     * @param peer Peer id
+     */
+    public void setReady(int peer) {
+        if (!_ready[peer] && _nodes[peer] != EMPTY) {
+            _ready[peer] = true;
+            _readyCount++;
+        }
+    }
+
+    /**
+     * Removes every peer
+     */
+    public void clear() {
+        Arrays.fill(_tableNodes, EMPTY);
+        Arrays.fill(_nodes, EMPTY);
+        Arrays.fill(_ready, false);
+        // Hand out low ids first
+        for (int i = 0; i < MAX_PEERS; i++)
+            _free[i] = MAX_PEERS - 1 - i;
+        _freeCount = MAX_PEERS;
+        _count = 0;
+        _readyCount = 0;
+    }
+
+    private static int hash(int node) {
+        // Node ids are random already, but mix anyway in case they aren't
+        int h = node * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (TABLE_SIZE - 1);
+    }
+}
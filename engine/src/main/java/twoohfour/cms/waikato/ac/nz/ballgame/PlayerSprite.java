@@ -0,0 +1,139 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+
+/**
+ * Created by Stuart on 25/09/2015.
+ */
+public strictfp class PlayerSprite extends CircleSprite implements ICollides {
+
+    // Players other than the local one have their own gravity, given by their input
+    private float[] _input;
+    private boolean _finished;
+    private boolean _dead;
+
+    public PlayerSprite(float x, float y) {
+        this(x, y, 1);
+    }
+
+    public PlayerSprite(float x, float y, float weight) {
+        super(x, y, 0.5f, 0.5f, weight);
+        _color = Colors.RED;
+        _friction = 1;
+    }
+
+    //region Getters & Setters
+
+    /**
+     * Whether the player has reached the finish
+     * Not kept for the GameState's own player when a GameHost referees
+     *
+     * @return True once finished
+     */
+    public boolean isFinished() {
+        return _finished;
+    }
+
+    /**
+     * Whether the player has died
+     * Not kept for the GameState's own player when a GameHost referees
+     *
+     * @return True once dead
+     */
+    public boolean isDead() {
+        return _dead;
+    }
+
+    /**
+     * Whether the player has stopped playing, either by finishing or dying
+     *
+     * @return True if out of the game
+     */
+    public boolean isOut() {
+        return _finished || _dead;
+    }
+
+    /**
+     * Marks the player as finished
+     */
+    public void setFinished() {
+        _finished = true;
+    }
+
+    /**
+     * Marks the player as dead
+     */
+    public void setDead() {
+        _dead = true;
+    }
+
+    /**
+     * Gets the player's own gravity
+     *
+     * @return Gravity values, or null if it uses the GameState's
+     */
+    public float[] getInput() {
+        return _input;
+    }
+
+    /**
+     * Gives the player its own gravity, instead of using the GameState's
+     *
+     * @param x Acceleration in X direction
+     * @param y Acceleration in Y direction
+     */
+    public void setInput(float x, float y) {
+        if (_input == null)
+            _input = new float[2];
+        _input[0] = x;
+        _input[1] = y;
+        _asleep = false;
+    }
+    //endregion
+
+    //region Snapshots
+
+    @Override
+    public int save(float[] values, int offset, GameState state) {
+        super.save(values, offset, state);
+        // Input is given again every tick, so doesn't need keeping
+        return (_finished ? GameHost.FLAG_FINISHED : 0) | (_dead ? GameHost.FLAG_DEAD : 0);
+    }
+
+    @Override
+    public void restore(float[] values, int offset, int extra, GameState state) {
+        super.restore(values, offset, extra, state);
+        _finished = (extra & GameHost.FLAG_FINISHED) != 0;
+        _dead = (extra & GameHost.FLAG_DEAD) != 0;
+    }
+    //endregion
+
+    /**
+     * Draw the player
+     * @param renderer Where to draw
+     * @param scale Scale at which to draw
+     */
+    @Override
+    public void draw(Renderer renderer, float scale, Vec2 offset) {
+        float radius = getWidth() / 2;
+        renderer.fillCircle((getXPos() + radius + offset.x) * scale, (getYPos() + radius + offset.y) * scale, radius * scale, _color);
+    }
+
+    @Override
+    public boolean canSleep(GameState state) {
+        float[] grav = _input != null ? _input : state.getGravity();
+        return grav[0] == 0 && grav[1] == 0;
+    }
+
+    /**
+     * Update the player
+     * @param state Current state of the game
+     */
+    @Override
+    public void update(GameState state) {
+        // Update the player's motion
+        float[] grav = _input != null ? _input : state.getGravity();
+        addMotion(grav[0], grav[1]);
+
+        super.update(state);
+    }
+}
@@ -0,0 +1,197 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decides when the player's position needs to be sent, and what to send.
+ * Peers extrapolate a ghost using the last position and velocity they were given,
+ * so an update is only needed once that guess drifts too far from the truth.
+ * A keyframe is still sent every so often, in case anything was lost.
+ *
+ * Positions are quantised to 16 bit fixed point relative to the level size.
+ *
+ * Keyframe payload: | seq (1) | x (2) | y (2) | dx (2) | dy (2) |
+ * Delta payload:    | seq (1) | x - key x (1) | y - key y (1) | dx (2) | dy (2) |
+ */
+public class PositionCodec {
+
+    //region Variables
+    public static final int CODE_KEYFRAME = 102;
+    public static final int CODE_DELTA = 105;
+
+    public static final int STEPS_PER_LEVEL = 8192; // Gives a range of +/- 4 level sizes in a signed short
+    public static final float VELOCITY_RANGE = 0.25f; // Just over GenericSprite.MAX_VELOCITY
+    public static final float ERROR_THRESHOLD = 0.05f; // How far a ghost can drift before we correct it
+    public static final int KEYFRAME_INTERVAL = 30; // Ticks between heartbeat keyframes (about 1 second)
+    public static final int MAX_DELTA = 127; // Largest step that can be sent as a delta
+
+    // What peers currently believe
+    private int _keySeq = -1;
+    private int _keyX;
+    private int _keyY;
+    private int _keyTick;
+    private float _sentX;
+    private float _sentY;
+    private float _sentDx;
+    private float _sentDy;
+    private int _sentTick;
+
+    private final ByteBuffer _payload = ByteBuffer.allocate(9);
+    //endregion
+
+    /**
+     * Works out whether peers need to be told about the player
+     *
+     * @param x      Actual X position
+     * @param y      Actual Y position
+     * @param dx     Actual X motion
+     * @param dy     Actual Y motion
+     * @param tick   Current game tick
+     * @param levelW Width of the level
+     * @param levelH Height of the level
+     * @return Code to send, or 0 if nothing needs sending
+     */
+    public int prepare(float x, float y, float dx, float dy, int tick, float levelW, float levelH) {
+        int elapsed = tick - _sentTick;
+        boolean heartbeat = _keySeq < 0 || tick < _keyTick || tick - _keyTick >= KEYFRAME_INTERVAL;
+
+        if (!heartbeat) {
+            // Where the peers think we are
+            float errX = _sentX + _sentDx * elapsed - x;
+            float errY = _sentY + _sentDy * elapsed - y;
+            if (errX * errX + errY * errY <= ERROR_THRESHOLD * ERROR_THRESHOLD)
+                return 0;
+        }
+
+        int qx = quantisePosition(x, levelW);
+        int qy = quantisePosition(y, levelH);
+        int qdx = quantiseVelocity(dx);
+        int qdy = quantiseVelocity(dy);
+
+        int code;
+        _payload.clear();
+        if (!heartbeat && Math.abs(qx - _keyX) <= MAX_DELTA && Math.abs(qy - _keyY) <= MAX_DELTA) {
+            // Small change from the last keyframe
+            code = CODE_DELTA;
+            _payload.put((byte) _keySeq);
+            _payload.put((byte) (qx - _keyX));
+            _payload.put((byte) (qy - _keyY));
+        } else {
+            code = CODE_KEYFRAME;
+            _keySeq = (_keySeq + 1) & 0xFF;
+            _keyX = qx;
+            _keyY = qy;
+            _keyTick = tick;
+            _payload.put((byte) _keySeq);
+            _payload.putShort((short) qx);
+            _payload.putShort((short) qy);
+        }
+        _payload.putShort((short) qdx);
+        _payload.putShort((short) qdy);
+
+        // Remember what the peers will see, not what we have
+        _sentX = dequantisePosition(qx, levelW);
+        _sentY = dequantisePosition(qy, levelH);
+        _sentDx = dequantiseVelocity(qdx);
+        _sentDy = dequantiseVelocity(qdy);
+        _sentTick = tick;
+
+        return code;
+    }
+
+    /**
+     * Gets the parameters for the last code returned by prepare()
+     *
+     * @return Message parameters
+     */
+    public byte[] getPayload() {
+        return _payload.array();
+    }
+
+    /**
+     * Gets the number of bytes used in getPayload()
+     *
+     * @return Payload length
+     */
+    public int getPayloadLength() {
+        return _payload.position();
+    }
+
+    /**
+     * Reads a position message into a ghost
+     *
+     * @param code   Either CODE_KEYFRAME or CODE_DELTA
+     * @param data   Message payload
+     * @param ghost  Ghost to move
+     * @param levelW Width of the level being played
+     * @param levelH Height of the level being played
+     */
+    public static void decode(int code, ByteBuffer data, MultiPlayerGhostSprite ghost, float levelW, float levelH) {
+        int seq = data.get() & 0xFF;
+        if (code == CODE_KEYFRAME) {
+            int qx = data.getShort();
+            int qy = data.getShort();
+            ghost.applyKeyframe(seq, qx, qy, data.getShort(), data.getShort(), levelW, levelH);
+        } else {
+            int ddx = data.get();
+            int ddy = data.get();
+            ghost.applyDelta(seq, ddx, ddy, data.getShort(), data.getShort(), levelW, levelH);
+        }
+    }
+
+    /**
+     * Forces the next call to prepare() to send a keyframe
+     */
+    public void reset() {
+        _keySeq = -1;
+    }
+
+    //region Quantisation
+
+    /**
+     * Converts a position into fixed point
+     *
+     * @param pos  Position
+     * @param size Size of the level along this axis
+     * @return Signed 16 bit value
+     */
+    public static int quantisePosition(float pos, float size) {
+        return clampShort(Math.round(pos / size * STEPS_PER_LEVEL));
+    }
+
+    /**
+     * Converts a fixed point position back to level units
+     *
+     * @param q    Signed 16 bit value
+     * @param size Size of the level along this axis
+     * @return Position
+     */
+    public static float dequantisePosition(int q, float size) {
+        return q * size / STEPS_PER_LEVEL;
+    }
+
+    /**
+     * Converts a velocity into fixed point
+     *
+     * @param v Velocity
+     * @return Signed 16 bit value
+     */
+    public static int quantiseVelocity(float v) {
+        return clampShort(Math.round(v / VELOCITY_RANGE * Short.MAX_VALUE));
+    }
+
+    /**
+     * Converts a fixed point velocity back to level units
+     *
+     * @param q Signed 16 bit value
+     * @return Velocity
+     */
+    public static float dequantiseVelocity(int q) {
+        return q * VELOCITY_RANGE / Short.MAX_VALUE;
+    }
+
+    private static int clampShort(int i) {
+        return Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, i));
+    }
+    //endregion
+}
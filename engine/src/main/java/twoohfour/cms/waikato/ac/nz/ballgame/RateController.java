@@ -0,0 +1,150 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+/**
+ * Works out how often to send our position, so a busy room doesn't drown everyone
+ *
+ * Everyone in a room receives everyone else, so traffic grows with the square of the
+ * number of players. The rate starts as a share of what one device should have to
+ * receive (TARGET_RECEIVE_RATE), split between the peers we know of. On top of that:
+ *  - when datagrams from peers go missing, the rate is cut by a quarter, as the network
+ *    is likely full
+ *  - when datagrams queue up faster than we can read them, the rate is halved, as we're
+ *    likely not the only one who can't keep up
+ *  - otherwise it creeps back up
+ * Whatever it ends up as, it stays between the floor and ceiling.
+ *
+ * The network timer calls tick() at the ceiling rate, and only sends when it says so.
+ */
+public class RateController {
+
+    //region Variables
+    public static final float MIN_RATE = 5; // Ghosts still look alright extrapolated this far
+    public static final float TARGET_RECEIVE_RATE = 200; // Datagrams a second a phone can comfortably take in
+    public static final float LOSS_THRESHOLD = 0.05f;
+    public static final int BACKLOG_THRESHOLD = 8; // Datagrams waiting at once
+    public static final int WINDOW_MS = 1000;
+
+    private static final float LOSS_BACKOFF = 0.75f;
+    private static final float BACKLOG_BACKOFF = 0.5f;
+    private static final float RECOVERY = 0.05f; // Added back to the multiplier every window
+    private static final float MIN_MULTIPLIER = 0.1f;
+
+    private final MultiplayerNetwork _network;
+    private final float _floor;
+    private final float _ceiling;
+
+    private float _multiplier = 1;
+    private volatile float _rate;
+    private float _credit;
+
+    // What was seen in the last window, for the debug overlay
+    private long _windowStart;
+    private long _received;
+    private long _lost;
+    private volatile float _loss;
+    private volatile int _backlog;
+    private volatile int _peers;
+    //endregion
+
+    /**
+     * Creates a rate controller
+     *
+     * @param network Network whose peers, losses and backlog to watch
+     * @param floor   Fewest sends a second
+     * @param ceiling Most sends a second. tick() must be called this often
+     */
+    public RateController(MultiplayerNetwork network, float floor, float ceiling) {
+        _network = network;
+        _floor = floor;
+        _ceiling = ceiling;
+        _rate = ceiling;
+        _windowStart = System.currentTimeMillis();
+        _received = network.getDatagramsReceived();
+        _lost = network.getDatagramsLost();
+    }
+
+    //region Getters
+
+    /**
+     * Gets how often we're sending
+     *
+     * @return Sends a second
+     */
+    public float getRate() {
+        return _rate;
+    }
+
+    /**
+     * Gets the fraction of peers' datagrams that went missing in the last window
+     *
+     * @return Loss between 0 and 1
+     */
+    public float getLoss() {
+        return _loss;
+    }
+
+    /**
+     * Gets the most datagrams that were waiting to be read at once, in the last window
+     *
+     * @return Datagram count
+     */
+    public int getBacklog() {
+        return _backlog;
+    }
+
+    /**
+     * Gets the number of peers the rate was last shared between
+     *
+     * @return Peer count
+     */
+    public int getPeers() {
+        return _peers;
+    }
+    //endregion
+
+    /**
+     * Called by the network timer, at the ceiling rate
+     *
+     * @return Whether to send this time
+     */
+    public boolean tick() {
+        long now = System.currentTimeMillis();
+        if (now - _windowStart >= WINDOW_MS) {
+            _windowStart = now;
+            adjust();
+        }
+
+        _credit += _rate / _ceiling;
+        if (_credit < 1)
+            return false;
+        _credit -= 1;
+        return true;
+    }
+
+    /**
+     * Works out a new rate from what happened in the last window
+     */
+    private void adjust() {
+        long received = _network.getDatagramsReceived();
+        long lost = _network.getDatagramsLost();
+        long windowReceived = received - _received;
+        long windowLost = lost - _lost;
+        _received = received;
+        _lost = lost;
+
+        _peers = _network.getPeerCount();
+        _backlog = _network.takeMaxBacklog();
+        _loss = windowReceived + windowLost == 0 ? 0 : (float) windowLost / (windowReceived + windowLost);
+
+        if (_backlog > BACKLOG_THRESHOLD)
+            _multiplier *= BACKLOG_BACKOFF;
+        else if (_loss > LOSS_THRESHOLD)
+            _multiplier *= LOSS_BACKOFF;
+        else
+            _multiplier = Math.min(1, _multiplier + RECOVERY);
+        _multiplier = Math.max(MIN_MULTIPLIER, _multiplier);
+
+        float share = _peers == 0 ? _ceiling : TARGET_RECEIVE_RATE / _peers;
+        _rate = Math.max(_floor, Math.min(_ceiling, share * _multiplier));
+    }
+}
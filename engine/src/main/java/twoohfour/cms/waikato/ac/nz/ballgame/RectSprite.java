@@ -1,12 +1,10 @@
 package twoohfour.cms.waikato.ac.nz.ballgame;
 
-import android.graphics.PointF;
-import android.graphics.RectF;
 
 /**
  * Created by Stuart on 18/10/2015.
  */
-public abstract class RectSprite extends GenericSprite {
+public abstract strictfp class RectSprite extends GenericSprite {
 
     public RectSprite() {
         super(0, 0);
@@ -48,7 +46,7 @@ public abstract class RectSprite extends GenericSprite {
 
             return sprite.getRectangle().intersects(_rect.left, _rect.top, _rect.right, _rect.bottom);
 
-//            RectF otherRect = sprite.getRectangle();
+//            Box otherRect = sprite.getRectangle();
 //            float rad = otherRect.height() / 2;
 //
 //            if (otherRect.right + rad < _rect.left)
@@ -66,12 +64,12 @@ public abstract class RectSprite extends GenericSprite {
     }
 
     @Override
-    public void reflect(GenericSprite sprite) {
+    public void reflect(GenericSprite sprite, GameState state) {
         float bounceStrength = getBounciness() * sprite.getBounciness();
 
         if (sprite instanceof RectSprite || sprite instanceof CircleSprite){
-            RectF othrRect = sprite.getRectangle();
-            PointF othrMotion = sprite.getMotion();
+            Box othrRect = sprite.getRectangle();
+            Vec2 othrMotion = sprite.getMotion();
 
             boolean bounceX = ((othrRect.right > _rect.left && othrRect.left < _rect.left &&  othrMotion.x > 0) || (othrRect.left < _rect.right && othrRect.right > _rect.right && othrMotion.x < 0));
             boolean bounceY = ((othrRect.bottom > _rect.top && othrRect.top < _rect.top && othrMotion.y > 0) || (othrRect.top < _rect.bottom && othrRect.bottom > _rect.bottom && othrMotion.y < 0));
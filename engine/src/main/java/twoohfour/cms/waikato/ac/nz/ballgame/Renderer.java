@@ -0,0 +1,43 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+/**
+ * Where sprites send their drawing
+ *
+ * Sprites only ever draw filled and outlined rectangles and filled circles, in screen
+ * coordinates they've already scaled and offset. The app passes them to an Android Canvas;
+ * anything headless can ignore them, or count them.
+ */
+public interface Renderer {
+
+    /**
+     * Draws a filled rectangle
+     *
+     * @param left   Left edge
+     * @param top    Top edge
+     * @param right  Right edge
+     * @param bottom Bottom edge
+     * @param color  ARGB colour, see Colors
+     */
+    void fillRect(float left, float top, float right, float bottom, int color);
+
+    /**
+     * Draws the outline of a rectangle
+     *
+     * @param left   Left edge
+     * @param top    Top edge
+     * @param right  Right edge
+     * @param bottom Bottom edge
+     * @param color  ARGB colour, see Colors
+     */
+    void strokeRect(float left, float top, float right, float bottom, int color);
+
+    /**
+     * Draws a filled circle
+     *
+     * @param cx     Centre X
+     * @param cy     Centre Y
+     * @param radius Radius
+     * @param color  ARGB colour, see Colors
+     */
+    void fillCircle(float cx, float cy, float radius, int color);
+}
@@ -0,0 +1,238 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+/**
+ * Lockstep without the waiting
+ *
+ * Sends and receives inputs exactly like LockstepSession, so players using either can
+ * share a room. Instead of stalling for a late input, the world carries on with a guess:
+ * that the player is still tilted the way they last were. The world is saved before
+ * every tick. When an input turns out to differ from the guess, the world is put back
+ * to the tick it was for, and every tick since is simulated again, all within one update.
+ *
+ * Only MAX_ROLLBACK ticks are kept. If someone's input is later than that, we wait
+ * for it like lockstep does. If a wrong guess is ever found further back than that,
+ * the world can't be put right, so it stops (see isDesynced()) rather than carry on
+ * different from everyone else's.
+ */
+public strictfp class RollbackSession extends LockstepSession {
+
+    //region Variables
+    public static final int MAX_ROLLBACK = 8; // 266ms at 30 updates per second
+    public static final long FRAME_NANOS = 1000000000L / GameHost.UPDATES_PER_SECOND;
+
+    private static final int NONE = Integer.MAX_VALUE;
+
+    private final GameSnapshot[] _snapshots = new GameSnapshot[MAX_ROLLBACK + 1]; // Before each tick, by tick
+    private int _rewindTo = NONE; // Earliest tick that was simulated with the wrong input
+
+    private int _rollbacks;
+    private int _desyncs; // Rollbacks that couldn't go back far enough
+    private int _resimulated; // Ticks simulated again in the last rollback
+    private int _maxResimulated;
+    private long _rollbackNanos; // Time the last rollback took
+    private long _maxRollbackNanos;
+    //endregion
+
+    /**
+     * Sets up a world for rollback play
+     * Every device must call this with the same nodes, and a world generated from the same seed
+     *
+     * @param network   Network to share inputs over
+     * @param state     World to simulate. Its players are replaced by one for each node
+     * @param nodes     Node ids of every player, including ours
+     * @param localNode Our node id
+     */
+    public RollbackSession(MultiplayerNetwork network, GameState state, int[] nodes, int localNode) {
+        super(network, state, nodes, localNode);
+        for (int i = 0; i < _snapshots.length; i++)
+            _snapshots[i] = new GameSnapshot();
+    }
+
+    //region Getters
+
+    /**
+     * Gets the number of times the world has been rewound
+     *
+     * @return Number of rollbacks
+     */
+    public synchronized int getRollbacks() {
+        return _rollbacks;
+    }
+
+    /**
+     * Gets the number of times a wrong guess was found too late to put right
+     *
+     * @return Number of failed rollbacks
+     */
+    public synchronized int getDesyncs() {
+        return _desyncs;
+    }
+
+    /**
+     * Whether the world no longer matches everyone else's, and has stopped
+     * Only leaving the game and starting again can fix it
+     *
+     * @return True after a failed rollback
+     */
+    public synchronized boolean isDesynced() {
+        return _desyncs > 0;
+    }
+
+    /**
+     * Gets the number of ticks simulated again by the last rollback
+     *
+     * @return Number of ticks
+     */
+    public synchronized int getResimulated() {
+        return _resimulated;
+    }
+
+    /**
+     * Gets the most ticks simulated again by any rollback
+     *
+     * @return Number of ticks
+     */
+    public synchronized int getMaxResimulated() {
+        return _maxResimulated;
+    }
+
+    /**
+     * Gets how much of an update the last rollback took
+     * Over 1 means rolling back is making us miss updates
+     *
+     * @return Fraction of the time between updates
+     */
+    public synchronized float getBudgetUsed() {
+        return (float) _rollbackNanos / FRAME_NANOS;
+    }
+
+    /**
+     * Gets the most of an update any rollback has taken
+     *
+     * @return Fraction of the time between updates
+     */
+    public synchronized float getMaxBudgetUsed() {
+        return (float) _maxRollbackNanos / FRAME_NANOS;
+    }
+
+    /**
+     * Whether the world can no longer change its mind about the ticks simulated so far
+     * A player who has finished on a guess might not have, so shouldn't leave yet
+     *
+     * @return True if every tick so far was simulated with real inputs
+     */
+    @Override
+    public synchronized boolean isSettled() {
+        return _rewindTo == NONE && getConfirmedTick() >= _tick - 1;
+    }
+    //endregion
+
+    /**
+     * Moves the world on by a tick, guessing any inputs that haven't arrived yet
+     * Rewinds and simulates again first, if an earlier guess was wrong
+     * Should be called once per update, holding the state's lock
+     *
+     * @param gx Our tilt in the X direction
+     * @param gy Our tilt in the Y direction
+     * @return Whether the world was updated
+     */
+    @Override
+    public synchronized boolean step(float gx, float gy) {
+        takeInput(gx, gy);
+        sendInputs();
+        rollback();
+        if (isDesynced()) {
+            _stalls++;
+            return false;
+        }
+
+        for (int i = 0; i < _players.length; i++) {
+            if (isTooLate(i)) {
+                _stalls++;
+                return false;
+            }
+        }
+
+        simulate();
+        return true;
+    }
+
+    /**
+     * Saves the world, guesses missing inputs, and updates it
+     */
+    @Override
+    protected void simulate() {
+        _state.save(_snapshots[_tick % _snapshots.length]);
+
+        int slot = (_tick % HISTORY) * 2;
+        for (int i = 0; i < _players.length; i++) {
+            if (_received[i] < _tick && !hasLeft(i)) {
+                // Guess they haven't moved since their last input
+                int last = (_received[i] % HISTORY) * 2;
+                _inputs[i][slot] = _inputs[i][last];
+                _inputs[i][slot + 1] = _inputs[i][last + 1];
+            }
+        }
+
+        super.simulate();
+    }
+
+    /**
+     * Puts the world back to the first tick that was guessed wrong, and catches up again
+     */
+    private void rollback() {
+        if (_rewindTo >= _tick)
+            return;
+
+        int rewindTo = _rewindTo;
+        _rewindTo = NONE;
+        if (_tick - rewindTo > MAX_ROLLBACK) {
+            // Can't happen unless the network hands us inputs we refused to wait for
+            _desyncs++;
+            return;
+        }
+
+        long start = System.nanoTime();
+        int end = _tick;
+        _state.restore(_snapshots[rewindTo % _snapshots.length]);
+        _tick = rewindTo;
+        while (_tick < end)
+            simulate();
+
+        _rollbacks++;
+        _resimulated = end - rewindTo;
+        _maxResimulated = Math.max(_maxResimulated, _resimulated);
+        _rollbackNanos = System.nanoTime() - start;
+        _maxRollbackNanos = Math.max(_maxRollbackNanos, _rollbackNanos);
+    }
+
+    /**
+     * Whether we've guessed a player's input for as long as we can afford to
+     */
+    private boolean isTooLate(int player) {
+        return !hasLeft(player) && _tick - _received[player] >= MAX_ROLLBACK;
+    }
+
+    /**
+     * Whether a player's input still matters
+     * Always, as a player we think has finished may only have done so on a guess
+     */
+    @Override
+    protected boolean needsInputFrom(int player) {
+        return true;
+    }
+
+    @Override
+    protected void lateInput(int player, int tick, short x, short y) {
+        int slot = (tick % HISTORY) * 2;
+        if (_inputs[player][slot] != x || _inputs[player][slot + 1] != y)
+            _rewindTo = Math.min(_rewindTo, tick);
+    }
+
+    @Override
+    protected void playerLeaving(int player) {
+        // They were guessed to still be here
+        if (_tick > _lastTick[player] + 1)
+            _rewindTo = Math.min(_rewindTo, _lastTick[player] + 1);
+    }
+}
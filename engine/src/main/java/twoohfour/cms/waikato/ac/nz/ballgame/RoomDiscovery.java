@@ -0,0 +1,298 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+/**
+ * Finds a room (session) to play in, or creates one
+ *
+ * A new player asks who the server is (300). Any server replies with 301 <session, flags>.
+ * The player asks to join the first room it hears about (100 <session, name>),
+ * and the server accepts with 101 <session, node>. If nobody answers within
+ * DISCOVERY_TIMEOUT_MS, the player becomes the server of a new room.
+ *
+ * Rooms run by a GameHost set FLAG_AUTHORITATIVE. Players in those rooms only send
+ * their input, and the host tells them where everyone is.
+ * Rooms with FLAG_LOCKSTEP run a LockstepSession once the game starts. The flags are
+ * chosen by whoever makes the room, and everyone who joins goes along with them.
+ *
+ * Someone only watching asks with 300 <FLAG_SPECTATE> instead. A GameHost answers with
+ * 301 <spectator session, FLAG_AUTHORITATIVE | FLAG_SPECTATE> for a game it's running,
+ * which the watcher listens in on without joining. Players ignore those answers, and
+ * watchers never make a room of their own.
+ *
+ * All of this happens in MultiplayerNetwork.DISCOVERY_SESSION. Once in a room,
+ * the network only passes on traffic for that room.
+ */
+public class RoomDiscovery implements MultiplayerEventListener {
+
+    //region Variables
+    public static final int CODE_WHO_IS_SERVER = 300;
+    public static final int CODE_I_AM_SERVER = 301;
+    public static final int CODE_JOIN = 100;
+    public static final int CODE_ACCEPTED = 101;
+
+    public static final int FLAG_AUTHORITATIVE = 1;
+    public static final int FLAG_LOCKSTEP = 2;
+    public static final int FLAG_SPECTATE = 4; // A SpectatorStream's session, not a room
+
+    public static final int DISCOVERY_TIMEOUT_MS = 1000;
+    public static final int JOIN_RETRY_MS = 250;
+    public static final int MAX_JOIN_ATTEMPTS = 8;
+
+    public enum Stage {Idle, Searching, Joining, Joined}
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final MultiplayerNetwork _network;
+    private final String _name;
+    private final int _ownFlags; // For rooms we make
+    private final byte[] _buffer = new byte[64];
+
+    private Stage _stage;
+    private boolean _isWatching;
+    private boolean _isHost;
+    private int _flags; // Of the room we're in
+    private int _session;
+    private int _hostNode;
+    private long _deadline;
+    private int _attempts;
+    //endregion
+
+    /**
+     * Creates the discovery process
+     * Nothing happens until start() is called
+     *
+     * @param network Network to discover on
+     * @param name    Name to tell the server
+     */
+    public RoomDiscovery(MultiplayerNetwork network, String name) {
+        this(network, name, 0);
+    }
+
+    /**
+     * Creates the discovery process
+     * Nothing happens until start() is called
+     *
+     * @param network Network to discover on
+     * @param name    Name to tell the server
+     * @param flags   Flags for a room, if we end up making one
+     */
+    public RoomDiscovery(MultiplayerNetwork network, String name, int flags) {
+        _network = network;
+        _name = name;
+        _ownFlags = flags & ~(FLAG_AUTHORITATIVE | FLAG_SPECTATE); // Only a GameHost can be those
+        _stage = Stage.Idle;
+    }
+
+    //region Getters
+
+    /**
+     * Gets how far through joining a room we are
+     *
+     * @return Stage
+     */
+    public synchronized Stage getStage() {
+        return _stage;
+    }
+
+    /**
+     * Whether we are in a room
+     *
+     * @return True once joined
+     */
+    public synchronized boolean isJoined() {
+        return _stage == Stage.Joined;
+    }
+
+    /**
+     * Whether we created the room we're in
+     *
+     * @return True if we are the server
+     */
+    public synchronized boolean isHost() {
+        return _isHost;
+    }
+
+    /**
+     * Whether the room is run by a GameHost, rather than one of the players
+     *
+     * @return True if the server simulates the game for everyone
+     */
+    public synchronized boolean isAuthoritative() {
+        return (_flags & FLAG_AUTHORITATIVE) != 0;
+    }
+
+    /**
+     * Whether the room plays in lockstep, sharing inputs rather than positions
+     *
+     * @return True if the room's games use a LockstepSession
+     */
+    public synchronized boolean isLockstep() {
+        return (_flags & FLAG_LOCKSTEP) != 0;
+    }
+
+    /**
+     * Whether the room's server decides when games start, and with what
+     * Rooms run by a GameHost, and lockstep rooms we've joined, where everyone has to start the
+     * server's world. Anyone else starts their own level once everyone is ready
+     *
+     * @return True if we should wait to be told, rather than start a level ourselves
+     */
+    public synchronized boolean waitsForServer() {
+        return isAuthoritative() || isLockstep() && !_isHost;
+    }
+
+    /**
+     * Whether we're only watching a game, rather than playing in it
+     *
+     * @return True if startWatching() was called
+     */
+    public synchronized boolean isWatching() {
+        return _isWatching;
+    }
+
+    /**
+     * Gets the node id of the room's server
+     *
+     * @return Node id
+     */
+    public synchronized int getHostNode() {
+        return _hostNode;
+    }
+    //endregion
+
+    /**
+     * Starts looking for a room
+     */
+    public synchronized void start() {
+        _isWatching = false;
+        search();
+    }
+
+    /**
+     * Starts looking for a game to watch
+     * Keeps looking until a GameHost has one running
+     */
+    public synchronized void startWatching() {
+        _isWatching = true;
+        search();
+    }
+
+    private void search() {
+        _stage = Stage.Searching;
+        _isHost = false;
+        _flags = 0;
+        _network.setSession(MultiplayerNetwork.DISCOVERY_SESSION);
+        _deadline = System.currentTimeMillis() + DISCOVERY_TIMEOUT_MS;
+        if (_isWatching) {
+            _buffer[0] = (byte) FLAG_SPECTATE;
+            _network.sendDiscovery(CODE_WHO_IS_SERVER, _buffer, 1);
+        } else {
+            _network.sendDiscovery(CODE_WHO_IS_SERVER, null, 0);
+        }
+    }
+
+    /**
+     * Moves discovery along. Should be called regularly
+     */
+    public synchronized void tick() {
+        long now = System.currentTimeMillis();
+        if (now < _deadline)
+            return;
+
+        if (_stage == Stage.Searching && _isWatching) {
+            // Nothing to watch yet. Ask again
+            search();
+        } else if (_stage == Stage.Searching) {
+            // Nobody answered, so make our own room
+            int session;
+            do {
+                session = new Random().nextInt();
+            } while (session == MultiplayerNetwork.DISCOVERY_SESSION);
+
+            _session = session;
+            _hostNode = _network.getNodeId();
+            _isHost = true;
+            _flags = _ownFlags;
+            _stage = Stage.Joined;
+            _network.setSession(session);
+            announce();
+        } else if (_stage == Stage.Joining) {
+            if (++_attempts > MAX_JOIN_ATTEMPTS) {
+                // Server's gone. Start again
+                start();
+            } else {
+                requestJoin();
+            }
+        }
+    }
+
+    private void announce() {
+        ByteBuffer b = ByteBuffer.wrap(_buffer);
+        b.putInt(_session);
+        b.put((byte) _flags);
+        _network.sendDiscovery(CODE_I_AM_SERVER, _buffer, b.position());
+    }
+
+    private void requestJoin() {
+        ByteBuffer b = ByteBuffer.wrap(_buffer);
+        b.putInt(_session);
+        byte[] name = _name.getBytes(UTF8);
+        b.put(name, 0, Math.min(name.length, b.remaining()));
+        _network.sendDiscovery(CODE_JOIN, _buffer, b.position());
+        _deadline = System.currentTimeMillis() + JOIN_RETRY_MS;
+    }
+
+    @Override
+    public synchronized void message(int statusCode, ByteBuffer data, int from, int session) {
+        switch (statusCode) {
+            case CODE_WHO_IS_SERVER:
+                if (_isHost)
+                    announce();
+                break;
+            case CODE_I_AM_SERVER:
+                if (_stage == Stage.Searching) {
+                    int room = data.getInt();
+                    int flags = data.hasRemaining() ? data.get() & 0xFF : 0;
+                    if (_isWatching != ((flags & FLAG_SPECTATE) != 0))
+                        break; // Players want rooms, watchers want streams
+                    _session = room;
+                    _flags = flags;
+                    _hostNode = from;
+                    if (_isWatching) {
+                        // Nobody needs to know we're watching
+                        _stage = Stage.Joined;
+                        _network.setSession(_session);
+                        break;
+                    }
+                    // Join the first room we hear about
+                    _stage = Stage.Joining;
+                    _attempts = 0;
+                    requestJoin();
+                }
+                break;
+            case CODE_JOIN:
+                if (_isHost && data.getInt() == _session) {
+                    ByteBuffer b = ByteBuffer.wrap(_buffer);
+                    b.putInt(_session);
+                    b.putInt(from);
+                    _network.sendDiscovery(CODE_ACCEPTED, _buffer, b.position());
+                }
+                break;
+            case CODE_ACCEPTED:
+                if (_stage == Stage.Joining && from == _hostNode
+                        && data.getInt() == _session && data.getInt() == _network.getNodeId()) {
+                    _stage = Stage.Joined;
+                    _network.setSession(_session);
+                }
+                break;
+        }
+    }
+
+    @Override
+    public void onNetworkError(Exception e, String text) {
+        // The game's listener deals with these
+    }
+}
@@ -1,7 +1,5 @@
 package twoohfour.cms.waikato.ac.nz.ballgame;
 
-import android.graphics.Point;
-import android.graphics.PointF;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -9,32 +7,41 @@ import java.util.List;
 /**
  * Created by Stuart on 11/10/2015.
  */
-public class ScrollingGameState extends GameState {
+public strictfp class ScrollingGameState extends GameState {
 
     protected float _speed;
 
     /**
      * Class used to pass values between drawing and updating classes
      */
-    public ScrollingGameState(String title, Point levelSize, PointF playerPosition) {
+    public ScrollingGameState(String title, IntVec2 levelSize, Vec2 playerPosition) {
         this(title, levelSize, playerPosition, new ArrayList<GenericSprite>());
     }
 
     /**
      * Class used to pass values between drawing and updating classes
      */
-    public ScrollingGameState(String title, Point levelSize, PointF playerPosition, List<GenericSprite> sprites) {
+    public ScrollingGameState(String title, IntVec2 levelSize, Vec2 playerPosition, List<GenericSprite> sprites) {
         this(title, levelSize, playerPosition, new ArrayList<GenericSprite>(), -0.01f);
     }
 
     /**
      * Class used to pass values between drawing and updating classes
      */
-    public ScrollingGameState(String title, Point levelSize, PointF playerPosition, List<GenericSprite> sprites, float speed) {
+    public ScrollingGameState(String title, IntVec2 levelSize, Vec2 playerPosition, List<GenericSprite> sprites, float speed) {
         super(title, levelSize, playerPosition, sprites);
         _speed = speed;
     }
 
+    /**
+     * Gets how fast the level scrolls
+     *
+     * @return Change in X offset per update
+     */
+    public float getSpeed() {
+        return _speed;
+    }
+
     @Override
     public void update() {
         super.update();
@@ -0,0 +1,314 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A cheap view of a GameHost's room, for people who aren't playing in it
+ *
+ * The host sends where everyone is five times a second, in a session of its own
+ * (getSession()), so players never even decode it. Once a second, or whenever someone
+ * joins, leaves or moves too far, it's a keyframe of every player. In between it's
+ * deltas from the last keyframe, three bytes a player. Spectators move ghosts to match,
+ * and let them drift at the speed they moved between the last two frames, without running
+ * any physics.
+ *
+ * Keyframe (112): | keyframe number (1) | tick (4) | count (1) | node (4) | flags (1) | x (2) | y (2) | ...
+ * Delta (113):    | keyframe number (1) | tick (4) | count (1) | flags (1) | dx (1) | dy (1) | ...
+ * Deltas list players in keyframe order, in steps of DELTA_STEP quantised units.
+ * A delta for a keyframe we missed is ignored. Flags are GameHost's.
+ *
+ * One instance either writes a stream or reads one.
+ */
+public class SpectatorStream {
+
+    //region Variables
+    public static final int CODE_KEYFRAME = 112;
+    public static final int CODE_DELTA = 113;
+
+    public static final int INTERVAL = 6; // Ticks between frames, so 5 a second
+    public static final int KEYFRAME_INTERVAL = 5; // Frames between keyframes
+    public static final int DELTA_STEP = 8; // Quantised units per delta step, 1/1024 of the level
+    public static final int MAX_PLAYERS = (MultiplayerNetwork.MAX_PAYLOAD_SIZE - 6) / 9;
+    private static final int SESSION_MASK = 0x5EC7A70F; // Keeps the spectators' session away from the room's
+
+    private final ByteBuffer _payload = ByteBuffer.allocate(MultiplayerNetwork.MAX_PAYLOAD_SIZE);
+
+    // Last keyframe, sent or received
+    private int _keySeq = -1;
+    private int _keyCount;
+    private final int[] _keyNodes = new int[MAX_PLAYERS];
+    private final int[] _keyX = new int[MAX_PLAYERS];
+    private final int[] _keyY = new int[MAX_PLAYERS];
+    private int _frames; // Since the last keyframe
+
+    // Last frame read
+    private int _tick;
+    private int _count;
+    private final int[] _flags = new int[MAX_PLAYERS];
+    private final int[] _x = new int[MAX_PLAYERS];
+    private final int[] _y = new int[MAX_PLAYERS];
+    private final int[] _dx = new int[MAX_PLAYERS]; // Quantised velocities, worked out from the frame before
+    private final int[] _dy = new int[MAX_PLAYERS];
+
+    // Frame before, to work out how fast players were going
+    private int _lastTick;
+    private int _lastCount;
+    private final int[] _lastNodes = new int[MAX_PLAYERS];
+    private final int[] _lastX = new int[MAX_PLAYERS];
+    private final int[] _lastY = new int[MAX_PLAYERS];
+    //endregion
+
+    /**
+     * Gets the session a room's spectators listen in
+     *
+     * @param room Room's session
+     * @return Spectators' session. Never the room's, or the discovery session
+     */
+    public static int getSession(int room) {
+        int session = room ^ SESSION_MASK;
+        return session == MultiplayerNetwork.DISCOVERY_SESSION ? SESSION_MASK : session;
+    }
+
+    //region Writing
+
+    /**
+     * Writes a frame of where every player is
+     *
+     * @param tick  Host's game time
+     * @param count Number of players
+     * @param nodes Each player's node id
+     * @param flags Each player's GameHost flags
+     * @param qx    Each player's quantised X position
+     * @param qy    Each player's quantised Y position
+     * @return Code to send, with getPayload()
+     */
+    public int write(int tick, int count, int[] nodes, int[] flags, int[] qx, int[] qy) {
+        count = Math.min(count, MAX_PLAYERS);
+        boolean keyframe = _keySeq < 0 || ++_frames >= KEYFRAME_INTERVAL || count != _keyCount;
+        for (int i = 0; i < count && !keyframe; i++) {
+            keyframe = nodes[i] != _keyNodes[i]
+                    || !fitsDelta(qx[i] - _keyX[i])
+                    || !fitsDelta(qy[i] - _keyY[i]);
+        }
+
+        _payload.clear();
+        if (keyframe) {
+            _keySeq = (_keySeq + 1) & 0xFF;
+            _keyCount = count;
+            _frames = 0;
+        }
+        _payload.put((byte) _keySeq);
+        _payload.putInt(tick);
+        _payload.put((byte) count);
+
+        for (int i = 0; i < count; i++) {
+            if (keyframe) {
+                _keyNodes[i] = nodes[i];
+                _keyX[i] = qx[i];
+                _keyY[i] = qy[i];
+                _payload.putInt(nodes[i]);
+                _payload.put((byte) flags[i]);
+                _payload.putShort((short) qx[i]);
+                _payload.putShort((short) qy[i]);
+            } else {
+                _payload.put((byte) flags[i]);
+                _payload.put((byte) Math.round((qx[i] - _keyX[i]) / (float) DELTA_STEP));
+                _payload.put((byte) Math.round((qy[i] - _keyY[i]) / (float) DELTA_STEP));
+            }
+        }
+        return keyframe ? CODE_KEYFRAME : CODE_DELTA;
+    }
+
+    private static boolean fitsDelta(int difference) {
+        int steps = Math.round(difference / (float) DELTA_STEP);
+        return steps >= Byte.MIN_VALUE && steps <= Byte.MAX_VALUE;
+    }
+
+    /**
+     * Gets the frame write() made
+     *
+     * @return Payload buffer. Only the first getPayloadLength() bytes are meaningful
+     */
+    public byte[] getPayload() {
+        return _payload.array();
+    }
+
+    /**
+     * Gets the length of the frame write() made
+     *
+     * @return Payload length in bytes
+     */
+    public int getPayloadLength() {
+        return _payload.position();
+    }
+    //endregion
+
+    //region Reading
+
+    /**
+     * Reads a frame from the host
+     *
+     * @param code   Code received
+     * @param data   Payload
+     * @param levelW Width of the level being played
+     * @param levelH Height of the level being played
+     * @return True if there's a new frame to show, false if it was a delta for a keyframe we missed
+     */
+    public boolean read(int code, ByteBuffer data, float levelW, float levelH) {
+        int seq = data.get() & 0xFF;
+        int tick = data.getInt();
+        int count = Math.min(data.get() & 0xFF, MAX_PLAYERS);
+
+        if (code == CODE_KEYFRAME) {
+            _keySeq = seq;
+            _keyCount = count;
+            for (int i = 0; i < count; i++) {
+                _keyNodes[i] = data.getInt();
+                _flags[i] = data.get();
+                _keyX[i] = _x[i] = data.getShort();
+                _keyY[i] = _y[i] = data.getShort();
+            }
+        } else {
+            if (seq != _keySeq || count != _keyCount)
+                return false;
+            for (int i = 0; i < count; i++) {
+                _flags[i] = data.get();
+                _x[i] = _keyX[i] + data.get() * DELTA_STEP;
+                _y[i] = _keyY[i] + data.get() * DELTA_STEP;
+            }
+        }
+        _tick = tick;
+        _count = count;
+
+        for (int i = 0; i < count; i++) {
+            _dx[i] = 0;
+            _dy[i] = 0;
+            int ticks = tick - _lastTick;
+            int last = findLast(_keyNodes[i], i);
+            if (last < 0 || ticks <= 0 || ticks > INTERVAL * KEYFRAME_INTERVAL)
+                continue; // New, or been gone too long to guess
+            _dx[i] = velocity(_x[i] - _lastX[last], ticks, levelW);
+            _dy[i] = velocity(_y[i] - _lastY[last], ticks, levelH);
+        }
+
+        _lastTick = tick;
+        _lastCount = count;
+        System.arraycopy(_keyNodes, 0, _lastNodes, 0, count);
+        System.arraycopy(_x, 0, _lastX, 0, count);
+        System.arraycopy(_y, 0, _lastY, 0, count);
+        return true;
+    }
+
+    /**
+     * Finds a player in the frame before
+     *
+     * @param node Node id
+     * @param hint Where they probably are, as players usually keep their place
+     * @return Index into the last frame, or -1
+     */
+    private int findLast(int node, int hint) {
+        if (hint < _lastCount && _lastNodes[hint] == node)
+            return hint;
+        for (int i = 0; i < _lastCount; i++) {
+            if (_lastNodes[i] == node)
+                return i;
+        }
+        return -1;
+    }
+
+    private static int velocity(int distance, int ticks, float size) {
+        return PositionCodec.quantiseVelocity(PositionCodec.dequantisePosition(distance, size) / ticks);
+    }
+
+    /**
+     * Gets the host's game time for the last frame read
+     *
+     * @return Tick
+     */
+    public int getTick() {
+        return _tick;
+    }
+
+    /**
+     * Gets the number of players in the last frame read
+     *
+     * @return Player count
+     */
+    public int getCount() {
+        return _count;
+    }
+
+    /**
+     * Gets a player's node id
+     *
+     * @param i Player, from 0 to getCount()
+     * @return Node id
+     */
+    public int getNode(int i) {
+        return _keyNodes[i];
+    }
+
+    /**
+     * Gets a player's flags
+     *
+     * @param i Player, from 0 to getCount()
+     * @return GameHost flags
+     */
+    public int getFlags(int i) {
+        return _flags[i];
+    }
+
+    /**
+     * Gets a player's quantised X position
+     *
+     * @param i Player, from 0 to getCount()
+     * @return Quantised position
+     */
+    public int getX(int i) {
+        return _x[i];
+    }
+
+    /**
+     * Gets a player's quantised Y position
+     *
+     * @param i Player, from 0 to getCount()
+     * @return Quantised position
+     */
+    public int getY(int i) {
+        return _y[i];
+    }
+
+    /**
+     * Gets how fast a player was going, between the last two frames
+     *
+     * @param i Player, from 0 to getCount()
+     * @return Quantised X motion. 0 if we've only just seen them
+     */
+    public int getVelocityX(int i) {
+        return _dx[i];
+    }
+
+    /**
+     * Gets how fast a player was going, between the last two frames
+     *
+     * @param i Player, from 0 to getCount()
+     * @return Quantised Y motion. 0 if we've only just seen them
+     */
+    public int getVelocityY(int i) {
+        return _dy[i];
+    }
+
+    /**
+     * Whether everyone in the last frame read has finished or died
+     *
+     * @return True if there's nobody left to watch
+     */
+    public boolean isOver() {
+        for (int i = 0; i < _count; i++) {
+            if (_flags[i] == 0)
+                return false;
+        }
+        return true;
+    }
+    //endregion
+}
@@ -0,0 +1,226 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+
+/**
+ * Sprites sorted into a uniform grid, each one in every cell it covers
+ *
+ * Lets something find what it might be touching by looking in the cells it covers, rather
+ * than at every sprite. BodySolver keeps its walls in one, and GameState its targets.
+ * Sprites are known by where they were in the list given to build(), and each cell has
+ * them in that order. A sprite in several of the cells being looked in is only counted in
+ * the first of them (see isFirst()), so nothing is found twice.
+ *
+ * Only read once built, so any number of threads can look in it at once.
+ */
+strictfp class SpriteGrid {
+
+    //region Variables
+    private float _originX;
+    private float _originY;
+    private float _cell;
+    private int _cols;
+    private int _rows;
+    private int[] _start = new int[2]; // Where each cell's sprites start in _entries. One extra at the end
+    private int[] _entries = new int[0];
+    private int[] _ranges = new int[0]; // First and last column and row each sprite covers
+    //endregion
+
+    //region Getters
+
+    /**
+     * Gets the number of columns
+     *
+     * @return Column count
+     */
+    int getColumns() {
+        return _cols;
+    }
+
+    /**
+     * Gets the number of rows
+     *
+     * @return Row count
+     */
+    int getRows() {
+        return _rows;
+    }
+
+    /**
+     * Gets the column an X position is in
+     *
+     * @param x X position
+     * @return Column, kept on the grid
+     */
+    int column(float x) {
+        return clamp((int) Math.floor((x - _originX) / _cell), _cols);
+    }
+
+    /**
+     * Gets the row a Y position is in
+     *
+     * @param y Y position
+     * @return Row, kept on the grid
+     */
+    int row(float y) {
+        return clamp((int) Math.floor((y - _originY) / _cell), _rows);
+    }
+
+    /**
+     * Gets where a cell's sprites start
+     *
+     * @param cell Cell, row * getColumns() + column
+     * @return First entry, for get()
+     */
+    int start(int cell) {
+        return _start[cell];
+    }
+
+    /**
+     * Gets where a cell's sprites end
+     *
+     * @param cell Cell, row * getColumns() + column
+     * @return One past the last entry
+     */
+    int end(int cell) {
+        return _start[cell + 1];
+    }
+
+    /**
+     * Gets the sprite in an entry
+     *
+     * @param entry Entry, from start() up to end()
+     * @return Where the sprite was in the list given to build()
+     */
+    int get(int entry) {
+        return _entries[entry];
+    }
+
+    /**
+     * Whether a cell is the first a sprite is in, of those being looked in
+     *
+     * @param sprite Sprite, as get() gives it
+     * @param x      Column being looked in
+     * @param y      Row being looked in
+     * @param x0     First column being looked in
+     * @param y0     First row being looked in
+     * @return True if the sprite hasn't been seen in any cell before this one
+     */
+    boolean isFirst(int sprite, int x, int y, int x0, int y0) {
+        return x == Math.max(x0, _ranges[sprite * 4]) && y == Math.max(y0, _ranges[sprite * 4 + 2]);
+    }
+    //endregion
+
+    /**
+     * Lays the grid out
+     * Anything off the grid isn't put in it
+     *
+     * @param originX Left of the first column
+     * @param originY Top of the first row
+     * @param cell    Width and height of each cell
+     * @param cols    Number of columns
+     * @param rows    Number of rows
+     */
+    void setCells(float originX, float originY, float cell, int cols, int rows) {
+        _originX = originX;
+        _originY = originY;
+        _cell = cell;
+        _cols = cols;
+        _rows = rows;
+    }
+
+    /**
+     * Lays the grid out over some sprites, then puts them in it
+     * Cells start at a given size, and get bigger until there are few enough
+     *
+     * @param all      Every sprite
+     * @param sprites  Indexes in all of the sprites to put in
+     * @param count    Number of sprites to put in
+     * @param cell     Smallest width and height of a cell
+     * @param maxCells Most cells to have
+     */
+    void fit(GenericSprite[] all, int[] sprites, int count, float cell, int maxCells) {
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        for (int k = 0; k < count; k++) {
+            Box r = all[sprites[k]]._rect;
+            minX = Math.min(minX, r.left);
+            minY = Math.min(minY, r.top);
+            maxX = Math.max(maxX, r.right);
+            maxY = Math.max(maxY, r.bottom);
+        }
+        if (count == 0) {
+            minX = minY = maxX = maxY = 0;
+        }
+
+        cell = Math.max(cell, 0.01f);
+        int cols, rows;
+        while (true) {
+            cols = (int) ((maxX - minX) / cell) + 1;
+            rows = (int) ((maxY - minY) / cell) + 1;
+            if ((long) cols * rows <= maxCells)
+                break;
+            cell *= 2;
+        }
+        setCells(minX, minY, cell, cols, rows);
+        build(all, sprites, count);
+    }
+
+    /**
+     * Puts sprites in every cell they cover, once the grid has been laid out
+     *
+     * @param all     Every sprite
+     * @param sprites Indexes in all of the sprites to put in
+     * @param count   Number of sprites to put in
+     */
+    void build(GenericSprite[] all, int[] sprites, int count) {
+        int cells = _cols * _rows;
+        if (_start.length < cells + 1)
+            _start = new int[cells + 1];
+        if (_ranges.length < count * 4)
+            _ranges = new int[count * 4];
+        for (int c = 0; c <= cells; c++)
+            _start[c] = 0;
+
+        // Counting sort, so each cell has its sprites in the order they were given
+        int entries = 0;
+        for (int k = 0; k < count; k++) {
+            Box r = all[sprites[k]]._rect;
+            int x0 = Math.max(0, columnOf(r.left)), x1 = Math.min(_cols - 1, columnOf(r.right));
+            int y0 = Math.max(0, rowOf(r.top)), y1 = Math.min(_rows - 1, rowOf(r.bottom));
+            _ranges[k * 4] = x0;
+            _ranges[k * 4 + 1] = x1;
+            _ranges[k * 4 + 2] = y0;
+            _ranges[k * 4 + 3] = y1;
+            for (int y = y0; y <= y1; y++) {
+                for (int x = x0; x <= x1; x++) {
+                    _start[y * _cols + x + 1]++;
+                    entries++;
+                }
+            }
+        }
+        if (_entries.length < entries)
+            _entries = new int[entries + entries / 2];
+        for (int c = 0; c < cells; c++)
+            _start[c + 1] += _start[c];
+        for (int k = 0; k < count; k++) {
+            for (int y = _ranges[k * 4 + 2]; y <= _ranges[k * 4 + 3]; y++) {
+                for (int x = _ranges[k * 4]; x <= _ranges[k * 4 + 1]; x++)
+                    _entries[_start[y * _cols + x]++] = k;
+            }
+        }
+        for (int c = cells; c > 0; c--)
+            _start[c] = _start[c - 1];
+        _start[0] = 0;
+    }
+
+    private int columnOf(float x) {
+        return (int) Math.floor((x - _originX) / _cell);
+    }
+
+    private int rowOf(float y) {
+        return (int) Math.floor((y - _originY) / _cell);
+    }
+
+    private static int clamp(int i, int count) {
+        return Math.max(0, Math.min(count - 1, i));
+    }
+}
@@ -1,8 +1,5 @@
 package twoohfour.cms.waikato.ac.nz.ballgame;
 
-import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.PointF;
 
 /**
  * Created by Stuart on 11/10/2015.
@@ -18,7 +15,7 @@ public class StickyWallSprite extends WallSprite {
      */
     public StickyWallSprite(float leftPos, float topPos, float width, float height) {
         super(leftPos, topPos, width, height);
-        _border.setColor(Color.GREEN);
+        _border = Colors.GREEN;
     }
 
     @Override
@@ -0,0 +1,99 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+/**
+ * Time of impact tests, for things moving too far in one tick to be caught by overlapping
+ *
+ * A circle moving along a line hits a box at the first point the line enters the box grown
+ * by the circle's radius, with its corners rounded off. So the tests are a ray against the
+ * grown box, then against the circle at a corner if that's where the ray went in.
+ * Times are fractions of the move, from 0 to 1.
+ */
+public final strictfp class Sweep {
+
+    public static final float MISS = 2; // More than any time a test returns for a hit
+
+    private Sweep() {
+    }
+
+    /**
+     * When a moving circle first touches a box
+     *
+     * @param cx     Centre of the circle, at the start
+     * @param cy     Centre of the circle, at the start
+     * @param radius Radius
+     * @param dx     Move in X
+     * @param dy     Move in Y
+     * @param left   Box's left edge
+     * @param top    Box's top edge
+     * @param right  Box's right edge
+     * @param bottom Box's bottom edge
+     * @return Fraction of the move at which they touch, or MISS if they don't, or already overlap
+     */
+    public static float circleBox(float cx, float cy, float radius, float dx, float dy,
+                                  float left, float top, float right, float bottom) {
+        // Ray against the box grown by the radius, one axis at a time
+        float enter = -Float.MAX_VALUE;
+        float exit = Float.MAX_VALUE;
+        if (dx == 0) {
+            if (cx <= left - radius || cx >= right + radius)
+                return MISS;
+        } else {
+            float t1 = (left - radius - cx) / dx;
+            float t2 = (right + radius - cx) / dx;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        }
+        if (dy == 0) {
+            if (cy <= top - radius || cy >= bottom + radius)
+                return MISS;
+        } else {
+            float t1 = (top - radius - cy) / dy;
+            float t2 = (bottom + radius - cy) / dy;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        }
+        if (enter > exit || enter > 1 || exit <= 0)
+            return MISS; // Missed, not far enough, or behind
+
+        // Went in at a corner of the grown box, which isn't really there
+        float start = Math.max(enter, 0);
+        float x = cx + dx * start;
+        float y = cy + dy * start;
+        boolean cornerX = x < left || x > right;
+        boolean cornerY = y < top || y > bottom;
+        if (cornerX && cornerY)
+            return circleCircle(cx, cy, radius, dx, dy, x < left ? left : right, y < top ? top : bottom, 0);
+        return enter < 0 ? MISS : enter; // Hit a side, unless it started out overlapping
+    }
+
+    /**
+     * When a moving circle first touches a still one
+     *
+     * @param cx     Centre of the moving circle, at the start
+     * @param cy     Centre of the moving circle, at the start
+     * @param radius Radius of the moving circle
+     * @param dx     Move in X
+     * @param dy     Move in Y
+     * @param ox     Centre of the other circle
+     * @param oy     Centre of the other circle
+     * @param other  Radius of the other circle. 0 for a point
+     * @return Fraction of the move at which they touch, or MISS if they don't, or already overlap
+     */
+    public static float circleCircle(float cx, float cy, float radius, float dx, float dy,
+                                     float ox, float oy, float other) {
+        // |c + d t - o| = r, solved for the smaller t
+        float fx = cx - ox;
+        float fy = cy - oy;
+        float r = radius + other;
+        float a = dx * dx + dy * dy;
+        float b = fx * dx + fy * dy;
+        float c = fx * fx + fy * fy - r * r;
+        if (a == 0 || c <= 0 || b >= 0)
+            return MISS; // Not moving, already touching, or moving away
+        float disc = b * b - a * c;
+        if (disc <= 0)
+            return MISS;
+        float t = (-b - (float) Math.sqrt(disc)) / a;
+        return t >= 0 && t <= 1 ? t : MISS;
+    }
+}
@@ -0,0 +1,143 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hashed timer wheel
+ * Tasks are put into a slot based on when they are due, so each tick only has
+ * to look at one slot rather than every task. Tasks due more than one lap away
+ * stay in their slot until the wheel comes round to them again.
+ *
+ * Not thread safe. Whoever owns the wheel must lock around it.
+ */
+public class TimerWheel {
+
+    private final List<Timer>[] _slots;
+    private final int _mask;
+    private long _tick;
+    private int _size;
+
+    /**
+     * A scheduled task
+     */
+    public static class Timer {
+        private final Runnable _task;
+        private long _due;
+        private boolean _cancelled;
+
+        private Timer(Runnable task, long due) {
+            _task = task;
+            _due = due;
+        }
+
+        /**
+         * Stops the task from running
+         */
+        public void cancel() {
+            _cancelled = true;
+        }
+
+        /**
+         * Gets the tick the task is due to run
+         *
+         * @return Due tick
+         */
+        public long getDue() {
+            return _due;
+        }
+    }
+
+    /**
+     * Creates a wheel
+     *
+     * @param slots Number of slots. Rounded up to a power of 2
+     */
+    @SuppressWarnings("unchecked")
+    public TimerWheel(int slots) {
+        int size = Integer.highestOneBit(Math.max(1, slots - 1)) << 1;
+        _slots = (List<Timer>[]) new List<?>[size];
+        for (int i = 0; i < size; i++)
+            _slots[i] = new ArrayList<Timer>();
+        _mask = size - 1;
+    }
+
+    /**
+     * Gets the tick the wheel is up to
+     *
+     * @return Current tick
+     */
+    public long getTick() {
+        return _tick;
+    }
+
+    /**
+     * Gets the number of tasks waiting to run, including cancelled ones not yet cleared
+     *
+     * @return Number of tasks
+     */
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * Schedules a task
+     *
+     * @param task  Task to run
+     * @param delay Ticks from now. Always at least 1
+     * @return Handle that can cancel the task
+     */
+    public Timer schedule(Runnable task, long delay) {
+        Timer t = new Timer(task, _tick + Math.max(1, delay));
+        _slots[(int) (t._due & _mask)].add(t);
+        _size++;
+        return t;
+    }
+
+    /**
+     * Moves the wheel forward, running any tasks that come due
+     * Tasks may schedule more tasks while running
+     *
+     * @param tick Tick to advance to
+     */
+    public void advance(long tick) {
+        while (_tick < tick) {
+            _tick++;
+            List<Timer> slot = _slots[(int) (_tick & _mask)];
+
+            // Run due tasks, keeping ones that are a lap or more away
+            // Tasks scheduled while running can't land in this slot for this tick
+            int kept = 0;
+            int count = slot.size();
+            for (int i = 0; i < count; i++) {
+                Timer t = slot.get(i);
+                if (t._cancelled) {
+                    _size--;
+                } else if (t._due <= _tick) {
+                    _size--;
+                    t._task.run();
+                } else {
+                    slot.set(kept++, t);
+                }
+            }
+
+            // Anything added to this slot while running goes after what was kept
+            for (int i = count; i < slot.size(); i++)
+                slot.set(kept++, slot.get(i));
+            while (slot.size() > kept)
+                slot.remove(slot.size() - 1);
+        }
+    }
+
+    /**
+     * Removes every task, and resets the wheel to the given tick
+     *
+     * @param tick Tick to start from
+     */
+    public void clear(long tick) {
+        for (List<Timer> slot : _slots)
+            slot.clear();
+        _size = 0;
+        _tick = tick;
+    }
+}
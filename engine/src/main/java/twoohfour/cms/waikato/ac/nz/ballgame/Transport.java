@@ -0,0 +1,44 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import java.io.IOException;
+
+/**
+ * Carries MultiplayerNetwork's datagrams
+ *
+ * Anything sent goes to everyone else on the same transport, like a multicast group.
+ * Datagrams may be lost, duplicated or reordered, which the network already copes with.
+ */
+public interface Transport {
+
+    /**
+     * Sends a datagram to everyone
+     *
+     * @param data   Datagram. May be reused as soon as this returns
+     * @param length Number of bytes of data to send
+     * @throws IOException If it couldn't be sent
+     */
+    void send(byte[] data, int length) throws IOException;
+
+    /**
+     * Waits for the next datagram
+     *
+     * @param buffer    Buffer to receive into
+     * @param timeoutMs Longest to wait
+     * @return Length of the datagram, or -1 if nothing arrived in time
+     * @throws IOException If the transport failed, or was closed
+     */
+    int receive(byte[] buffer, int timeoutMs) throws IOException;
+
+    /**
+     * Gets who sent the datagram receive() last returned
+     *
+     * @return IPv4 address, or 0 if the transport doesn't know
+     */
+    int getLastSource();
+
+    /**
+     * Stops sending and receiving
+     * A receive() in progress gives up
+     */
+    void close();
+}
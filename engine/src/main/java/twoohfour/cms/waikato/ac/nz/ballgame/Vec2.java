@@ -0,0 +1,35 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+/**
+ * A point or vector with float coordinates
+ * The engine's own, so it runs without Android
+ */
+public strictfp class Vec2 {
+
+    public float x;
+    public float y;
+
+    public Vec2() {
+    }
+
+    public Vec2(float x, float y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * Sets both coordinates
+     *
+     * @param x X coordinate
+     * @param y Y coordinate
+     */
+    public void set(float x, float y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    @Override
+    public String toString() {
+        return "Vec2(" + x + ", " + y + ")";
+    }
+}
@@ -0,0 +1,139 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threads that one GameState splits its update across
+ *
+ * Work is a range of indexes, cut into a few chunks per thread. Threads take the next
+ * chunk nobody has started, and the calling thread joins in rather than waiting, so a
+ * pool of n threads only starts n - 1. Chunks are always cut the same way for the same
+ * count and pool, and each knows its own number, so anything they produce can be put
+ * back together in order, whichever thread got there first.
+ *
+ * Only one run at a time. A pool may be shared between worlds that update one after another.
+ */
+public class WorkerPool {
+
+    //region Variables
+    private static final int CHUNKS_PER_THREAD = 4; // Keeps threads busy when some chunks take longer
+
+    private final int _threads;
+    private final ExecutorService _executor; // Null with only one thread
+    private final Future<?>[] _helpers;
+    //endregion
+
+    /**
+     * Something to do for a range of indexes
+     */
+    public interface Task {
+        /**
+         * Does the work for one chunk
+         *
+         * @param chunk Number of the chunk, from 0 to getChunks() - 1
+         * @param from  First index
+         * @param to    One past the last index
+         */
+        void run(int chunk, int from, int to);
+    }
+
+    /**
+     * Starts a pool
+     *
+     * @param threads Threads to use, counting the one that calls run()
+     */
+    public WorkerPool(int threads) {
+        _threads = Math.max(1, threads);
+        _helpers = new Future<?>[_threads - 1];
+        _executor = _threads == 1 ? null : Executors.newFixedThreadPool(_threads - 1, new ThreadFactory() {
+            private final AtomicInteger _count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "World worker " + _count.incrementAndGet());
+                t.setDaemon(true); // Never keeps the game running on its own
+                return t;
+            }
+        });
+    }
+
+    //region Getters
+
+    /**
+     * Gets the number of threads work is split across
+     *
+     * @return Thread count, including the caller
+     */
+    public int getThreads() {
+        return _threads;
+    }
+
+    /**
+     * Gets the most chunks run() will cut any range into
+     *
+     * @return Chunk count
+     */
+    public int getChunks() {
+        return _threads == 1 ? 1 : _threads * CHUNKS_PER_THREAD;
+    }
+    //endregion
+
+    /**
+     * Runs a task over every index from 0 to count, and waits for all of it to be done
+     *
+     * @param count Number of indexes
+     * @param task  Task, run once for each chunk
+     */
+    public void run(final int count, final Task task) {
+        final int chunks = Math.min(getChunks(), count);
+        if (chunks <= 1 || _executor == null) {
+            task.run(0, 0, count);
+            return;
+        }
+
+        final AtomicInteger next = new AtomicInteger();
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                for (int c = next.getAndIncrement(); c < chunks; c = next.getAndIncrement())
+                    task.run(c, (int) ((long) count * c / chunks), (int) ((long) count * (c + 1) / chunks));
+            }
+        };
+
+        int helpers = Math.min(_helpers.length, chunks - 1);
+        for (int i = 0; i < helpers; i++)
+            _helpers[i] = _executor.submit(worker);
+        RuntimeException failed = null;
+        try {
+            worker.run();
+        } catch (RuntimeException e) {
+            failed = e;
+        }
+
+        // Every helper has to be finished before anyone touches what they were working on
+        for (int i = 0; i < helpers; i++) {
+            try {
+                _helpers[i].get();
+            } catch (Exception e) {
+                if (failed == null)
+                    failed = new RuntimeException("World worker failed", e.getCause() != null ? e.getCause() : e);
+            }
+            _helpers[i] = null;
+        }
+        if (failed != null)
+            throw failed;
+    }
+
+    /**
+     * Stops the threads. The pool can't be used after this
+     */
+    public void shutdown() {
+        if (_executor != null)
+            _executor.shutdown();
+    }
+}
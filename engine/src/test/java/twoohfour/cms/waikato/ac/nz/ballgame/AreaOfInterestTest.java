@@ -0,0 +1,66 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Players have to be sent, and ghosts moved, by how close they are to the screen
+ */
+public class AreaOfInterestTest {
+
+    private static final int WIDTH = 20;
+    private static final int HEIGHT = 10;
+
+    private static GameState state() {
+        return new GameState("Empty", new IntVec2(WIDTH, HEIGHT), new Vec2(1, 1));
+    }
+
+    @Test
+    public void classifiesByDistanceFromTheScreen() {
+        GameState state = state();
+        assertEquals(AreaOfInterest.VISIBLE, AreaOfInterest.classify(state, new WallSprite(5, 5, 1, 1)));
+        // Only partly on screen is still on screen
+        assertEquals(AreaOfInterest.VISIBLE, AreaOfInterest.classify(state, new WallSprite(WIDTH - 0.5f, 5, 1, 1)));
+        assertEquals(AreaOfInterest.NEAR, AreaOfInterest.classify(state, new WallSprite(WIDTH + 2, 5, 1, 1)));
+        assertEquals(AreaOfInterest.NEAR, AreaOfInterest.classify(state, new WallSprite(5, -HEIGHT * AreaOfInterest.NEAR_MARGIN, 1, 1)));
+        assertEquals(AreaOfInterest.FAR, AreaOfInterest.classify(state, new WallSprite(WIDTH * 2, 5, 1, 1)));
+        assertEquals(AreaOfInterest.FAR, AreaOfInterest.classify(state, new WallSprite(5, -HEIGHT, 1, 1)));
+    }
+
+    @Test
+    public void sendsFurtherOnesLessOften() {
+        int[] expected = {8, 4, 2};
+        for (int interest = AreaOfInterest.VISIBLE; interest <= AreaOfInterest.FAR; interest++) {
+            int due = 0;
+            for (int count = 0; count < 8; count++) {
+                if (AreaOfInterest.isDue(interest, count))
+                    due++;
+            }
+            assertEquals(expected[interest], due);
+            assertEquals(8 / expected[interest], AreaOfInterest.getInterval(interest));
+        }
+    }
+
+    @Test
+    public void offScreenGhostsCatchUpLater() {
+        GameState state = state();
+        MultiPlayerGhostSprite seen = new MultiPlayerGhostSprite(5, 2);
+        MultiPlayerGhostSprite unseen = new MultiPlayerGhostSprite(WIDTH * 2, 8);
+        seen.setMotion(0.1f, 0);
+        unseen.setMotion(0.1f, 0);
+        state.addGhost(seen);
+        state.addGhost(unseen);
+
+        for (int t = 0; t < 10; t++)
+            state.update();
+        assertEquals(5 + 10 * 0.1f, seen.getXPos(), 0.001f);
+        assertEquals(WIDTH * 2, unseen.getXPos(), 0);
+        assertEquals(10, unseen.getSkipped());
+
+        // Once it's updated, it's where it would have been
+        unseen.update(state);
+        assertEquals(WIDTH * 2 + 11 * 0.1f, unseen.getXPos(), 0.001f);
+        assertEquals(0, unseen.getSkipped());
+    }
+}
@@ -0,0 +1,37 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Worlds run in a batch have to end up the same whatever runs them, and whatever else runs alongside
+ */
+public class BatchRunnerTest {
+
+    private static final GameState.Level[] LEVELS = {GameState.Level.Empty, GameState.Level.LevelOne, GameState.Level.Random};
+    private static final int WORLDS = 30;
+    private static final int TICKS = 90;
+
+    @Test
+    public void sameOnAnyNumberOfThreads() throws Exception {
+        BatchRunner runner = new BatchRunner(LEVELS, WORLDS, TICKS, 1);
+        long expected = runner.run(1);
+        for (int threads : new int[]{2, 3, 8})
+            assertEquals(threads + " threads", expected, runner.run(threads));
+    }
+
+    @Test
+    public void worldsOnlyDependOnTheirNumber() {
+        BatchRunner runner = new BatchRunner(LEVELS, WORLDS, TICKS, 1);
+        long first = runner.play(4);
+        for (int n = 0; n < 4; n++)
+            runner.play(n);
+        assertEquals(first, runner.play(4));
+
+        // Same level, different world
+        assertTrue(first != runner.play(4 + LEVELS.length));
+        assertTrue(first != new BatchRunner(LEVELS, WORLDS, TICKS, 2).play(4));
+    }
+}
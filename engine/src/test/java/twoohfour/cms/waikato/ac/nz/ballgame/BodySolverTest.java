@@ -0,0 +1,97 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Looking for other bodies in the grid has to find every one that's touching, like checking every pair
+ */
+public class BodySolverTest {
+
+    private static final int BALLS = 800;
+
+    private static GameState state() {
+        return new GameState("Empty", new IntVec2(40, 40), new Vec2(1, 1));
+    }
+
+    /**
+     * Solves one pass, and checks the bodies that were touched against every pair
+     */
+    private static void assertFindsEveryPair(GenericSprite[] balls) {
+        BodySolver solver = new BodySolver();
+        assertTrue(solver.build(state(), balls, balls.length));
+        assertEquals(balls.length, solver.getBodyCount());
+        solver.solve(0, balls.length);
+
+        int touching = 0;
+        for (int i = 0; i < balls.length; i++) {
+            Box r = balls[i].getRectangle();
+            boolean expected = false;
+            for (int j = 0; j < balls.length && !expected; j++) {
+                Box o = balls[j].getRectangle();
+                float dx = o.centerX() - r.centerX();
+                float dy = o.centerY() - r.centerY();
+                float radSum = (r.width() + o.width()) / 2;
+                expected = j != i && dx * dx + dy * dy < radSum * radSum;
+            }
+            assertEquals("Ball " + i, expected, balls[i]._touched);
+            if (expected)
+                touching++;
+        }
+        assertTrue("Only " + touching + " touching", touching > balls.length / 10);
+    }
+
+    @Test
+    public void findsEveryPairInAPile() {
+        Random random = new Random(3);
+        GenericSprite[] balls = new GenericSprite[BALLS];
+        for (int i = 0; i < BALLS; i++)
+            balls[i] = new BallSprite(random.nextFloat() * 15, random.nextFloat() * 15);
+        assertFindsEveryPair(balls);
+    }
+
+    @Test
+    public void findsEveryPairSpreadThin() {
+        // Pairs far apart, so the cells have to be much bigger than a ball, and some pairs straddle two
+        Random random = new Random(4);
+        GenericSprite[] balls = new GenericSprite[BALLS];
+        for (int i = 0; i < BALLS; i += 2) {
+            float x = random.nextFloat() * 400;
+            float y = random.nextFloat() * 400;
+            balls[i] = new BallSprite(x, y);
+            balls[i + 1] = new BallSprite(x + random.nextFloat() * 0.6f - 0.3f, y + random.nextFloat() * 0.6f - 0.3f);
+        }
+        assertFindsEveryPair(balls);
+    }
+
+    @Test
+    public void pushesAreEqualAndOpposite() {
+        Random random = new Random(5);
+        GenericSprite[] balls = new GenericSprite[BALLS];
+        float momentumX = 0, momentumY = 0;
+        for (int i = 0; i < BALLS; i++) {
+            balls[i] = new BallSprite(random.nextFloat() * 15, random.nextFloat() * 15, 0.5f + random.nextFloat() * 2);
+            balls[i].setMotion(random.nextFloat() * 0.02f - 0.01f, random.nextFloat() * 0.02f - 0.01f);
+            momentumX += balls[i].getMotion().x / balls[i]._weightModifier;
+            momentumY += balls[i].getMotion().y / balls[i]._weightModifier;
+        }
+
+        BodySolver solver = new BodySolver();
+        solver.build(state(), balls, BALLS);
+        solver.solve(0, BALLS);
+        solver.endPass();
+        solver.apply(0, BALLS);
+
+        float afterX = 0, afterY = 0;
+        for (GenericSprite b : balls) {
+            afterX += b.getMotion().x / b._weightModifier;
+            afterY += b.getMotion().y / b._weightModifier;
+        }
+        assertEquals(momentumX, afterX, 1e-4f);
+        assertEquals(momentumY, afterY, 1e-4f);
+    }
+}
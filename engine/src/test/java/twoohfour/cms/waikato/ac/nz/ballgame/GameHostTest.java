@@ -0,0 +1,196 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Players have to be given a room, a level and where they are by a host on a LoopbackHub
+ */
+public class GameHostTest {
+
+    private static final long WAIT_MS = 5000;
+    private static final long SEED = 11;
+
+    private LoopbackHub _hub;
+    private MultiplayerNetwork _hostNetwork;
+    private GameHost _host;
+    private final List<MultiplayerNetwork> _networks = new ArrayList<MultiplayerNetwork>();
+
+    @Before
+    public void setUp() {
+        _hub = new LoopbackHub(2);
+        _hostNetwork = new MultiplayerNetwork(_hub.connect());
+        _host = new GameHost(_hostNetwork, new LevelDescriptor(GameHost.DEFAULT_LEVEL, SEED));
+        _host.start();
+    }
+
+    @After
+    public void tearDown() {
+        _host.close();
+        _hostNetwork.close();
+        for (MultiplayerNetwork n : _networks)
+            n.close();
+    }
+
+    /**
+     * Messages a player has been given, with their payloads
+     */
+    private static class Received implements MultiplayerEventListener {
+        private final List<byte[]> _payloads = new ArrayList<byte[]>();
+        private final List<Integer> _codes = new ArrayList<Integer>();
+
+        @Override
+        public synchronized void message(int statusCode, ByteBuffer data, int from, int session) {
+            byte[] payload = new byte[data.remaining()];
+            data.get(payload);
+            _codes.add(statusCode);
+            _payloads.add(payload);
+            notifyAll();
+        }
+
+        @Override
+        public void onNetworkError(Exception e, String text) {
+        }
+
+        /**
+         * Waits for a message that passes a check
+         *
+         * @return Its payload, or null if it never came
+         */
+        synchronized ByteBuffer await(int code, Check check, long timeoutMs) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeoutMs;
+            int seen = 0;
+            while (true) {
+                for (; seen < _codes.size(); seen++) {
+                    ByteBuffer b = ByteBuffer.wrap(_payloads.get(seen));
+                    if (_codes.get(seen) == code && (check == null || check.passes(b.duplicate())))
+                        return b;
+                }
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0)
+                    return null;
+                wait(left);
+            }
+        }
+    }
+
+    private interface Check {
+        boolean passes(ByteBuffer payload);
+    }
+
+    /**
+     * Whether a snapshot has a player in it
+     */
+    private static Check hasPlayer(final int node) {
+        return new Check() {
+            @Override
+            public boolean passes(ByteBuffer payload) {
+                payload.getInt();
+                while (payload.remaining() >= GameHost.ENTRY_SIZE) {
+                    if (payload.getInt() == node)
+                        return true;
+                    payload.position(payload.position() + GameHost.ENTRY_SIZE - 4);
+                }
+                return false;
+            }
+        };
+    }
+
+    private MultiplayerNetwork join(Received received) throws InterruptedException {
+        MultiplayerNetwork network = new MultiplayerNetwork(_hub.connect());
+        _networks.add(network);
+        RoomDiscovery discovery = new RoomDiscovery(network, "Player " + _networks.size());
+        network.registerListener(discovery);
+        network.registerListener(received);
+        discovery.start();
+
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (!discovery.isJoined()) {
+            assertTrue("Never joined", System.currentTimeMillis() < deadline);
+            discovery.tick();
+            Thread.sleep(20);
+        }
+        assertTrue(discovery.isAuthoritative());
+        assertEquals(_hostNetwork.getNodeId(), discovery.getHostNode());
+        return network;
+    }
+
+    @Test
+    public void startsOnceEveryoneIsReady() throws InterruptedException {
+        Received a = new Received();
+        Received b = new Received();
+        MultiplayerNetwork playerA = join(a);
+        MultiplayerNetwork playerB = join(b);
+        assertEquals(playerA.getSession(), playerB.getSession());
+        assertEquals(1, _host.getRoomCount());
+
+        // Waiting snapshots come with nobody in them
+        ByteBuffer waiting = a.await(GameHost.CODE_SNAPSHOT, null, WAIT_MS);
+        assertNotNull(waiting);
+        assertEquals(4, waiting.remaining());
+
+        playerA.queueReliable(103);
+        playerA.flush();
+        assertTrue(playerA.awaitAcks(WAIT_MS));
+        assertTrue(a.await(GameHost.CODE_START, null, 300) == null);
+
+        playerB.queueReliable(103);
+        playerB.flush();
+        ByteBuffer startA = a.await(GameHost.CODE_START, null, WAIT_MS);
+        ByteBuffer startB = b.await(GameHost.CODE_START, null, WAIT_MS);
+        assertNotNull(startA);
+        assertNotNull(startB);
+        LevelDescriptor levelA = LevelDescriptor.read(startA);
+        LevelDescriptor levelB = LevelDescriptor.read(startB);
+        assertEquals(GameHost.DEFAULT_LEVEL, levelA.getLevel());
+        assertEquals(levelA.getSeed(), levelB.getSeed());
+
+        // Both are told where both are
+        for (Received r : new Received[]{a, b}) {
+            assertNotNull(r.await(GameHost.CODE_SNAPSHOT, hasPlayer(playerA.getNodeId()), WAIT_MS));
+            assertNotNull(r.await(GameHost.CODE_SNAPSHOT, hasPlayer(playerB.getNodeId()), WAIT_MS));
+        }
+    }
+
+    @Test
+    public void closesRoomsEveryoneHasLeft() throws InterruptedException {
+        Received received = new Received();
+        MultiplayerNetwork player = join(received);
+        player.queueReliable(103);
+        player.flush();
+        assertNotNull(received.await(GameHost.CODE_START, null, WAIT_MS));
+        assertEquals(1, _host.getRoomCount());
+
+        player.queueReliable(MultiplayerNetwork.CODE_LEAVE);
+        player.flush();
+        assertTrue(player.awaitAcks(WAIT_MS));
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (_host.getRoomCount() > 0) {
+            assertTrue("Room never closed", System.currentTimeMillis() < deadline);
+            Thread.sleep(20);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wontHostLockstepOnlyLevels() {
+        new GameHost(_hostNetwork, new LevelDescriptor(GameState.Level.Balls, SEED));
+    }
+
+    @Test
+    public void inputSurvivesQuantising() {
+        for (float g = -GameHost.INPUT_RANGE; g <= GameHost.INPUT_RANGE; g += GameHost.INPUT_RANGE / 64)
+            assertEquals(g, GameHost.dequantiseInput(GameHost.quantiseInput(g)), GameHost.INPUT_RANGE / Short.MAX_VALUE);
+        // More tilt than a player can have is cut down to the most they can
+        assertEquals(Short.MAX_VALUE, GameHost.quantiseInput(GameHost.INPUT_RANGE * 3));
+        assertEquals(-Short.MAX_VALUE, GameHost.quantiseInput(-GameHost.INPUT_RANGE * 3));
+    }
+}
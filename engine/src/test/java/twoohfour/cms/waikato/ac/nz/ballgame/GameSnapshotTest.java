@@ -0,0 +1,62 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Rewinding a world and playing it again has to come out exactly the same
+ */
+public class GameSnapshotTest {
+
+    private static final long SEED = 11;
+
+    private static void play(GameState state, int from, int to) {
+        for (int t = from; t < to; t++) {
+            // Tilts about, then sits still long enough for things to go to sleep
+            if (t % 15 == 0) {
+                boolean still = t >= 150 && t < 350;
+                state.setGravity(still ? 0 : ((t * 7919) % 100 - 50) * 0.00009f, still ? 0 : ((t * 104729) % 100 - 50) * 0.00009f, 0);
+            }
+            state.update();
+        }
+    }
+
+    private static void replaysTheSame(GameState.Level level) {
+        GameState state = GameState.GENERATE(level, level.name(), SEED);
+        GameSnapshot snapshot = new GameSnapshot();
+        play(state, 0, 300);
+        state.save(snapshot);
+        long saved = InputRecorder.checksum(state);
+        play(state, 300, 400);
+        long first = InputRecorder.checksum(state);
+
+        state.restore(snapshot);
+        assertEquals(level + " restored", saved, InputRecorder.checksum(state));
+        state.setGravity(0, 0, 0); // As it was when saved
+        play(state, 300, 400);
+        assertEquals(level + " played again", first, InputRecorder.checksum(state));
+        assertEquals(400, state.getGameTime());
+    }
+
+    @Test
+    public void everyLevelReplaysTheSame() {
+        for (GameState.Level level : GameState.Level.values())
+            replaysTheSame(level);
+    }
+
+    @Test
+    public void restoresTheSameSnapshotTwice() {
+        GameState state = GameState.GENERATE(GameState.Level.Balls, "Balls", SEED);
+        GameSnapshot snapshot = new GameSnapshot();
+        play(state, 0, 200);
+        state.save(snapshot);
+        long[] sums = new long[2];
+        for (int i = 0; i < sums.length; i++) {
+            state.restore(snapshot);
+            play(state, 200, 230);
+            sums[i] = InputRecorder.checksum(state);
+        }
+        assertEquals(sums[0], sums[1]);
+    }
+}
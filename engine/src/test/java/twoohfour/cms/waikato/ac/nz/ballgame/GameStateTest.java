@@ -0,0 +1,48 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Worlds that have to come out the same on every device
+ */
+public class GameStateTest {
+
+    private static final long SEED = 5;
+
+    @Test
+    public void ballsRollWithPlayersInputsNotTheDevice() {
+        // Two devices in lockstep: same inputs for every player, each tilted its own way
+        GameState a = GameState.GENERATE_BALLS(200, "Balls", SEED);
+        GameState b = GameState.GENERATE_BALLS(200, "Balls", SEED);
+        PlayerSprite otherA = a.addPlayer();
+        PlayerSprite otherB = b.addPlayer();
+        for (int t = 0; t < 300; t++) {
+            float x = (t % 100 < 50 ? 1 : -1) * 0.01f;
+            a.setInput(a.getPlayer(), x, 0.005f);
+            b.setInput(b.getPlayer(), x, 0.005f);
+            a.setInput(otherA, -0.004f, x);
+            b.setInput(otherB, -0.004f, x);
+            a.setGravity(0.015f, -0.01f, 0);
+            b.setGravity(-0.02f, 0, 0);
+            a.update();
+            b.update();
+        }
+        assertEquals(InputRecorder.checksum(a), InputRecorder.checksum(b));
+    }
+
+    @Test
+    public void ballsRollWithTheDeviceOnTheirOwn() {
+        GameState still = GameState.GENERATE_BALLS(200, "Balls", SEED);
+        GameState tilted = GameState.GENERATE_BALLS(200, "Balls", SEED);
+        tilted.setGravity(0.01f, 0, 0);
+        for (int t = 0; t < 30; t++) {
+            still.update();
+            tilted.update();
+        }
+        assertEquals(0.01f, tilted.getSharedGravity()[0], 0);
+        assertTrue(InputRecorder.checksum(still) != InputRecorder.checksum(tilted));
+    }
+}
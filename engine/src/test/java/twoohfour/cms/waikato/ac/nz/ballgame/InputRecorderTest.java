@@ -0,0 +1,63 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The checksum has to notice anything a replay or rollback could get wrong
+ */
+public class InputRecorderTest {
+
+    private static final long SEED = 3;
+
+    /**
+     * Something done to a snapshot before the world is put back from it
+     */
+    private interface Change {
+        void apply(GameSnapshot snapshot);
+    }
+
+    private static void assertNoticed(String what, Change change) {
+        GameState state = GameState.GENERATE_BALLS(50, "Balls", SEED);
+        for (int t = 0; t < 20; t++)
+            state.update();
+        long before = InputRecorder.checksum(state);
+
+        GameSnapshot snapshot = new GameSnapshot();
+        state.save(snapshot);
+        change.apply(snapshot);
+        state.restore(snapshot);
+        assertTrue(what + " wasn't noticed", InputRecorder.checksum(state) != before);
+    }
+
+    @Test
+    public void noticesSharedGravity() {
+        assertNoticed("Shared gravity", new Change() {
+            @Override
+            public void apply(GameSnapshot snapshot) {
+                snapshot.sharedGravX += 0.001f;
+            }
+        });
+    }
+
+    @Test
+    public void noticesEdges() {
+        assertNoticed("A right edge", new Change() {
+            @Override
+            public void apply(GameSnapshot snapshot) {
+                snapshot.edges[0] = Math.nextUp(snapshot.edges[0]);
+            }
+        });
+    }
+
+    @Test
+    public void noticesSleep() {
+        assertNoticed("Sleep", new Change() {
+            @Override
+            public void apply(GameSnapshot snapshot) {
+                snapshot.rest[0] ^= GameSnapshot.ASLEEP;
+            }
+        });
+    }
+}
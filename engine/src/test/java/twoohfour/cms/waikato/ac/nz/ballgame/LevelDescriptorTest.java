@@ -0,0 +1,53 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Levels sent in a 200 have to come out the same on every device
+ */
+public class LevelDescriptorTest {
+
+    private static final long SEED = -7;
+
+    @Test
+    public void everyLevelComesBackTheSame() {
+        for (GameState.Level level : GameState.Level.values()) {
+            LevelDescriptor sent = new LevelDescriptor(level, SEED);
+            ByteBuffer b = ByteBuffer.allocate(sent.getSize());
+            sent.write(b);
+            assertEquals(level + " size", sent.getSize(), b.position());
+            b.flip();
+
+            LevelDescriptor received = LevelDescriptor.read(b);
+            assertEquals(level, received.getLevel());
+            assertEquals(SEED, received.getSeed());
+            assertEquals(level + " built", InputRecorder.checksum(sent.create("Sent")), InputRecorder.checksum(received.create("Received")));
+        }
+    }
+
+    @Test
+    public void seedChangesRandom() {
+        LevelDescriptor level = new LevelDescriptor(GameState.Level.Random, SEED);
+        long a = InputRecorder.checksum(level.create("A"));
+        long b = InputRecorder.checksum(level.withSeed(SEED + 1).create("B"));
+        assertEquals(a, InputRecorder.checksum(level.create("A again")));
+        assertTrue(a != b);
+    }
+
+    @Test
+    public void ignoresWhatItDoesNotUnderstand() {
+        ByteBuffer unknown = ByteBuffer.allocate(9);
+        unknown.put((byte) GameState.Level.values().length).putLong(SEED).flip();
+        assertNull(LevelDescriptor.read(unknown));
+
+        ByteBuffer cutShort = ByteBuffer.allocate(5);
+        cutShort.put((byte) 0).putInt(1).flip();
+        assertNull(LevelDescriptor.read(cutShort));
+    }
+}
@@ -0,0 +1,165 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Three devices in lockstep on a LoopbackHub
+ */
+public class LockstepSessionTest {
+
+    private static final int SESSION = 9;
+    private static final int HELLO = 150; // Just so the networks hear of each other
+    private static final long SEED = 11;
+    private static final long WAIT_MS = 15000;
+
+    private LoopbackHub _hub;
+    private DeafTransport _deaf; // B's, so it can stop hearing C
+    private MultiplayerNetwork[] _networks;
+    private LockstepSession[] _sessions;
+
+    /**
+     * Lets a test stop one network hearing another, while everyone else still can
+     */
+    private static class DeafTransport implements Transport {
+        private final Transport _inner;
+        private volatile int _deafTo;
+
+        DeafTransport(Transport inner) {
+            _inner = inner;
+        }
+
+        void deafTo(int node) {
+            _deafTo = node;
+        }
+
+        @Override
+        public void send(byte[] data, int length) throws IOException {
+            _inner.send(data, length);
+        }
+
+        @Override
+        public int receive(byte[] buffer, int timeoutMs) throws IOException {
+            while (true) {
+                int length = _inner.receive(buffer, timeoutMs);
+                // Sender's node id comes after the version and session
+                if (length < 9 || _deafTo == 0 || ByteBuffer.wrap(buffer).getInt(5) != _deafTo)
+                    return length;
+            }
+        }
+
+        @Override
+        public int getLastSource() {
+            return _inner.getLastSource();
+        }
+
+        @Override
+        public void close() {
+            _inner.close();
+        }
+    }
+
+    @Before
+    public void setUp() throws InterruptedException {
+        _hub = new LoopbackHub(1);
+        _deaf = new DeafTransport(_hub.connect());
+        _networks = new MultiplayerNetwork[]{
+                new MultiplayerNetwork(_hub.connect()),
+                new MultiplayerNetwork(_deaf),
+                new MultiplayerNetwork(_hub.connect())};
+
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        for (MultiplayerNetwork n : _networks)
+            n.setSession(SESSION);
+        while (!everyoneKnowsEveryone()) {
+            assertTrue("Peers never heard of each other", System.currentTimeMillis() < deadline);
+            for (MultiplayerNetwork n : _networks)
+                n.sendCode(HELLO);
+            Thread.sleep(20);
+        }
+
+        int[] nodes = new int[_networks.length];
+        for (int i = 0; i < nodes.length; i++)
+            nodes[i] = _networks[i].getNodeId();
+        _sessions = new LockstepSession[_networks.length];
+        for (int i = 0; i < _sessions.length; i++) {
+            _sessions[i] = new LockstepSession(_networks[i], GameState.GENERATE_BALLS(40, "Balls", SEED), nodes, nodes[i]);
+            _networks[i].registerListener(_sessions[i]);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (MultiplayerNetwork n : _networks)
+            n.close();
+    }
+
+    private boolean everyoneKnowsEveryone() {
+        for (MultiplayerNetwork n : _networks) {
+            if (n.getPeerCount() < _networks.length - 1)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Steps the given devices until they've all got to a tick, or for a while if tick is -1
+     */
+    private void run(int[] devices, int tick, long forMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + (tick < 0 ? forMs : WAIT_MS);
+        while (System.currentTimeMillis() < deadline) {
+            boolean done = tick >= 0;
+            for (int d : devices) {
+                LockstepSession s = _sessions[d];
+                int t = s.getTick();
+                if (tick >= 0 && t >= tick)
+                    continue;
+                s.step((t + d * 7) % 40 < 20 ? 0.01f : -0.01f, (t % 30) * 0.001f);
+                done &= s.getTick() >= tick;
+            }
+            if (done)
+                return;
+            Thread.sleep(5);
+        }
+        assertTrue("Never got to tick " + tick, tick < 0);
+    }
+
+    @Test
+    public void staysTogether() throws InterruptedException {
+        int[] everyone = {0, 1, 2};
+        run(everyone, 60, 0);
+        for (int i = 1; i < _sessions.length; i++)
+            assertEquals(InputRecorder.checksum(_sessions[0].getState()), InputRecorder.checksum(_sessions[i].getState()));
+    }
+
+    @Test
+    public void agreesWhenAQuietPlayerLeft() throws InterruptedException {
+        int[] everyone = {0, 1, 2};
+        run(everyone, 20, 0);
+
+        // B stops hearing C, so only A gets C's last few inputs
+        int c = Arrays.binarySearch(_sessions[0]._nodes, _networks[2].getNodeId());
+        _deaf.deafTo(_networks[2].getNodeId());
+        run(everyone, -1, 500);
+        assertTrue(_sessions[0]._received[c] > _sessions[1]._received[c]);
+
+        // Then C goes quiet for good, and A and B carry on without it
+        _networks[2].close();
+        int[] survivors = {0, 1};
+        int tick = Math.max(_sessions[0].getTick(), _sessions[1].getTick()) + 30;
+        run(survivors, tick, 0);
+
+        assertEquals(_sessions[0]._lastTick[c], _sessions[1]._lastTick[c]);
+        assertTrue(_sessions[0]._lastTick[c] < tick);
+        assertEquals(_sessions[0].getTick(), _sessions[1].getTick());
+        assertEquals(InputRecorder.checksum(_sessions[0].getState()), InputRecorder.checksum(_sessions[1].getState()));
+    }
+}
@@ -0,0 +1,99 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The pretend network has to be exactly as bad as it's told to be
+ */
+public class LoopbackHubTest {
+
+    private static final int COUNT = 1000;
+
+    private LoopbackHub _hub;
+    private Transport _a;
+    private Transport _b;
+    private final byte[] _data = {1, 2, 3, 4};
+    private final byte[] _buffer = new byte[16];
+
+    @Before
+    public void setUp() {
+        _hub = new LoopbackHub(4);
+        _a = _hub.connect();
+        _b = _hub.connect();
+    }
+
+    /**
+     * Takes everything that has already arrived
+     */
+    private int drain(Transport t) throws IOException {
+        int count = 0;
+        while (t.receive(_buffer, 0) >= 0)
+            count++;
+        return count;
+    }
+
+    @Test
+    public void reachesEveryoneButTheSender() throws IOException {
+        Transport c = _hub.connect();
+        _a.send(_data, _data.length);
+        assertEquals(_data.length, _b.receive(_buffer, 100));
+        assertEquals(_data[3], _buffer[3]);
+        assertEquals(_data.length, c.receive(_buffer, 100));
+        assertEquals(c.getLastSource(), _b.getLastSource());
+        assertEquals(-1, _a.receive(_buffer, 20));
+    }
+
+    @Test
+    public void holdsDatagramsBackForTheLatency() throws IOException {
+        _hub.setLatency(150, 0);
+        long start = System.nanoTime();
+        _a.send(_data, _data.length);
+        assertEquals(-1, _b.receive(_buffer, 50));
+        assertEquals(_data.length, _b.receive(_buffer, 1000));
+        assertTrue((System.nanoTime() - start) / 1000000 >= 150);
+    }
+
+    @Test
+    public void losesAboutAsManyAsItIsTold() throws IOException {
+        _hub.setLoss(0.3f);
+        for (int i = 0; i < COUNT; i++)
+            _a.send(_data, _data.length);
+        long lost = _hub.getLost();
+        assertTrue("Lost " + lost, lost > COUNT * 0.25 && lost < COUNT * 0.35);
+        assertEquals(COUNT - lost, drain(_b));
+        assertEquals(COUNT, _hub.getSent());
+    }
+
+    @Test
+    public void duplicatesAboutAsManyAsItIsTold() throws IOException {
+        _hub.setDuplication(0.5f);
+        for (int i = 0; i < COUNT; i++)
+            _a.send(_data, _data.length);
+        long duplicated = _hub.getDuplicated();
+        assertTrue("Duplicated " + duplicated, duplicated > COUNT * 0.45 && duplicated < COUNT * 0.55);
+        assertEquals(COUNT + duplicated, drain(_b));
+    }
+
+    @Test
+    public void dropsWhatCantBeSentInTime() throws IOException {
+        // 100 bytes take 100ms, and nothing waits longer than that to go
+        _hub.setBandwidth(1000, 100);
+        byte[] big = new byte[100];
+        for (int i = 0; i < 10; i++)
+            _a.send(big, big.length);
+        assertTrue("Dropped " + _hub.getQueueDropped(), _hub.getQueueDropped() >= 7);
+        assertEquals(10, _hub.getSent());
+    }
+
+    @Test(expected = IOException.class)
+    public void closedTransportsCantSend() throws IOException {
+        _a.close();
+        _a.send(_data, _data.length);
+    }
+}
@@ -0,0 +1,148 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Peer ids, and finding them by node id after others have come and gone
+ */
+public class PeerRegistryTest {
+
+    private final PeerRegistry _peers = new PeerRegistry();
+
+    private static final int TABLE_MASK = PeerRegistry.MAX_PEERS * 2 - 1;
+
+    // Same as PeerRegistry.hash()
+    private static int home(int node) {
+        int h = node * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & TABLE_MASK;
+    }
+
+    /**
+     * Node ids that all land in the same place in the table, so each has to step past the others
+     */
+    private static int[] colliding(int count, int slot) {
+        int[] nodes = new int[count];
+        int n = 0;
+        for (int node = 1; n < count; node++) {
+            if (home(node) == slot)
+                nodes[n++] = node;
+        }
+        return nodes;
+    }
+
+    @Test
+    public void findsWhatWasAdded() {
+        int a = _peers.add(100);
+        int b = _peers.add(-7);
+        assertEquals(0, a);
+        assertEquals(1, b);
+        assertEquals(a, _peers.lookup(100));
+        assertEquals(b, _peers.lookup(-7));
+        assertEquals(-1, _peers.lookup(5));
+        assertEquals(-7, _peers.getNode(b));
+        assertEquals(2, _peers.getCount());
+    }
+
+    @Test
+    public void findsCollidingNodesAfterOneIsRemoved() {
+        checkRemovingFromAChain(colliding(4, 17));
+    }
+
+    @Test
+    public void findsCollidingNodesAcrossTheEndOfTheTable() {
+        // The last slot, so the chain carries on from the start
+        checkRemovingFromAChain(colliding(4, TABLE_MASK));
+    }
+
+    private void checkRemovingFromAChain(int[] nodes) {
+        for (int node : nodes)
+            _peers.add(node);
+
+        // Taking out the first leaves a gap the rest have to be moved back over
+        _peers.remove(_peers.lookup(nodes[0]));
+        assertEquals(-1, _peers.lookup(nodes[0]));
+        for (int i = 1; i < nodes.length; i++)
+            assertEquals(i, _peers.lookup(nodes[i]));
+
+        _peers.remove(_peers.lookup(nodes[2]));
+        assertEquals(1, _peers.lookup(nodes[1]));
+        assertEquals(3, _peers.lookup(nodes[3]));
+        assertEquals(2, _peers.getCount());
+    }
+
+    @Test
+    public void reusesFreedIds() {
+        _peers.add(1);
+        int b = _peers.add(2);
+        _peers.add(3);
+        _peers.remove(b);
+        assertFalse(_peers.isUsed(b));
+        assertEquals(b, _peers.add(4));
+        assertEquals(b, _peers.lookup(4));
+        assertEquals(-1, _peers.lookup(2));
+    }
+
+    @Test
+    public void staysFindableThroughChurn() {
+        // Random joins and leaves, checked against a plain list
+        Random random = new Random(3);
+        List<Integer> joined = new ArrayList<Integer>();
+        for (int step = 0; step < 20000; step++) {
+            if (joined.size() < PeerRegistry.MAX_PEERS && (joined.isEmpty() || random.nextBoolean())) {
+                int node;
+                do {
+                    node = random.nextInt(2000) + 1; // Few enough to collide often
+                } while (joined.contains(node));
+                joined.add(node);
+                assertTrue(_peers.add(node) >= 0);
+            } else {
+                int node = joined.remove(random.nextInt(joined.size()));
+                _peers.remove(_peers.lookup(node));
+            }
+        }
+        assertEquals(joined.size(), _peers.getCount());
+        for (int node : joined)
+            assertEquals(node, _peers.getNode(_peers.lookup(node)));
+    }
+
+    @Test
+    public void fillsUp() {
+        for (int i = 0; i < PeerRegistry.MAX_PEERS; i++)
+            assertEquals(i, _peers.add(i + 1));
+        assertEquals(-1, _peers.add(PeerRegistry.MAX_PEERS + 1));
+        for (int i = 0; i < PeerRegistry.MAX_PEERS; i++)
+            assertEquals(i, _peers.lookup(i + 1));
+    }
+
+    @Test
+    public void countsReadyPeers() {
+        int a = _peers.add(10);
+        int b = _peers.add(20);
+        assertFalse(_peers.allReady());
+        _peers.setReady(a);
+        _peers.setReady(a);
+        assertEquals(1, _peers.getReadyCount());
+        _peers.setReady(b);
+        assertTrue(_peers.allReady());
+
+        // Leaving takes their readiness with them, and the next to get the id starts unready
+        _peers.remove(a);
+        assertEquals(1, _peers.getReadyCount());
+        assertEquals(a, _peers.add(30));
+        assertFalse(_peers.isReady(a));
+        assertFalse(_peers.allReady());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void refusesNodeZero() {
+        _peers.add(0);
+    }
+}
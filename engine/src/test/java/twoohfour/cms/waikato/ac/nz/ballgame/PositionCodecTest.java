@@ -0,0 +1,83 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Quantising positions, and deciding when they need sending
+ */
+public class PositionCodecTest {
+
+    private static final float W = 40;
+    private static final float H = 25;
+
+    private final PositionCodec _codec = new PositionCodec();
+
+    @Test
+    public void positionsComeBackWithinHalfAStep() {
+        float step = W / PositionCodec.STEPS_PER_LEVEL;
+        for (float x = -W * 3; x < W * 3; x += 0.377f) {
+            float back = PositionCodec.dequantisePosition(PositionCodec.quantisePosition(x, W), W);
+            assertEquals(x, back, step / 2 + 1e-4f);
+        }
+    }
+
+    @Test
+    public void positionsOutOfRangeAreClamped() {
+        assertEquals(Short.MAX_VALUE, PositionCodec.quantisePosition(W * 5, W));
+        assertEquals(Short.MIN_VALUE, PositionCodec.quantisePosition(-W * 5, W));
+    }
+
+    @Test
+    public void velocitiesComeBackWithinHalfAStep() {
+        float step = PositionCodec.VELOCITY_RANGE / Short.MAX_VALUE;
+        for (float v = -0.2f; v <= 0.2f; v += 0.0013f)
+            assertEquals(v, PositionCodec.dequantiseVelocity(PositionCodec.quantiseVelocity(v)), step / 2 + 1e-6f);
+        assertEquals(Short.MAX_VALUE, PositionCodec.quantiseVelocity(1));
+        assertEquals(Short.MIN_VALUE, PositionCodec.quantiseVelocity(-1));
+    }
+
+    @Test
+    public void sendsOnlyWhenTheGuessDrifts() {
+        assertEquals(PositionCodec.CODE_KEYFRAME, _codec.prepare(10, 10, 0.1f, 0, 0, W, H));
+        assertEquals(9, _codec.getPayloadLength());
+
+        // Right where the others will have extrapolated it to
+        assertEquals(0, _codec.prepare(10.5f, 10, 0.1f, 0, 5, W, H));
+
+        // Stopped, so the guess has gone on without it
+        assertEquals(PositionCodec.CODE_DELTA, _codec.prepare(10.2f, 10, 0, 0, 6, W, H));
+        assertEquals(7, _codec.getPayloadLength());
+        assertEquals(0, _codec.prepare(10.2f, 10, 0, 0, 7, W, H));
+    }
+
+    @Test
+    public void sendsAKeyframeForBigMovesAndHeartbeats() {
+        _codec.prepare(10, 10, 0, 0, 0, W, H);
+        assertEquals(PositionCodec.CODE_KEYFRAME, _codec.prepare(20, 10, 0, 0, 1, W, H)); // Too far for a delta
+        assertEquals(0, _codec.prepare(20, 10, 0, 0, PositionCodec.KEYFRAME_INTERVAL, W, H));
+        assertEquals(PositionCodec.CODE_KEYFRAME, _codec.prepare(20, 10, 0, 0, PositionCodec.KEYFRAME_INTERVAL + 1, W, H));
+
+        _codec.reset();
+        assertEquals(PositionCodec.CODE_KEYFRAME, _codec.prepare(20, 10, 0, 0, PositionCodec.KEYFRAME_INTERVAL + 2, W, H));
+    }
+
+    @Test
+    public void ghostsEndUpWhereThePeersThinkWeAre() {
+        MultiPlayerGhostSprite ghost = new MultiPlayerGhostSprite(0, 0);
+        int code = _codec.prepare(12.3f, 4.56f, 0.05f, -0.02f, 0, W, H);
+        PositionCodec.decode(code, ByteBuffer.wrap(_codec.getPayload(), 0, _codec.getPayloadLength()), ghost, W, H);
+        assertEquals(12.3f, ghost.getXPos(), W / PositionCodec.STEPS_PER_LEVEL);
+        assertEquals(4.56f, ghost.getYPos(), H / PositionCodec.STEPS_PER_LEVEL);
+
+        code = _codec.prepare(12.4f, 4.5f, 0, 0, 1, W, H);
+        assertEquals(PositionCodec.CODE_DELTA, code);
+        PositionCodec.decode(code, ByteBuffer.wrap(_codec.getPayload(), 0, _codec.getPayloadLength()), ghost, W, H);
+        assertEquals(12.4f, ghost.getXPos(), W / PositionCodec.STEPS_PER_LEVEL);
+        assertEquals(4.5f, ghost.getYPos(), H / PositionCodec.STEPS_PER_LEVEL);
+        assertEquals(0, ghost.getMotion().x, 0);
+    }
+}
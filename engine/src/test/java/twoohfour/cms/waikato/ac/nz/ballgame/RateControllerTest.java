@@ -0,0 +1,139 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The send rate has to come down as a room gets busier or starts losing datagrams, on a LoopbackHub
+ */
+public class RateControllerTest {
+
+    private static final int SESSION = 9;
+    private static final int HELLO = 150; // Unreliable, just so peers hear of each other
+    private static final float FLOOR = 5;
+    private static final long WAIT_MS = 5000;
+
+    private LoopbackHub _hub;
+    private MultiplayerNetwork _network; // The one being controlled
+    private final List<MultiplayerNetwork> _networks = new ArrayList<MultiplayerNetwork>();
+
+    @Before
+    public void setUp() {
+        _hub = new LoopbackHub(5);
+        _network = network();
+    }
+
+    @After
+    public void tearDown() {
+        for (MultiplayerNetwork n : _networks)
+            n.close();
+    }
+
+    private MultiplayerNetwork network() {
+        MultiplayerNetwork network = new MultiplayerNetwork(_hub.connect());
+        network.setSession(SESSION);
+        _networks.add(network);
+        return network;
+    }
+
+    /**
+     * Adds peers that say hello, and waits for them to be heard
+     */
+    private List<MultiplayerNetwork> addPeers(int count) throws InterruptedException {
+        List<MultiplayerNetwork> peers = new ArrayList<MultiplayerNetwork>();
+        for (int i = 0; i < count; i++) {
+            MultiplayerNetwork peer = network();
+            peer.sendCode(HELLO);
+            peers.add(peer);
+        }
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (_network.getPeerCount() < count) {
+            assertTrue("Peers never heard", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        return peers;
+    }
+
+    /**
+     * Lets a window go by, then ticks once so the rate is worked out again
+     */
+    private static void nextWindow(RateController rate) throws InterruptedException {
+        Thread.sleep(RateController.WINDOW_MS + 20);
+        rate.tick();
+    }
+
+    private static int sends(RateController rate, int ticks) {
+        int sends = 0;
+        for (int t = 0; t < ticks; t++) {
+            if (rate.tick())
+                sends++;
+        }
+        return sends;
+    }
+
+    @Test
+    public void sendsEveryTickOnItsOwn() throws InterruptedException {
+        RateController rate = new RateController(_network, FLOOR, 30);
+        assertEquals(30, sends(rate, 30));
+        nextWindow(rate);
+        assertEquals(0, rate.getPeers());
+        assertEquals(30, rate.getRate(), 0);
+    }
+
+    @Test
+    public void sharesTheRateBetweenPeers() throws InterruptedException {
+        addPeers(10);
+        RateController rate = new RateController(_network, FLOOR, 30);
+        nextWindow(rate);
+        assertEquals(10, rate.getPeers());
+        assertEquals(RateController.TARGET_RECEIVE_RATE / 10, rate.getRate(), 0.001f);
+
+        // Two sends in every three ticks
+        int sends = sends(rate, 300);
+        assertTrue("Sent " + sends, sends >= 199 && sends <= 201);
+    }
+
+    /**
+     * Has a peer send lots of datagrams, about half of which go missing
+     *
+     * @return Controller, after the window they went missing in
+     */
+    private RateController loseHalf(float floor) throws InterruptedException {
+        MultiplayerNetwork peer = addPeers(1).get(0);
+        RateController rate = new RateController(_network, floor, 300);
+        _hub.setLoss(0.5f);
+        // Spaced out, so they don't back up waiting to be read as well
+        for (int i = 0; i < 200; i++) {
+            peer.sendCode(HELLO);
+            Thread.sleep(2);
+        }
+        nextWindow(rate);
+        assertTrue("Loss " + rate.getLoss(), rate.getLoss() > 0.4f && rate.getLoss() < 0.6f);
+        return rate;
+    }
+
+    @Test
+    public void backsOffWhenDatagramsGoMissing() throws InterruptedException {
+        RateController rate = loseHalf(FLOOR);
+        assertEquals(RateController.TARGET_RECEIVE_RATE * 0.75f, rate.getRate(), 0.001f);
+
+        // And creeps back once they stop
+        _hub.setLoss(0);
+        nextWindow(rate);
+        assertEquals(0, rate.getLoss(), 0);
+        assertEquals(RateController.TARGET_RECEIVE_RATE * 0.8f, rate.getRate(), 0.001f);
+    }
+
+    @Test
+    public void neverGoesBelowTheFloor() throws InterruptedException {
+        RateController rate = loseHalf(180);
+        assertEquals(180, rate.getRate(), 0);
+    }
+}
@@ -0,0 +1,257 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Reliable messages between two networks on a LoopbackHub, with particular datagrams lost or held back
+ */
+public class ReliableChannelTest {
+
+    private static final int SESSION = 7;
+    private static final int HELLO = 150; // Unreliable, just so the two hear of each other
+    private static final int FIRST = 151;
+    private static final long WAIT_MS = 5000;
+
+    private LoopbackHub _hub;
+    private FilterTransport _link; // Sender's side
+    private MultiplayerNetwork _sender;
+    private MultiplayerNetwork _receiver;
+    private final Received _received = new Received();
+
+    /**
+     * Lets a test lose or hold back the sender's datagrams that carry a reliable message
+     * Keeps the codes in each datagram that does go out
+     */
+    private static class FilterTransport implements Transport {
+        private final Transport _inner;
+        private int _drop; // Reliable datagrams still to lose
+        private int _hold; // Reliable datagrams still to hold back
+        private final List<byte[]> _held = new ArrayList<byte[]>();
+        private final List<List<Integer>> _sent = new ArrayList<List<Integer>>();
+
+        FilterTransport(Transport inner) {
+            _inner = inner;
+        }
+
+        synchronized void drop(int count) {
+            _drop = count;
+        }
+
+        synchronized void hold(int count) {
+            _hold = count;
+        }
+
+        synchronized List<List<Integer>> getSent() {
+            return new ArrayList<List<Integer>>(_sent);
+        }
+
+        @Override
+        public void send(byte[] data, int length) throws IOException {
+            synchronized (this) {
+                if (codesIn(data, length).contains(MultiplayerNetwork.CODE_RELIABLE)) {
+                    if (_drop > 0) {
+                        _drop--;
+                        return;
+                    }
+                    if (_hold > 0) {
+                        _hold--;
+                        byte[] copy = new byte[length];
+                        System.arraycopy(data, 0, copy, 0, length);
+                        _held.add(copy);
+                        return;
+                    }
+                }
+                _sent.add(codesIn(data, length));
+            }
+            _inner.send(data, length);
+
+            // Anything held back goes out after the next one that wasn't
+            List<byte[]> held;
+            synchronized (this) {
+                if (_hold > 0 || _held.isEmpty())
+                    return;
+                held = new ArrayList<byte[]>(_held);
+                _held.clear();
+            }
+            for (byte[] h : held)
+                _inner.send(h, h.length);
+        }
+
+        @Override
+        public int receive(byte[] buffer, int timeoutMs) throws IOException {
+            return _inner.receive(buffer, timeoutMs);
+        }
+
+        @Override
+        public int getLastSource() {
+            return _inner.getLastSource();
+        }
+
+        @Override
+        public void close() {
+            _inner.close();
+        }
+
+        private static List<Integer> codesIn(byte[] data, int length) {
+            List<Integer> codes = new ArrayList<Integer>();
+            int i = 11; // Past the header
+            while (i < length) {
+                codes.add((data[i++] & 0xFF) + 100);
+                int len = data[i++] & 0xFF;
+                if ((len & 0x80) != 0)
+                    len = ((len & 0x7F) << 8) | (data[i++] & 0xFF);
+                i += len;
+            }
+            return codes;
+        }
+    }
+
+    /**
+     * Codes the receiver has been given, in the order they came
+     */
+    private static class Received implements MultiplayerEventListener {
+        private final List<Integer> _codes = new ArrayList<Integer>();
+
+        @Override
+        public synchronized void message(int statusCode, ByteBuffer data, int from, int session) {
+            if (statusCode != HELLO)
+                _codes.add(statusCode);
+            notifyAll();
+        }
+
+        @Override
+        public void onNetworkError(Exception e, String text) {
+        }
+
+        synchronized List<Integer> awaitCount(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + WAIT_MS;
+            while (_codes.size() < count && System.currentTimeMillis() < deadline)
+                wait(50);
+            Thread.sleep(MultiplayerNetwork.MAX_RTO_MS / 4); // Anything extra, like a duplicate, has time to turn up
+            List<Integer> sorted = new ArrayList<Integer>(_codes);
+            Collections.sort(sorted);
+            return sorted;
+        }
+    }
+
+    @Before
+    public void setUp() throws InterruptedException {
+        _hub = new LoopbackHub(1);
+        _link = new FilterTransport(_hub.connect());
+        _sender = new MultiplayerNetwork(_link);
+        _receiver = new MultiplayerNetwork(_hub.connect());
+        _sender.setSession(SESSION);
+        _receiver.setSession(SESSION);
+        _receiver.registerListener(_received);
+
+        // Reliable messages only wait for peers we've heard from
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (_sender.getPeerCount() == 0 || _receiver.getPeerCount() == 0) {
+            assertTrue("Peers never heard of each other", System.currentTimeMillis() < deadline);
+            _sender.sendCode(HELLO);
+            _receiver.sendCode(HELLO);
+            Thread.sleep(20);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        _sender.close();
+        _receiver.close();
+    }
+
+    private void sendEach(int count) {
+        for (int i = 0; i < count; i++) {
+            _sender.queueReliable(FIRST + i);
+            _sender.flush();
+        }
+    }
+
+    private static List<Integer> codes(int count) {
+        List<Integer> codes = new ArrayList<Integer>();
+        for (int i = 0; i < count; i++)
+            codes.add(FIRST + i);
+        return codes;
+    }
+
+    @Test
+    public void deliversEachOnce() throws InterruptedException {
+        sendEach(5);
+        assertTrue(_sender.awaitAcks(WAIT_MS));
+        assertEquals(codes(5), _received.awaitCount(5));
+    }
+
+    @Test
+    public void resendsFirstWhenItIsLost() throws InterruptedException {
+        // The receiver's first reliable message from us is the second one sent
+        _link.drop(1);
+        sendEach(2);
+        assertTrue(_sender.awaitAcks(WAIT_MS));
+        assertEquals(codes(2), _received.awaitCount(2));
+    }
+
+    @Test
+    public void resendsSeveralLostFromTheStart() throws InterruptedException {
+        _link.drop(3);
+        sendEach(5);
+        assertTrue(_sender.awaitAcks(WAIT_MS));
+        assertEquals(codes(5), _received.awaitCount(5));
+    }
+
+    @Test
+    public void deliversFirstArrivingLast() throws InterruptedException {
+        _link.hold(1);
+        sendEach(3);
+        assertTrue(_sender.awaitAcks(WAIT_MS));
+        assertEquals(codes(3), _received.awaitCount(3));
+    }
+
+    @Test
+    public void ignoresDuplicates() throws InterruptedException {
+        _hub.setDuplication(1);
+        sendEach(4);
+        assertTrue(_sender.awaitAcks(WAIT_MS));
+        assertEquals(codes(4), _received.awaitCount(4));
+    }
+
+    @Test
+    public void survivesLossBothWays() throws InterruptedException {
+        _hub.setLoss(0.1f);
+        sendEach(20);
+        assertTrue(_sender.awaitAcks(WAIT_MS * 2));
+        assertEquals(codes(20), _received.awaitCount(20));
+    }
+
+    @Test
+    public void keepsATicksBatchTogether() throws InterruptedException {
+        // A lost reliable message has to be resent while the next tick is still being queued
+        _link.drop(1);
+        sendEach(1);
+        _sender.queueCode(160);
+        _sender.queueCode(161);
+        Thread.sleep(MultiplayerNetwork.INITIAL_RTO_MS * 3);
+        _sender.queueCode(162);
+        _sender.flush();
+
+        assertTrue(_sender.awaitAcks(WAIT_MS));
+        assertEquals(codes(1), _received.awaitCount(1).subList(0, 1));
+        List<List<Integer>> tick = new ArrayList<List<Integer>>();
+        for (List<Integer> sent : _link.getSent()) {
+            if (sent.contains(160) || sent.contains(161) || sent.contains(162))
+                tick.add(sent);
+        }
+        assertEquals(Collections.singletonList(Arrays.asList(160, 161, 162)), tick);
+    }
+}
@@ -0,0 +1,115 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Two devices guessing each other's late inputs, which have to end up in the same world
+ */
+public class RollbackSessionTest {
+
+    private static final int SESSION = 10;
+    private static final int HELLO = 150; // Just so the networks hear of each other
+    private static final long SEED = 13;
+    private static final long WAIT_MS = 15000;
+
+    private LoopbackHub _hub;
+    private MultiplayerNetwork[] _networks;
+    private RollbackSession[] _sessions;
+
+    @Before
+    public void setUp() throws InterruptedException {
+        _hub = new LoopbackHub(2);
+        _networks = new MultiplayerNetwork[]{new MultiplayerNetwork(_hub.connect()), new MultiplayerNetwork(_hub.connect())};
+
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        for (MultiplayerNetwork n : _networks)
+            n.setSession(SESSION);
+        while (_networks[0].getPeerCount() == 0 || _networks[1].getPeerCount() == 0) {
+            assertTrue("Peers never heard of each other", System.currentTimeMillis() < deadline);
+            for (MultiplayerNetwork n : _networks)
+                n.sendCode(HELLO);
+            Thread.sleep(20);
+        }
+
+        int[] nodes = {_networks[0].getNodeId(), _networks[1].getNodeId()};
+        _sessions = new RollbackSession[2];
+        for (int i = 0; i < 2; i++) {
+            _sessions[i] = new RollbackSession(_networks[i], GameState.GENERATE_BALLS(150, "Balls", SEED), nodes, nodes[i]);
+            _networks[i].registerListener(_sessions[i]);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (MultiplayerNetwork n : _networks)
+            n.close();
+    }
+
+    /**
+     * Steps both devices until they've got to a tick, each tilting its own way
+     */
+    private void run(int tick) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (_sessions[0].getTick() < tick || _sessions[1].getTick() < tick) {
+            assertTrue("Never got to tick " + tick, System.currentTimeMillis() < deadline);
+            for (int d = 0; d < 2; d++) {
+                RollbackSession s = _sessions[d];
+                int t = s.getTick();
+                if (t < tick)
+                    s.step((t / (5 + d * 3)) % 2 == 0 ? 0.015f : -0.015f, ((t + d * 11) % 17) * 0.001f);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Lets every input arrive, then takes one more step, fixing any wrong guesses first
+     */
+    private void settle() throws InterruptedException {
+        Thread.sleep(500);
+        for (RollbackSession s : _sessions)
+            s.step(0, 0);
+        for (RollbackSession s : _sessions)
+            assertTrue(s.isSettled());
+    }
+
+    @Test
+    public void bothDevicesEndUpTheSame() throws InterruptedException {
+        // Late enough that inputs are guessed, and rolled back when the guess was wrong
+        _hub.setLatency(80, 60);
+        run(150);
+        settle();
+
+        assertTrue(_sessions[0].getRollbacks() + _sessions[1].getRollbacks() > 0);
+        assertEquals(_sessions[0].getTick(), _sessions[1].getTick());
+        assertEquals(InputRecorder.checksum(_sessions[0].getState()), InputRecorder.checksum(_sessions[1].getState()));
+    }
+
+    @Test
+    public void stopsWhenAGuessCantBePutRight() throws InterruptedException {
+        run(40);
+        RollbackSession s = _sessions[0];
+        assertFalse(s.isDesynced());
+
+        // Says it left long before anything we still have a snapshot of
+        ByteBuffer leave = ByteBuffer.allocate(4);
+        leave.putInt(5);
+        leave.flip();
+        s.message(MultiplayerNetwork.CODE_LEAVE, leave, _networks[1].getNodeId(), SESSION);
+
+        int tick = s.getTick();
+        assertFalse(s.step(0, 0));
+        assertFalse(s.step(0, 0));
+        assertTrue(s.isDesynced());
+        assertEquals(1, s.getDesyncs());
+        assertEquals(tick, s.getTick());
+    }
+}
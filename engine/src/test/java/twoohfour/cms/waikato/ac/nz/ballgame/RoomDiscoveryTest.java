@@ -0,0 +1,175 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Making, joining and leaving rooms on a LoopbackHub
+ */
+public class RoomDiscoveryTest {
+
+    private static final long WAIT_MS = 5000;
+    private static final int HELLO = 150; // Just so the room hears from someone
+
+    private LoopbackHub _hub;
+    private final List<MultiplayerNetwork> _networks = new ArrayList<MultiplayerNetwork>();
+
+    @Before
+    public void setUp() {
+        _hub = new LoopbackHub(1);
+    }
+
+    @After
+    public void tearDown() {
+        for (MultiplayerNetwork n : _networks)
+            n.close();
+    }
+
+    private RoomDiscovery player(int flags) {
+        MultiplayerNetwork network = new MultiplayerNetwork(_hub.connect());
+        _networks.add(network);
+        RoomDiscovery discovery = new RoomDiscovery(network, "Player " + _networks.size(), flags);
+        network.registerListener(discovery);
+        discovery.start();
+        return discovery;
+    }
+
+    /**
+     * Codes a network has been given, and who from
+     */
+    private static class Heard implements MultiplayerEventListener {
+        private final List<int[]> _heard = new ArrayList<int[]>();
+
+        @Override
+        public synchronized void message(int statusCode, ByteBuffer data, int from, int session) {
+            _heard.add(new int[]{statusCode, from, session});
+            notifyAll();
+        }
+
+        @Override
+        public void onNetworkError(Exception e, String text) {
+        }
+
+        synchronized boolean await(int code, int from, long timeoutMs) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeoutMs;
+            while (true) {
+                for (int[] h : _heard) {
+                    if (h[0] == code && h[1] == from)
+                        return true;
+                }
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0)
+                    return false;
+                wait(left);
+            }
+        }
+    }
+
+    private static void awaitJoined(RoomDiscovery... players) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (true) {
+            boolean joined = true;
+            for (RoomDiscovery p : players) {
+                p.tick();
+                joined &= p.isJoined();
+            }
+            if (joined)
+                return;
+            assertTrue("Never joined", System.currentTimeMillis() < deadline);
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    public void lockstepJoinersWaitForTheServer() throws InterruptedException {
+        RoomDiscovery server = player(RoomDiscovery.FLAG_LOCKSTEP);
+        awaitJoined(server);
+        // Joiners play the room's way, whatever they'd have made
+        RoomDiscovery joiner = player(0);
+        awaitJoined(joiner);
+
+        assertTrue(server.isHost());
+        assertFalse(joiner.isHost());
+        assertTrue(joiner.isLockstep());
+        assertEquals(_networks.get(0).getNodeId(), joiner.getHostNode());
+        assertEquals(_networks.get(0).getSession(), _networks.get(1).getSession());
+
+        // Only the server starts the game, so everyone starts the same world
+        assertFalse(server.waitsForServer());
+        assertTrue(joiner.waitsForServer());
+    }
+
+    @Test
+    public void everyoneStartsTheirOwnInAPositionRoom() throws InterruptedException {
+        RoomDiscovery server = player(0);
+        awaitJoined(server);
+        RoomDiscovery joiner = player(RoomDiscovery.FLAG_LOCKSTEP);
+        awaitJoined(joiner);
+
+        assertFalse(joiner.isLockstep());
+        assertFalse(server.waitsForServer());
+        assertFalse(joiner.waitsForServer());
+    }
+
+    @Test
+    public void joinsOverASlowNetwork() throws InterruptedException {
+        _hub.setLatency(80, 60);
+        _hub.setDuplication(0.3f);
+        RoomDiscovery server = player(0);
+        awaitJoined(server);
+        RoomDiscovery joiner = player(0);
+        awaitJoined(joiner);
+
+        assertFalse(joiner.isHost());
+        assertEquals(_networks.get(0).getSession(), _networks.get(1).getSession());
+    }
+
+    @Test
+    public void roomsKeepToThemselves() throws InterruptedException {
+        // Both start looking at once, so neither is a server yet to answer the other.
+        // Slow enough that both give up looking before hearing the other's new room
+        _hub.setLatency(100, 0);
+        RoomDiscovery a = player(0);
+        RoomDiscovery b = player(0);
+        awaitJoined(a, b);
+        assertTrue(a.isHost());
+        assertTrue(b.isHost());
+        assertTrue(_networks.get(0).getSession() != _networks.get(1).getSession());
+
+        Heard heard = new Heard();
+        _networks.get(1).registerListener(heard);
+        _networks.get(0).sendCode(HELLO);
+        assertFalse(heard.await(HELLO, _networks.get(0).getNodeId(), 300));
+        assertEquals(0, _networks.get(1).getPeerCount());
+    }
+
+    @Test
+    public void leaversAreDroppedFromTheRoom() throws InterruptedException {
+        RoomDiscovery server = player(0);
+        awaitJoined(server);
+        RoomDiscovery joiner = player(0);
+        awaitJoined(joiner);
+
+        MultiplayerNetwork serverNetwork = _networks.get(0);
+        MultiplayerNetwork joinerNetwork = _networks.get(1);
+        Heard heard = new Heard();
+        serverNetwork.registerListener(heard);
+        joinerNetwork.sendCode(HELLO);
+        assertTrue(heard.await(HELLO, joinerNetwork.getNodeId(), WAIT_MS));
+        assertEquals(1, serverNetwork.getPeerCount());
+
+        // Gone without a word, so the room only finds out when it stops hearing from them
+        joinerNetwork.close();
+        assertTrue(heard.await(MultiplayerNetwork.CODE_LEAVE, joinerNetwork.getNodeId(), MultiplayerNetwork.PEER_TIMEOUT_MS + WAIT_MS));
+        assertEquals(0, serverNetwork.getPeerCount());
+    }
+}
@@ -0,0 +1,120 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Sprites at rest have to sleep, stay put while they do, and wake when anything could move them
+ */
+public class SleepTest {
+
+    private static final long SEED = 6;
+
+    private static int asleep(GameState state) {
+        int asleep = 0;
+        for (GenericSprite s : state.getSprites()) {
+            if (s.isAsleep())
+                asleep++;
+        }
+        return asleep;
+    }
+
+    /**
+     * A still ball, and another rolling along to hit it
+     */
+    private static GameState twoBalls(BallSprite still, BallSprite rolling) {
+        List<GenericSprite> sprites = new ArrayList<GenericSprite>();
+        sprites.add(still);
+        sprites.add(rolling);
+        return new GameState("Two balls", new IntVec2(20, 10), new Vec2(1, 9), sprites);
+    }
+
+    @Test
+    public void pilesComeToRest() {
+        GameState state = GameState.GENERATE_BALLS(300, "Balls", SEED);
+        for (int t = 0; t < 600; t++)
+            state.update();
+        assertTrue("Only " + asleep(state) + " asleep", asleep(state) > 150);
+        for (GenericSprite s : state.getSprites()) {
+            if (s.isAsleep()) {
+                assertEquals(0, s.getMotion().x, 0);
+                assertEquals(0, s.getMotion().y, 0);
+            }
+        }
+
+        // Nothing moves while it's asleep
+        List<GenericSprite> sprites = state.getSprites();
+        float[] x = new float[sprites.size()];
+        float[] y = new float[sprites.size()];
+        for (int i = 0; i < sprites.size(); i++) {
+            x[i] = sprites.get(i).getXPos();
+            y[i] = sprites.get(i).getYPos();
+        }
+        for (int t = 0; t < 30; t++) {
+            state.update();
+            for (int i = 0; i < sprites.size(); i++) {
+                GenericSprite s = sprites.get(i);
+                if (s.isAsleep()) {
+                    assertEquals(x[i], s.getXPos(), 0);
+                    assertEquals(y[i], s.getYPos(), 0);
+                }
+                x[i] = s.getXPos();
+                y[i] = s.getYPos();
+            }
+        }
+    }
+
+    @Test
+    public void wakesWhenPushed() {
+        BallSprite still = new BallSprite(10, 5);
+        BallSprite rolling = new BallSprite(4, 5);
+        GameState state = twoBalls(still, rolling);
+        state.update();
+        assertTrue(still.isAsleep());
+
+        rolling.setMotion(0.1f, 0);
+        assertFalse(rolling.isAsleep());
+        for (int t = 0; t < 100 && still.isAsleep(); t++) {
+            state.update();
+            if (still.isAsleep())
+                assertEquals(10, still.getXPos(), 0);
+        }
+        assertFalse("Never woken", still.isAsleep());
+
+        // And is knocked along by the same update
+        assertTrue(still.getMotion().x > 0);
+        assertTrue(still.getXPos() > 10);
+    }
+
+    @Test
+    public void wakesWhenTilted() {
+        GameState state = GameState.GENERATE_BALLS(200, "Balls", SEED);
+        for (int t = 0; t < 600; t++)
+            state.update();
+        assertTrue(asleep(state) > 0);
+
+        state.setGravity(0.01f, 0, 0);
+        state.update();
+        for (GenericSprite s : state.getSprites()) {
+            if (s instanceof BallSprite)
+                assertFalse(s.isAsleep());
+        }
+    }
+
+    @Test
+    public void wakesWhenMoved() {
+        BallSprite still = new BallSprite(10, 5);
+        BallSprite other = new BallSprite(4, 5);
+        GameState state = twoBalls(still, other);
+        state.update();
+        assertTrue(still.isAsleep());
+        still.setXPos(12);
+        assertFalse(still.isAsleep());
+    }
+}
@@ -0,0 +1,155 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Watchers have to see players where the host wrote them, to within a delta step
+ */
+public class SpectatorStreamTest {
+
+    private static final int PLAYERS = 6;
+    private static final float WIDTH = 20;
+    private static final float HEIGHT = 10;
+
+    private final SpectatorStream _writer = new SpectatorStream();
+    private final SpectatorStream _reader = new SpectatorStream();
+    private final int[] _nodes = new int[PLAYERS];
+    private final int[] _flags = new int[PLAYERS];
+    private final int[] _x = new int[PLAYERS];
+    private final int[] _y = new int[PLAYERS];
+    private int _tick;
+
+    public SpectatorStreamTest() {
+        for (int i = 0; i < PLAYERS; i++) {
+            _nodes[i] = 1000 + i;
+            _x[i] = PositionCodec.quantisePosition(i * 3, WIDTH);
+            _y[i] = PositionCodec.quantisePosition(5, HEIGHT);
+        }
+    }
+
+    /**
+     * Writes the next frame
+     *
+     * @return Code, with the payload ready to read
+     */
+    private int write(int count) {
+        _tick += SpectatorStream.INTERVAL;
+        return _writer.write(_tick, count, _nodes, _flags, _x, _y);
+    }
+
+    private boolean read(int code) {
+        ByteBuffer data = ByteBuffer.wrap(_writer.getPayload(), 0, _writer.getPayloadLength());
+        if (!_reader.read(code, data, WIDTH, HEIGHT))
+            return false;
+        assertEquals(0, data.remaining());
+        return true;
+    }
+
+    @Test
+    public void watchersSeeWhatWasWritten() {
+        Random random = new Random(8);
+        int keyframes = 0;
+        for (int f = 0; f < 100; f++) {
+            for (int i = 0; i < PLAYERS; i++) {
+                _x[i] += random.nextInt(101) - 50;
+                _y[i] += random.nextInt(101) - 50;
+                _flags[i] = random.nextInt(30) == 0 ? GameHost.FLAG_FINISHED : 0;
+            }
+            int code = write(PLAYERS);
+            if (code == SpectatorStream.CODE_KEYFRAME)
+                keyframes++;
+            assertTrue(read(code));
+
+            assertEquals(_tick, _reader.getTick());
+            assertEquals(PLAYERS, _reader.getCount());
+            for (int i = 0; i < PLAYERS; i++) {
+                assertEquals(_nodes[i], _reader.getNode(i));
+                assertEquals(_flags[i], _reader.getFlags(i));
+                assertEquals(_x[i], _reader.getX(i), SpectatorStream.DELTA_STEP / 2);
+                assertEquals(_y[i], _reader.getY(i), SpectatorStream.DELTA_STEP / 2);
+            }
+        }
+        // Nobody moved far enough to need more than the regular ones
+        assertEquals(100 / SpectatorStream.KEYFRAME_INTERVAL, keyframes);
+    }
+
+    @Test
+    public void deltasAreSmallerThanKeyframes() {
+        write(PLAYERS);
+        int keyframe = _writer.getPayloadLength();
+        _x[0] += 100;
+        assertEquals(SpectatorStream.CODE_DELTA, write(PLAYERS));
+        assertEquals(6 + PLAYERS * 3, _writer.getPayloadLength());
+        assertEquals(6 + PLAYERS * 9, keyframe);
+    }
+
+    @Test
+    public void keyframesWhenTooFarOrSomeoneLeaves() {
+        assertEquals(SpectatorStream.CODE_KEYFRAME, write(PLAYERS));
+        assertEquals(SpectatorStream.CODE_DELTA, write(PLAYERS));
+        _x[2] += 200 * SpectatorStream.DELTA_STEP;
+        assertEquals(SpectatorStream.CODE_KEYFRAME, write(PLAYERS));
+        assertEquals(SpectatorStream.CODE_DELTA, write(PLAYERS));
+        assertEquals(SpectatorStream.CODE_KEYFRAME, write(PLAYERS - 1));
+    }
+
+    @Test
+    public void ignoresDeltasForMissedKeyframes() {
+        read(write(PLAYERS));
+        _x[0] += 200 * SpectatorStream.DELTA_STEP;
+        write(PLAYERS); // Lost
+        int seen = _reader.getX(0);
+
+        _x[0] += SpectatorStream.DELTA_STEP;
+        assertEquals(SpectatorStream.CODE_DELTA, write(PLAYERS));
+        assertFalse(read(SpectatorStream.CODE_DELTA));
+        assertEquals(seen, _reader.getX(0));
+    }
+
+    @Test
+    public void guessesHowFastPlayersAreGoing() {
+        read(write(PLAYERS));
+        assertEquals(0, _reader.getVelocityX(0));
+
+        int step = SpectatorStream.DELTA_STEP * 10;
+        _x[0] += step;
+        _y[1] -= step;
+        read(write(PLAYERS));
+        float distance = PositionCodec.dequantisePosition(step, WIDTH);
+        assertEquals(PositionCodec.quantiseVelocity(distance / SpectatorStream.INTERVAL), _reader.getVelocityX(0));
+        assertEquals(0, _reader.getVelocityY(0));
+        assertTrue(_reader.getVelocityY(1) < 0);
+    }
+
+    @Test
+    public void overOnceEveryoneIsDone() {
+        read(write(PLAYERS));
+        assertFalse(_reader.isOver());
+        for (int i = 0; i < PLAYERS; i++)
+            _flags[i] = i % 2 == 0 ? GameHost.FLAG_FINISHED : GameHost.FLAG_DEAD;
+        read(write(PLAYERS));
+        assertTrue(_reader.isOver());
+
+        // An empty frame is the host saying it's closed the room
+        read(write(0));
+        assertTrue(_reader.isOver());
+    }
+
+    @Test
+    public void watchersHaveTheirOwnSession() {
+        Random random = new Random(2);
+        for (int i = 0; i < 1000; i++) {
+            int room = random.nextInt();
+            int session = SpectatorStream.getSession(room);
+            assertTrue(session != room);
+            assertTrue(session != MultiplayerNetwork.DISCOVERY_SESSION);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Looking in a grid has to find the same sprites as checking every one
+ */
+public class SpriteGridTest {
+
+    private static final int SPRITES = 500;
+    private static final int LOOKS = 2000;
+
+    /**
+     * Finds what overlaps a box the way GameState does, counting how often each sprite comes up
+     */
+    private static int[] look(SpriteGrid grid, Box r) {
+        int[] found = new int[SPRITES];
+        int x0 = grid.column(r.left), x1 = grid.column(r.right);
+        int y0 = grid.row(r.top), y1 = grid.row(r.bottom);
+        for (int y = y0; y <= y1; y++) {
+            for (int x = x0; x <= x1; x++) {
+                int cell = y * grid.getColumns() + x;
+                for (int k = grid.start(cell); k < grid.end(cell); k++) {
+                    int sprite = grid.get(k);
+                    if (grid.isFirst(sprite, x, y, x0, y0))
+                        found[sprite]++;
+                }
+            }
+        }
+        return found;
+    }
+
+    @Test
+    public void findsEverythingOverlappingOnce() {
+        Random random = new Random(1);
+        GenericSprite[] all = new GenericSprite[SPRITES];
+        int[] indexes = new int[SPRITES];
+        for (int i = 0; i < SPRITES; i++) {
+            // Mostly small, with the odd long wall across lots of cells
+            float w = random.nextInt(20) == 0 ? random.nextFloat() * 30 : random.nextFloat() * 0.5f;
+            float h = random.nextInt(20) == 0 ? random.nextFloat() * 30 : random.nextFloat() * 0.5f;
+            all[i] = new WallSprite(random.nextFloat() * 40, random.nextFloat() * 40, w, h);
+            indexes[i] = i;
+        }
+        SpriteGrid grid = new SpriteGrid();
+        grid.fit(all, indexes, SPRITES, 0.5f, SPRITES * 4 + 16);
+        assertTrue((long) grid.getColumns() * grid.getRows() <= SPRITES * 4 + 16);
+
+        for (int l = 0; l < LOOKS; l++) {
+            // Some of them off the edge of the grid
+            float x = random.nextFloat() * 50 - 5;
+            float y = random.nextFloat() * 50 - 5;
+            float size = random.nextFloat();
+            Box r = new Box(x, y, x + size, y + size);
+
+            int[] found = look(grid, r);
+            for (int i = 0; i < SPRITES; i++) {
+                assertTrue("Found " + i + " " + found[i] + " times", found[i] <= 1);
+                if (Box.intersects(all[i].getRectangle(), r))
+                    assertEquals("Missed " + i, 1, found[i]);
+            }
+        }
+    }
+
+    @Test
+    public void keepsCellsInTheOrderGiven() {
+        GenericSprite[] all = {new WallSprite(0, 0, 10, 10), new WallSprite(1, 1, 1, 1), new WallSprite(2, 2, 1, 1)};
+        int[] indexes = {2, 0, 1};
+        SpriteGrid grid = new SpriteGrid();
+        grid.fit(all, indexes, 3, 20, 16);
+        assertEquals(1, grid.getColumns() * grid.getRows());
+        for (int k = 0; k < 3; k++)
+            assertEquals(k, grid.get(grid.start(0) + k));
+    }
+
+    @Test
+    public void copesWithNothingInIt() {
+        SpriteGrid grid = new SpriteGrid();
+        grid.fit(new GenericSprite[0], new int[0], 0, 1, 16);
+        int cell = grid.row(5) * grid.getColumns() + grid.column(5);
+        assertEquals(grid.start(cell), grid.end(cell));
+    }
+}
@@ -0,0 +1,65 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Times of impact for a circle of radius 1 starting at the origin, unless said otherwise
+ */
+public class SweepTest {
+
+    private static final float DELTA = 1e-5f;
+
+    // Box from (5, -1) to (6, 1), straight ahead along X
+    private static float ahead(float dx, float dy) {
+        return Sweep.circleBox(0, 0, 1, dx, dy, 5, -1, 6, 1);
+    }
+
+    @Test
+    public void hitsTheSideOfABox() {
+        assertEquals(0.4f, ahead(10, 0), DELTA);
+        assertEquals(0.8f, ahead(5, 0), DELTA);
+    }
+
+    @Test
+    public void missesABoxOutOfReach() {
+        assertEquals(Sweep.MISS, ahead(3, 0), 0); // Stops short
+        assertEquals(Sweep.MISS, ahead(-10, 0), 0); // Going the other way
+        assertEquals(Sweep.MISS, ahead(10, 10), 0); // Passes above
+        assertEquals(Sweep.MISS, ahead(0, 10), 0); // Never gets along X
+    }
+
+    @Test
+    public void ignoresABoxItStartsIn() {
+        assertEquals(Sweep.MISS, Sweep.circleBox(5.5f, 0, 1, 10, 0, 5, -1, 6, 1), 0);
+    }
+
+    @Test
+    public void hitsTheCornerOfABoxAsACircle() {
+        // Heading for the corner at (5, 5) on the diagonal, so touches when 1 away from it
+        float t = (5 - (float) Math.sqrt(0.5)) / 10;
+        assertEquals(t, Sweep.circleBox(0, 0, 1, 10, 10, 5, 5, 6, 6), DELTA);
+    }
+
+    @Test
+    public void missesTheCornerItOnlyClips() {
+        // Goes through the grown box's square corner, but never comes within 1 of (5, 5)
+        assertEquals(Sweep.MISS, Sweep.circleBox(0, 8.1f, 1, 10, -10, 5, 5, 6, 6), 0);
+    }
+
+    @Test
+    public void hitsACircle() {
+        assertEquals(0.4f, Sweep.circleCircle(0, 0, 1, 10, 0, 6, 0, 1), DELTA);
+        assertEquals(0.5f, Sweep.circleCircle(0, 0, 1, 10, 0, 6, 0, 0), DELTA);
+    }
+
+    @Test
+    public void missesACircleOutOfReach() {
+        assertEquals(Sweep.MISS, Sweep.circleCircle(0, 0, 1, 10, 0, 5, 3, 1), 0); // Passes by
+        assertEquals(Sweep.MISS, Sweep.circleCircle(0, 0, 1, -10, 0, 6, 0, 1), 0); // Going away
+        assertEquals(Sweep.MISS, Sweep.circleCircle(0, 0, 1, 3, 0, 6, 0, 1), 0); // Stops short
+        assertEquals(Sweep.MISS, Sweep.circleCircle(0, 0, 1, 10, 0, 1.5f, 0, 1), 0); // Already touching
+        assertEquals(Sweep.MISS, Sweep.circleCircle(0, 0, 1, 0, 0, 6, 0, 1), 0); // Not moving
+    }
+}
@@ -0,0 +1,108 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tasks run on the tick they're due, however far round the wheel that is
+ */
+public class TimerWheelTest {
+
+    private final TimerWheel _wheel = new TimerWheel(8);
+    private final List<Long> _ran = new ArrayList<Long>(); // Tick each task ran on
+
+    private Runnable record() {
+        return new Runnable() {
+            @Override
+            public void run() {
+                _ran.add(_wheel.getTick());
+            }
+        };
+    }
+
+    private List<Long> ticks(long... ticks) {
+        List<Long> list = new ArrayList<Long>();
+        for (long t : ticks)
+            list.add(t);
+        return list;
+    }
+
+    @Test
+    public void runsOnTheDueTick() {
+        _wheel.schedule(record(), 3);
+        _wheel.schedule(record(), 1);
+        _wheel.advance(2);
+        assertEquals(ticks(1), _ran);
+        _wheel.advance(10);
+        assertEquals(ticks(1, 3), _ran);
+        assertEquals(0, _wheel.size());
+    }
+
+    @Test
+    public void waitsLapsPastTheSlotCount() {
+        // 8 slots, so these share a slot with tasks due sooner
+        _wheel.schedule(record(), 21);
+        _wheel.schedule(record(), 5);
+        _wheel.schedule(record(), 13);
+        _wheel.advance(20);
+        assertEquals(ticks(5, 13), _ran);
+        assertEquals(1, _wheel.size());
+        _wheel.advance(21);
+        assertEquals(ticks(5, 13, 21), _ran);
+    }
+
+    @Test
+    public void delayIsAtLeastOneTick() {
+        _wheel.advance(4);
+        _wheel.schedule(record(), 0);
+        _wheel.advance(5);
+        assertEquals(ticks(5), _ran);
+    }
+
+    @Test
+    public void cancelledTasksNeverRun() {
+        TimerWheel.Timer t = _wheel.schedule(record(), 4);
+        _wheel.schedule(record(), 12);
+        t.cancel();
+        _wheel.advance(4);
+        assertTrue(_ran.isEmpty());
+        assertEquals(1, _wheel.size());
+        _wheel.advance(12);
+        assertEquals(ticks(12), _ran);
+    }
+
+    @Test
+    public void tasksCanScheduleMore() {
+        // Each run schedules the next, a whole lap on, so it lands in the slot being run
+        _wheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                _ran.add(_wheel.getTick());
+                if (_ran.size() < 3)
+                    _wheel.schedule(this, 8);
+            }
+        }, 2);
+        _wheel.advance(2);
+        assertEquals(ticks(2), _ran);
+        _wheel.advance(30);
+        assertEquals(ticks(2, 10, 18), _ran);
+        assertEquals(0, _wheel.size());
+    }
+
+    @Test
+    public void clearDropsEverything() {
+        _wheel.schedule(record(), 2);
+        _wheel.schedule(record(), 20);
+        _wheel.clear(100);
+        assertEquals(0, _wheel.size());
+        assertEquals(100, _wheel.getTick());
+        _wheel.schedule(record(), 1);
+        _wheel.advance(130);
+        assertEquals(ticks(101), _ran);
+    }
+}
@@ -0,0 +1,89 @@
+package twoohfour.cms.waikato.ac.nz.ballgame;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A world has to come out the same however many threads update it
+ */
+public class WorkerPoolTest {
+
+    private static final int SPRITES = 2000;
+    private static final int TICKS = 60;
+
+    /**
+     * A square of players, bumpers and little walls, big enough to be split across threads
+     * and for players to look for what they touch in a grid
+     */
+    private static GameState arena() {
+        Random random = new Random(2);
+        int size = (int) Math.ceil(Math.sqrt(SPRITES / 4.0));
+        List<GenericSprite> sprites = new ArrayList<GenericSprite>();
+        sprites.add(new WallSprite(0, -1, size, 1));
+        sprites.add(new WallSprite(-1, 0, 1, size));
+        sprites.add(new WallSprite(0, size, size, 1));
+        sprites.add(new WallSprite(size, 0, 1, size));
+        for (int i = 0; i < SPRITES; i++) {
+            float x = random.nextFloat() * (size - 0.5f);
+            float y = random.nextFloat() * (size - 0.5f);
+            if (i % 10 == 0) {
+                PlayerSprite p = new PlayerSprite(x, y);
+                p.setInput((random.nextFloat() - 0.5f) * 0.01f, (random.nextFloat() - 0.5f) * 0.01f);
+                sprites.add(p);
+            } else if (i % 10 < 3) {
+                sprites.add(new BumperSprite((int) x, (int) y));
+            } else {
+                sprites.add(new WallSprite(x, y, 0.25f, 0.25f));
+            }
+        }
+        GameState state = new GameState("Arena", new IntVec2(size, size), new Vec2(size / 2f, size / 2f), sprites);
+        state.setSeed(2);
+        state.setGravity(0.002f, 0.001f, 0);
+        return state;
+    }
+
+    private static long play(int threads) {
+        GameState state = arena();
+        WorkerPool pool = threads > 0 ? new WorkerPool(threads) : null;
+        state.setWorkers(pool);
+        for (int t = 0; t < TICKS; t++)
+            state.update();
+        if (pool != null)
+            pool.shutdown();
+        return InputRecorder.checksum(state);
+    }
+
+    @Test
+    public void sameWorldOnAnyNumberOfThreads() {
+        long alone = play(0);
+        assertEquals(alone, play(1));
+        assertEquals(alone, play(3));
+        assertEquals(alone, play(8));
+    }
+
+    @Test
+    public void everyIndexIsDoneOnce() {
+        WorkerPool pool = new WorkerPool(4);
+        final int[] done = new int[1000];
+        final boolean[] chunks = new boolean[pool.getChunks()];
+        pool.run(done.length, new WorkerPool.Task() {
+            @Override
+            public void run(int chunk, int from, int to) {
+                chunks[chunk] = true;
+                for (int i = from; i < to; i++)
+                    done[i]++;
+            }
+        });
+        pool.shutdown();
+        for (int i = 0; i < done.length; i++)
+            assertEquals("Index " + i, 1, done[i]);
+        for (int c = 0; c < chunks.length; c++)
+            assertTrue("Chunk " + c, chunks[c]);
+    }
+}